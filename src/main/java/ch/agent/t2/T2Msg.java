@@ -102,6 +102,17 @@ public class T2Msg extends KeyedMessage {
 		public static final String T5019 = "T5019";
 		public static final String T5020 = "T5020";
 		public static final String T5031 = "T5031";
+		public static final String T5040 = "T5040";
+		public static final String T5041 = "T5041";
+		public static final String T5042 = "T5042";
+		public static final String T5043 = "T5043";
+		public static final String T5044 = "T5044";
+		public static final String T5045 = "T5045";
+		public static final String T5046 = "T5046";
+		public static final String T5047 = "T5047";
+		public static final String T5048 = "T5048";
+		public static final String T5049 = "T5049";
+		public static final String T5050 = "T5050";
 		
 		public static final String T7015 = "T7015";
 		public static final String T7016 = "T7016";
@@ -148,6 +148,35 @@ public class DayRankingSubPeriodPattern implements SubPeriodPattern {
 		return result;
 	}
 
+	@Override
+	public long expandSubPeriod(long time, int subPeriod) {
+		if (subPeriod < 0 || subPeriod >= ranks.length)
+			throw new IllegalArgumentException(
+					"subPeriod does not agree with ranks.length");
+		try {
+			switch (basePeriodUnit) {
+			case YEAR:
+				int yearDay = TimeTools.getDayByRank(time, 0,
+						ranks[subPeriod].getDayOfWeek(),
+						ranks[subPeriod].getRank());
+				return TimeTools.checkedDayNumber(time, 1, yearDay);
+			case MONTH:
+				long year = time / 12;
+				int month = (int) (time - year * 12) + 1;
+				int day = TimeTools.getDayByRank(year, month,
+						ranks[subPeriod].getDayOfWeek(),
+						ranks[subPeriod].getRank());
+				return TimeTools.checkedDayNumber(year, month, day);
+			default:
+				throw T2Msg.exception(K.T1118, basePeriodUnit.name(),
+						getSubPeriod().name());
+			}
+		} catch (T2Exception e) {
+			// errors not expected when unpacking, so this can only be a bug
+			throw new RuntimeException("bug", e);
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
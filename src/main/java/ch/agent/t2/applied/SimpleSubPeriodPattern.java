@@ -234,6 +234,23 @@ public class SimpleSubPeriodPattern implements SubPeriodPattern {
 		return result;
 	}
 
+	@Override
+	public long expandSubPeriod(long time, int subPeriod) {
+		if (subPeriod < 0 || subPeriod >= ranks.length)
+			throw new IllegalArgumentException("subPeriod does not agree with ranks.length");
+		switch (subPeriodUnit) {
+		case MONTH:
+			return time * 12 + ranks[subPeriod] - 1;
+		case DAY:
+			long year = time / 12;
+			return TimeTools.dayNumber(year, (int) (time - year * 12) + 1, ranks[subPeriod]);
+		case SEC:
+			return time * 24L * 60L * 60L + ranks[subPeriod];
+		default:
+			throw new RuntimeException("bug: " + subPeriodUnit.name());
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -0,0 +1,145 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.time;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An AsciiCharSequence is a character sequence view of a slice of bytes in
+ * a byte array or a byte buffer. Each byte is one character, so the view is
+ * correct for ASCII text, and for ISO-8859-1 text in general. Bytes are not
+ * copied and no string is created, so text read from files, including
+ * memory-mapped files, can be passed directly to methods like
+ * {@link TimeScanner#scanIndex(TimeDomain, CharSequence, int, int)}.
+ * <p>
+ * Byte buffers are accessed with absolute positions, so the position and the
+ * limit of the buffer are never modified. The view reflects changes in the
+ * underlying bytes. The slice can be moved with the <code>set</code> methods,
+ * so a single object can be used to scan many lines.
+ * <p>
+ * This class provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public final class AsciiCharSequence implements CharSequence {
+
+	private byte[] bytes;
+	private ByteBuffer buffer;
+	private int offset;
+	private int length;
+
+	/**
+	 * Construct a view of a slice of a byte array.
+	 *
+	 * @param bytes a non-null byte array
+	 * @param offset the position of the first byte
+	 * @param length the number of bytes
+	 */
+	public AsciiCharSequence(byte[] bytes, int offset, int length) {
+		set(bytes, offset, length);
+	}
+
+	/**
+	 * Construct a view of a slice of a byte buffer.
+	 *
+	 * @param buffer a non-null byte buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 */
+	public AsciiCharSequence(ByteBuffer buffer, int index, int length) {
+		set(buffer, index, length);
+	}
+
+	/**
+	 * Make this object a view of a slice of a byte array.
+	 *
+	 * @param bytes a non-null byte array
+	 * @param offset the position of the first byte
+	 * @param length the number of bytes
+	 * @return this object
+	 */
+	public AsciiCharSequence set(byte[] bytes, int offset, int length) {
+		if (bytes == null)
+			throw new IllegalArgumentException("bytes null");
+		check(offset, length, bytes.length);
+		this.bytes = bytes;
+		this.buffer = null;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	/**
+	 * Make this object a view of a slice of a byte buffer.
+	 *
+	 * @param buffer a non-null byte buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @return this object
+	 */
+	public AsciiCharSequence set(ByteBuffer buffer, int index, int length) {
+		if (buffer == null)
+			throw new IllegalArgumentException("buffer null");
+		check(index, length, buffer.limit());
+		if (buffer.hasArray()) {
+			this.bytes = buffer.array();
+			this.buffer = null;
+			this.offset = buffer.arrayOffset() + index;
+		} else {
+			this.bytes = null;
+			this.buffer = buffer;
+			this.offset = index;
+		}
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("index: " + index + " length: " + length);
+		return (char) ((bytes != null ? bytes[offset + index] : buffer.get(offset + index)) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException(start + ", " + end);
+		return bytes != null ? new AsciiCharSequence(bytes, offset + start, end - start) :
+			new AsciiCharSequence(buffer, offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = charAt(i);
+		}
+		return new String(chars);
+	}
+
+	private static void check(int offset, int length, int size) {
+		if (offset < 0 || length < 0 || offset > size - length)
+			throw new IndexOutOfBoundsException("offset: " + offset + " length: " + length + " size: " + size);
+	}
+
+}
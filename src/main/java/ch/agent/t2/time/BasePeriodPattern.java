@@ -45,6 +45,38 @@ public interface BasePeriodPattern {
 	 */
 	long makeIndex(long time) throws T2Exception;
 	
+	/**
+	 * Compress an unrestricted numerical time index by removing all OFF time
+	 * points, adjusting it to the next or previous ON time point if necessary
+	 * and allowed. Return the compressed index, or -1 if the time point is OFF
+	 * and the adjustment mode is {@link Adjustment#NONE}, or if there is no
+	 * ON time point when adjusting down. Unlike {@link #makeIndex(long)},
+	 * the method does not throw an exception when the time point is OFF.
+	 * <p>
+	 * The default implementation calls {@link #makeIndex(long)} on
+	 * successive time points, at most once per point of the pattern.
+	 * Implementations should override it to adjust without exceptions.
+	 * 
+	 * @param time a non-negative unrestricted numerical time index
+	 * @param adjust a non-null adjustment mode
+	 * @return the numerical time index compressed or -1
+	 */
+	default long makeIndexOrAdjust(long time, Adjustment adjust) {
+		for (int i = 0; i < getSize() && time >= 0; i++) {
+			try {
+				return makeIndex(time);
+			} catch (T2Exception e) {
+				if (adjust == Adjustment.UP)
+					time++; // negative on overflow
+				else if (adjust == Adjustment.DOWN)
+					time--;
+				else
+					break;
+			}
+		}
+		return -1;
+	}
+	
 	/**
 	 * Put back all removed OFF time points in a compressed numerical time index.
 	 * Return the uncompresse numerical time index.
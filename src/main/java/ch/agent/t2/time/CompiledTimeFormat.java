@@ -0,0 +1,346 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.time;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.agent.t2.T2Exception;
+
+/**
+ * A CompiledTimeFormat formats times with a {@link Formatter} pattern, like
+ * {@link TimeIndex#toString(String)}. The pattern is applied to 7 arguments:
+ * year, month, day, hour, minute, second, and fraction of second. It is parsed
+ * once, when the object is constructed, into a sequence of literals and
+ * numeric fields. Formatting a time appends text directly to a string
+ * builder, without unpacking the time into {@link TimeParts} and without
+ * creating a {@link Formatter}.
+ * <p>
+ * Only the <code>%d</code> conversion is compiled, with an optional argument
+ * index, an optional width, and one of the flags <code>-</code> or
+ * <code>0</code>, together with <code>%%</code> and <code>%n</code>. A
+ * pattern with any other element is kept as is and formatted with a
+ * {@link Formatter}. So is a time in a domain with a sub period pattern, or
+ * in a locale with digits other than the ASCII digits.
+ * <p>
+ * Compiled formats are immutable and can be shared. The method
+ * {@link #get(String)} keeps a small cache of the most recently used
+ * compiled formats.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public final class CompiledTimeFormat {
+
+	private static final int CACHE_SIZE = 64;
+	private static final int ARG_COUNT = 7;
+	private static final int FRACTION = 6; // index of fractional second argument
+	private static final Pattern SPEC = Pattern.compile("%(\\d+\\$|<)?([-#+ 0,(]*)(\\d+)?(\\.\\d+)?([tT])?(.)?");
+	private static final Map<String, CompiledTimeFormat> cache = new LinkedHashMap<String, CompiledTimeFormat>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledTimeFormat> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * An Element is a literal or a numeric field.
+	 */
+	private static class Element {
+		private final String literal; // null for a numeric field
+		private final int arg;
+		private final int width;
+		private final boolean left;
+		private final boolean zero;
+
+		private Element(String literal) {
+			this.literal = literal;
+			this.arg = -1;
+			this.width = 0;
+			this.left = false;
+			this.zero = false;
+		}
+
+		private Element(int arg, int width, boolean left, boolean zero) {
+			this.literal = null;
+			this.arg = arg;
+			this.width = width;
+			this.left = left;
+			this.zero = zero;
+		}
+	}
+
+	private final String pattern;
+	private final Element[] elements; // null if the pattern is not compiled
+	private final boolean[] used;
+
+	/**
+	 * Construct a compiled format.
+	 *
+	 * @param pattern
+	 *            a non-null pattern for {@link Formatter}
+	 */
+	public CompiledTimeFormat(String pattern) {
+		if (pattern == null)
+			throw new IllegalArgumentException("pattern null");
+		this.pattern = pattern;
+		this.used = new boolean[ARG_COUNT];
+		this.elements = compile(pattern, used);
+	}
+
+	/**
+	 * Return a compiled format for a pattern. Compiled formats are cached.
+	 *
+	 * @param pattern
+	 *            a non-null pattern for {@link Formatter}
+	 * @return a compiled format
+	 */
+	public static CompiledTimeFormat get(String pattern) {
+		if (pattern == null)
+			throw new IllegalArgumentException("pattern null");
+		CompiledTimeFormat format;
+		synchronized (cache) {
+			format = cache.get(pattern);
+		}
+		if (format == null) {
+			format = new CompiledTimeFormat(pattern);
+			synchronized (cache) {
+				cache.put(pattern, format);
+			}
+		}
+		return format;
+	}
+
+	/**
+	 * Return the pattern.
+	 *
+	 * @return the pattern
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Return true if the pattern was compiled. When false, times are
+	 * formatted with a {@link Formatter}.
+	 *
+	 * @return true if the pattern was compiled
+	 */
+	public boolean isCompiled() {
+		return elements != null;
+	}
+
+	/**
+	 * Format a time and return the result as a string.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a numerical time index in the domain
+	 * @return a string
+	 * @throws T2Exception
+	 */
+	public String format(TimeDomain domain, long time) throws T2Exception {
+		StringBuilder sb = new StringBuilder();
+		formatTo(domain, time, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Format a time and append the result to a string builder.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a numerical time index in the domain
+	 * @param dst
+	 *            a non-null string builder
+	 * @throws T2Exception
+	 */
+	public void formatTo(TimeDomain domain, long time, StringBuilder dst) throws T2Exception {
+		if (dst == null)
+			throw new IllegalArgumentException("dst null");
+		TimePacker packer = domain.getPacker();
+		packer.valid(time, false);
+		if (elements == null || !(domain instanceof TimeFactory) || packer.getSubPeriodPattern() != null
+				|| !DefaultTimeFormatter.asciiDigits()) {
+			TimeParts tp = packer.unpack(time);
+			Formatter fmt = new Formatter(dst);
+			fmt.format(pattern, tp.getYear(), tp.getMonth(), tp.getDay(), tp.getHour(), tp.getMin(), tp.getSec(), tp.getFsec());
+			fmt.close();
+			return;
+		}
+		long year = used[0] ? packer.yearOf(time) : 0;
+		int month = used[1] ? packer.monthOf(time) : 0;
+		int day = used[2] ? packer.dayOf(time) : 0;
+		int seconds = used[3] || used[4] || used[5] ? packer.secondOfDay(time) : 0;
+		long fsec = used[FRACTION] ? fraction((TimeFactory) domain, time) : 0;
+		for (Element e : elements) {
+			if (e.literal != null) {
+				dst.append(e.literal);
+				continue;
+			}
+			long value;
+			switch (e.arg) {
+			case 0:
+				value = year;
+				break;
+			case 1:
+				value = month;
+				break;
+			case 2:
+				value = day;
+				break;
+			case 3:
+				value = seconds / 3600;
+				break;
+			case 4:
+				value = seconds / 60 % 60;
+				break;
+			case 5:
+				value = seconds % 60;
+				break;
+			case FRACTION:
+				value = fsec;
+				break;
+			default:
+				throw new RuntimeException("bug: " + e.arg);
+			}
+			appendNumber(dst, value, e.width, e.left, e.zero);
+		}
+	}
+
+	/**
+	 * Return the fraction of second of a time, in the unit of the domain.
+	 */
+	private static long fraction(TimeFactory domain, long time) {
+		Resolution unit = domain.getResolution();
+		switch (unit) {
+		case MSEC:
+		case USEC:
+		case NSEC:
+			return domain.expandRaw(time) % (TimeFactory.ticksPerDay(unit) / (24L * 60L * 60L));
+		default:
+			return 0;
+		}
+	}
+
+	private static void appendNumber(StringBuilder dst, long value, int width, boolean left, boolean zero) {
+		int length = 1;
+		for (long v = value / 10; v > 0; v /= 10) {
+			length++;
+		}
+		if (!left) {
+			char pad = zero ? '0' : ' ';
+			for (int i = length; i < width; i++) {
+				dst.append(pad);
+			}
+		}
+		dst.append(value);
+		if (left) {
+			for (int i = length; i < width; i++) {
+				dst.append(' ');
+			}
+		}
+	}
+
+	/**
+	 * Parse a pattern into a sequence of elements. Return null if the pattern
+	 * contains unsupported elements.
+	 *
+	 * @param pattern
+	 *            a pattern
+	 * @param used
+	 *            an array to mark the arguments used
+	 * @return an array of elements or null
+	 */
+	private static Element[] compile(String pattern, boolean[] used) {
+		List<Element> elements = new ArrayList<Element>();
+		StringBuilder literal = new StringBuilder();
+		Matcher m = SPEC.matcher(pattern);
+		int ordinary = 0;
+		int last = -1;
+		int pos = 0;
+		while (pos < pattern.length()) {
+			int percent = pattern.indexOf('%', pos);
+			if (percent < 0) {
+				literal.append(pattern, pos, pattern.length());
+				break;
+			}
+			literal.append(pattern, pos, percent);
+			if (!m.find(percent) || m.start() != percent)
+				return null;
+			String index = m.group(1);
+			String flags = m.group(2);
+			String width = m.group(3);
+			String conversion = m.group(6);
+			if (m.group(4) != null || m.group(5) != null || conversion == null)
+				return null;
+			pos = m.end();
+			if (conversion.equals("%") || conversion.equals("n")) {
+				if (index != null || flags.length() > 0 || width != null)
+					return null;
+				literal.append(conversion.equals("%") ? "%" : System.getProperty("line.separator"));
+				continue;
+			}
+			if (!conversion.equals("d"))
+				return null;
+			int arg;
+			if (index == null)
+				arg = ordinary++;
+			else if (index.equals("<"))
+				arg = last;
+			else {
+				try {
+					arg = Integer.parseInt(index.substring(0, index.length() - 1)) - 1;
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+			if (arg < 0 || arg >= ARG_COUNT)
+				return null;
+			last = arg;
+			boolean left = flags.equals("-");
+			boolean zero = flags.equals("0");
+			if (flags.length() > 0 && !left && !zero || (left || zero) && width == null)
+				return null;
+			int w = 0;
+			if (width != null) {
+				try {
+					w = Integer.parseInt(width);
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+			if (literal.length() > 0) {
+				elements.add(new Element(literal.toString()));
+				literal.setLength(0);
+			}
+			elements.add(new Element(arg, w, left, zero));
+			used[arg] = true;
+		}
+		if (literal.length() > 0)
+			elements.add(new Element(literal.toString()));
+		return elements.toArray(new Element[elements.size()]);
+	}
+
+}
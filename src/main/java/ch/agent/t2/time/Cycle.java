@@ -36,6 +36,10 @@ public class Cycle implements BasePeriodPattern {
 
 	private int[] inverseMap;
 	
+	private int[] upMap;
+	
+	private int[] downMap;
+	
 	private int cycleLength;
 	
 	private int compressedLength;
@@ -73,6 +77,33 @@ public class Cycle implements BasePeriodPattern {
 		return cycles * compressedLength + offset;
 	}
 	
+	@Override
+	public long makeIndexOrAdjust(long time, Adjustment adjust) {
+		if (time < 0)
+			throw new IllegalArgumentException("time negative");
+		if (pattern == null)
+			return time;
+		long cycles = time / cycleLength;
+		int remainder = (int) (time - cycles * cycleLength);
+		int offset = map[remainder];
+		if (offset < 0) {
+			switch (adjust) {
+			case UP:
+				offset = upMap[remainder];
+				break;
+			case DOWN:
+				offset = downMap[remainder];
+				break;
+			case NONE:
+				return -1;
+			default:
+				throw new RuntimeException("bug: " + adjust.name());
+			}
+		}
+		long index = cycles * compressedLength + offset;
+		return index < 0 ? -1 : index;
+	}
+	
 	@Override
 	public long expandIndex(long time) {
 		if (pattern == null)
@@ -142,6 +173,12 @@ public class Cycle implements BasePeriodPattern {
 	 * bits in the cycle pattern. The elements of the reverse map give the
 	 * offsets of the time points in the uncompressed time index.
 	 * <p>
+	 * Two more maps are computed for adjusting OFF time points up or down. For
+	 * each time point, they give the offset in the compressed time index of the
+	 * next or the previous ON time point. The next ON time point can be the
+	 * first of the next cycle, with offset equal to the compressed length, and
+	 * the previous ON time point can be the last of the previous cycle, with
+	 * offset -1.
 	 */
 	private void computeMaps() {
 		cycleLength = pattern.length;
@@ -161,6 +198,19 @@ public class Cycle implements BasePeriodPattern {
 			if (map[i] > -1)
 				inverseMap[++j] = i;
 		}
+		upMap = new int[cycleLength];
+		downMap = new int[cycleLength];
+		int onBefore = 0; // number of ON time points before i
+		for (int i = 0; i < cycleLength; i++) {
+			if (map[i] > -1) {
+				upMap[i] = map[i];
+				downMap[i] = map[i];
+				onBefore++;
+			} else {
+				upMap[i] = onBefore;
+				downMap[i] = onBefore - 1;
+			}
+		}
 		return;
 	}
 	
@@ -16,18 +16,45 @@
  */
 package ch.agent.t2.time;
 
+import java.io.IOException;
+import java.text.DecimalFormatSymbols;
 import java.util.Formatter;
+import java.util.Locale;
+
+import ch.agent.t2.T2Exception;
 
 /**
  * This time formatter is used to turn a time into a string. It supports the ISO
  * 8601:2004 international standard for the representation of calendar dates and
  * times, except week dates and ordinal dates. Depending on the constructor, it
  * inserts a "T" between the date and the time and appends a "Z" to signify UTC.
+ * <p>
+ * The <code>formatTo</code> methods produce the same text as
+ * {@link #format(TimeParts)} from a numerical time index. When the domain is
+ * a {@link TimeFactory} without sub period pattern, they compute the time
+ * components directly from the index and write digits to the destination one
+ * by one, without creating any object, unless the default locale for
+ * formatting does not use ASCII digits.
  * 
  * @author Jean-Paul Vetterli
  */
 public class DefaultTimeFormatter implements TimeFormatter {
 
+	private static volatile LocaleCheck localeCheck = new LocaleCheck(null);
+
+	/**
+	 * LocaleCheck remembers if a locale uses ASCII digits.
+	 */
+	private static class LocaleCheck {
+		private final Locale locale;
+		private final boolean asciiDigits;
+
+		private LocaleCheck(Locale locale) {
+			this.locale = locale;
+			this.asciiDigits = locale != null && new DecimalFormatSymbols(locale).getZeroDigit() == '0';
+		}
+	}
+
 	private final char T; 
 	private final String Z; 
 	
@@ -109,4 +136,210 @@ public class DefaultTimeFormatter implements TimeFormatter {
 		return sb.toString();
 	}
 	
+	@Override
+	public void formatTo(TimeDomain domain, long time, Appendable dst) throws T2Exception, IOException {
+		if (dst == null)
+			throw new IllegalArgumentException("dst null");
+		layout(domain, time, null, 0, dst);
+	}
+
+	@Override
+	public void formatTo(TimeDomain domain, long time, StringBuilder dst) throws T2Exception {
+		if (dst == null)
+			throw new IllegalArgumentException("dst null");
+		try {
+			layout(domain, time, null, 0, dst);
+		} catch (IOException e) {
+			throw new RuntimeException("bug: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public int formatTo(TimeDomain domain, long time, char[] dst, int offset) throws T2Exception {
+		if (dst == null)
+			throw new IllegalArgumentException("dst null");
+		try {
+			return layout(domain, time, dst, offset, null);
+		} catch (IOException e) {
+			throw new RuntimeException("bug: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Return true if the default locale for formatting uses ASCII digits.
+	 * This is the locale used by {@link Formatter} in
+	 * {@link #format(TimeParts)}.
+	 * 
+	 * @return true if digits can be written directly
+	 */
+	static boolean asciiDigits() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		LocaleCheck check = localeCheck;
+		if (check.locale != locale) {
+			check = new LocaleCheck(locale);
+			localeCheck = check;
+		}
+		return check.asciiDigits;
+	}
+	
+	/**
+	 * Write the external representation of a time either to a character
+	 * array or to an appendable. Exactly one of the two destinations is
+	 * non-null.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a numerical time index in the domain
+	 * @param a
+	 *            a character array or null
+	 * @param pos
+	 *            the position of the first character in the array
+	 * @param out
+	 *            an appendable or null
+	 * @return the position after the last character in the array
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	private int layout(TimeDomain domain, long time, char[] a, int pos, Appendable out) throws T2Exception, IOException {
+		domain.getPacker().valid(time, false);
+		if (!asciiDigits()) {
+			String text = format(domain.getPacker().unpack(time));
+			if (a == null) {
+				out.append(text);
+				return pos;
+			}
+			text.getChars(0, text.length(), a, pos);
+			return pos + text.length();
+		}
+		Resolution unit = domain.getResolution();
+		long year;
+		int month = 1, day = 1, hour = 0, min = 0, sec = 0;
+		long fsec = 0;
+		if (domain instanceof TimeFactory && domain.getPacker().getSubPeriodPattern() == null) {
+			long raw = ((TimeFactory) domain).expandRaw(time);
+			switch (unit) {
+			case YEAR:
+				year = raw;
+				break;
+			case MONTH:
+				year = raw / 12;
+				month = (int) (raw - year * 12) + 1;
+				break;
+			default:
+				long ticksPerDay = TimeFactory.ticksPerDay(unit);
+				long days = raw / ticksPerDay;
+				long ticks = raw - days * ticksPerDay;
+				long cycles = days / TimeTools.DAYS_IN_400_YEARS;
+				int ymd = TimeTools.dateInCycle((int) (days - cycles * TimeTools.DAYS_IN_400_YEARS));
+				year = cycles * 400 + (ymd >>> 9);
+				month = (ymd >>> 5) & 0xF;
+				day = ymd & 0x1F;
+				switch (unit) {
+				case DAY:
+					break;
+				case HOUR:
+					hour = (int) ticks;
+					break;
+				case MIN:
+					hour = (int) (ticks / 60);
+					min = (int) (ticks % 60);
+					break;
+				default:
+					long ticksPerSecond = ticksPerDay / (24L * 60L * 60L);
+					int seconds = (int) (ticks / ticksPerSecond);
+					fsec = ticks - seconds * ticksPerSecond;
+					hour = seconds / 3600;
+					min = seconds / 60 % 60;
+					sec = seconds % 60;
+				}
+			}
+		} else {
+			TimeParts tp = domain.getPacker().unpack(time);
+			year = tp.getYear();
+			month = tp.getMonth();
+			day = tp.getDay();
+			hour = tp.getHour();
+			min = tp.getMin();
+			sec = tp.getSec();
+			fsec = tp.getFsec();
+		}
+		if (year > 9999)
+			pos = put('+', a, pos, out);
+		if (unit == Resolution.NSEC)
+			year += TimeDomain.BASE_YEAR_FOR_NANO;
+		pos = putDigits(year, 4, a, pos, out);
+		if (unit == Resolution.YEAR)
+			return pos;
+		pos = put('-', a, pos, out);
+		pos = putDigits(month, 2, a, pos, out);
+		if (unit == Resolution.MONTH)
+			return pos;
+		pos = put('-', a, pos, out);
+		pos = putDigits(day, 2, a, pos, out);
+		if (unit == Resolution.DAY)
+			return pos;
+		pos = put(T, a, pos, out);
+		pos = putDigits(hour, 2, a, pos, out);
+		if (unit != Resolution.HOUR) {
+			pos = put(':', a, pos, out);
+			pos = putDigits(min, 2, a, pos, out);
+			if (unit != Resolution.MIN) {
+				pos = put(':', a, pos, out);
+				pos = putDigits(sec, 2, a, pos, out);
+				switch (unit) {
+				case SEC:
+					break;
+				case MSEC:
+					pos = put('.', a, pos, out);
+					pos = putDigits(fsec, 3, a, pos, out);
+					break;
+				case USEC:
+					pos = put('.', a, pos, out);
+					pos = putDigits(fsec, 6, a, pos, out);
+					break;
+				case NSEC:
+					pos = put('.', a, pos, out);
+					pos = putDigits(fsec, 9, a, pos, out);
+					break;
+				default:
+					throw new RuntimeException("bug: " + unit.name());
+				}
+			}
+		}
+		if (Z.length() > 0)
+			pos = put('Z', a, pos, out);
+		return pos;
+	}
+	
+	private static int put(char c, char[] a, int pos, Appendable out) throws IOException {
+		if (a != null)
+			a[pos] = c;
+		else
+			out.append(c);
+		return pos + 1;
+	}
+	
+	/**
+	 * Write a non-negative number in decimal, padded with leading zeros to
+	 * a minimum width.
+	 */
+	private static int putDigits(long value, int width, char[] a, int pos, Appendable out) throws IOException {
+		int length = 1;
+		for (long v = value / 10; v > 0; v /= 10) {
+			length++;
+		}
+		for (int i = length; i < width; i++) {
+			pos = put('0', a, pos, out);
+		}
+		long divisor = 1;
+		for (int i = 1; i < length; i++) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			pos = put((char) ('0' + value / divisor % 10), a, pos, out);
+		}
+		return pos;
+	}
+
 }
@@ -96,6 +96,14 @@ import ch.agent.t2.time.TimeParts.TimeZoneOffset;
  * seconds. It could be used to decide which time parts to ignore, but this
  * tasks is left to the "packing" step. On the other hand fractional seconds
  * need to be interpreted by the scanner because of ambiguities.
+ * <p>
+ * The {@link #scanIndex(TimeDomain, CharSequence, int, int, Adjustment)}
+ * method recognizes the most common form, a date in the extended format with
+ * a 4 digit year, optionally followed by a time without time zone offset,
+ * without regular expressions and without creating objects, and computes the
+ * numerical time index directly. Other forms, and inputs which are not valid,
+ * are handed over to {@link #scan(Resolution, String)}, which also takes
+ * care of producing the exception.
  * 
  * @author Jean-Paul Vetterli
  */
@@ -187,6 +195,144 @@ public class DefaultTimeScanner implements TimeScanner {
 		return tp;
 	}
 
+	@Override
+	public long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end, Adjustment adjust) throws T2Exception {
+		if (domain == null)
+			throw new IllegalArgumentException("domain null");
+		if (datetime == null)
+			throw new IllegalArgumentException("date null");
+		if (adjust == null)
+			throw new IllegalArgumentException("adjust null");
+		if (start < 0 || end > datetime.length() || start > end)
+			throw new IndexOutOfBoundsException(start + ", " + end);
+		long time = -1;
+		if (domain instanceof TimeFactory && domain.getPacker().getSubPeriodPattern() == null) {
+			long raw = scanRawIndex(domain.getResolution(), datetime, start, end);
+			if (raw >= 0)
+				time = ((TimeFactory) domain).compressOrFail(raw, adjust);
+		}
+		if (time < 0)
+			time = domain.getPacker().pack(scan(domain.getResolution(), datetime.subSequence(start, end).toString()), adjust);
+		return time;
+	}
+	
+	@Override
+	public long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end) throws T2Exception {
+		return scanIndex(domain, datetime, start, end, Adjustment.NONE);
+	}
+
+	/**
+	 * Scan a date and time in the extended format and return the raw
+	 * numerical time index for the resolution. Return -1 if the input is not
+	 * in the expected form or is not valid.
+	 * 
+	 * @param unit
+	 *            the time resolution
+	 * @param s
+	 *            a character sequence
+	 * @param start
+	 *            the position of the first character
+	 * @param end
+	 *            the position after the last character
+	 * @return a raw numerical time index or -1
+	 */
+	private long scanRawIndex(Resolution unit, CharSequence s, int start, int end) {
+		int pos = start;
+		long year = digits(s, pos, end, 4);
+		if (year < 0)
+			return -1;
+		pos += 4;
+		int month = 1;
+		int day = 1;
+		int h = 0, m = 0, sec = 0, f = 0;
+		if (pos < end) {
+			if (s.charAt(pos++) != '-' || (month = digits(s, pos, end, 2)) < 0)
+				return -1;
+			pos += 2;
+		}
+		if (pos < end) {
+			if (s.charAt(pos++) != '-' || (day = digits(s, pos, end, 2)) < 0)
+				return -1;
+			pos += 2;
+		}
+		if (pos < end) {
+			char c = s.charAt(pos++);
+			if (c != 'T' && c != ' ' || (h = digits(s, pos, end, 2)) < 0)
+				return -1;
+			pos += 2;
+			if (pos < end && s.charAt(pos) == ':') {
+				if ((m = digits(s, ++pos, end, 2)) < 0)
+					return -1;
+				pos += 2;
+				if (pos < end && s.charAt(pos) == ':') {
+					if ((sec = digits(s, ++pos, end, 2)) < 0)
+						return -1;
+					pos += 2;
+					if (pos < end && (s.charAt(pos) == '.' || s.charAt(pos) == ',')) {
+						int significant = fractionDigits(unit);
+						int count = 0;
+						while (++pos < end && isDigit(s.charAt(pos))) {
+							if (count++ < significant)
+								f = f * 10 + s.charAt(pos) - '0';
+						}
+						if (count == 0 || count > 9)
+							return -1;
+						for (int i = count; i < significant; i++) {
+							f *= 10;
+						}
+					}
+				}
+			}
+			if (pos < end && s.charAt(pos) == 'Z')
+				pos++;
+			if (pos < end)
+				return -1;
+		}
+		if (unit == Resolution.NSEC) {
+			year -= TimeDomain.BASE_YEAR_FOR_NANO;
+			if (year < 0)
+				return -1;
+		}
+		return TimeTools.rawIndex(unit, year, month, day, h, m, sec, f);
+	}
+	
+	/**
+	 * Return the value of a given number of decimal digits, or -1 if there
+	 * are not enough digits.
+	 */
+	static int digits(CharSequence s, int pos, int end, int count) {
+		if (pos + count > end)
+			return -1;
+		int value = 0;
+		for (int i = pos; i < pos + count; i++) {
+			char c = s.charAt(i);
+			if (!isDigit(c))
+				return -1;
+			value = value * 10 + c - '0';
+		}
+		return value;
+	}
+	
+	static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	/**
+	 * Return the number of fractional digits used at a resolution.
+	 */
+	static int fractionDigits(Resolution unit) {
+		switch (unit) {
+		case MSEC:
+			return 3;
+		case USEC:
+			return 6;
+		case NSEC:
+			return 9;
+		default:
+			return 0;
+		}
+	}
+
 	/**
 	 * Return null if match fails.
 	 * @param unit the time resolution 
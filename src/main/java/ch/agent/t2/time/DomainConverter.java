@@ -0,0 +1,297 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.time;
+
+import ch.agent.t2.T2Exception;
+
+/**
+ * A DomainConverter converts numerical time indexes from a source domain to a
+ * target domain. The result of a conversion is the same as with
+ * {@link TimeIndex#convert(TimeDomain, Adjustment)}, but a converter is
+ * faster, because the arithmetic relationship between the domains is
+ * determined once, when the converter is constructed. When possible, times
+ * are converted by scaling the raw numerical time index from one resolution
+ * to the other, while base period patterns are removed or applied directly on
+ * numerical time indexes. Otherwise, or when a conversion fails, the
+ * converter falls back to unpacking and packing time parts, as
+ * {@link TimeIndex#convert(TimeDomain, Adjustment)} does. This is the case
+ * in particular for target domains with a sub period pattern and when
+ * converting between nanosecond and other resolutions.
+ * <p>
+ * A converter is immutable and can be shared.
+ *
+ * @author Jean-Paul Vetterli
+ * @see TimeDomain#converterTo(TimeDomain, Adjustment)
+ */
+public final class DomainConverter {
+
+	private enum Mode {
+		IDENTITY, ARITHMETIC, TIMEPARTS
+	}
+
+	private final TimeDomain source;
+	private final TimeDomain target;
+	private final Adjustment adjustment;
+	private final Mode mode;
+	private final TimeFactory sourceFactory;
+	private final TimeFactory targetFactory;
+	private final Resolution sourceUnit;
+	private final Resolution targetUnit;
+
+	/**
+	 * Construct a converter from a source to a target domain.
+	 *
+	 * @param source
+	 *            a non-null time domain
+	 * @param target
+	 *            a non-null time domain
+	 * @param adjustment
+	 *            a non-null adjustment mode, applied when a time does not
+	 *            exist in the target domain
+	 */
+	public DomainConverter(TimeDomain source, TimeDomain target, Adjustment adjustment) {
+		if (source == null)
+			throw new IllegalArgumentException("source null");
+		if (target == null)
+			throw new IllegalArgumentException("target null");
+		if (adjustment == null)
+			throw new IllegalArgumentException("adjustment null");
+		this.source = source;
+		this.target = target;
+		this.adjustment = adjustment;
+		this.sourceUnit = source.getResolution();
+		this.targetUnit = target.getResolution();
+		if (source.equals(target)) {
+			mode = Mode.IDENTITY;
+			sourceFactory = null;
+			targetFactory = null;
+		} else if (source instanceof TimeFactory && target instanceof TimeFactory
+				&& target.getPacker().getSubPeriodPattern() == null
+				&& scalable(sourceUnit, targetUnit)) {
+			mode = Mode.ARITHMETIC;
+			sourceFactory = (TimeFactory) source;
+			targetFactory = (TimeFactory) target;
+		} else {
+			mode = Mode.TIMEPARTS;
+			sourceFactory = null;
+			targetFactory = null;
+		}
+	}
+
+	/**
+	 * Return the source domain.
+	 *
+	 * @return the source domain
+	 */
+	public TimeDomain getSource() {
+		return source;
+	}
+
+	/**
+	 * Return the target domain.
+	 *
+	 * @return the target domain
+	 */
+	public TimeDomain getTarget() {
+		return target;
+	}
+
+	/**
+	 * Return the adjustment mode.
+	 *
+	 * @return the adjustment mode
+	 */
+	public Adjustment getAdjustment() {
+		return adjustment;
+	}
+
+	/**
+	 * Convert a numerical time index of the source domain to the target
+	 * domain.
+	 *
+	 * @param time
+	 *            a numerical time index in the source domain
+	 * @return a numerical time index in the target domain
+	 * @throws T2Exception
+	 */
+	public long convert(long time) throws T2Exception {
+		source.getPacker().valid(time, false);
+		switch (mode) {
+		case IDENTITY:
+			return time;
+		case ARITHMETIC:
+			long raw = scale(sourceFactory.expandRaw(time), sourceUnit, targetUnit);
+			long result = raw < 0 ? -1 : targetFactory.compressOrFail(raw, adjustment);
+			// on failure, let the general method produce the exception
+			return result < 0 ? convertTimeParts(time) : result;
+		case TIMEPARTS:
+			return convertTimeParts(time);
+		default:
+			throw new RuntimeException("bug: " + mode.name());
+		}
+	}
+
+	/**
+	 * Convert an array of numerical time indexes of the source domain to the
+	 * target domain. The input and output arrays can be the same. The
+	 * conversion stops with an exception on the first time which cannot be
+	 * converted.
+	 *
+	 * @param in
+	 *            a non-null array of numerical time indexes in the source
+	 *            domain
+	 * @param out
+	 *            a non-null array at least as long as the input array for
+	 *            numerical time indexes in the target domain
+	 * @throws T2Exception
+	 */
+	public void convert(long[] in, long[] out) throws T2Exception {
+		if (in == null)
+			throw new IllegalArgumentException("in null");
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		if (out.length < in.length)
+			throw new IllegalArgumentException("out too short");
+		for (int i = 0; i < in.length; i++) {
+			out[i] = convert(in[i]);
+		}
+	}
+
+	/**
+	 * Convert by unpacking the time in the source domain and packing it in
+	 * the target domain.
+	 *
+	 * @param time
+	 *            a numerical time index in the source domain
+	 * @return a numerical time index in the target domain
+	 * @throws T2Exception
+	 */
+	private long convertTimeParts(long time) throws T2Exception {
+		TimeParts tp = source.getPacker().unpack(time);
+		tp = new TimeParts(targetUnit, tp.getYear(), tp.getMonth(), tp.getDay(), tp.getHour(), tp.getMin(),
+				tp.getSec(), tp.getFsec(targetUnit), tp.getTZOffset());
+		return target.getPacker().pack(tp, adjustment);
+	}
+
+	/**
+	 * Return the raw numerical time index of a time projected to a
+	 * resolution, or -1 if this cannot be done arithmetically. The raw index
+	 * is the numerical time index in the domain with the given resolution,
+	 * without any pattern and with origin zero. Components more precise than
+	 * the resolution are discarded.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a valid numerical time index in the domain
+	 * @param unit
+	 *            a non-null resolution
+	 * @return a raw numerical time index or -1
+	 */
+	static long project(TimeDomain domain, long time, Resolution unit) {
+		Resolution from = domain.getResolution();
+		if (domain instanceof TimeFactory && scalable(from, unit))
+			return scale(((TimeFactory) domain).expandRaw(time), from, unit);
+		return -1;
+	}
+	
+	/**
+	 * Return true if raw numerical time indexes can be scaled between two
+	 * resolutions. This is not possible between nanoseconds and other
+	 * resolutions, because years in nanosecond domains are relative to
+	 * {@link TimeDomain#BASE_YEAR_FOR_NANO}.
+	 */
+	private static boolean scalable(Resolution from, Resolution to) {
+		return (from == Resolution.NSEC) == (to == Resolution.NSEC);
+	}
+	
+	/**
+	 * Scale a raw numerical time index from one resolution to another.
+	 * Components more precise than the target resolution are discarded.
+	 * Return -1 on overflow.
+	 *
+	 * @param raw
+	 *            a raw numerical time index in the source resolution
+	 * @param from
+	 *            the source resolution
+	 * @param to
+	 *            the target resolution
+	 * @return a raw numerical time index in the target resolution or -1
+	 */
+	private static long scale(long raw, Resolution from, Resolution to) {
+		long fromTicksPerDay = ticksPerDay(from);
+		long toTicksPerDay = ticksPerDay(to);
+		try {
+			if (fromTicksPerDay > 0 && toTicksPerDay > 0) {
+				if (toTicksPerDay >= fromTicksPerDay)
+					return TimeTools.prod(raw, toTicksPerDay / fromTicksPerDay);
+				else
+					return raw / (fromTicksPerDay / toTicksPerDay);
+			}
+			long days;
+			switch (from) {
+			case YEAR:
+				switch (to) {
+				case YEAR:
+					return raw;
+				case MONTH:
+					return TimeTools.prod(raw, 12);
+				default:
+					days = dayNumber(raw, 1);
+				}
+				break;
+			case MONTH:
+				long year = raw / 12;
+				switch (to) {
+				case YEAR:
+					return year;
+				case MONTH:
+					return raw;
+				default:
+					days = dayNumber(year, (int) (raw - year * 12) + 1);
+				}
+				break;
+			default:
+				days = raw / fromTicksPerDay;
+				if (to == Resolution.YEAR)
+					return TimeTools.yearOfDay(days);
+				else
+					return TimeTools.yearOfDay(days) * 12 + TimeTools.monthOfDay(days) - 1;
+			}
+			return TimeTools.prod(days, toTicksPerDay);
+		} catch (ArithmeticException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Return the number of days before the first day of a month, with
+	 * overflow checks.
+	 */
+	private static long dayNumber(long year, int month) {
+		return TimeTools.sum(TimeTools.prod(year, 365), TimeTools.leapYears(year) + TimeTools.daysToMonth(year, month));
+	}
+
+	/**
+	 * Return the number of time points in a day, or 0 for resolutions lower
+	 * than a day.
+	 */
+	private static long ticksPerDay(Resolution unit) {
+		return unit == Resolution.YEAR || unit == Resolution.MONTH ? 0 : TimeFactory.ticksPerDay(unit);
+	}
+
+}
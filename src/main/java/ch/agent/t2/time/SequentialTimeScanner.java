@@ -0,0 +1,204 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.time;
+
+import ch.agent.t2.T2Exception;
+
+/**
+ * A SequentialTimeScanner is a time scanner for streams of times sorted or
+ * nearly sorted, like times in log files, where consecutive times usually
+ * share the date, the hour, and the minute. The scanner remembers the
+ * characters of the date and of the hour and minute last scanned, together
+ * with the corresponding numbers of days and minutes. When a time starts
+ * with the same characters, only the remaining characters (seconds and
+ * fraction of second) are scanned, and the day and minute computations are
+ * skipped.
+ * <p>
+ * Memoizing applies to
+ * {@link #scanIndex(TimeDomain, CharSequence, int, int, Adjustment)} with the
+ * forms <code>yyyy-mm-dd</code> and
+ * <code>yyyy-mm-dd(T| )hh:mm[:ss[(.|,)f{1,9}]][Z]</code>, in domains with a
+ * resolution of a day or higher and no sub period pattern. Anything else,
+ * including all inputs which are not valid, is handed over to
+ * {@link DefaultTimeScanner}, so results and exceptions are the same.
+ * <p>
+ * The scanner has state and provides no synchronization. An object should be
+ * used by a single thread, typically for a single stream.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class SequentialTimeScanner extends DefaultTimeScanner {
+
+	private static final int DATE_LENGTH = 10; // yyyy-mm-dd
+	private static final int MINUTE_LENGTH = 16; // yyyy-mm-ddThh:mm
+	// with 4 digit years, only nanosecond indexes can overflow
+	private static final long NANO_MAX_DAYS = Long.MAX_VALUE / (24L * 60L * 60L * 1000000000L) - 1;
+
+	private final char[] prefix;
+	private int prefixLength; // 0, DATE_LENGTH, or MINUTE_LENGTH valid characters
+	private boolean prefixNano;
+	private long days; // valid when prefixLength >= DATE_LENGTH
+	private long minutes; // valid when prefixLength == MINUTE_LENGTH
+
+	/**
+	 * Construct a sequential time scanner.
+	 */
+	public SequentialTimeScanner() {
+		super();
+		prefix = new char[MINUTE_LENGTH];
+	}
+
+	@Override
+	public long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end, Adjustment adjust) throws T2Exception {
+		if (domain instanceof TimeFactory && datetime != null && adjust != null
+				&& start >= 0 && end <= datetime.length() && start <= end
+				&& domain.getPacker().getSubPeriodPattern() == null) {
+			Resolution unit = domain.getResolution();
+			if (unit != Resolution.YEAR && unit != Resolution.MONTH) {
+				long raw = scanRawIndex(unit, datetime, start, end);
+				if (raw >= 0) {
+					long time = ((TimeFactory) domain).compressOrFail(raw, adjust);
+					if (time >= 0)
+						return time;
+				}
+			}
+		}
+		return super.scanIndex(domain, datetime, start, end, adjust);
+	}
+
+	/**
+	 * Scan a date and time and return the raw numerical time index for the
+	 * resolution, using and updating memoized prefixes. Return -1 if the
+	 * input is not in one of the expected forms or is not valid.
+	 *
+	 * @param unit
+	 *            a resolution of a day or higher
+	 * @param s
+	 *            a character sequence
+	 * @param start
+	 *            the position of the first character
+	 * @param end
+	 *            the position after the last character
+	 * @return a raw numerical time index or -1
+	 */
+	private long scanRawIndex(Resolution unit, CharSequence s, int start, int end) {
+		int length = end - start;
+		if (length < DATE_LENGTH)
+			return -1;
+		boolean nano = unit == Resolution.NSEC;
+		if (prefixLength == 0 || prefixNano != nano || !samePrefix(s, start, 0, DATE_LENGTH)) {
+			prefixLength = 0;
+			if (!scanDate(s, start, nano))
+				return -1;
+			copyPrefix(s, start, 0, DATE_LENGTH);
+			prefixLength = DATE_LENGTH;
+			prefixNano = nano;
+		}
+		long ticksPerDay = TimeFactory.ticksPerDay(unit);
+		if (nano && days > NANO_MAX_DAYS)
+			return -1; // let the default scanner report the overflow
+		if (length == DATE_LENGTH)
+			return days * ticksPerDay;
+		if (length < MINUTE_LENGTH)
+			return -1;
+		if (prefixLength < MINUTE_LENGTH || !samePrefix(s, start, DATE_LENGTH, MINUTE_LENGTH)) {
+			prefixLength = DATE_LENGTH;
+			char c = s.charAt(start + DATE_LENGTH);
+			if (c != 'T' && c != ' ' || s.charAt(start + 13) != ':')
+				return -1;
+			int h = digits(s, start + 11, end, 2);
+			int m = digits(s, start + 14, end, 2);
+			if (h < 0 || h > 23 || m < 0 || m > 59)
+				return -1;
+			minutes = days * 24 * 60 + h * 60 + m;
+			copyPrefix(s, start, DATE_LENGTH, MINUTE_LENGTH);
+			prefixLength = MINUTE_LENGTH;
+		}
+		int pos = start + MINUTE_LENGTH;
+		int sec = 0;
+		int f = 0;
+		if (pos < end && s.charAt(pos) == ':') {
+			sec = digits(s, ++pos, end, 2);
+			if (sec < 0 || sec > 59)
+				return -1;
+			pos += 2;
+			if (pos < end && (s.charAt(pos) == '.' || s.charAt(pos) == ',')) {
+				int significant = fractionDigits(unit);
+				int count = 0;
+				while (++pos < end && isDigit(s.charAt(pos))) {
+					if (count++ < significant)
+						f = f * 10 + s.charAt(pos) - '0';
+				}
+				if (count == 0 || count > 9)
+					return -1;
+				for (int i = count; i < significant; i++) {
+					f *= 10;
+				}
+			}
+		}
+		if (pos < end && s.charAt(pos) == 'Z')
+			pos++;
+		if (pos < end)
+			return -1;
+		switch (unit) {
+		case DAY:
+			return days;
+		case HOUR:
+			return minutes / 60;
+		case MIN:
+			return minutes;
+		default:
+			return (minutes * 60 + sec) * (ticksPerDay / (24L * 60L * 60L)) + f;
+		}
+	}
+
+	/**
+	 * Scan a date in the form yyyy-mm-dd and set the number of days. Return
+	 * false if the date is not in this form or is not valid.
+	 */
+	private boolean scanDate(CharSequence s, int start, boolean nano) {
+		int year = digits(s, start, start + DATE_LENGTH, 4);
+		int month = digits(s, start + 5, start + DATE_LENGTH, 2);
+		int day = digits(s, start + 8, start + DATE_LENGTH, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-')
+			return false;
+		if (nano) {
+			year -= TimeDomain.BASE_YEAR_FOR_NANO;
+			if (year < 0)
+				return false;
+		}
+		if (day > TimeTools.daysInMonth(year, month))
+			return false;
+		days = TimeTools.dayNumber(year, month, day);
+		return true;
+	}
+
+	private boolean samePrefix(CharSequence s, int start, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (s.charAt(start + i) != prefix[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void copyPrefix(CharSequence s, int start, int from, int to) {
+		for (int i = from; i < to; i++) {
+			prefix[i] = s.charAt(start + i);
+		}
+	}
+
+}
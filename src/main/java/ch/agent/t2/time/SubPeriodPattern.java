@@ -77,4 +77,27 @@ public interface SubPeriodPattern {
 	 */
 	TimeParts fillInSubPeriod(int subPeriod, TimeParts timeParts);
 	
+	/**
+	 * Return the raw numeric time index, in the sub period resolution, of the
+	 * given sub period of a base period. The base period is given as a raw
+	 * numeric time index in the base period resolution, with the effect of
+	 * the base period pattern already removed. This method is intended for
+	 * extracting fields of a time without allocating objects, see for example
+	 * {@link TimePacker#yearOf(long)}.
+	 * <p>
+	 * The default implementation unpacks the base period into time parts and
+	 * goes through {@link #fillInSubPeriod(int, TimeParts)}. Implementations
+	 * should override it to avoid allocating objects.
+	 * 
+	 * @param time a raw numeric time index in the base period resolution
+	 * @param subPeriod a non-negative number smaller than the size
+	 * @return a raw numeric time index in the sub period resolution
+	 */
+	default long expandSubPeriod(long time, int subPeriod) {
+		TimeParts tp = TimeFactory.getUnrestrictedDomain(getBasePeriod()).getPacker().unpack(time);
+		tp = fillInSubPeriod(subPeriod, tp);
+		return TimeTools.rawIndex(getSubPeriod(), tp.getYear(), tp.getMonth(), tp.getDay(), 
+				tp.getHour(), tp.getMin(), tp.getSec(), tp.getFsec());
+	}
+	
 }
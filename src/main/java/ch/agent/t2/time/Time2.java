@@ -16,8 +16,6 @@
  */
 package ch.agent.t2.time;
 
-import java.util.Formatter;
-
 import ch.agent.t2.T2Exception;
 import ch.agent.t2.T2Msg;
 import ch.agent.t2.T2Msg.K;
@@ -159,7 +157,7 @@ public class Time2 implements TimeIndex {
 	 * @throws T2Exception
 	 */
 	public Time2(TimeDomain domain, String time, Adjustment adjustment) throws T2Exception {
-		this(domain, domain.getScanner().scan(domain.getResolution(), time), adjustment);
+		this(domain, scan(domain, time, adjustment));
 	}
 	
 	/**
@@ -309,24 +307,30 @@ public class Time2 implements TimeIndex {
 	public String toString(String format) {
 		if (format == null)
 			return toString();
-		TimeParts tp = getTP();
 		if (format.length() == 0) {
+			TimeParts tp = getTP();
 			// TODO: should be localized (e.g. m/d yy)
 			String yy = tp.getYear() + "";
 			if (yy.length() >= 3)
 				yy = yy.substring(2);
 			return String.format("%d.%d.%s", tp.getDay(), tp.getMonth(), yy);
 		}
-		StringBuilder sb = new StringBuilder();
-		Formatter fmt = new Formatter(sb);
-		fmt.format(format, tp.getYear(), tp.getMonth(), tp.getDay(), tp.getHour(), tp.getMin(), tp.getSec(), tp.getFsec());
-		fmt.close();
-		return sb.toString();
+		try {
+			return CompiledTimeFormat.get(format).format(domain, getInternalTime());
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug: " + getInternalTime(), e);
+		}
 	}
 
 	@Override
 	public String toString() {
-		return toString((TimeFormatter) null);
+		StringBuilder sb = new StringBuilder();
+		try {
+			domain.formatTo(getInternalTime(), sb);
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug: " + getInternalTime(), e);
+		}
+		return sb.toString();
 	}
 
 	@Override
@@ -359,30 +363,59 @@ public class Time2 implements TimeIndex {
 			else
 				return 0;
 		} else {
-			int compareResols = getTimeDomain().getResolution().compareTo(otherTime.getTimeDomain().getResolution());
-			if (compareResols == 0) {
-				// convert  both to unrestricted domain
-				TimeDomainDefinition def = new TimeDomainDefinition(null, getTimeDomain().getResolution(), 0L);
-				TimeDomain unrestrictedDomain = new TimeFactory(def);
-				TimeIndex converted = convertOrThrowRTE(unrestrictedDomain, this);
-				TimeIndex otherConverted = convertOrThrowRTE(unrestrictedDomain, otherTime);
-				return converted.compareTo(otherConverted);
-			} else if (compareResols < 0) {
-				// convert  both to highest resolution
-				TimeDomainDefinition def = new TimeDomainDefinition(null, otherTime.getTimeDomain().getResolution(), 0L);
-				TimeDomain unrestrictedDomain = new TimeFactory(def);
-				TimeIndex converted = convertOrThrowRTE(unrestrictedDomain, this);
-				return converted.compareTo(otherTime);
-			} else {
-				// convert  both to highest resolution
-				TimeDomainDefinition def = new TimeDomainDefinition(null, getTimeDomain().getResolution(), 0L);
-				TimeDomain unrestrictedDomain = new TimeFactory(def);
-				TimeIndex otherConverted = convertOrThrowRTE(unrestrictedDomain, otherTime);
-				return compareTo(otherConverted);
-			}
+			// project both to the higher resolution
+			Resolution unit = getTimeDomain().getResolution();
+			Resolution otherUnit = otherTime.getTimeDomain().getResolution();
+			if (unit.compareTo(otherUnit) < 0)
+				unit = otherUnit;
+			long l1 = project(this, unit);
+			long l2 = project(otherTime, unit);
+			if (l1 < l2)
+				return -1;
+			else if (l1 > l2)
+				return 1;
+			else
+				return 0;
 		}
 	}
 	
+	/**
+	 * Return the numerical time index of a time in the unrestricted domain
+	 * with the given resolution. When possible, the time is projected
+	 * arithmetically, else it is converted, and any checked exception is
+	 * turned into an unchecked one.
+	 * 
+	 * @param time
+	 *            non-null time index
+	 * @param unit
+	 *            non-null resolution
+	 * @return the numerical time index in the unrestricted domain
+	 */
+	private long project(TimeIndex time, Resolution unit) {
+		long projected = DomainConverter.project(time.getTimeDomain(), time.asLong(), unit);
+		if (projected < 0)
+			projected = convertOrThrowRTE(TimeFactory.getUnrestrictedDomain(unit), time).asLong();
+		return projected;
+	}
+	
+	/**
+	 * Scan a string into a numerical time index of the domain.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a string containing a representation of a date and time
+	 * @param adjustment
+	 *            a non-null allowed adjustment mode
+	 * @return a numerical time index
+	 * @throws T2Exception
+	 */
+	private static long scan(TimeDomain domain, String time, Adjustment adjustment) throws T2Exception {
+		if (time == null)
+			throw new IllegalArgumentException("date null");
+		return domain.getScanner().scanIndex(domain, time, 0, time.length(), adjustment);
+	}
+	
 	/**
 	 * Convert the time to the given time domain and turn any checked exception
 	 * to an unchecked one.
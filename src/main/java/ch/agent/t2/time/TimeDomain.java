@@ -16,6 +16,8 @@
  */
 package ch.agent.t2.time;
 
+import java.io.IOException;
+
 import ch.agent.t2.T2Exception;
 
 /**
@@ -251,6 +253,62 @@ public interface TimeDomain {
 	TimeIndex time(long year, int month, int day, int hour, int min, int sec,
 			int usec, Adjustment adjust) throws T2Exception;
 	
+	/**
+	 * Return a converter for numerical time indexes from this domain to a
+	 * target domain. Converting many times with a converter is faster than
+	 * converting {@link TimeIndex} objects one by one, and gives the same
+	 * results.
+	 * 
+	 * @param target a non-null time domain
+	 * @param adjustment a non-null adjustment mode
+	 * @return a domain converter
+	 */
+	default DomainConverter converterTo(TimeDomain target, Adjustment adjustment) {
+		return new DomainConverter(this, target, adjustment);
+	}
+	
+	/**
+	 * Append the external representation of a numerical time index to an
+	 * appendable, using the time formatter of this domain.
+	 * 
+	 * @param time a numerical time index in this domain
+	 * @param dst a non-null appendable
+	 * @throws T2Exception
+	 * @throws IOException
+	 * @see TimeFormatter#formatTo(TimeDomain, long, Appendable)
+	 */
+	default void formatTo(long time, Appendable dst) throws T2Exception, IOException {
+		getFormatter().formatTo(this, time, dst);
+	}
+	
+	/**
+	 * Append the external representation of a numerical time index to a
+	 * string builder, using the time formatter of this domain.
+	 * 
+	 * @param time a numerical time index in this domain
+	 * @param dst a non-null string builder
+	 * @throws T2Exception
+	 * @see TimeFormatter#formatTo(TimeDomain, long, StringBuilder)
+	 */
+	default void formatTo(long time, StringBuilder dst) throws T2Exception {
+		getFormatter().formatTo(this, time, dst);
+	}
+	
+	/**
+	 * Write the external representation of a numerical time index into a
+	 * character array, using the time formatter of this domain.
+	 * 
+	 * @param time a numerical time index in this domain
+	 * @param dst a non-null character array
+	 * @param offset the position of the first character
+	 * @return the position after the last character written
+	 * @throws T2Exception
+	 * @see TimeFormatter#formatTo(TimeDomain, long, char[], int)
+	 */
+	default int formatTo(long time, char[] dst, int offset) throws T2Exception {
+		return getFormatter().formatTo(this, time, dst, offset);
+	}
+	
 	/**
 	 * Return the time packer to use for processing times in this domain.
 	 * 
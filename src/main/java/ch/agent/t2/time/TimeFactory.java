@@ -16,6 +16,9 @@
  */
 package ch.agent.t2.time;
 
+import java.io.IOException;
+import java.util.BitSet;
+
 import ch.agent.t2.T2Exception;
 import ch.agent.t2.T2Msg;
 import ch.agent.t2.T2Msg.K;
@@ -55,6 +58,8 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 	
 	private SubPeriodPattern subPeriodPattern;
 	
+	private Resolution fieldUnit; // resolution of time parts, depends on sub period pattern
+	
 	private TimeIndex minTime, maxTime, minOffsetCompatibleTime, maxOffsetCompatibleTime;
 	
 	private long min, max; // we must keep them 
@@ -85,6 +90,7 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 		if (this.basePeriodPattern != null && !this.basePeriodPattern.effective())
 			basePeriodPattern = null;
 		this.subPeriodPattern = def.getSubPeriodPattern();
+		this.fieldUnit = subPeriodPattern == null ? baseUnit : subPeriodPattern.getSubPeriod();
 		min = 0;
 		max = findMaxIndex(this.basePeriodPattern, this.subPeriodPattern);
 		this.formatter = formatter;
@@ -97,6 +103,31 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 		maxOffsetCompatibleTime = new Time2(this, Integer.MAX_VALUE + getOrigin());
 	}
 	
+	/**
+	 * Unrestricted holds one domain per resolution, without patterns and with
+	 * origin zero. The domains are created when first needed.
+	 */
+	private static class Unrestricted {
+		private static final TimeDomain[] DOMAINS = new TimeDomain[Resolution.values().length];
+		static {
+			for (Resolution unit : Resolution.values()) {
+				DOMAINS[unit.ordinal()] = new TimeFactory(new TimeDomainDefinition(null, unit, 0L));
+			}
+		}
+	}
+	
+	/**
+	 * Return the unrestricted time domain with the given resolution. The
+	 * domain has no pattern and origin zero. The same object is returned on
+	 * each call.
+	 * 
+	 * @param unit a non-null resolution
+	 * @return an unrestricted time domain
+	 */
+	static TimeDomain getUnrestrictedDomain(Resolution unit) {
+		return Unrestricted.DOMAINS[unit.ordinal()];
+	}
+	
 	/**
 	 * Constructor providing a default time formatter and time scanner.
 	 * 
@@ -323,11 +354,51 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 		return scanner.scan(unit, time);
 	}
 
+	@Override
+	public long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end, Adjustment adjust) throws T2Exception {
+		return scanner.scanIndex(domain, datetime, start, end, adjust);
+	}
+	
+	@Override
+	public long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end) throws T2Exception {
+		return scanner.scanIndex(domain, datetime, start, end);
+	}
+
 	@Override
 	public String format(TimeParts timeParts) {
 		return formatter.format(timeParts);
 	}
 
+	@Override
+	public void formatTo(TimeDomain domain, long time, Appendable dst) throws T2Exception, IOException {
+		formatter.formatTo(domain, time, dst);
+	}
+
+	@Override
+	public void formatTo(TimeDomain domain, long time, StringBuilder dst) throws T2Exception {
+		formatter.formatTo(domain, time, dst);
+	}
+
+	@Override
+	public int formatTo(TimeDomain domain, long time, char[] dst, int offset) throws T2Exception {
+		return formatter.formatTo(domain, time, dst, offset);
+	}
+
+	@Override
+	public void formatTo(long time, Appendable dst) throws T2Exception, IOException {
+		formatter.formatTo(this, time, dst);
+	}
+
+	@Override
+	public void formatTo(long time, StringBuilder dst) throws T2Exception {
+		formatter.formatTo(this, time, dst);
+	}
+
+	@Override
+	public int formatTo(long time, char[] dst, int offset) throws T2Exception {
+		return formatter.formatTo(this, time, dst, offset);
+	}
+
 	@Override
 	public long pack(TimeParts tp, Adjustment adjust) throws T2Exception {
 		try {
@@ -425,6 +496,245 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 		return tp;
 	}
 	
+	@Override
+	public int packAll(long[] year, int[] month, int[] day, int[] hour, int[] min, int[] sec, int[] fsec,
+			Adjustment adjust, long[] times, BitSet rejected) {
+		if (year == null)
+			throw new IllegalArgumentException("year null");
+		if (adjust == null)
+			throw new IllegalArgumentException("adjust null");
+		if (times == null)
+			throw new IllegalArgumentException("times null");
+		if (rejected == null)
+			throw new IllegalArgumentException("rejected null");
+		int n = year.length;
+		checkLength(n, times, "times");
+		checkLength(n, month, "month");
+		checkLength(n, day, "day");
+		checkLength(n, hour, "hour");
+		checkLength(n, min, "min");
+		checkLength(n, sec, "sec");
+		checkLength(n, fsec, "fsec");
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			int mo = month == null ? 1 : month[i];
+			int d = day == null ? 1 : day[i];
+			int h = hour == null ? 0 : hour[i];
+			int mi = min == null ? 0 : min[i];
+			int s = sec == null ? 0 : sec[i];
+			int f = fsec == null ? 0 : fsec[i];
+			long time = -1;
+			if (subPeriodPattern == null) {
+				time = TimeTools.rawIndex(baseUnit, year[i], mo, d, h, mi, s, f);
+				if (time >= 0)
+					time = compressOrFail(time, adjust);
+			} else {
+				// sub period patterns need time parts
+				try {
+					time = pack(new TimeParts(fieldUnit, year[i], mo, d, h, mi, s, f), adjust);
+				} catch (T2Exception e) {
+					time = -1;
+				}
+			}
+			times[i] = time;
+			if (time < 0) {
+				rejected.set(i);
+				count++;
+			} else
+				rejected.clear(i);
+		}
+		return count;
+	}
+	
+	@Override
+	public void unpackAll(long[] times, long[] year, int[] month, int[] day, int[] hour, int[] min, int[] sec, int[] fsec) {
+		if (times == null)
+			throw new IllegalArgumentException("times null");
+		int n = times.length;
+		checkLength(n, year, "year");
+		checkLength(n, month, "month");
+		checkLength(n, day, "day");
+		checkLength(n, hour, "hour");
+		checkLength(n, min, "min");
+		checkLength(n, sec, "sec");
+		checkLength(n, fsec, "fsec");
+		boolean needDate = year != null || month != null || day != null;
+		boolean needTime = hour != null || min != null || sec != null || fsec != null;
+		for (int i = 0; i < n; i++) {
+			long raw = expandRaw(times[i]);
+			long y;
+			int mo = 1;
+			int d = 1;
+			int s = 0; // second of day
+			int f = 0;
+			switch (fieldUnit) {
+			case YEAR:
+				y = raw;
+				break;
+			case MONTH:
+				y = raw / 12;
+				mo = (int) (raw - y * 12) + 1;
+				break;
+			default:
+				long perDay = ticksPerDay(fieldUnit);
+				long days = raw / perDay;
+				if (needDate) {
+					long cycles = days / TimeTools.DAYS_IN_400_YEARS;
+					int date = TimeTools.dateInCycle((int) (days - cycles * TimeTools.DAYS_IN_400_YEARS));
+					y = cycles * 400 + (date >>> 9);
+					mo = (date >>> 5) & 0xF;
+					d = date & 0x1F;
+				} else
+					y = 0;
+				if (needTime && perDay > 1) {
+					long ticks = raw - days * perDay;
+					switch (fieldUnit) {
+					case HOUR:
+						s = (int) ticks * 3600;
+						break;
+					case MIN:
+						s = (int) ticks * 60;
+						break;
+					default:
+						long perSecond = perDay / (24L * 60L * 60L);
+						long seconds = ticks / perSecond;
+						s = (int) seconds;
+						f = (int) (ticks - seconds * perSecond);
+					}
+				}
+			}
+			if (year != null)
+				year[i] = y;
+			if (month != null)
+				month[i] = mo;
+			if (day != null)
+				day[i] = d;
+			if (hour != null)
+				hour[i] = s / 3600;
+			if (min != null)
+				min[i] = (s / 60) % 60;
+			if (sec != null)
+				sec[i] = s % 60;
+			if (fsec != null)
+				fsec[i] = f;
+		}
+	}
+	
+	private static void checkLength(int n, Object array, String name) {
+		if (array != null && java.lang.reflect.Array.getLength(array) < n)
+			throw new IllegalArgumentException(name + " too short");
+	}
+	
+	@Override
+	public long yearOf(long time) {
+		long raw = expandRaw(time);
+		switch (fieldUnit) {
+		case YEAR:
+			return raw;
+		case MONTH:
+			return raw / 12;
+		default:
+			return TimeTools.yearOfDay(raw / ticksPerDay(fieldUnit));
+		}
+	}
+
+	@Override
+	public int monthOf(long time) {
+		long raw = expandRaw(time);
+		switch (fieldUnit) {
+		case YEAR:
+			return 1;
+		case MONTH:
+			return (int) (raw % 12) + 1;
+		default:
+			return TimeTools.monthOfDay(raw / ticksPerDay(fieldUnit));
+		}
+	}
+
+	@Override
+	public int dayOf(long time) {
+		long raw = expandRaw(time);
+		switch (fieldUnit) {
+		case YEAR:
+		case MONTH:
+			return 1;
+		default:
+			return TimeTools.dayOfMonth(raw / ticksPerDay(fieldUnit));
+		}
+	}
+
+	@Override
+	public int secondOfDay(long time) {
+		long raw = expandRaw(time);
+		switch (fieldUnit) {
+		case YEAR:
+		case MONTH:
+		case DAY:
+			return 0;
+		case HOUR:
+			return (int) (raw % 24) * 3600;
+		case MIN:
+			return (int) (raw % (24 * 60)) * 60;
+		default:
+			long ticksPerSecond = ticksPerDay(fieldUnit) / (24L * 60L * 60L);
+			return (int) ((raw / ticksPerSecond) % (24L * 60L * 60L));
+		}
+	}
+	
+	/**
+	 * Return the raw numeric time index, in the resolution of the time
+	 * fields, corresponding to a numeric time index. The effect of the base
+	 * period pattern is removed and the sub period, if any, is expanded into
+	 * a raw index in the sub period resolution.
+	 * 
+	 * @param time a numeric time index
+	 * @return a raw numeric time index
+	 */
+	long expandRaw(long time) {
+		if (time < 0)
+			throw new IllegalArgumentException("time negative");
+		int subPeriod = 0;
+		if (subPeriodPattern != null) {
+			int sz = subPeriodPattern.getSize();
+			long orig = time;
+			time = time / sz;
+			subPeriod = (int) (orig - time * sz); // can cast because getSize is int
+		}
+		if (basePeriodPattern != null)
+			time = basePeriodPattern.expandIndex(time);
+		if (subPeriodPattern != null)
+			time = subPeriodPattern.expandSubPeriod(time, subPeriod);
+		return time;
+	}
+	
+	/**
+	 * Return the number of time points in a day for resolutions of a day or
+	 * higher.
+	 * 
+	 * @param unit a resolution not lower than a day
+	 * @return a positive number
+	 */
+	static long ticksPerDay(Resolution unit) {
+		switch (unit) {
+		case DAY:
+			return 1L;
+		case HOUR:
+			return 24L;
+		case MIN:
+			return 24L * 60L;
+		case SEC:
+			return 24L * 60L * 60L;
+		case MSEC:
+			return 24L * 60L * 60L * 1000L;
+		case USEC:
+			return 24L * 60L * 60L * 1000000L;
+		case NSEC:
+			return 24L * 60L * 60L * 1000000000L;
+		default:
+			throw new RuntimeException("bug: " + unit.name());
+		}
+	}
+	
 	private TimeParts makeTimeParts(Resolution unit, YMD ymd, HMSF hmsu) {
 		return hmsu == null ? new TimeParts(unit, ymd.y(), ymd.m(), ymd.d(), 0, 0, 0, 0) :
 			new TimeParts(unit, ymd.y(), ymd.m(), ymd.d(), hmsu.h(), hmsu.m(), hmsu.s(), hmsu.f());
@@ -477,49 +787,39 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 	 * @throws T2Exception
 	 */
 	private long compress(long time, Adjustment adjust) throws T2Exception {
+		if (time < 0) // not yet compressed, so don't use domain.invalid()
+			throw T2Msg.exception(K.T1070, time);
+		long result = time;
 		if (basePeriodPattern != null) {
-			if (time < 0) // not yet compressed, so don't use domain.invalid()
-				throw T2Msg.exception(K.T1070, time);
-			if (adjust == Adjustment.NONE)
-				time = basePeriodPattern.makeIndex(time);
-			else {
-				/*
-				 * If the pattern cycle is short, the loop should be short too.
-				 * If not, then the checks in adjust() will ensure eventual termination.
-				 */
-				while (true) {
-					try {
-						time = basePeriodPattern.makeIndex(time);
-						break;
-					} catch (T2Exception e) {
-						time = adjust(time, adjust == Adjustment.UP);
-					}
-				}
+			result = basePeriodPattern.makeIndexOrAdjust(time, adjust);
+			if (result < 0) {
+				if (adjust == Adjustment.NONE)
+					throw T2Msg.exception(K.T1071, time, time % basePeriodPattern.getSize());
+				throw T2Msg.exception(K.T1072);
 			}
-		} else
-			valid(time, false);
-		
-		return time;
+		}
+		// a time agreeing with the pattern can still exceed the maximum
+		valid(result, false);
+		return result;
 	}
-
+	
 	/**
-	 * Adjust and test for overflow.
+	 * Return the raw index compressed with the base pattern, or -1 if this is
+	 * not possible. Unlike {@link #compress(long, Adjustment)}, the method
+	 * never throws an exception. Adjustments are done in constant time, using
+	 * {@link BasePeriodPattern#makeIndexOrAdjust(long, Adjustment)}.
 	 * 
-	 * @param time the numeric time index to adjust
-	 * @param up true if adjustment is up
-	 * @return the adjusted numeric time index
-	 * @throws T2Exception
+	 * @param time
+	 *            the non-negative raw numeric time index 
+	 * @param adjust
+	 *            the type of adjustment allowed, if any
+	 * @return the compressed numeric time index or -1
 	 */
-	private long adjust(long time, boolean up) throws T2Exception {
-		long result = time;
-		if (up)
-			result++;
-		else
-			result--;
-		// overflow?
-		if (result < 0 && time > 0 || result > 0 && time < 0)
-			throw T2Msg.exception(K.T1072);
-		return result;
+	long compressOrFail(long time, Adjustment adjust) {
+		if (basePeriodPattern != null)
+			time = basePeriodPattern.makeIndexOrAdjust(time, adjust);
+		// when adjusting up the result can exceed the maximum
+		return time >= min && time <= max ? time : -1;
 	}
 
 	/**
@@ -529,7 +829,9 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 	 * maximum. With a sub pattern, time indexes are inflated by the size of the
 	 * sub period pattern. A few positions are lost in the division
 	 * maxIndex/sub_pattern_size. It is conceptually okay to lose them because
-	 * they correspond to an incomplete last base period.
+	 * they correspond to an incomplete last base period. The maximum is also
+	 * limited to base periods with all sub periods within the range of the
+	 * sub period resolution.
 	 * 
 	 * @param basePattern a base period pattern
 	 * @param subPattern a sub period pattern
@@ -543,18 +845,24 @@ public class TimeFactory implements TimeDomain, TimePacker, TimeFormatter, TimeS
 		 * My feeling is that the maximum should be the maximum.
 		 */
 		long maxIndex = Long.MAX_VALUE;
-		if (subPattern != null)
+		if (subPattern != null) {
+			/*
+			 * Sub periods cannot exceed the maximum of their own resolution.
+			 * The base period containing that maximum is lost, because it
+			 * can be incomplete.
+			 */
 			maxIndex /= subPattern.getSize();
-		// note 2: for a calm day: find a better algorithm than trial and error
+			TimeParts tp = getUnrestrictedDomain(subPattern.getSubPeriod()).getPacker().unpack(Long.MAX_VALUE);
+			long base = TimeTools.rawIndex(subPattern.getBasePeriod(), tp.getYear(), tp.getMonth(), tp.getDay(), 0, 0, 0, 0);
+			// not positive with an invalid pattern, which is detected when used
+			if (base > 0)
+				maxIndex = Math.min(maxIndex, base - 1);
+		}
 		if (basePattern != null) {
-			for (int i = 0; i < basePattern.getSize(); i++) {
-				try {
-					return basePattern.makeIndex(maxIndex - i);
-				} catch (T2Exception e) {
-					continue;
-				}
-			}
-			throw new RuntimeException("bug: " + maxIndex);
+			long index = basePattern.makeIndexOrAdjust(maxIndex, Adjustment.DOWN);
+			if (index < 0)
+				throw new RuntimeException("bug: " + maxIndex);
+			return index;
 		}
 		return maxIndex;
 	}
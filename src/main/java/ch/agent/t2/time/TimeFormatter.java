@@ -16,6 +16,10 @@
  */
 package ch.agent.t2.time;
 
+import java.io.IOException;
+
+import ch.agent.t2.T2Exception;
+
 /**
  * A time formatter is used to turn a time into a string. It supports the ISO
  * 8601:2004 international standard for the representation of calendar dates and
@@ -35,4 +39,68 @@ public interface TimeFormatter {
 	 */
 	public String format(TimeParts tp);
 	
+	/**
+	 * Append the external representation of a numerical time index to an
+	 * appendable. The text is the same as the one produced by
+	 * {@link #format(TimeParts)}. The default implementation formats the
+	 * time parts unpacked from the time index.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a numerical time index in the domain
+	 * @param dst
+	 *            a non-null appendable
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public default void formatTo(TimeDomain domain, long time, Appendable dst) throws T2Exception, IOException {
+		domain.getPacker().valid(time, false);
+		dst.append(format(domain.getPacker().unpack(time)));
+	}
+	
+	/**
+	 * Append the external representation of a numerical time index to a
+	 * string builder. The text is the same as the one produced by
+	 * {@link #format(TimeParts)}. The default implementation formats the
+	 * time parts unpacked from the time index.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a numerical time index in the domain
+	 * @param dst
+	 *            a non-null string builder
+	 * @throws T2Exception
+	 */
+	public default void formatTo(TimeDomain domain, long time, StringBuilder dst) throws T2Exception {
+		domain.getPacker().valid(time, false);
+		dst.append(format(domain.getPacker().unpack(time)));
+	}
+	
+	/**
+	 * Write the external representation of a numerical time index into a
+	 * character array. The text is the same as the one produced by
+	 * {@link #format(TimeParts)}. The array must be large enough; 44
+	 * characters are always sufficient with the default formatter. The default
+	 * implementation formats the time parts unpacked from the time index.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param time
+	 *            a numerical time index in the domain
+	 * @param dst
+	 *            a non-null character array
+	 * @param offset
+	 *            the position of the first character
+	 * @return the position after the last character written
+	 * @throws T2Exception
+	 */
+	public default int formatTo(TimeDomain domain, long time, char[] dst, int offset) throws T2Exception {
+		domain.getPacker().valid(time, false);
+		String text = format(domain.getPacker().unpack(time));
+		text.getChars(0, text.length(), dst, offset);
+		return offset + text.length();
+	}
+	
 }
@@ -16,6 +16,8 @@
  */
 package ch.agent.t2.time;
 
+import java.util.BitSet;
+
 import ch.agent.t2.T2Exception;
 
 /**
@@ -94,6 +96,161 @@ public interface TimePacker {
 	 * @throws T2Exception
 	 */
 	long pack(TimeParts timeParts, Adjustment adjust) throws T2Exception;
+	
+	/**
+	 * Pack columns of time components into numeric time indexes. Element
+	 * <em>i</em> of each component array is the component of the time stored
+	 * into element <em>i</em> of the result array. The number of times
+	 * converted is the length of the year array. Any other component array can
+	 * be null, in which case months and days default to 1 and hours, minutes,
+	 * seconds and fractional seconds default to 0. Components not relevant
+	 * for the domain are ignored.
+	 * <p>
+	 * Adjustments are done as in {@link #pack(TimeParts, Adjustment)}, but an
+	 * invalid time does not abort the conversion. Instead, its position is
+	 * set in the rejection bit set and its result is -1. Bits of valid
+	 * times are cleared.
+	 * <p>
+	 * The default implementation packs one {@link TimeParts} object per time
+	 * with {@link #pack(TimeParts, Adjustment)}.
+	 * 
+	 * @param year a non-null array of years
+	 * @param month an array of months or null
+	 * @param day an array of days or null
+	 * @param hour an array of hours or null
+	 * @param min an array of minutes or null
+	 * @param sec an array of seconds or null
+	 * @param fsec an array of fractional seconds or null
+	 * @param adjust a non-null adjustment mode
+	 * @param times a non-null array for the resulting numeric time indexes
+	 * @param rejected a non-null bit set for the positions of invalid times
+	 * @return the number of invalid times
+	 */
+	default int packAll(long[] year, int[] month, int[] day, int[] hour, int[] min, int[] sec, int[] fsec, 
+			Adjustment adjust, long[] times, BitSet rejected) {
+		if (year == null)
+			throw new IllegalArgumentException("year null");
+		if (adjust == null)
+			throw new IllegalArgumentException("adjust null");
+		if (times == null)
+			throw new IllegalArgumentException("times null");
+		if (rejected == null)
+			throw new IllegalArgumentException("rejected null");
+		Resolution unit = unpack(0).getResolution();
+		int count = 0;
+		for (int i = 0; i < year.length; i++) {
+			long time;
+			try {
+				time = pack(new TimeParts(unit, year[i], month == null ? 1 : month[i], day == null ? 1 : day[i], 
+						hour == null ? 0 : hour[i], min == null ? 0 : min[i], sec == null ? 0 : sec[i], 
+						fsec == null ? 0 : fsec[i]), adjust);
+			} catch (T2Exception e) {
+				time = -1;
+			}
+			times[i] = time;
+			if (time < 0) {
+				rejected.set(i);
+				count++;
+			} else
+				rejected.clear(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Unpack numeric time indexes into columns of time components. Element
+	 * <em>i</em> of each component array receives the component of element
+	 * <em>i</em> of the times array. Component arrays can be null, in which
+	 * case the component is not extracted. The results are the same as with
+	 * {@link #unpack(long)} but no object is allocated. The default
+	 * implementation calls {@link #unpack(long)} for each time.
+	 * 
+	 * @param times a non-null array of numeric time indexes
+	 * @param year an array for years or null
+	 * @param month an array for months or null
+	 * @param day an array for days or null
+	 * @param hour an array for hours or null
+	 * @param min an array for minutes or null
+	 * @param sec an array for seconds or null
+	 * @param fsec an array for fractional seconds or null
+	 */
+	default void unpackAll(long[] times, long[] year, int[] month, int[] day, int[] hour, int[] min, int[] sec, int[] fsec) {
+		if (times == null)
+			throw new IllegalArgumentException("times null");
+		for (int i = 0; i < times.length; i++) {
+			TimeParts tp = unpack(times[i]);
+			if (year != null)
+				year[i] = tp.getYear();
+			if (month != null)
+				month[i] = tp.getMonth();
+			if (day != null)
+				day[i] = tp.getDay();
+			if (hour != null)
+				hour[i] = tp.getHour();
+			if (min != null)
+				min[i] = tp.getMin();
+			if (sec != null)
+				sec[i] = tp.getSec();
+			if (fsec != null)
+				fsec[i] = tp.getFsec();
+		}
+	}
+	
+	/**
+	 * Return the year of the numeric time index. The result is the same as
+	 * the year of the {@link TimeParts} returned by {@link #unpack(long)}, but
+	 * the method does not allocate any object. As with {@link TimeParts}, the
+	 * year is relative to {@link TimeDomain#BASE_YEAR_FOR_NANO} in domains
+	 * with nanosecond resolution. The default implementation takes the year
+	 * from {@link #unpack(long)}.
+	 * 
+	 * @param time a numeric time index
+	 * @return the year
+	 */
+	default long yearOf(long time) {
+		return unpack(time).getYear();
+	}
+	
+	/**
+	 * Return the month of the numeric time index. The result is the same as
+	 * the month of the {@link TimeParts} returned by {@link #unpack(long)},
+	 * but the method does not allocate any object. The default implementation
+	 * takes the month from {@link #unpack(long)}.
+	 * 
+	 * @param time a numeric time index
+	 * @return the month, in the range [1, 12]
+	 */
+	default int monthOf(long time) {
+		return unpack(time).getMonth();
+	}
+	
+	/**
+	 * Return the day of the month of the numeric time index. The result is
+	 * the same as the day of the {@link TimeParts} returned by
+	 * {@link #unpack(long)}, but the method does not allocate any object. The
+	 * default implementation takes the day from {@link #unpack(long)}.
+	 * 
+	 * @param time a numeric time index
+	 * @return the day of the month, starting with 1
+	 */
+	default int dayOf(long time) {
+		return unpack(time).getDay();
+	}
+	
+	/**
+	 * Return the number of seconds elapsed since the beginning of the day in
+	 * the numeric time index. Sub-second units are ignored. The result is zero
+	 * in domains with a resolution of a day or lower. The method does not
+	 * allocate any object. The default implementation computes the result
+	 * from {@link #unpack(long)}.
+	 * 
+	 * @param time a numeric time index
+	 * @return a number of seconds, in the range [0, 86399]
+	 */
+	default int secondOfDay(long time) {
+		TimeParts tp = unpack(time);
+		return (tp.getHour() * 60 + tp.getMin()) * 60 + tp.getSec();
+	}
 
 	/**
 	 * Return the day of week for the given time.
@@ -42,5 +42,52 @@ public interface TimeScanner {
 	 * @throws Exception
 	 */
 	public TimeParts scan(Resolution unit, String datetime) throws T2Exception;
+	
+	/**
+	 * Scan a part of a character sequence into a numerical time index of a
+	 * time domain. The result is the same as packing the result of
+	 * {@link #scan(Resolution, String)} with the packer of the domain, but
+	 * the method is expected to avoid intermediate objects for common
+	 * representations. The default implementation simply packs the result of
+	 * {@link #scan(Resolution, String)}.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param datetime
+	 *            a non-null character sequence containing a date and time
+	 *            specification
+	 * @param start
+	 *            the position of the first character
+	 * @param end
+	 *            the position after the last character
+	 * @param adjust
+	 *            a non-null adjustment mode
+	 * @return a numerical time index in the domain
+	 * @throws T2Exception
+	 */
+	default long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end, Adjustment adjust) throws T2Exception {
+		return domain.getPacker().pack(scan(domain.getResolution(), datetime.subSequence(start, end).toString()), adjust);
+	}
+	
+	/**
+	 * Scan a part of a character sequence into a numerical time index of a
+	 * time domain, without adjustment.
+	 * 
+	 * @param domain
+	 *            a non-null time domain
+	 * @param datetime
+	 *            a non-null character sequence containing a date and time
+	 *            specification
+	 * @param start
+	 *            the position of the first character
+	 * @param end
+	 *            the position after the last character
+	 * @return a numerical time index in the domain
+	 * @throws T2Exception
+	 * @see #scanIndex(TimeDomain, CharSequence, int, int, Adjustment)
+	 */
+	default long scanIndex(TimeDomain domain, CharSequence datetime, int start, int end) throws T2Exception {
+		return scanIndex(domain, datetime, start, end, Adjustment.NONE);
+	}
 
 }
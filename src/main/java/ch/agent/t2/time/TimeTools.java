@@ -36,7 +36,8 @@ public class TimeTools {
 	/**
 	 * Number of days in 400 years, the smallest repeating sequence of days.
 	 */
-	private static final long DAYS_IN_400_YEARS = 365 * 303 + 366 * 97; 
+	static final long DAYS_IN_400_YEARS = 365 * 303 + 366 * 97; // package private, used by TimeFactory
+	private static final int DAYS_IN_400_YEARS_INT = (int) DAYS_IN_400_YEARS; 
 	
 	/**
 	 * Number of days in the year before this month, January = 0.
@@ -46,6 +47,11 @@ public class TimeTools {
 	 * Number of days in a leap year before this month, January = 0.
 	 */
 	private static final int[] daysToMonthLeapYear = { 0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335 };
+	
+	/**
+	 * Days of the week, cached because {@link DayOfWeek#values()} makes a copy.
+	 */
+	private static final DayOfWeek[] daysOfWeek = DayOfWeek.values();
 
 	/**
 	 * Return the number of days for the indicated year and month.
@@ -190,28 +196,133 @@ public class TimeTools {
 		 * 
 		 * The first step computes the number of full 400 years intervals in the
 		 * total number of days and the number of days remaining. These can be
-		 * computed exactly. The second step computes the number of years and
-		 * days in the remainder. This second step is implemented using pseudo
-		 * years of 365 days and an error correction scheme, taking in account
-		 * that at most 97 days have been ignored, less than a full year. The
-		 * error correction scheme is complicated by the fact that the relevant
-		 * year can itself be a leap year.
+		 * computed exactly. The second step computes the year, month and day
+		 * in the remainder (see #dateInCycle).
 		 */
 		
 		long y400Intervals = days / DAYS_IN_400_YEARS;
-		int y400Remainder = (int) (days - y400Intervals * DAYS_IN_400_YEARS);
-		
-		int remainingYears = y400Remainder / 365;
-		int dayOffset = y400Remainder - remainingYears * 365 - (int) TimeTools.leapYears(remainingYears);
-		
-		if (dayOffset < 0) {
-			remainingYears--;
-			dayOffset += (TimeTools.isLeap(remainingYears) ? 366 : 365);
+		int date = dateInCycle((int) (days - y400Intervals * DAYS_IN_400_YEARS));
+		return new YMD(y400Intervals * 400 + (date >>> 9), (date >>> 5) & 0xF, date & 0x1F);
+	}
+	
+	/**
+	 * Return the year of a day given as a number of days since the beginning
+	 * of year zero. Unlike {@link #computeYMD(long)}, the method does not
+	 * allocate any object.
+	 * 
+	 * @param days
+	 *            a non-negative number
+	 * @return the year
+	 */
+	public static long yearOfDay(long days) {
+		if (days < 0)
+			throw new IllegalArgumentException("" + days);
+		long y400Intervals = days / DAYS_IN_400_YEARS;
+		return y400Intervals * 400 + (dateInCycle((int) (days - y400Intervals * DAYS_IN_400_YEARS)) >>> 9);
+	}
+	
+	/**
+	 * Return the month of a day given as a number of days since the beginning
+	 * of year zero. Unlike {@link #computeYMD(long)}, the method does not
+	 * allocate any object.
+	 * 
+	 * @param days
+	 *            a non-negative number
+	 * @return the month of the year, in the range [1, 12]
+	 */
+	public static int monthOfDay(long days) {
+		if (days < 0)
+			throw new IllegalArgumentException("" + days);
+		return (dateInCycle((int) (days % DAYS_IN_400_YEARS)) >>> 5) & 0xF;
+	}
+	
+	/**
+	 * Return the day of the month of a day given as a number of days since the
+	 * beginning of year zero. Unlike {@link #computeYMD(long)}, the method
+	 * does not allocate any object.
+	 * 
+	 * @param days
+	 *            a non-negative number
+	 * @return the day of the month, starting with 1
+	 */
+	public static int dayOfMonth(long days) {
+		if (days < 0)
+			throw new IllegalArgumentException("" + days);
+		return dateInCycle((int) (days % DAYS_IN_400_YEARS)) & 0x1F;
+	}
+	
+	/**
+	 * Return the number of days between the beginning of year zero and the
+	 * given date. The caller is assumed to pass a valid date.
+	 * 
+	 * @param year
+	 *            a non-negative number
+	 * @param month
+	 *            a number in the range [1, 12]
+	 * @param day
+	 *            a number in the range [1, 31]
+	 * @return a number of days
+	 */
+	public static long dayNumber(long year, int month, int day) {
+		return year * 365 + leapYears(year) + daysToMonth(year, month) + day - 1;
+	}
+	
+	/**
+	 * Return the number of days between the beginning of year zero and the
+	 * given date, like {@link #dayNumber(long, int, int)}, but throw an
+	 * exception when the result cannot be represented in a long integer.
+	 * 
+	 * @param year
+	 *            a non-negative number
+	 * @param month
+	 *            a number in the range [1, 12]
+	 * @param day
+	 *            a number in the range [1, 31]
+	 * @return a number of days
+	 * @throws T2Exception
+	 */
+	public static long checkedDayNumber(long year, int month, int day) throws T2Exception {
+		try {
+			return sum(prod(year, 365), leapYears(year) + daysToMonth(year, month) + day - 1);
+		} catch (ArithmeticException e) {
+			throw T2Msg.exception(K.T1079, new DefaultTimeFormatter(true).format(
+					new TimeParts(Resolution.DAY, year, month, day, 0, 0, 0, 0)));
 		}
-		
-		long y = y400Intervals * 400 + remainingYears;
-		int[]monthDay = TimeTools.computeMonthAndDay(y, dayOffset + 1);
-		return new YMD(y, monthDay[0], monthDay[1]);
+	}
+	
+	/**
+	 * Return the year, month and day within a 400 year cycle, packed into an
+	 * integer: the year in the cycle is in bits 9 and above, the month in bits
+	 * 5 to 8, and the day in bits 0 to 4. Packing avoids allocating an object
+	 * for the result.
+	 * <p>
+	 * The computation uses only integer arithmetic, without loops, searches,
+	 * or tables. It is simpler with years starting on March 1, because the
+	 * leap day becomes the last day of the year and months from March to
+	 * January repeat a 5 month pattern of 153 days. Such years are shifted by
+	 * 60 days (January and February of year 0, a leap year) relative to the
+	 * cycle. The first 60 days of the cycle are handled as the end of the
+	 * last year of the previous cycle.
+	 * 
+	 * @param dayInCycle
+	 *            a number of days in the range [0, 146096]
+	 * @return the packed year, month, and day
+	 */
+	static int dateInCycle(int dayInCycle) {
+		int dayInMarchCycle = dayInCycle - 60;
+		int cycleAdjustment = 0;
+		if (dayInMarchCycle < 0) {
+			dayInMarchCycle += DAYS_IN_400_YEARS_INT;
+			cycleAdjustment = -400;
+		}
+		// correct for leap days: one every 4 years, except every 100 years, except every 400 years
+		int yearInMarchCycle = (dayInMarchCycle - dayInMarchCycle / 1460 + dayInMarchCycle / 36524 - dayInMarchCycle / 146096) / 365;
+		int dayInYear = dayInMarchCycle - (365 * yearInMarchCycle + yearInMarchCycle / 4 - yearInMarchCycle / 100);
+		int marchMonth = (5 * dayInYear + 2) / 153; // March = 0
+		int day = dayInYear - (153 * marchMonth + 2) / 5 + 1;
+		int month = marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+		int year = yearInMarchCycle + cycleAdjustment + (month <= 2 ? 1 : 0);
+		return year << 9 | month << 5 | day;
 	}
 
 	/**
@@ -328,6 +439,98 @@ public class TimeTools {
 		return time;
 	}
 	
+	/**
+	 * Return a long number representing a date and time given as primitive
+	 * components, or -1 if the components are not valid. The rules are those
+	 * of {@link #makeRawIndex(Resolution, TimeParts)}, without time zone
+	 * offset, and components not relevant for the resolution are ignored.
+	 * Unlike that method, this one does not allocate objects or throw
+	 * exceptions on invalid inputs, which makes it suitable for bulk
+	 * conversions.
+	 * 
+	 * @param unit
+	 *            a non-null resolution
+	 * @param year
+	 *            the year
+	 * @param month
+	 *            the month, in the range [1, 12]
+	 * @param day
+	 *            the day, in the range [1, 31]
+	 * @param hour
+	 *            the hour, in the range [0, 23], or 24 for midnight
+	 * @param min
+	 *            the minute, in the range [0, 59]
+	 * @param sec
+	 *            the second, in the range [0, 59], or 60 for a leap second
+	 * @param fsec
+	 *            the fractional second, in the unit of the resolution
+	 * @return a numeric time index or -1
+	 */
+	public static long rawIndex(Resolution unit, long year, int month, int day, int hour, int min, int sec, int fsec) {
+		if (year < 0)
+			return -1;
+		if (unit == Resolution.YEAR)
+			return year;
+		if (month < 1 || month > 12)
+			return -1;
+		try {
+			if (unit == Resolution.MONTH)
+				return sum(prod(year, 12), month - 1);
+			int[] daysToMonth = isLeap(year) ? daysToMonthLeapYear : daysToMonthCommonYear;
+			int daysInThisMonth = month == 12 ? 31 : daysToMonth[month] - daysToMonth[month - 1];
+			if (day < 1 || day > daysInThisMonth)
+				return -1;
+			long time = sum(prod(year, 365), leapYears(year) + daysToMonth[month - 1] + day - 1);
+			if (unit == Resolution.DAY)
+				return time;
+			// ignore components not relevant for the resolution, like TimeParts does
+			if (unit.compareTo(Resolution.MSEC) < 0) {
+				fsec = 0;
+				if (unit.compareTo(Resolution.SEC) < 0) {
+					sec = 0;
+					if (unit.compareTo(Resolution.MIN) < 0)
+						min = 0;
+				}
+			}
+			if (hour == 24) {
+				if (min == 0 && sec == 0 && fsec == 0) {
+					hour = 0;
+					time += 1;
+				}
+			}
+			if (sec == 60) {
+				if (hour == 23 && min == 59 && fsec == 0 && (month == 12 && day == 31)
+						|| (month == 6 && day == 30)) {
+					sec = 59;
+				} else
+					return -1;
+			}
+			if (hour < 0 || hour > 23 || min < 0 || min > 59 || sec < 0 || sec > 59 || !TimeParts.good(unit, fsec))
+				return -1;
+			time = sum(prod(time, 24), hour);
+			if (unit == Resolution.HOUR)
+				return time;
+			time = sum(prod(time, 60), min);
+			if (unit == Resolution.MIN)
+				return time;
+			time = sum(prod(time, 60), sec);
+			switch (unit) {
+			case SEC:
+				return time;
+			case MSEC:
+				return sum(prod(time, 1000L), fsec);
+			case USEC:
+				return sum(prod(time, 1000000L), fsec);
+			case NSEC:
+				return sum(prod(time, 1000000000L), fsec);
+			default:
+				throw new RuntimeException("bug: " + unit.name());
+			}
+		} catch (ArithmeticException e) {
+			return -1;
+		}
+	}
+	
 	private static class CompositeOverflowAndHMSU {
 		int overflow; // -1 underflow, +1 overflow, 0 no overflow
 		HMSF hmsu; // modified values
@@ -516,13 +719,24 @@ public class TimeTools {
 	 * @throws T2Exception
 	 */
 	public static DayOfWeek getDayOfWeek(Resolution unit, long time) throws T2Exception {
+		return daysOfWeek[dayOfWeekOrdinal(TimeTools.dayIndex(unit, time))];
+	}
+	
+	/**
+	 * Return the ordinal of the {@link DayOfWeek} of a day given as a number
+	 * of days since the beginning of year zero.
+	 * 
+	 * @param days a non-negative number of days
+	 * @return the ordinal of the day of the week, with Sunday = 0
+	 */
+	private static int dayOfWeekOrdinal(long days) {
 		// the two base year of the system, 2000 (NSEC) and 2000 (all others), start on a Sat
-		int day = (int)(TimeTools.dayIndex(unit, time) % 7); // 0 -> Saturday
+		int day = (int)(days % 7); // 0 -> Saturday
 		if (day == 0)
 			day = 6;
 		else
 			day--;
-		return DayOfWeek.values()[day];
+		return day;
 	}
 	
 	/**
@@ -550,12 +764,11 @@ public class TimeTools {
 			daysInPeriod = isLeap(year) ? 366 : 365;
 		} else
 			daysInPeriod = daysInMonth(year, month);
-		TimeIndex t = new Day(year, month, 1);
-		DayOfWeek firstOfPeriod = t.getDayOfWeek();
+		int firstOfPeriod = dayOfWeekOrdinal(checkedDayNumber(year, month, 1));
 		int workRank = rank;
 		if (workRank < 0)
 			workRank = max; // try the max 
-		int week1Offset = name.ordinal() - firstOfPeriod.ordinal();
+		int week1Offset = name.ordinal() - firstOfPeriod;
 		if (week1Offset < 0)
 			week1Offset += 7;
 		int dayOfPeriod = 1 + week1Offset + (workRank - 1) * 7;
@@ -18,6 +18,10 @@ package ch.agent.t2.timeseries;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 import ch.agent.t2.T2Exception;
 import ch.agent.t2.T2Msg;
@@ -97,6 +101,15 @@ public abstract class AbstractTimeSeries<T> implements TimeAddressable<T> {
 		return ts;
 	}
 	
+	@Override
+	public TimeAddressable<T> view(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return internalView(0, -1);
+		else
+			return internalView(range.getFirstIndex(), range.getLastIndex());
+	}
+	
 	@Override
 	public T get(long t) throws T2Exception {
 		return internalGet(t);
@@ -141,6 +154,38 @@ public abstract class AbstractTimeSeries<T> implements TimeAddressable<T> {
 		return internalGetLastIndex();
 	}
 	
+	@Override
+	public Cursor<T> cursor() {
+		return internalCursor(0, Long.MAX_VALUE);
+	}
+
+	@Override
+	public Cursor<T> cursor(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return internalCursor(0, -1);
+		else
+			return internalCursor(range.getFirstIndex(), range.getLastIndex());
+	}
+	
+	@Override
+	public Spliterator<Observation<T>> spliterator() {
+		PositionalAccess<T> access = positionalAccess();
+		return access == null ? TimeAddressable.super.spliterator() : access.observations(domain);
+	}
+
+	@Override
+	public LongStream indexStream() {
+		PositionalAccess<T> access = positionalAccess();
+		return access == null ? TimeAddressable.super.indexStream() : StreamSupport.longStream(access.indexes(), false);
+	}
+
+	@Override
+	public DoubleStream doubleStream() {
+		PositionalAccess<T> access = positionalAccess();
+		return access == null ? TimeAddressable.super.doubleStream() : StreamSupport.doubleStream(access.doubles(), false);
+	}
+	
 	@Override
 	public Observation<T> getLast(TimeIndex t) throws T2Exception {
 		if (t == null) {
@@ -328,6 +373,29 @@ public abstract class AbstractTimeSeries<T> implements TimeAddressable<T> {
 		return rejected;
 	}
 	
+	/**
+	 * Return an access by position to the elements returned by the iterator,
+	 * or null if the implementation has none. Spliterators and streams split
+	 * efficiently only with such an access.
+	 * 
+	 * @return an access by position or null
+	 */
+	PositionalAccess<T> positionalAccess() {
+		return null;
+	}
+
+	/**
+	 * Return a read-only view of the time series between two numerical time
+	 * indexes. The view is {@link TimeIndexable} when the time series is.
+	 * 
+	 * @param first a numerical time index giving the lower bound of the view
+	 * @param last a numerical time index giving the upper bound of the view
+	 * @return a view
+	 */
+	TimeAddressable<T> internalView(long first, long last) {
+		return TimeSeriesView.of(this, first, last);
+	}
+
 	/**
 	 * Return the numerical time index of the first element.
 	 *  
@@ -366,6 +434,20 @@ public abstract class AbstractTimeSeries<T> implements TimeAddressable<T> {
 	 */
 	protected abstract Observation<T> internalGetLast(long time) throws T2Exception;
 
+	/**
+	 * Return a cursor over the values with numerical time indexes between
+	 * two bounds. When the first bound is larger than the last, the cursor
+	 * has no value. The default implementation is based on the iterator;
+	 * subclasses should override it.
+	 * 
+	 * @param first a numerical time index giving the lower bound
+	 * @param last a numerical time index giving the upper bound
+	 * @return a cursor
+	 */
+	protected Cursor<T> internalCursor(long first, long last) {
+		return new IteratorCursor<T>(this, first, last);
+	}
+
 	/**
 	 * Remove all values from the time series.
 	 */
@@ -0,0 +1,679 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+
+/**
+ * CompressedTimeSeries is an immutable {@link TimeAddressable} of
+ * {@link Double} values, stored compressed. Like in a sparse time series,
+ * only non-missing values are stored, so that the series can be regular or
+ * irregular.
+ * <p>
+ * Values are stored in blocks of up to {@link #BLOCK_SIZE} values. In a
+ * block, numerical time indexes are encoded as deltas of deltas and values
+ * as the exclusive or with the previous value, both with a variable number
+ * of bits, as described by Pelkonen et al. in <q>Gorilla: A Fast, Scalable,
+ * In-Memory Time Series Database</q> (VLDB 2015). A regular series needs 1
+ * bit per time index, and a value equal to the previous one needs 1 bit.
+ * Values are decoded sequentially within a block, and reading a range only
+ * decodes the blocks it touches.
+ * <p>
+ * Methods which would modify the series throw an
+ * {@link UnsupportedOperationException}. The series is safe for use by
+ * multiple threads.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class CompressedTimeSeries extends AbstractTimeSeries<Double> {
+
+	/**
+	 * The maximum number of values in a block.
+	 */
+	public static final int BLOCK_SIZE = 1024;
+
+	private static final long[] EMPTY = new long[0];
+
+	/**
+	 * BitOutput appends bits to an array of words, starting with the most
+	 * significant bit of each word.
+	 */
+	private static class BitOutput {
+		private long[] words = new long[16];
+		private long position; // number of bits written
+
+		/**
+		 * Write the lowest bits of a value.
+		 */
+		private void write(long value, int bits) {
+			int w = (int) (position >>> 6);
+			if (w + 1 >= words.length)
+				words = Arrays.copyOf(words, words.length * 2);
+			int free = 64 - (int) (position & 63);
+			value &= mask(bits);
+			if (bits <= free)
+				words[w] |= value << (free - bits);
+			else {
+				words[w] |= value >>> (bits - free);
+				words[w + 1] |= value << (64 - bits + free);
+			}
+			position += bits;
+		}
+
+		private long[] toArray() {
+			return Arrays.copyOf(words, (int) ((position + 63) >>> 6));
+		}
+	}
+
+	/**
+	 * BlockDecoder decodes the values of blocks one after the other.
+	 */
+	private class BlockDecoder {
+		private int block; // the current block
+		private int remaining; // values not yet decoded in the current block
+		private long position; // bit position of the next value
+		private long index;
+		private long delta;
+		private long bits; // bits of the current value
+		private int leading;
+		private int length; // number of meaningful bits, 0 before the first
+		
+		/**
+		 * Start decoding a block. The first value is the current value.
+		 */
+		private void start(int block) {
+			this.block = block;
+			remaining = counts[block] - 1;
+			position = starts[block];
+			index = firstIndexes[block];
+			delta = 1;
+			bits = read(64);
+			length = 0;
+		}
+
+		/**
+		 * Decode the next value of the current block.
+		 */
+		private void next() {
+			remaining--;
+			// delta of delta
+			long dod;
+			if (read(1) == 0)
+				dod = 0;
+			else if (read(1) == 0)
+				dod = read(7) - 63;
+			else if (read(1) == 0)
+				dod = read(9) - 255;
+			else if (read(1) == 0)
+				dod = read(12) - 2047;
+			else
+				dod = read(64);
+			delta += dod;
+			index += delta;
+			// exclusive or
+			if (read(1) != 0) {
+				if (read(1) != 0) {
+					leading = (int) read(6);
+					length = (int) read(6) + 1;
+				}
+				bits ^= read(length) << (64 - leading - length);
+			}
+		}
+
+		private long read(int n) {
+			int w = (int) (position >>> 6);
+			int free = 64 - (int) (position & 63);
+			position += n;
+			if (n <= free)
+				return (words[w] >>> (free - n)) & mask(n);
+			else {
+				int rest = n - free;
+				return ((words[w] & mask(free)) << rest) | (words[w + 1] >>> (64 - rest));
+			}
+		}
+	}
+
+	/**
+	 * DecodedBlock holds the indexes and values of a block.
+	 */
+	private static class DecodedBlock {
+		private final int block;
+		private final long[] indexes;
+		private final double[] values;
+
+		private DecodedBlock(int block, long[] indexes, double[] values) {
+			this.block = block;
+			this.indexes = indexes;
+			this.values = values;
+		}
+	}
+
+	/**
+	 * CompressedCursor is a {@link DoubleCursor} over a range of the time
+	 * series.
+	 */
+	private class CompressedCursor implements DoubleCursor {
+		private final BlockDecoder decoder;
+		private final long first;
+		private final long last;
+		private boolean started;
+		private boolean done;
+
+		private CompressedCursor(long first, long last) {
+			this.decoder = new BlockDecoder();
+			this.first = first;
+			this.last = last;
+			int block = blockAfter(first);
+			this.done = first > last || block < 0;
+			if (!done)
+				decoder.block = block;
+		}
+
+		@Override
+		public boolean next() {
+			while (!done) {
+				if (!started) {
+					decoder.start(decoder.block);
+					started = true;
+				} else if (decoder.remaining > 0)
+					decoder.next();
+				else if (decoder.block + 1 < counts.length)
+					decoder.start(decoder.block + 1);
+				else
+					break;
+				if (decoder.index > last)
+					break;
+				if (decoder.index >= first)
+					return true;
+			}
+			done = true;
+			return false;
+		}
+
+		@Override
+		public long index() {
+			return decoder.index;
+		}
+
+		@Override
+		public Double value() {
+			return Double.longBitsToDouble(decoder.bits);
+		}
+
+		@Override
+		public double doubleValue() {
+			return Double.longBitsToDouble(decoder.bits);
+		}
+	}
+
+	/**
+	 * CompressedIterator is an {@link Iterator} returning
+	 * {@link Observation} objects.
+	 */
+	private class CompressedIterator implements Iterator<Observation<Double>> {
+		private final CompressedCursor cursor;
+		private boolean ready;
+		private boolean more;
+
+		private CompressedIterator() {
+			cursor = new CompressedCursor(0, Long.MAX_VALUE);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!ready) {
+				more = cursor.next();
+				ready = true;
+			}
+			return more;
+		}
+
+		@Override
+		public Observation<Double> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			ready = false;
+			return new Observation<Double>(getTimeDomain(), cursor.index(), cursor.value());
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final long[] words; // the encoded blocks
+	private final long[] starts; // bit position of each block
+	private final long[] firstIndexes; // first numerical time index of each block
+	private final long[] lastIndexes; // last numerical time index of each block
+	private final int[] counts; // number of values in each block
+	private final int[] positions; // position of the first value of each block, and size
+	private volatile DecodedBlock cache;
+
+	/**
+	 * Construct a compressed time series with the non-missing values of
+	 * another series.
+	 *
+	 * @param series
+	 *            a non-null time series
+	 */
+	public CompressedTimeSeries(TimeAddressable<Double> series) {
+		this(series.getTimeDomain(), series.cursor());
+	}
+
+	/**
+	 * Construct a compressed time series with the values of a cursor.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 * @param cursor
+	 *            a non-null cursor
+	 */
+	private CompressedTimeSeries(TimeDomain domain, Cursor<Double> cursor) {
+		super(Double.class, domain, Double.NaN);
+		DoubleCursor doubles = cursor instanceof DoubleCursor ? (DoubleCursor) cursor : null;
+		BitOutput out = new BitOutput();
+		int capacity = 16;
+		long[] blockStarts = new long[capacity];
+		long[] blockFirsts = new long[capacity];
+		long[] blockLasts = new long[capacity];
+		int[] blockCounts = new int[capacity];
+		int blocks = 0;
+		int count = 0; // values in the current block
+		long index = 0;
+		long delta = 0;
+		long bits = 0;
+		int leading = 0;
+		int length = 0;
+		while (cursor.next()) {
+			double value = doubles == null ? cursor.value().doubleValue() : doubles.doubleValue();
+			if (Double.isNaN(value))
+				continue;
+			long nextIndex = cursor.index();
+			long nextBits = Double.doubleToRawLongBits(value);
+			if (count == BLOCK_SIZE || blocks == 0) {
+				if (blocks == capacity) {
+					capacity *= 2;
+					blockStarts = Arrays.copyOf(blockStarts, capacity);
+					blockFirsts = Arrays.copyOf(blockFirsts, capacity);
+					blockLasts = Arrays.copyOf(blockLasts, capacity);
+					blockCounts = Arrays.copyOf(blockCounts, capacity);
+				}
+				blockStarts[blocks] = out.position;
+				blockFirsts[blocks] = nextIndex;
+				blocks++;
+				count = 0;
+				delta = 1;
+				length = 0;
+				out.write(nextBits, 64);
+			} else {
+				// delta of delta
+				long nextDelta = nextIndex - index;
+				long dod = nextDelta - delta;
+				if (dod == 0)
+					out.write(0, 1);
+				else if (dod >= -63 && dod <= 64)
+					out.write((2L << 7) | (dod + 63), 9);
+				else if (dod >= -255 && dod <= 256)
+					out.write((6L << 9) | (dod + 255), 12);
+				else if (dod >= -2047 && dod <= 2048)
+					out.write((14L << 12) | (dod + 2047), 16);
+				else {
+					out.write(15, 4);
+					out.write(dod, 64);
+				}
+				delta = nextDelta;
+				// exclusive or
+				long xor = nextBits ^ bits;
+				if (xor == 0)
+					out.write(0, 1);
+				else {
+					int lead = Long.numberOfLeadingZeros(xor);
+					int trail = Long.numberOfTrailingZeros(xor);
+					if (length > 0 && lead >= leading && trail >= 64 - leading - length) {
+						out.write(2, 2);
+						out.write(xor >>> (64 - leading - length), length);
+					} else {
+						leading = lead;
+						length = 64 - lead - trail;
+						out.write(3, 2);
+						out.write(leading, 6);
+						out.write(length - 1, 6);
+						out.write(xor >>> trail, length);
+					}
+				}
+			}
+			index = nextIndex;
+			bits = nextBits;
+			count++;
+			blockCounts[blocks - 1] = count;
+			blockLasts[blocks - 1] = index;
+		}
+		this.words = blocks == 0 ? EMPTY : out.toArray();
+		this.starts = Arrays.copyOf(blockStarts, blocks);
+		this.firstIndexes = Arrays.copyOf(blockFirsts, blocks);
+		this.lastIndexes = Arrays.copyOf(blockLasts, blocks);
+		this.counts = Arrays.copyOf(blockCounts, blocks);
+		this.positions = new int[blocks + 1];
+		for (int i = 0; i < blocks; i++) {
+			positions[i + 1] = positions[i] + counts[i];
+		}
+	}
+
+	/**
+	 * Return the number of bytes used by the compressed values and the
+	 * information on blocks.
+	 *
+	 * @return a number of bytes
+	 */
+	public long getCompressedSize() {
+		return 8L * words.length + 28L * counts.length + 4L * positions.length;
+	}
+
+	/**
+	 * Return true if the value is missing. All NaN values are missing values.
+	 *
+	 * @param value a value
+	 * @return true if the value is missing
+	 */
+	@Override
+	public boolean isMissing(Double value) {
+		return value != null && value.isNaN();
+	}
+
+	@Override
+	public Iterator<Observation<Double>> iterator() {
+		return new CompressedIterator();
+	}
+
+	@Override
+	public DoubleCursor cursor() {
+		return internalCursor(0, Long.MAX_VALUE);
+	}
+
+	@Override
+	public DoubleCursor cursor(Range range) throws T2Exception {
+		return (DoubleCursor) super.cursor(range);
+	}
+
+	@Override
+	protected DoubleCursor internalCursor(long first, long last) {
+		return new CompressedCursor(first, last);
+	}
+
+	@Override
+	PositionalAccess<Double> positionalAccess() {
+		return new BlockAccess();
+	}
+
+	/**
+	 * BlockAccess decodes the block of a position and keeps it for the next
+	 * position.
+	 */
+	private class BlockAccess extends PositionalAccess<Double> {
+		private DecodedBlock current;
+
+		private BlockAccess() {
+			super(positions[positions.length - 1], getMissingValue());
+		}
+
+		private int locate(int pos) {
+			if (current == null || pos < positions[current.block] || pos >= positions[current.block + 1]) {
+				int block = Arrays.binarySearch(positions, 0, counts.length, pos);
+				if (block < 0)
+					block = -block - 2;
+				current = decode(block);
+			}
+			return pos - positions[current.block];
+		}
+
+		@Override
+		protected long index(int pos) {
+			int i = locate(pos);
+			return current.indexes[i];
+		}
+
+		@Override
+		protected Double value(int pos) {
+			int i = locate(pos);
+			return current.values[i];
+		}
+
+		@Override
+		protected double doubleValue(int pos) {
+			int i = locate(pos);
+			return current.values[i];
+		}
+
+		@Override
+		protected PositionalAccess<Double> copy() {
+			return new BlockAccess();
+		}
+	}
+
+	/**
+	 * Return the decoded indexes and values of a block. The last block
+	 * decoded is cached.
+	 */
+	private DecodedBlock decode(int block) {
+		DecodedBlock decoded = cache;
+		if (decoded != null && decoded.block == block)
+			return decoded;
+		int count = counts[block];
+		long[] indexes = new long[count];
+		double[] values = new double[count];
+		BlockDecoder decoder = new BlockDecoder();
+		decoder.start(block);
+		for (int i = 0; ; i++) {
+			indexes[i] = decoder.index;
+			values[i] = Double.longBitsToDouble(decoder.bits);
+			if (decoder.remaining == 0)
+				break;
+			decoder.next();
+		}
+		decoded = new DecodedBlock(block, indexes, values);
+		cache = decoded;
+		return decoded;
+	}
+
+	/**
+	 * Return the first block with a last index larger than or equal to the
+	 * given index, or -1 if there is no such block.
+	 */
+	private int blockAfter(long index) {
+		int block = Arrays.binarySearch(lastIndexes, index);
+		if (block < 0)
+			block = -block - 1;
+		return block < counts.length ? block : -1;
+	}
+
+	/**
+	 * Return the last block with a first index smaller than or equal to the
+	 * given index, or -1 if there is no such block.
+	 */
+	private int blockBefore(long index) {
+		int block = Arrays.binarySearch(firstIndexes, index);
+		if (block < 0)
+			block = -block - 2;
+		return block;
+	}
+
+	@Override
+	public TimeAddressable<Double> get(long first, long last) {
+		return new CompressedTimeSeries(getTimeDomain(), internalCursor(first, last));
+	}
+
+	@Override
+	public TimeAddressable<Double> get(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return get(0, -1);
+		else
+			return get(range.getFirstIndex(), range.getLastIndex());
+	}
+
+	@Override
+	protected Observation<Double> internalGetLast(long index) throws T2Exception {
+		int block = blockBefore(index);
+		if (block < 0)
+			return null;
+		DecodedBlock decoded = decode(block);
+		int i = Arrays.binarySearch(decoded.indexes, index);
+		if (i < 0)
+			i = -i - 2;
+		return new Observation<Double>(getTimeDomain(), decoded.indexes[i], decoded.values[i]);
+	}
+
+	@Override
+	protected Observation<Double> internalGetFirst(long index) throws T2Exception {
+		int block = blockAfter(index);
+		if (block < 0)
+			return null;
+		DecodedBlock decoded = decode(block);
+		int i = Arrays.binarySearch(decoded.indexes, index);
+		if (i < 0)
+			i = -i - 1;
+		return new Observation<Double>(getTimeDomain(), decoded.indexes[i], decoded.values[i]);
+	}
+
+	@Override
+	protected Double internalGet(long index) throws T2Exception {
+		int block = blockBefore(index);
+		if (block < 0 || index > lastIndexes[block])
+			return getMissingValue();
+		DecodedBlock decoded = decode(block);
+		int i = Arrays.binarySearch(decoded.indexes, index);
+		return i < 0 ? getMissingValue() : Double.valueOf(decoded.values[i]);
+	}
+
+	@Override
+	public int getValueCount() {
+		return getSize();
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return false;
+	}
+
+	@Override
+	public TimeIndexable<Double> asIndexable() throws T2Exception {
+		DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(getTimeDomain());
+		DoubleCursor cursor = cursor();
+		while (cursor.next()) {
+			ts.putDouble(cursor.index(), cursor.doubleValue());
+		}
+		return ts;
+	}
+
+	/**
+	 * Return the time series itself, which is immutable.
+	 *
+	 * @return this time series
+	 */
+	@Override
+	public TimeAddressable<Double> copy() {
+		return this;
+	}
+
+	/**
+	 * Return an empty sparse time series, because a compressed time series
+	 * cannot be modified.
+	 *
+	 * @return an empty sparse time series
+	 */
+	@Override
+	public TimeAddressable<Double> makeEmptyCopy() {
+		return new SparseTimeSeries<Double>(Double.class, getTimeDomain());
+	}
+
+	@Override
+	protected Collection<Double> internalGetData() {
+		return new AbstractCollection<Double>() {
+			@Override
+			public Iterator<Double> iterator() {
+				final Iterator<Observation<Double>> it = CompressedTimeSeries.this.iterator();
+				return new Iterator<Double>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+					@Override
+					public Double next() {
+						return it.next().getValue();
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return getSize();
+			}
+		};
+	}
+
+	@Override
+	protected long internalGetFirstIndex() {
+		return counts.length == 0 ? -1 : firstIndexes[0];
+	}
+
+	@Override
+	protected long internalGetLastIndex() {
+		return counts.length == 0 ? -1 : lastIndexes[counts.length - 1];
+	}
+
+	@Override
+	protected int internalGetSize() {
+		return positions[counts.length];
+	}
+
+	@Override
+	protected void internalClear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalPut(long index, Double value) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalRemove(long index) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalSetBounds(long first, long last) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	private static long mask(int bits) {
+		return bits == 64 ? -1L : (1L << bits) - 1;
+	}
+
+}
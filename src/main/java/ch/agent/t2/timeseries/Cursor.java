@@ -0,0 +1,60 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+/**
+ * A Cursor walks the non-missing values of a time series in order of
+ * increasing time index. Unlike an {@link java.util.Iterator} of
+ * {@link Observation}, a cursor does not allocate an object per value: it
+ * is positioned on a value with {@link #next()} and the index and value of
+ * the current position are available with {@link #index()} and
+ * {@link #value()}.
+ * <p>
+ * A cursor is initially positioned before the first value. The result of
+ * {@link #index()} and {@link #value()} is unspecified before the first
+ * call to {@link #next()} and after a call returning false. The result of
+ * modifying a time series while a cursor walks it is unspecified.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+public interface Cursor<T> {
+
+	/**
+	 * Move to the next non-missing value. Return false when there is no
+	 * more value.
+	 *
+	 * @return true if the cursor is positioned on a value
+	 */
+	boolean next();
+
+	/**
+	 * Return the numerical time index of the current value.
+	 *
+	 * @return a numerical time index
+	 */
+	long index();
+
+	/**
+	 * Return the current value.
+	 *
+	 * @return a value, never the missing value
+	 */
+	T value();
+
+}
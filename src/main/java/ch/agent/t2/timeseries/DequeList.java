@@ -0,0 +1,264 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * DequeList is a list backed by an array with free space at both ends.
+ * Adding and removing elements at either end is amortized O(1), while
+ * elements keep being accessible in constant time by position. When the
+ * array must grow, free space is added on both sides, so that a list growing
+ * only to the left is as efficient as one growing only to the right. Adding
+ * or removing elements elsewhere moves the elements on the shorter side.
+ * <p>
+ * This implementation provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <E>
+ *            the element type
+ */
+class DequeList<E> extends AbstractList<E> implements RandomAccess {
+
+	private static final Object[] EMPTY = new Object[0];
+	private static final int MIN_CAPACITY = 8;
+
+	private Object[] elements; // elements are in [head, head + size)
+	private int head;
+	private int size;
+
+	/**
+	 * Construct an empty list.
+	 */
+	public DequeList() {
+		elements = EMPTY;
+	}
+
+	/**
+	 * Construct a list with the elements of a collection.
+	 *
+	 * @param c a non-null collection
+	 */
+	public DequeList(Collection<? extends E> c) {
+		elements = c.toArray();
+		if (elements.getClass() != Object[].class)
+			elements = Arrays.copyOf(elements, elements.length, Object[].class);
+		size = elements.length;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		check(index, size - 1);
+		return (E) elements[head + index];
+	}
+
+	@Override
+	public E set(int index, E element) {
+		check(index, size - 1);
+		@SuppressWarnings("unchecked")
+		E previous = (E) elements[head + index];
+		elements[head + index] = element;
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean add(E element) {
+		reserve(0, 1);
+		elements[head + size] = element;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void add(int index, E element) {
+		check(index, size);
+		open(index, 1);
+		elements[head + index] = element;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		return addAll(size, c);
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends E> c) {
+		check(index, size);
+		Object[] a = c.toArray();
+		if (a.length == 0)
+			return false;
+		open(index, a.length);
+		System.arraycopy(a, 0, elements, head + index, a.length);
+		return true;
+	}
+
+	/**
+	 * Insert an element many times at the beginning of the list.
+	 *
+	 * @param element an element
+	 * @param count the number of insertions
+	 */
+	public void addFirst(E element, int count) {
+		if (count > 0) {
+			open(0, count);
+			Arrays.fill(elements, head, head + count, element);
+		}
+	}
+
+	/**
+	 * Append an element many times at the end of the list.
+	 *
+	 * @param element an element
+	 * @param count the number of insertions
+	 */
+	public void addLast(E element, int count) {
+		if (count > 0) {
+			open(size, count);
+			Arrays.fill(elements, head + size - count, head + size, element);
+		}
+	}
+
+	@Override
+	public E remove(int index) {
+		E element = get(index);
+		removeRange(index, index + 1);
+		return element;
+	}
+
+	@Override
+	public void clear() {
+		elements = EMPTY;
+		head = 0;
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Remove a range of elements. Removing elements at either end of the list
+	 * does not move any other element.
+	 *
+	 * @param fromIndex index of first element to remove
+	 * @param toIndex index after last element to remove
+	 */
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException(fromIndex + ", " + toIndex);
+		int n = toIndex - fromIndex;
+		if (n == 0)
+			return;
+		if (fromIndex < size - toIndex) {
+			// move the elements in front
+			System.arraycopy(elements, head, elements, head + n, fromIndex);
+			Arrays.fill(elements, head, head + n, null);
+			head += n;
+		} else {
+			// move the elements behind
+			System.arraycopy(elements, head + toIndex, elements, head + fromIndex, size - toIndex);
+			Arrays.fill(elements, head + size - n, head + size, null);
+		}
+		size -= n;
+		modCount++;
+	}
+
+	/**
+	 * Keep only elements in a range and remove all others.
+	 *
+	 * @param fromIndex index of first element to keep
+	 * @param toIndex index after last element to keep
+	 */
+	public void retain(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException(fromIndex + ", " + toIndex);
+		removeRange(toIndex, size);
+		removeRange(0, fromIndex);
+	}
+
+	@Override
+	public Object[] toArray() {
+		return Arrays.copyOfRange(elements, head, head + size);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T[] toArray(T[] a) {
+		if (a.length < size)
+			return (T[]) Arrays.copyOfRange(elements, head, head + size, a.getClass());
+		System.arraycopy(elements, head, a, 0, size);
+		if (a.length > size)
+			a[size] = null;
+		return a;
+	}
+
+	/**
+	 * Open a gap of <em>n</em> positions at the given index, moving the
+	 * elements on the shorter side. Positions in the gap are undefined.
+	 *
+	 * @param index a position in [0, size]
+	 * @param n a positive number
+	 */
+	private void open(int index, int n) {
+		if (index < size - index) {
+			reserve(n, 0);
+			System.arraycopy(elements, head, elements, head - n, index);
+			head -= n;
+		} else {
+			reserve(0, n);
+			System.arraycopy(elements, head + index, elements, head + index + n, size - index);
+		}
+		size += n;
+		modCount++;
+	}
+
+	/**
+	 * Ensure there is free space for at least <em>left</em> elements in front
+	 * of the list and <em>right</em> elements after it. When the array is
+	 * reallocated, new capacity is distributed evenly on both sides.
+	 *
+	 * @param left a non-negative number
+	 * @param right a non-negative number
+	 */
+	private void reserve(int left, int right) {
+		if (head >= left && elements.length - head - size >= right)
+			return;
+		long needed = (long) size + left + right;
+		long capacity = Math.min(Integer.MAX_VALUE - 8, Math.max(needed + (needed >> 1), MIN_CAPACITY));
+		if (needed > capacity)
+			throw new OutOfMemoryError("capacity exceeded: " + needed);
+		int newHead = left + (int) (capacity - needed) / 2;
+		Object[] newElements = new Object[(int) capacity];
+		System.arraycopy(elements, head, newElements, newHead, size);
+		elements = newElements;
+		head = newHead;
+	}
+
+	private void check(int index, int max) {
+		if (index < 0 || index > max)
+			throw new IndexOutOfBoundsException("index: " + index + " size: " + size);
+	}
+
+}
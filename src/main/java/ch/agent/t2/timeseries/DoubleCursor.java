@@ -0,0 +1,34 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+/**
+ * A DoubleCursor is a {@link Cursor} over values of type {@link Double},
+ * which can also be accessed as primitives.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public interface DoubleCursor extends Cursor<Double> {
+
+	/**
+	 * Return the current value as a primitive.
+	 *
+	 * @return a value, never NaN
+	 */
+	double doubleValue();
+
+}
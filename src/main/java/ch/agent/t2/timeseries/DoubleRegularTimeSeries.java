@@ -0,0 +1,826 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+
+/**
+ * DoubleRegularTimeSeries implements {@link TimeIndexable} for values of type
+ * {@link Double}. Values are stored in a primitive <code>double</code> array and
+ * missing values are represented by {@link Double#NaN}. Compared to a
+ * {@link RegularTimeSeries} of {@link Double}, there is neither a boxed object
+ * nor a reference per value.
+ * <p>
+ * Besides the methods of {@link TimeIndexable}, which deal with boxed values,
+ * the class provides primitive accessors like {@link #getDouble(long)},
+ * {@link #putDouble(long, double)}, {@link #getDoubleArray()}, and
+ * {@link #put(long, double[])}. All NaN values are missing values, whatever
+ * their bit pattern. A validity bitmap with one bit per element tracks
+ * which elements are missing values, so that counting values and finding
+ * the first or last value around a time skip gaps without visiting each
+ * element.
+ * <p>
+ * The maximum allowed gap is the same as for {@link RegularTimeSeries}.
+ * <p>
+ * This implementation provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class DoubleRegularTimeSeries extends AbstractTimeSeries<Double> implements TimeIndexable<Double> {
+
+	private static final double[] EMPTY = new double[0];
+	private static final Double[] EMPTY_BOXED = new Double[0];
+
+	/**
+	 * DoubleTimeSeriesIterator is an {@link Iterator} returning {@link Observation} objects.
+	 */
+	public class DoubleTimeSeriesIterator implements Iterator<Observation<Double>> {
+
+		private final TimeDomain domain;
+		private int offset;
+
+		/**
+		 * Construct an iterator over all values of the time series.
+		 */
+		public DoubleTimeSeriesIterator() {
+			domain = getTimeDomain();
+			offset = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return offset < size;
+		}
+
+		@Override
+		public Observation<Double> next() {
+			if (offset >= size)
+				throw new NoSuchElementException();
+			Observation<Double> obs = new Observation<Double>(domain, start + offset, box(data[head + offset]));
+			offset++;
+			return obs;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	/**
+	 * DoubleRegularCursor is a {@link DoubleCursor} over a range of the time
+	 * series.
+	 */
+	private class DoubleRegularCursor implements DoubleCursor {
+
+		private final double[] values;
+		private final long base; // numerical time index of values[0]
+		private final int end; // position after the last value
+		private int pos;
+
+		private DoubleRegularCursor(long first, long last) {
+			values = data;
+			base = start - head;
+			if (start < 0 || first > last || first - start >= size || last < start) {
+				end = 0;
+				pos = 0;
+			} else {
+				// the bounds are clipped before being cast to int
+				end = head + (last - start < size ? (int) (last - start + 1) : size);
+				pos = head + (first > start ? (int) (first - start) : 0) - 1;
+			}
+		}
+
+		@Override
+		public boolean next() {
+			if (pos < end) {
+				int next = valid.nextSetBit(pos + 1 - head);
+				if (next >= 0 && next + head < end) {
+					pos = next + head;
+					return true;
+				}
+				pos = end;
+			}
+			return false;
+		}
+
+		@Override
+		public long index() {
+			return base + pos;
+		}
+
+		@Override
+		public Double value() {
+			return values[pos];
+		}
+
+		@Override
+		public double doubleValue() {
+			return values[pos];
+		}
+	}
+
+	private double[] data; // values are in [head, head + size), with free space on both sides
+	private final ValidityBitmap valid; // one bit per value, set when not NaN
+	private int head;
+	private int size;
+	private long start; // negative when no data
+
+	/**
+	 * Construct a regular time series of doubles.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 */
+	public DoubleRegularTimeSeries(TimeDomain domain) {
+		super(Double.class, domain, Double.NaN);
+		this.data = EMPTY;
+		this.valid = new ValidityBitmap();
+		this.start = -1;
+	}
+
+	/**
+	 * Construct a copy of a range of another time series.
+	 *
+	 * @param ts the non-null time series to copy
+	 * @param fromOffset start offset of the copy (inclusive)
+	 * @param toOffset  end offset of the copy (exclusive)
+	 */
+	private DoubleRegularTimeSeries(DoubleRegularTimeSeries ts, int fromOffset, int toOffset) {
+		this(ts.getTimeDomain());
+		if (toOffset > fromOffset) {
+			this.size = toOffset - fromOffset;
+			this.data = new double[size];
+			System.arraycopy(ts.data, ts.head + fromOffset, data, 0, size);
+			this.start = ts.start + fromOffset;
+			valid.addLast(size, false);
+			setValidity(0, size);
+		}
+	}
+
+	/**
+	 * Return true if the value is missing. All NaN values are missing values.
+	 *
+	 * @param value a value
+	 * @return true if the value is missing
+	 */
+	@Override
+	public boolean isMissing(Double value) {
+		return value != null && value.isNaN();
+	}
+
+	@Override
+	public Iterator<Observation<Double>> iterator() {
+		return new DoubleTimeSeriesIterator();
+	}
+
+	@Override
+	public DoubleCursor cursor() {
+		return internalCursor(0, Long.MAX_VALUE);
+	}
+
+	@Override
+	public DoubleCursor cursor(Range range) throws T2Exception {
+		return (DoubleCursor) super.cursor(range);
+	}
+
+	@Override
+	protected DoubleCursor internalCursor(long first, long last) {
+		return new DoubleRegularCursor(first, last);
+	}
+
+	@Override
+	PositionalAccess<Double> positionalAccess() {
+		final double[] values = data;
+		final long base = start - head;
+		final int offset = head;
+		return new PositionalAccess<Double>(size, getMissingValue()) {
+			@Override
+			protected long index(int pos) {
+				return base + offset + pos;
+			}
+			@Override
+			protected Double value(int pos) {
+				return box(values[offset + pos]);
+			}
+			@Override
+			protected double doubleValue(int pos) {
+				return values[offset + pos];
+			}
+		};
+	}
+
+	/**
+	 * Return the value at the given numerical time index as a primitive. Return
+	 * NaN when there is no value.
+	 *
+	 * @param index
+	 *            a numerical time index
+	 * @return a value or NaN
+	 * @throws T2Exception
+	 */
+	public double getDouble(long index) throws T2Exception {
+		if (start < 0)
+			return Double.NaN;
+		int offset = offset(index, start);
+		if (offset < 0 || offset >= size)
+			return Double.NaN;
+		return data[head + offset];
+	}
+
+	/**
+	 * Put a primitive value at the given numerical time index. Putting NaN
+	 * removes the value.
+	 *
+	 * @param index
+	 *            a non-negative numerical time index
+	 * @param value
+	 *            a value or NaN
+	 * @throws T2Exception
+	 */
+	public void putDouble(long index, double value) throws T2Exception {
+		if (index < 0)
+			throw new IllegalArgumentException("index < 0");
+		boolean missing = Double.isNaN(value);
+		if (start < 0) {
+			if (!missing) {
+				// new series
+				reserve(0, 1);
+				data[head] = value;
+				size = 1;
+				valid.addLast(1, true);
+				start = index;
+			}
+			return;
+		}
+		int offset = offset(index, start);
+		if (offset >= 0 && offset < size) {
+			// update existing element
+			data[head + offset] = value;
+			valid.set(offset, !missing);
+			// adding a missing value at the boundary reduces the range
+			if (missing && (offset == 0 || offset == size - 1))
+				trim();
+		} else {
+			// do not add missing values out of range
+			if (missing)
+				return;
+			if (offset < 0) {
+				int padSize = -offset - 1;
+				if (padSize > RegularTimeSeries.MAXGAP)
+					throw T2Msg.exception(K.T5018, padSize, RegularTimeSeries.MAXGAP, getTimeDomain().time(index).toString());
+				extendLeft(-offset);
+				data[head] = value;
+				valid.set(0, true);
+				start = index;
+			} else {
+				int padSize = offset - size;
+				if (padSize > RegularTimeSeries.MAXGAP)
+					throw T2Msg.exception(K.T5019, padSize, RegularTimeSeries.MAXGAP, getTimeDomain().time(index).toString());
+				extendRight(offset - size + 1);
+				data[head + offset] = value;
+				valid.set(offset, true);
+			}
+		}
+	}
+
+	/**
+	 * Put an array of primitive values identified with the numerical time
+	 * index of its first element into the time series. NaN elements remove
+	 * existing values.
+	 *
+	 * @param index
+	 *            a non-negative numerical time index
+	 * @param values
+	 *            a non-null array of values
+	 * @throws T2Exception
+	 */
+	public void put(long index, double[] values) throws T2Exception {
+		if (index < 0)
+			throw new IllegalArgumentException("index < 0");
+		if (values.length == 0)
+			return;
+		int firstNonMissing = 0;
+		while (firstNonMissing < values.length && Double.isNaN(values[firstNonMissing]))
+			firstNonMissing++;
+		int lastNonMissing = values.length - 1;
+		while (lastNonMissing >= firstNonMissing && Double.isNaN(values[lastNonMissing]))
+			lastNonMissing--;
+
+		if (start < 0) {
+			if (lastNonMissing >= firstNonMissing) {
+				int length = lastNonMissing - firstNonMissing + 1;
+				reserve(0, length);
+				System.arraycopy(values, firstNonMissing, data, head, length);
+				size = length;
+				start = index + firstNonMissing;
+				valid.addLast(size, false);
+				setValidity(0, size);
+			}
+			return;
+		}
+
+		long last = start + size - 1;
+		long newFirst = start;
+		long newLast = last;
+		if (lastNonMissing >= firstNonMissing) {
+			long lo = index + firstNonMissing;
+			long hi = index + lastNonMissing;
+			if (hi < start) {
+				long padSize = start - hi - 1;
+				if (padSize > RegularTimeSeries.MAXGAP)
+					throw T2Msg.exception(K.T5018, padSize, RegularTimeSeries.MAXGAP, getTimeDomain().time(hi).toString());
+			}
+			if (lo > last) {
+				long padSize = lo - last - 1;
+				if (padSize > RegularTimeSeries.MAXGAP)
+					throw T2Msg.exception(K.T5019, padSize, RegularTimeSeries.MAXGAP, getTimeDomain().time(lo).toString());
+			}
+			newFirst = Math.min(start, lo);
+			newLast = Math.max(last, hi);
+			offset(newLast, newFirst); // fail early when too large
+		}
+		if (newFirst < start)
+			extendLeft((int) (start - newFirst));
+		if (newLast > last)
+			extendRight((int) (newLast - last));
+		start = newFirst;
+
+		// copy the part of values overlapping [newFirst, newLast]
+		long from = Math.max(index, newFirst);
+		long to = Math.min(index + values.length - 1, newLast);
+		if (from <= to) {
+			System.arraycopy(values, (int) (from - index), data, head + (int) (from - start), (int) (to - from + 1));
+			setValidity((int) (from - start), (int) (to - start + 1));
+		}
+		trim();
+	}
+
+	@Override
+	public void put(long index, Double[] values) throws T2Exception {
+		double[] primitives = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			primitives[i] = normalizeMissingValue(values[i]).doubleValue();
+		}
+		put(index, primitives);
+	}
+
+	@Override
+	public void put(TimeAddressable<Double> values, UpdateReviewer<Double> reviewer) throws T2Exception {
+		if (reviewer == null && values instanceof DoubleRegularTimeSeries) {
+			// check for domain compatibility, then for Integer overflow
+			getRange().union(values.getRange()).getSizeAsInt();
+			DoubleRegularTimeSeries other = (DoubleRegularTimeSeries) values;
+			if (other.size > 0)
+				put(other.start, other.getDoubleArray());
+		} else
+			super.put(values, reviewer);
+	}
+
+	/**
+	 * Return all values in a primitive array. Missing values are NaN.
+	 *
+	 * @return an array with all values
+	 */
+	public double[] getDoubleArray() {
+		double[] result = new double[size];
+		System.arraycopy(data, head, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * Return a subrange of values in a primitive array. Missing values are NaN.
+	 *
+	 * @param range the non-null wanted range
+	 * @return an array with a subrange of values
+	 * @throws T2Exception
+	 */
+	public double[] getDoubleArray(Range range) throws T2Exception {
+		if (start < 0 || range.isEmpty())
+			return EMPTY;
+		int firstOffset = offset(Math.max(range.getFirstIndex(), start), start);
+		int lastOffset = offset(Math.min(range.getLastIndex(), start + size - 1), start);
+		if (firstOffset > lastOffset)
+			return EMPTY;
+		double[] result = new double[lastOffset - firstOffset + 1];
+		System.arraycopy(data, head + firstOffset, result, 0, result.length);
+		return result;
+	}
+
+	@Override
+	public Double[] getArray() {
+		return box(data, head, size);
+	}
+
+	@Override
+	public Double[] getArray(Range range) throws T2Exception {
+		double[] values = getDoubleArray(range);
+		return box(values, 0, values.length);
+	}
+
+	@Override
+	public TimeAddressable<Double> get(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return new DoubleRegularTimeSeries(this, 0, -1);
+		else
+			return get(range.getFirstIndex(), range.getLastIndex());
+	}
+
+	@Override
+	public TimeAddressable<Double> get(long first, long last) throws T2Exception {
+		if (first > last) {
+			if (first == 0 && last == -1)
+				return new DoubleRegularTimeSeries(this, 0, -1);
+			throw T2Msg.exception(K.T5016, getTimeDomain().time(first).toString(),
+					getTimeDomain().time(last).toString());
+		}
+		if (start < 0 || last < start || first > start + size - 1)
+			return new DoubleRegularTimeSeries(this, 0, -1);
+		int fromOffset = (int) (Math.max(first, start) - start);
+		int toOffset = (int) (Math.min(last, start + size - 1) - start) + 1;
+		// exclude missing values at both ends
+		int firstValue = valid.nextSetBit(fromOffset);
+		if (firstValue < 0 || firstValue >= toOffset)
+			fromOffset = toOffset;
+		else {
+			fromOffset = firstValue;
+			toOffset = valid.previousSetBit(toOffset - 1) + 1;
+		}
+		return new DoubleRegularTimeSeries(this, fromOffset, toOffset);
+	}
+
+	@Override
+	protected Observation<Double> internalGetLast(long index) throws T2Exception {
+		if (start < 0 || index < start)
+			return null;
+		int offset = valid.previousSetBit(index - start >= size ? size - 1 : (int) (index - start));
+		return offset < 0 ? null : new Observation<Double>(getTimeDomain(), start + offset, data[head + offset]);
+	}
+
+	@Override
+	protected Observation<Double> internalGetFirst(long index) throws T2Exception {
+		if (start < 0 || index > start + size - 1)
+			return null;
+		int offset = valid.nextSetBit(index < start ? 0 : (int) (index - start));
+		return offset < 0 ? null : new Observation<Double>(getTimeDomain(), start + offset, data[head + offset]);
+	}
+
+	@Override
+	public int getValueCount() {
+		return valid.cardinality();
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return true;
+	}
+
+	@Override
+	public int getMaxGap() {
+		return RegularTimeSeries.MAXGAP;
+	}
+
+	@Override
+	public DoubleRegularTimeSeries makeEmptyCopy() {
+		return new DoubleRegularTimeSeries(getTimeDomain());
+	}
+
+	@Override
+	public TimeIndexable<Double> asIndexable() throws T2Exception {
+		return this;
+	}
+
+	@Override
+	public TimeIndexable<Double> view(Range range) throws T2Exception {
+		return (TimeIndexable<Double>) super.view(range);
+	}
+
+	@Override
+	public DoubleRegularTimeSeries copy() throws T2Exception {
+		return new DoubleRegularTimeSeries(this, 0, size);
+	}
+
+	@Override
+	public int fill(Double replacement, long tailLength) throws T2Exception {
+		if (replacement == null)
+			throw T2Msg.exception(K.T5015);
+		double value = replacement.doubleValue();
+		if (Double.isNaN(value) && tailLength > 0)
+			throw T2Msg.exception(K.T5020);
+		int count = 0;
+		for (int i = valid.nextClearBit(0); i < size; i = valid.nextClearBit(i + 1)) {
+			data[head + i] = value;
+			count++;
+		}
+		if (!Double.isNaN(value))
+			valid.set(0, size, true);
+		if (tailLength > 0 && size > 0) {
+			append(value, tailLength);
+			count += tailLength;
+		}
+		return count;
+	}
+
+	@Override
+	public int fill(long tailLength) {
+		int count = 0;
+		for (int i = valid.nextClearBit(1); i < size; i = valid.nextClearBit(i + 1)) {
+			if (!Double.isNaN(data[head + i - 1])) {
+				data[head + i] = data[head + i - 1];
+				valid.set(i, true);
+				count++;
+			}
+		}
+		if (tailLength > 0 && size > 0) {
+			append(data[head + size - 1], tailLength);
+			count += tailLength;
+		}
+		return count;
+	}
+
+	@Override
+	public int fill(Filler<Double> filler) throws T2Exception {
+		int count = 0;
+		Double[] val = null;
+		int mvStart = -1;
+		for (int i = 0; i < size; i++) {
+			if (Double.isNaN(data[head + i])) {
+				count++;
+				if (mvStart == -1)
+					mvStart = i;
+			} else {
+				if (mvStart > 0) {
+					// i.e. don't interpolate when first element is a missing value
+					if (val == null)
+						val = getArray();
+					try {
+						filler.fillHole(val, mvStart - 1, i);
+					} catch (Exception e) {
+						Range range = new Range(getTimeDomain(), start + mvStart, start + i - 1);
+						throw T2Msg.exception(e, K.T5017, range.toString());
+					}
+					for (int j = mvStart; j < i; j++) {
+						data[head + j] = normalizeMissingValue(val[j]).doubleValue();
+					}
+					setValidity(mvStart, i);
+				}
+				mvStart = -1;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	protected void internalClear() {
+		data = EMPTY;
+		valid.clear();
+		head = 0;
+		size = 0;
+		start = -1;
+	}
+
+	@Override
+	protected Double internalGet(long index) throws T2Exception {
+		return box(getDouble(index));
+	}
+
+	/**
+	 * Return all values as a list view. Missing values are represented by
+	 * the missing value object.
+	 *
+	 * @return all values as a collection
+	 */
+	@Override
+	protected Collection<Double> internalGetData() {
+		return new DoubleListView();
+	}
+
+	@Override
+	protected long internalGetFirstIndex() {
+		return start;
+	}
+
+	@Override
+	protected long internalGetLastIndex() {
+		if (start < 0)
+			return start;
+		else
+			return start + size - 1;
+	}
+
+	@Override
+	protected int internalGetSize() {
+		return size;
+	}
+
+	@Override
+	protected void internalPut(long index, Double value) throws T2Exception {
+		putDouble(index, normalizeMissingValue(value).doubleValue());
+	}
+
+	@Override
+	protected void internalRemove(long index) throws T2Exception {
+		putDouble(index, Double.NaN);
+	}
+
+	@Override
+	protected void internalSetBounds(long first, long last) throws T2Exception {
+		// the range becomes smaller, so the long-to-int casts are okay by definition
+		int newSize = (int) (last - first + 1);
+		valid.removeFirst((int) (first - start));
+		valid.removeLast(valid.length() - newSize);
+		head += (int) (first - start);
+		size = newSize;
+		start = first;
+		trim();
+	}
+
+	/**
+	 * A read-only list view of the values, with missing values represented by
+	 * the missing value object.
+	 */
+	private class DoubleListView extends AbstractList<Double> implements RandomAccess {
+		@Override
+		public Double get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("" + index);
+			return box(data[head + index]);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Box a primitive value, using the missing value object for NaN.
+	 *
+	 * @param value a primitive value
+	 * @return a boxed value
+	 */
+	private Double box(double value) {
+		return Double.isNaN(value) ? getMissingValue() : Double.valueOf(value);
+	}
+
+	/**
+	 * Box a range of primitive values.
+	 *
+	 * @param values an array of primitive values
+	 * @param from the offset of the first value
+	 * @param length the number of values
+	 * @return an array of boxed values
+	 */
+	private Double[] box(double[] values, int from, int length) {
+		if (length == 0)
+			return EMPTY_BOXED;
+		Double[] result = new Double[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = box(values[from + i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Append a value many times.
+	 *
+	 * @param value a value
+	 * @param repetitions a number
+	 */
+	private void append(double value, long repetitions) {
+		if ((size + repetitions) > Integer.MAX_VALUE)
+			throw new RuntimeException("too many repetitions: " + repetitions);
+		int n = (int) repetitions;
+		reserve(0, n);
+		for (int i = head + size; i < head + size + n; i++) {
+			data[i] = value;
+		}
+		size += n;
+		valid.addLast(n, !Double.isNaN(value));
+	}
+
+	/**
+	 * Make room for <em>n</em> missing values in front of the data.
+	 *
+	 * @param n a positive number
+	 */
+	private void extendLeft(int n) {
+		reserve(n, 0);
+		head -= n;
+		size += n;
+		valid.addFirst(n, false);
+		for (int i = head + 1; i < head + n; i++) {
+			data[i] = Double.NaN;
+		}
+	}
+
+	/**
+	 * Make room for <em>n</em> missing values at the end of the data.
+	 *
+	 * @param n a positive number
+	 */
+	private void extendRight(int n) {
+		reserve(0, n);
+		for (int i = head + size; i < head + size + n - 1; i++) {
+			data[i] = Double.NaN;
+		}
+		size += n;
+		valid.addLast(n, false);
+	}
+
+	/**
+	 * Ensure there is free space for at least <em>left</em> elements in front
+	 * of the data and <em>right</em> elements after the data. When the array
+	 * must be reallocated, free space is added on both sides, so that
+	 * extending the data at either end is amortized O(1).
+	 *
+	 * @param left a non-negative number
+	 * @param right a non-negative number
+	 */
+	private void reserve(int left, int right) {
+		if (head >= left && data.length - head - size >= right)
+			return;
+		long needed = (long) size + left + right;
+		long capacity = Math.min(Integer.MAX_VALUE, Math.max(needed + (needed >> 1), 8));
+		if (needed > capacity)
+			throw new RuntimeException("capacity exceeded: " + needed);
+		int slack = (int) (capacity - needed);
+		double[] newData = new double[(int) capacity];
+		int newHead = left + slack / 2;
+		System.arraycopy(data, head, newData, newHead, size);
+		data = newData;
+		head = newHead;
+	}
+
+	/**
+	 * Remove all missing values at both ends of the series.
+	 */
+	private void trim() {
+		int first = valid.nextSetBit(0);
+		if (first < 0) {
+			internalClear();
+			return;
+		}
+		int last = valid.previousSetBit(size - 1);
+		valid.removeLast(size - 1 - last);
+		valid.removeFirst(first);
+		head += first;
+		start += first;
+		size = last - first + 1;
+	}
+
+	/**
+	 * Set the validity bits of a range of values.
+	 *
+	 * @param from the offset of the first value
+	 * @param to the offset after the last value
+	 */
+	private void setValidity(int from, int to) {
+		for (int i = from; i < to; i++) {
+			valid.set(i, !Double.isNaN(data[head + i]));
+		}
+	}
+
+	/**
+	 * Return a numerical time index as an offset from the start of the time series and
+	 * ensure it fits in a 32 bit integer.
+	 *
+	 * @param index a numerical time index
+	 * @param start the numerical time index of the start of the series
+	 * @return the difference between index and start
+	 * @throws T2Exception
+	 */
+	private int offset(long index, long start) throws T2Exception {
+		long offset = index - start;
+		if (offset < Integer.MIN_VALUE || offset > Integer.MAX_VALUE)
+			throw T2Msg.exception(K.T1058, index, start);
+		return (int) offset;
+	}
+
+}
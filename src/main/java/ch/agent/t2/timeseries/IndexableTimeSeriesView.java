@@ -0,0 +1,236 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Range;
+
+/**
+ * An IndexableTimeSeriesView is a read-only view of a range of a
+ * {@link TimeIndexable}. Like its parent, the view has an element for each
+ * time index in its range, including missing values. Filling a view throws
+ * an {@link UnsupportedOperationException}.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+class IndexableTimeSeriesView<T> extends TimeSeriesView<T> implements TimeIndexable<T> {
+
+	/**
+	 * IndexableViewIterator is an {@link Iterator} over all elements of the
+	 * range, including missing values.
+	 */
+	private class IndexableViewIterator implements Iterator<Observation<T>> {
+		private long index;
+		private final long last;
+
+		private IndexableViewIterator() {
+			index = internalGetFirstIndex();
+			last = internalGetLastIndex();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index >= 0 && index <= last;
+		}
+
+		@Override
+		public Observation<T> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Observation<T> obs = new Observation<T>(getTimeDomain(), index, value(index));
+			index++;
+			return obs;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final TimeIndexable<T> indexable;
+
+	/**
+	 * Construct a view of the parent between two numerical time indexes. The
+	 * view is empty when the first bound is larger than the last.
+	 *
+	 * @param parent
+	 *            a non-null time series implementing {@link TimeIndexable}
+	 * @param lo
+	 *            a numerical time index giving the lower bound of the view
+	 * @param hi
+	 *            a numerical time index giving the upper bound of the view
+	 */
+	IndexableTimeSeriesView(TimeIndexable<T> parent, long lo, long hi) {
+		super(parent, lo, hi);
+		this.indexable = parent;
+	}
+
+	private T value(long index) {
+		try {
+			return internalGet(index);
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug", e);
+		}
+	}
+
+	@Override
+	public TimeIndexable<T> view(Range range) throws T2Exception {
+		return (TimeIndexable<T>) super.view(range);
+	}
+
+	@Override
+	public Iterator<Observation<T>> iterator() {
+		return new IndexableViewIterator();
+	}
+
+	@Override
+	PositionalAccess<T> positionalAccess() {
+		long first = internalGetFirstIndex();
+		PositionalAccess<T> access = first < 0 || internal == null ? null : internal.positionalAccess();
+		if (access == null)
+			return null;
+		return new OffsetAccess<T>(access, (int) (first - parent.getFirstIndex()), internalGetSize(), getMissingValue());
+	}
+
+	/**
+	 * OffsetAccess gives access by position to a subrange of the positions of
+	 * another access.
+	 */
+	private static class OffsetAccess<T> extends PositionalAccess<T> {
+		private final PositionalAccess<T> access;
+		private final int offset;
+		private final int size;
+		private final T missingValue;
+
+		private OffsetAccess(PositionalAccess<T> access, int offset, int size, T missingValue) {
+			super(size, missingValue);
+			this.access = access;
+			this.offset = offset;
+			this.size = size;
+			this.missingValue = missingValue;
+		}
+
+		@Override
+		protected long index(int pos) {
+			return access.index(pos + offset);
+		}
+
+		@Override
+		protected T value(int pos) {
+			return access.value(pos + offset);
+		}
+
+		@Override
+		protected double doubleValue(int pos) {
+			return access.doubleValue(pos + offset);
+		}
+
+		@Override
+		protected PositionalAccess<T> copy() {
+			PositionalAccess<T> copy = access.copy();
+			return copy == access ? this : new OffsetAccess<T>(copy, offset, size, missingValue);
+		}
+	}
+
+	@Override
+	public TimeIndexable<T> copy() throws T2Exception {
+		return super.copy().asIndexable();
+	}
+
+	@Override
+	public TimeIndexable<T> makeEmptyCopy() {
+		return indexable.makeEmptyCopy();
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return true;
+	}
+
+	@Override
+	public TimeIndexable<T> asIndexable() throws T2Exception {
+		return this;
+	}
+
+	@Override
+	protected int internalGetSize() {
+		long first = internalGetFirstIndex();
+		return first < 0 ? 0 : (int) (internalGetLastIndex() - first + 1);
+	}
+
+	@Override
+	protected Collection<T> internalGetData() {
+		final long first = internalGetFirstIndex();
+		final int size = internalGetSize();
+		return new AbstractList<T>() {
+			@Override
+			public T get(int index) {
+				return value(first + index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public int getMaxGap() {
+		return indexable.getMaxGap();
+	}
+
+	@Override
+	public T[] getArray() {
+		try {
+			return getArray(getRange());
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug", e);
+		}
+	}
+
+	@Override
+	public T[] getArray(Range range) throws T2Exception {
+		range = getRange().intersection(range);
+		// the parent expects a range within its own range
+		return range.isEmpty() ? indexable.makeEmptyCopy().getArray() : indexable.getArray(range);
+	}
+
+	@Override
+	public int fill(T replacement, long tailLength) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int fill(long tailLength) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int fill(Filler<T> filler) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+}
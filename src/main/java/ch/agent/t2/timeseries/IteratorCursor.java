@@ -0,0 +1,86 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.Iterator;
+
+/**
+ * An IteratorCursor is a {@link Cursor} built on the iterator of a time
+ * series. It skips missing values and values outside two bounds. It is
+ * the cursor of time series without a more efficient implementation.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+class IteratorCursor<T> implements Cursor<T> {
+
+	private final TimeAddressable<T> series;
+	private final Iterator<Observation<T>> iterator; // null when empty
+	private final long first;
+	private final long last;
+	private Observation<T> current;
+	private boolean done;
+
+	/**
+	 * Construct a cursor over the values with numerical time indexes between
+	 * two bounds. When the first bound is larger than the last, the cursor
+	 * has no value.
+	 *
+	 * @param series
+	 *            a non-null time series
+	 * @param first
+	 *            a numerical time index giving the lower bound
+	 * @param last
+	 *            a numerical time index giving the upper bound
+	 */
+	IteratorCursor(TimeAddressable<T> series, long first, long last) {
+		this.series = series;
+		this.first = first;
+		this.last = last;
+		this.done = first > last;
+		this.iterator = done ? null : series.iterator();
+	}
+
+	@Override
+	public boolean next() {
+		while (!done && iterator.hasNext()) {
+			Observation<T> obs = iterator.next();
+			long index = obs.getIndex();
+			if (index > last)
+				break;
+			if (index >= first && !series.isMissing(obs.getValue())) {
+				current = obs;
+				return true;
+			}
+		}
+		done = true;
+		current = null;
+		return false;
+	}
+
+	@Override
+	public long index() {
+		return current.getIndex();
+	}
+
+	@Override
+	public T value() {
+		return current.getValue();
+	}
+
+}
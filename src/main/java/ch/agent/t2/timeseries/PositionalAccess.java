@@ -0,0 +1,269 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+import ch.agent.t2.time.TimeDomain;
+
+/**
+ * PositionalAccess gives access to the elements of a time series by
+ * position, from 0 to the size of the series minus 1. It is the basis of
+ * spliterators splitting a series in two halves of positions, which are also
+ * two ranges of time indexes. The spliterators are {@link Spliterator#SIZED},
+ * {@link Spliterator#SUBSIZED}, and {@link Spliterator#ORDERED}.
+ * <p>
+ * An access can keep state to make sequential access efficient. Such an
+ * access must override {@link #copy()}, which is used for giving a distinct
+ * access to each part of a split.
+ * <p>
+ * The result of modifying a time series while a spliterator traverses it is
+ * unspecified.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+abstract class PositionalAccess<T> {
+
+	/**
+	 * Splitting stops at this size.
+	 */
+	static final int MIN_SPLIT = 1024;
+
+	private final int size;
+	private final T missingValue;
+
+	/**
+	 * Construct an access.
+	 *
+	 * @param size
+	 *            the number of elements
+	 * @param missingValue
+	 *            the object representing missing values
+	 */
+	protected PositionalAccess(int size, T missingValue) {
+		this.size = size;
+		this.missingValue = missingValue;
+	}
+
+	/**
+	 * Return the numerical time index of the element at a position.
+	 *
+	 * @param pos
+	 *            a position
+	 * @return a numerical time index
+	 */
+	protected abstract long index(int pos);
+
+	/**
+	 * Return the value of the element at a position.
+	 *
+	 * @param pos
+	 *            a position
+	 * @return a value
+	 */
+	protected abstract T value(int pos);
+
+	/**
+	 * Return the value of the element at a position as a primitive. Missing
+	 * values are returned as NaN. The value type must be a {@link Number}.
+	 *
+	 * @param pos
+	 *            a position
+	 * @return a value or NaN
+	 */
+	protected double doubleValue(int pos) {
+		T value = value(pos);
+		return value == missingValue || value == null ? Double.NaN : ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Return an access for use by another spliterator. The default
+	 * implementation returns the access itself.
+	 *
+	 * @return an access
+	 */
+	protected PositionalAccess<T> copy() {
+		return this;
+	}
+
+	/**
+	 * Return a spliterator over the elements as observations.
+	 *
+	 * @param domain
+	 *            the time domain of the series
+	 * @return a spliterator
+	 */
+	public Spliterator<Observation<T>> observations(TimeDomain domain) {
+		return new ObservationSpliterator<T>(this, domain, 0, size);
+	}
+
+	/**
+	 * Return a spliterator over the numerical time indexes of the elements.
+	 *
+	 * @return a spliterator
+	 */
+	public Spliterator.OfLong indexes() {
+		return new IndexSpliterator<T>(this, 0, size);
+	}
+
+	/**
+	 * Return a spliterator over the values of the elements as primitives.
+	 *
+	 * @return a spliterator
+	 */
+	public Spliterator.OfDouble doubles() {
+		return new DoubleSpliterator<T>(this, 0, size);
+	}
+
+	/**
+	 * RangeSpliterator is the basis of spliterators over a range of
+	 * positions.
+	 */
+	private abstract static class RangeSpliterator<T> {
+		protected final PositionalAccess<T> access;
+		protected int pos;
+		protected final int end;
+
+		protected RangeSpliterator(PositionalAccess<T> access, int pos, int end) {
+			this.access = access;
+			this.pos = pos;
+			this.end = end;
+		}
+
+		/**
+		 * Return the position where to split or -1 if the range is too small.
+		 * The caller takes the lower part.
+		 */
+		protected int split() {
+			int mid = (pos + end) >>> 1;
+			if (mid - pos < MIN_SPLIT)
+				return -1;
+			int from = pos;
+			pos = mid;
+			return from;
+		}
+
+		public long estimateSize() {
+			return end - pos;
+		}
+
+		public long getExactSizeIfKnown() {
+			return end - pos;
+		}
+
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+		}
+
+		public boolean hasCharacteristics(int characteristics) {
+			return (characteristics() & characteristics) == characteristics;
+		}
+	}
+
+	private static class ObservationSpliterator<T> extends RangeSpliterator<T> implements Spliterator<Observation<T>> {
+		private final TimeDomain domain;
+
+		private ObservationSpliterator(PositionalAccess<T> access, TimeDomain domain, int pos, int end) {
+			super(access, pos, end);
+			this.domain = domain;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Observation<T>> action) {
+			if (pos >= end)
+				return false;
+			action.accept(new Observation<T>(domain, access.index(pos), access.value(pos)));
+			pos++;
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Observation<T>> action) {
+			for (; pos < end; pos++) {
+				action.accept(new Observation<T>(domain, access.index(pos), access.value(pos)));
+			}
+		}
+
+		@Override
+		public Spliterator<Observation<T>> trySplit() {
+			int from = split();
+			return from < 0 ? null : new ObservationSpliterator<T>(access.copy(), domain, from, pos);
+		}
+	}
+
+	private static class IndexSpliterator<T> extends RangeSpliterator<T> implements Spliterator.OfLong {
+
+		private IndexSpliterator(PositionalAccess<T> access, int pos, int end) {
+			super(access, pos, end);
+		}
+
+		@Override
+		public boolean tryAdvance(LongConsumer action) {
+			if (pos >= end)
+				return false;
+			action.accept(access.index(pos++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(LongConsumer action) {
+			for (; pos < end; pos++) {
+				action.accept(access.index(pos));
+			}
+		}
+
+		@Override
+		public Spliterator.OfLong trySplit() {
+			int from = split();
+			return from < 0 ? null : new IndexSpliterator<T>(access.copy(), from, pos);
+		}
+	}
+
+	private static class DoubleSpliterator<T> extends RangeSpliterator<T> implements Spliterator.OfDouble {
+
+		private DoubleSpliterator(PositionalAccess<T> access, int pos, int end) {
+			super(access, pos, end);
+		}
+
+		@Override
+		public boolean tryAdvance(DoubleConsumer action) {
+			if (pos >= end)
+				return false;
+			action.accept(access.doubleValue(pos++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(DoubleConsumer action) {
+			for (; pos < end; pos++) {
+				action.accept(access.doubleValue(pos));
+			}
+		}
+
+		@Override
+		public Spliterator.OfDouble trySplit() {
+			int from = split();
+			return from < 0 ? null : new DoubleSpliterator<T>(access.copy(), from, pos);
+		}
+	}
+
+}
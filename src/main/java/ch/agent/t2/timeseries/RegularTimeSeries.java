@@ -17,7 +17,6 @@
 package ch.agent.t2.timeseries;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -32,6 +31,13 @@ import ch.agent.t2.time.TimeDomain;
 /**
  * RegularTimeSeries implements {@link TimeIndexable}.
  * <p>
+ * Values are kept in a list with free space at both ends, so that adding
+ * and removing values at either end of the series is efficient. A series can
+ * be filled from the newest to the oldest value as well as the other way
+ * round. A validity bitmap with one bit per element tracks which elements
+ * are missing values, so that counting values and finding the first or last
+ * value around a time skip gaps without visiting each element.
+ * <p>
  * This implementation provides no synchronization.
  * <p>
  * The maximum allowed gap in a time series is by default 500. It can be set to
@@ -45,7 +51,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 
 	public static final String MAXGAP_PROPERTY = "RegularTimeSeries.MaxGap";
 	private static final int DEFAULT_MAXGAP = 500;
-	private static final int MAXGAP;
+	static final int MAXGAP; // package private, shared with other indexable series
 	static {
 		String prop = System.getProperty(MAXGAP_PROPERTY);
 		if (prop != null) {
@@ -98,7 +104,55 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 
 	}
 
-	private List<T> data;
+	/**
+	 * RegularCursor is a {@link Cursor} over a range of the time series.
+	 */
+	private class RegularCursor implements Cursor<T> {
+
+		private final long base;
+		private final int end; // offset after the last value
+		private int offset;
+		private T value;
+
+		private RegularCursor(long first, long last) {
+			base = start;
+			int size = data.size();
+			if (start < 0 || first > last || first - start >= size || last < start) {
+				end = 0;
+				offset = 0;
+			} else {
+				// the bounds are clipped before being cast to int
+				end = last - start < size ? (int) (last - start + 1) : size;
+				offset = first > start ? (int) (first - start) - 1 : -1;
+			}
+		}
+
+		@Override
+		public boolean next() {
+			if (offset < end) {
+				offset = valid.nextSetBit(offset + 1);
+				if (offset >= 0 && offset < end) {
+					value = data.get(offset);
+					return true;
+				}
+				offset = end;
+			}
+			return false;
+		}
+
+		@Override
+		public long index() {
+			return base + offset;
+		}
+
+		@Override
+		public T value() {
+			return value;
+		}
+	}
+
+	private DequeList<T> data;
+	private ValidityBitmap valid; // one bit per element of data, set when not missing
 	private long start; // negative when no data
 	
 	/**
@@ -113,7 +167,8 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 	 */
 	public RegularTimeSeries(Class<T> type, TimeDomain domain, T missingValue) {
 		super(type, domain, missingValue);
-		this.data = new ArrayList<T>();
+		this.data = new DequeList<T>();
+		this.valid = new ValidityBitmap();
 		this.start = -1;
 	}
 	
@@ -148,12 +203,14 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		// no need to clone domain, template, empty, or missingValue
 		super(ts.getType(), ts.getTimeDomain(), ts.getMissingValue());
 		if (toOffset > fromOffset) {
-			this.data = new ArrayList<T>(ts.data.subList(fromOffset, toOffset));
+			this.data = new DequeList<T>(ts.data.subList(fromOffset, toOffset));
 			this.start = ts.start + fromOffset;
 		} else {
-			this.data = new ArrayList<T>();
+			this.data = new DequeList<T>();
 			this.start = -1;
 		}
+		this.valid = new ValidityBitmap();
+		resetValidity();
 	}
 
 	@Override
@@ -161,6 +218,27 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		return new TimeSeriesIterator(start, data);
 	}
 	
+	@Override
+	protected Cursor<T> internalCursor(long first, long last) {
+		return new RegularCursor(first, last);
+	}
+
+	@Override
+	PositionalAccess<T> positionalAccess() {
+		final long base = start;
+		final DequeList<T> values = data;
+		return new PositionalAccess<T>(values.size(), getMissingValue()) {
+			@Override
+			protected long index(int pos) {
+				return base + pos;
+			}
+			@Override
+			protected T value(int pos) {
+				return values.get(pos);
+			}
+		};
+	}
+	
 	@Override
 	public TimeAddressable<T> get(Range range) throws T2Exception {
 		getTimeDomain().requireEquality(range.getTimeDomain());
@@ -186,26 +264,23 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		if (fromOffset < 0)
 			fromOffset = 0;
 		
-		if (fromOffset >= data.size())
+		if (fromOffset >= data.size() || last < start)
 			return new RegularTimeSeries<T>(this, 0, -1);
 
 		/* toOffset is the index of the element after the last one requested; 
 		 * by construction, it can be cast to an int.
 		 */ 
-		long toOffset = fromOffset + last - first + 1; // can be < 0 due to overflow
+		long toOffset = last - start + 1; // can be < 0 due to overflow
 		if (toOffset > data.size() || toOffset < 0)
 			toOffset = data.size();
 
-		// exclude missing values at the beginning of the series
-		while (data.get(fromOffset) == getMissingValue()) {
-			if (++fromOffset == toOffset)
-				break;
-		}
-		if (fromOffset < toOffset) {
-			// exclude missing values at the end of the series
-			while (data.get((int) toOffset - 1) == getMissingValue() && fromOffset < toOffset) {
-				toOffset--;
-			}
+		// exclude missing values at both ends of the series
+		int firstValue = valid.nextSetBit(fromOffset);
+		if (firstValue < 0 || firstValue >= toOffset)
+			fromOffset = (int) toOffset;
+		else {
+			fromOffset = firstValue;
+			toOffset = valid.previousSetBit((int) toOffset - 1) + 1;
 		}
 		
 		return new RegularTimeSeries<T>(this, fromOffset, (int) toOffset);
@@ -213,60 +288,23 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 	
 	@Override
 	protected Observation<T> internalGetLast(long index) throws T2Exception {
-		T value = get(index);
-		if (isMissing(value)) {
-			long last = internalGetLastIndex();
-			if (last >= 0) {
-				if (index > last) {
-					value = get(last);
-					index = last;
-				} else {
-					long first = internalGetFirstIndex();
-					while (index > first && isMissing(value)) {
-						value = get(--index);
-					}
-					// else a missing value is returned
-				}
-			}
-		}
-		if (isMissing(value))
+		if (start < 0 || index < start)
 			return null;
-		else
-			return new Observation<T>(getTimeDomain(), index, value);
+		int offset = valid.previousSetBit(index - start >= data.size() ? data.size() - 1 : (int) (index - start));
+		return offset < 0 ? null : new Observation<T>(getTimeDomain(), start + offset, data.get(offset));
 	}
 	
 	@Override
 	protected Observation<T> internalGetFirst(long index) throws T2Exception {
-		T value = get(index);
-		if (isMissing(value)) {
-			long first = internalGetFirstIndex();
-			if (first >= 0) {
-				if (index < first) {
-					value = get(first);
-					index = first;
-				} else {
-					long last = internalGetLastIndex();
-					while (index < last && isMissing(value)) {
-						value = get(++index);
-					}
-					// else a missing value is returned
-				}
-			}
-		}
-		if (isMissing(value))
+		if (start < 0 || index > start + data.size() - 1)
 			return null;
-		else 
-			return new Observation<T>(getTimeDomain(), index, value);
+		int offset = valid.nextSetBit(index < start ? 0 : (int) (index - start));
+		return offset < 0 ? null : new Observation<T>(getTimeDomain(), start + offset, data.get(offset));
 	}
 
 	@Override
 	public int getValueCount() {
-		T[] values = getArray();
-		int valueCount = 0;
-		for (T d: values)
-			if (!isMissing(d))
-				valueCount++;
-		return valueCount;
+		return valid.cardinality();
 	}
 
 	@Override
@@ -289,6 +327,11 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		return this;
 	}
 
+	@Override
+	public TimeIndexable<T> view(Range range) throws T2Exception {
+		return (TimeIndexable<T>) super.view(range);
+	}
+
 	@Override
 	public TimeIndexable<T> copy() throws T2Exception {
 		TimeIndexable<T> ts = makeEmptyCopy();
@@ -345,6 +388,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 				data.addAll(0, Arrays.asList(values).subList(firstNonMissing, lastNonMissing + 1));
 				start = index + firstNonMissing;
 			}
+			resetValidity();
 		}
 	}
 
@@ -356,6 +400,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 			// optimized version
 			data.addAll(0, ((AbstractTimeSeries<T>) values).internalGetData());
 			start = ((AbstractTimeSeries<T>) values).internalGetFirstIndex();  // -1 when no data
+			resetValidity();
 		}
 	}
 
@@ -368,12 +413,8 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 	private void append(T value, long repetitions) {
 		if ((data.size() + repetitions) > Integer.MAX_VALUE)
 			throw new RuntimeException("too many repetitions: " + repetitions);
-		if (repetitions > 0) {
-			while (repetitions > 0) {
-				data.add(value);
-				repetitions--;
-			}
-		}
+		data.addLast(value, (int) repetitions);
+		valid.addLast((int) repetitions, !isMissing(value));
 	}
 	
 	@Override
@@ -402,6 +443,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		if (count > 0) {
 			data.clear();
 			data.addAll(Arrays.asList(val));
+			resetValidity();
 		}
 		if (tailLength > 0) {
 			append(replacement, tailLength);
@@ -426,6 +468,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		if (count > 0) {
 			data.clear();
 			data.addAll(Arrays.asList(val));
+			resetValidity();
 		}
 		if (tailLength > 0 && val.length > 0) {
 			T replacement = val[val.length - 1];
@@ -468,6 +511,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 		if (count > 0) {
 			data.clear();
 			data.addAll(Arrays.asList(val));
+			resetValidity();
 		}
 		return count;
 	}
@@ -475,6 +519,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 	@Override
 	protected void internalClear() {
 		data.clear();
+		valid.clear();
 		start = -1;
 	}
 
@@ -523,6 +568,7 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 				// new series
 				start = index;
 				data.add(value);
+				valid.addLast(1, true);
 			}
 			return;
 		}
@@ -537,14 +583,17 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 				if (offset == 0) {
 					start++;
 					data.remove(0);
+					valid.removeFirst(1);
 					removeBeginningMissingValues();
 				}
 				if (offset == data.size() - 1) {
 					data.remove(offset);
+					valid.removeLast(1);
 					removeEndingMissingValues();
 				}
 			} else {
 				data.set(offset, value);
+				valid.set(offset, true);
 			}
 		} else {
 			// do not add missing values out of range
@@ -558,12 +607,11 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 				if (padSize > 0) {
 					if (padSize > MAXGAP)
 						throw T2Msg.exception(K.T5018, padSize, MAXGAP, getTimeDomain().time(index).toString());
-					List<T> pad = new ArrayList<T>(padSize);
-					for (int i = 0; i < padSize; i++)
-						pad.add(getMissingValue());
-					data.addAll(0, pad);
+					data.addFirst(getMissingValue(), padSize);
+					valid.addFirst(padSize, false);
 				}
 				data.add(0, value);
+				valid.addFirst(1, true);
 				start = index;
 			} else {
 				// ... or to the right
@@ -571,12 +619,11 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 				if (padSize > 0) {
 					if (padSize > MAXGAP)
 						throw T2Msg.exception(K.T5019, padSize, MAXGAP, getTimeDomain().time(index).toString());
-					List<T> pad = new ArrayList<T>(padSize);
-					for (int i = 0; i < padSize; i++)
-						pad.add(getMissingValue());
-					data.addAll(pad);
+					data.addLast(getMissingValue(), padSize);
+					valid.addLast(padSize, false);
 				}
 				data.add(value);
+				valid.addLast(1, true);
 			}
 		}
 	}
@@ -588,9 +635,10 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 
 	@Override
 	protected void internalSetBounds(long first, long last) throws T2Exception {
-		// - the range becomes smaller, so the long-to-int casts are okay by definition
-		// - here it is okay to keep the subList because the original won't be used by anyone
-		data = data.subList((int)(first - start), (int) (last - start + 1));
+		// the range becomes smaller, so the long-to-int casts are okay by definition
+		valid.removeLast(data.size() - (int) (last - start + 1));
+		valid.removeFirst((int) (first - start));
+		data.retain((int)(first - start), (int) (last - start + 1));
 		start = first;
 		removeBeginningMissingValues();
 		removeEndingMissingValues();
@@ -600,9 +648,15 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 	 * Remove all missing values at the start of the series.
 	 */
 	private void removeBeginningMissingValues() {
-		while(data.size() > 0 && isMissing(data.get(0))) {
-			data.remove(0);
-			start++;
+		int first = valid.nextSetBit(0);
+		if (first < 0) {
+			data.clear();
+			valid.clear();
+			start = -1;
+		} else if (first > 0) {
+			data.retain(first, data.size());
+			valid.removeFirst(first);
+			start += first;
 		}
 	}
 	
@@ -610,8 +664,27 @@ public class RegularTimeSeries<T> extends AbstractTimeSeries<T> implements TimeI
 	 * Remove all missing values at the end of the series.
 	 */
 	private void removeEndingMissingValues() {
-		while(data.size() > 0 && isMissing(data.get(data.size() - 1))) {
-			data.remove(data.size() - 1);
+		int last = valid.previousSetBit(data.size() - 1);
+		if (last < 0) {
+			data.clear();
+			valid.clear();
+			start = -1;
+		} else if (last < data.size() - 1) {
+			valid.removeLast(data.size() - 1 - last);
+			data.retain(0, last + 1);
+		}
+	}
+
+	/**
+	 * Set the validity bitmap from the values.
+	 */
+	private void resetValidity() {
+		valid.clear();
+		int size = data.size();
+		valid.addLast(size, false);
+		for (int i = 0; i < size; i++) {
+			if (!isMissing(data.get(i)))
+				valid.set(i, true);
 		}
 	}
 	
@@ -0,0 +1,663 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+
+/**
+ * SegmentedTimeSeries implements {@link TimeIndexable} without limit on the
+ * length of runs of missing values.
+ * <p>
+ * Values are kept in chunks of {@link #CHUNK_SIZE} consecutive time
+ * indexes, in a directory indexed by chunk number. Chunks are allocated when
+ * a value is put into them and released when their last value is removed,
+ * so that a long gap costs one directory entry per chunk, and no chunk. Each
+ * chunk has a validity bitmap with one bit per element. Accessing a value
+ * takes constant time.
+ * <p>
+ * As with all {@link TimeIndexable} implementations, the size of the range
+ * must fit in a 32 bit integer. The range always starts and ends with
+ * values which are not missing.
+ * <p>
+ * This implementation provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+public class SegmentedTimeSeries<T> extends AbstractTimeSeries<T> implements TimeIndexable<T> {
+
+	private static final int CHUNK_BITS = 10;
+
+	/**
+	 * The number of consecutive time indexes in a chunk.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final Chunk[] EMPTY = new Chunk[0];
+
+	/**
+	 * A Chunk holds the values of {@link SegmentedTimeSeries#CHUNK_SIZE}
+	 * consecutive time indexes.
+	 */
+	private static class Chunk {
+		private final Object[] values = new Object[CHUNK_SIZE];
+		private final long[] valid = new long[CHUNK_SIZE >>> 6];
+		private int count; // number of non-missing values
+
+		private boolean isValid(int pos) {
+			return (valid[pos >>> 6] & (1L << pos)) != 0;
+		}
+
+		/**
+		 * Return the first valid position at or after the given position, or
+		 * -1.
+		 */
+		private int nextValid(int pos) {
+			int w = pos >>> 6;
+			long word = valid[w] & (-1L << pos);
+			while (true) {
+				if (word != 0)
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				if (++w == valid.length)
+					return -1;
+				word = valid[w];
+			}
+		}
+
+		/**
+		 * Return the last valid position at or before the given position, or
+		 * -1.
+		 */
+		private int previousValid(int pos) {
+			int w = pos >>> 6;
+			long word = valid[w] & (-1L >>> (63 - (pos & 63)));
+			while (true) {
+				if (word != 0)
+					return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+				if (--w < 0)
+					return -1;
+				word = valid[w];
+			}
+		}
+	}
+
+	/**
+	 * SegmentedIterator is an {@link Iterator} returning {@link Observation}
+	 * objects for all elements of the range, including missing values.
+	 */
+	private class SegmentedIterator implements Iterator<Observation<T>> {
+		private long index;
+		private final long last;
+
+		private SegmentedIterator() {
+			index = start;
+			last = end;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index >= 0 && index <= last;
+		}
+
+		@Override
+		public Observation<T> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Observation<T> obs = new Observation<T>(getTimeDomain(), index, value(index));
+			index++;
+			return obs;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * SegmentedCursor is a {@link Cursor} over a range of the time series.
+	 */
+	private class SegmentedCursor implements Cursor<T> {
+		private final long last;
+		private long index;
+		private T value;
+
+		private SegmentedCursor(long first, long last) {
+			first = Math.max(first, start);
+			last = start < 0 ? -1 : Math.min(last, end);
+			if (first > last) {
+				this.last = -1;
+				this.index = 0;
+			} else {
+				this.last = last;
+				this.index = first - 1;
+			}
+		}
+
+		@Override
+		public boolean next() {
+			if (index < last) {
+				index = nextValid(index + 1);
+				if (index >= 0 && index <= last) {
+					value = SegmentedTimeSeries.this.value(index);
+					return true;
+				}
+				index = last;
+			}
+			return false;
+		}
+
+		@Override
+		public long index() {
+			return index;
+		}
+
+		@Override
+		public T value() {
+			return value;
+		}
+	}
+
+	private Chunk[] chunks; // directory
+	private long firstChunk; // chunk number of chunks[0]
+	private long start; // negative when no data
+	private long end; // negative when no data
+	private int count; // number of non-missing values
+
+	/**
+	 * Construct a segmented time series.
+	 *
+	 * @param type
+	 *            a non-null data type
+	 * @param domain
+	 *            a non-null time domain
+	 * @param missingValue
+	 *            an object representing missing values
+	 */
+	public SegmentedTimeSeries(Class<T> type, TimeDomain domain, T missingValue) {
+		super(type, domain, missingValue);
+		internalClear();
+	}
+
+	/**
+	 * Construct a segmented time series. The missing value object is
+	 * {@link Double#NaN} for type {@link Double} and null for all other types.
+	 *
+	 * @param type
+	 *            a non-null data type
+	 * @param domain
+	 *            a non-null time domain
+	 */
+	@SuppressWarnings("unchecked")
+	public SegmentedTimeSeries(Class<T> type, TimeDomain domain) {
+		this(type, domain, (T) (type == Double.class ? Double.NaN : null));
+	}
+
+	/**
+	 * Return the chunk of a numerical time index or null.
+	 */
+	private Chunk chunk(long index) {
+		long c = (index >>> CHUNK_BITS) - firstChunk;
+		return c < 0 || c >= chunks.length ? null : chunks[(int) c];
+	}
+
+	/**
+	 * Return the value at a numerical time index, which is the missing value
+	 * when there is no value.
+	 */
+	@SuppressWarnings("unchecked")
+	private T value(long index) {
+		Chunk chunk = chunk(index);
+		int pos = (int) (index & CHUNK_MASK);
+		return chunk != null && chunk.isValid(pos) ? (T) chunk.values[pos] : getMissingValue();
+	}
+
+	/**
+	 * Return the first numerical time index with a value at or after the
+	 * given index, or -1.
+	 */
+	private long nextValid(long index) {
+		if (start < 0 || index > end)
+			return -1;
+		if (index < start)
+			index = start;
+		long c = (index >>> CHUNK_BITS) - firstChunk;
+		int pos = (int) (index & CHUNK_MASK);
+		for (; c < chunks.length; c++, pos = 0) {
+			Chunk chunk = chunks[(int) c];
+			if (chunk != null) {
+				int p = chunk.nextValid(pos);
+				if (p >= 0)
+					return ((c + firstChunk) << CHUNK_BITS) + p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the last numerical time index with a value at or before the
+	 * given index, or -1.
+	 */
+	private long previousValid(long index) {
+		if (start < 0 || index < start)
+			return -1;
+		if (index > end)
+			index = end;
+		long c = (index >>> CHUNK_BITS) - firstChunk;
+		int pos = (int) (index & CHUNK_MASK);
+		for (; c >= 0; c--, pos = CHUNK_MASK) {
+			Chunk chunk = chunks[(int) c];
+			if (chunk != null) {
+				int p = chunk.previousValid(pos);
+				if (p >= 0)
+					return ((c + firstChunk) << CHUNK_BITS) + p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the chunk of a numerical time index, allocating it and extending
+	 * the directory if necessary.
+	 */
+	private Chunk makeChunk(long index) {
+		long number = index >>> CHUNK_BITS;
+		if (chunks.length == 0) {
+			chunks = new Chunk[4];
+			firstChunk = number;
+		} else if (number < firstChunk) {
+			int needed = (int) (firstChunk - number);
+			int length = Math.max(chunks.length * 2, chunks.length + needed);
+			Chunk[] directory = new Chunk[length];
+			System.arraycopy(chunks, 0, directory, length - chunks.length, chunks.length);
+			firstChunk -= length - chunks.length;
+			chunks = directory;
+		} else if (number - firstChunk >= chunks.length) {
+			int needed = (int) (number - firstChunk + 1);
+			chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, needed));
+		}
+		int c = (int) (number - firstChunk);
+		if (chunks[c] == null)
+			chunks[c] = new Chunk();
+		return chunks[c];
+	}
+
+	/**
+	 * Make the element at a numerical time index missing.
+	 */
+	private void clearValue(long index) {
+		Chunk chunk = chunk(index);
+		int pos = (int) (index & CHUNK_MASK);
+		if (chunk != null && chunk.isValid(pos)) {
+			chunk.valid[pos >>> 6] &= ~(1L << pos);
+			chunk.values[pos] = null;
+			count--;
+			if (--chunk.count == 0)
+				chunks[(int) ((index >>> CHUNK_BITS) - firstChunk)] = null;
+		}
+	}
+
+	@Override
+	public Iterator<Observation<T>> iterator() {
+		return new SegmentedIterator();
+	}
+
+	@Override
+	protected Cursor<T> internalCursor(long first, long last) {
+		return new SegmentedCursor(first, last);
+	}
+
+	@Override
+	PositionalAccess<T> positionalAccess() {
+		final long base = start;
+		return new PositionalAccess<T>(internalGetSize(), getMissingValue()) {
+			@Override
+			protected long index(int pos) {
+				return base + pos;
+			}
+			@Override
+			protected T value(int pos) {
+				return SegmentedTimeSeries.this.value(base + pos);
+			}
+		};
+	}
+
+	@Override
+	public TimeAddressable<T> get(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return makeEmptyCopy();
+		else
+			return get(range.getFirstIndex(), range.getLastIndex());
+	}
+
+	@Override
+	public TimeAddressable<T> get(long first, long last) throws T2Exception {
+		if (first > last) {
+			if (first == 0 && last == -1)
+				return makeEmptyCopy();
+			throw T2Msg.exception(K.T5016, getTimeDomain().time(first).toString(),
+					getTimeDomain().time(last).toString());
+		}
+		SegmentedTimeSeries<T> ts = new SegmentedTimeSeries<T>(getType(), getTimeDomain(), getMissingValue());
+		Cursor<T> cursor = internalCursor(first, last);
+		while (cursor.next()) {
+			ts.internalPut(cursor.index(), cursor.value());
+		}
+		return ts;
+	}
+
+	@Override
+	protected Observation<T> internalGetLast(long index) throws T2Exception {
+		long i = previousValid(index);
+		return i < 0 ? null : new Observation<T>(getTimeDomain(), i, value(i));
+	}
+
+	@Override
+	protected Observation<T> internalGetFirst(long index) throws T2Exception {
+		long i = nextValid(index);
+		return i < 0 ? null : new Observation<T>(getTimeDomain(), i, value(i));
+	}
+
+	@Override
+	public int getValueCount() {
+		return count;
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return true;
+	}
+
+	/**
+	 * Return the largest integer. Runs of missing values can have any length,
+	 * as long as the size of the range fits in a 32 bit integer.
+	 *
+	 * @return the largest integer
+	 */
+	@Override
+	public int getMaxGap() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public TimeIndexable<T> makeEmptyCopy() {
+		return new SegmentedTimeSeries<T>(getType(), getTimeDomain(), getMissingValue());
+	}
+
+	@Override
+	public TimeIndexable<T> asIndexable() throws T2Exception {
+		return this;
+	}
+
+	@Override
+	public TimeIndexable<T> view(Range range) throws T2Exception {
+		return (TimeIndexable<T>) super.view(range);
+	}
+
+	@Override
+	public TimeIndexable<T> copy() throws T2Exception {
+		TimeIndexable<T> ts = makeEmptyCopy();
+		ts.put(this, null);
+		return ts;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T[] array(int size) {
+		return (T[]) Array.newInstance(getType(), size);
+	}
+
+	@Override
+	public T[] getArray() {
+		if (start < 0)
+			return array(0);
+		T[] result = array(internalGetSize());
+		for (int i = 0; i < result.length; i++) {
+			result[i] = value(start + i);
+		}
+		return result;
+	}
+
+	@Override
+	public T[] getArray(Range range) throws T2Exception {
+		if (start < 0 || range.isEmpty())
+			return array(0);
+		long first = Math.max(range.getFirstIndex(), start);
+		long last = Math.min(range.getLastIndex(), end);
+		if (first > last)
+			return array(0);
+		T[] result = array((int) (last - first + 1));
+		for (int i = 0; i < result.length; i++) {
+			result[i] = value(first + i);
+		}
+		return result;
+	}
+
+	@Override
+	public int fill(T replacement, long tailLength) throws T2Exception {
+		if (replacement == null && getMissingValue() != null)
+			throw T2Msg.exception(K.T5015);
+		if (isMissing(replacement)) {
+			if (tailLength > 0)
+				throw T2Msg.exception(K.T5020);
+			return internalGetSize() - count;
+		}
+		int filled = 0;
+		for (long i = nextMissing(start); i >= 0; i = nextMissing(i + 1)) {
+			internalPut(i, replacement);
+			filled++;
+		}
+		if (start >= 0) {
+			for (long i = 0; i < tailLength; i++) {
+				internalPut(end + 1, replacement);
+			}
+			filled += tailLength;
+		}
+		return filled;
+	}
+
+	@Override
+	public int fill(long tailLength) {
+		if (start < 0)
+			return 0;
+		int filled = 0;
+		try {
+			for (long i = nextMissing(start); i >= 0; i = nextMissing(i + 1)) {
+				internalPut(i, value(i - 1));
+				filled++;
+			}
+			T replacement = value(end);
+			for (long i = 0; i < tailLength; i++) {
+				internalPut(end + 1, replacement);
+			}
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug", e);
+		}
+		return filled + (int) tailLength;
+	}
+
+	@Override
+	public int fill(Filler<T> filler) throws T2Exception {
+		int filled = 0;
+		for (long i = nextMissing(start); i >= 0; i = nextMissing(i + 1)) {
+			long next = nextValid(i);
+			// the hole is from i to next - 1, with values at both ends
+			T[] values = getArray(new Range(getTimeDomain(), i - 1, next));
+			try {
+				filler.fillHole(values, 0, values.length - 1);
+			} catch (Exception e) {
+				Range range = new Range(getTimeDomain(), i, next - 1);
+				throw T2Msg.exception(e, K.T5017, range.toString());
+			}
+			for (int j = 1; j < values.length - 1; j++) {
+				internalPut(i + j - 1, values[j]);
+			}
+			filled += values.length - 2;
+			i = next;
+		}
+		return filled;
+	}
+
+	/**
+	 * Return the first numerical time index in the range without value at or
+	 * after the given index, or -1.
+	 */
+	private long nextMissing(long index) {
+		if (start < 0)
+			return -1;
+		for (long i = Math.max(index, start); i <= end; i++) {
+			Chunk chunk = chunk(i);
+			if (chunk == null)
+				return i;
+			int pos = (int) (i & CHUNK_MASK);
+			if (!chunk.isValid(pos))
+				return i;
+			if (chunk.count == CHUNK_SIZE)
+				i |= CHUNK_MASK; // skip the full chunk
+		}
+		return -1;
+	}
+
+	@Override
+	protected void internalClear() {
+		chunks = EMPTY;
+		firstChunk = 0;
+		start = -1;
+		end = -1;
+		count = 0;
+	}
+
+	@Override
+	protected T internalGet(long index) throws T2Exception {
+		if (start < 0 || index < start || index > end)
+			return getMissingValue();
+		return value(index);
+	}
+
+	@Override
+	protected Collection<T> internalGetData() {
+		final long base = start;
+		final int size = internalGetSize();
+		return new AbstractList<T>() {
+			@Override
+			public T get(int index) {
+				return value(base + index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	protected long internalGetFirstIndex() {
+		return start;
+	}
+
+	@Override
+	protected long internalGetLastIndex() {
+		return end;
+	}
+
+	@Override
+	protected int internalGetSize() {
+		return start < 0 ? 0 : (int) (end - start + 1);
+	}
+
+	@Override
+	protected void internalPut(long index, T value) throws T2Exception {
+		if (index < 0)
+			throw new IllegalArgumentException("index < 0");
+		value = normalizeMissingValue(value);
+		if (isMissing(value)) {
+			// do not add missing values out of range
+			if (start < 0 || index < start || index > end)
+				return;
+			clearValue(index);
+			// adding a missing value at the boundary reduces the range
+			if (index == start || index == end) {
+				long first = nextValid(start);
+				if (first < 0)
+					internalClear();
+				else {
+					start = first;
+					end = previousValid(end);
+				}
+			}
+			return;
+		}
+		if (start >= 0 && (index < start || index > end)) {
+			long first = Math.min(start, index);
+			long last = Math.max(end, index);
+			if (last - first >= Integer.MAX_VALUE)
+				throw T2Msg.exception(K.T5008, getTimeDomain().time(first).toString(), getTimeDomain().time(last).toString());
+		}
+		Chunk chunk = makeChunk(index);
+		int pos = (int) (index & CHUNK_MASK);
+		if (!chunk.isValid(pos)) {
+			chunk.valid[pos >>> 6] |= 1L << pos;
+			chunk.count++;
+			count++;
+		}
+		chunk.values[pos] = value;
+		if (start < 0) {
+			start = index;
+			end = index;
+		} else if (index < start)
+			start = index;
+		else if (index > end)
+			end = index;
+	}
+
+	@Override
+	protected void internalRemove(long index) throws T2Exception {
+		internalPut(index, getMissingValue());
+	}
+
+	@Override
+	protected void internalSetBounds(long first, long last) throws T2Exception {
+		for (long i = nextValid(start); i >= 0 && i < first; i = nextValid(i + 1)) {
+			clearValue(i);
+		}
+		for (long i = previousValid(end); i > last; i = previousValid(i - 1)) {
+			clearValue(i);
+		}
+		long newFirst = nextValid(first);
+		if (newFirst < 0 || newFirst > last)
+			internalClear();
+		else {
+			start = newFirst;
+			end = previousValid(last);
+		}
+	}
+
+}
@@ -0,0 +1,537 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * SortedChunkStore maps non-negative numerical time indexes to values. Keys
+ * and values are kept in parallel arrays sorted by key. To keep insertions
+ * in the middle cheap, the arrays are split into chunks of limited size. A
+ * chunk is split in two when an insertion finds it full, but a chunk
+ * receiving values at the end of the store is simply left full and a new
+ * chunk is started. Searching is done by binary search, first on chunks,
+ * then within a chunk.
+ * <p>
+ * Compared to a {@link java.util.TreeMap}, there is no boxed key and no
+ * tree entry per value, and iteration accesses memory sequentially.
+ * <p>
+ * This implementation provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+class SortedChunkStore<T> {
+
+	/**
+	 * The maximum number of keys in a chunk.
+	 */
+	static final int CHUNK_SIZE = 4096;
+	private static final int MIN_CAPACITY = 8;
+
+	/**
+	 * A Chunk is a sorted segment of keys and values.
+	 */
+	private static class Chunk {
+		private long[] keys;
+		private Object[] values;
+		private int size;
+
+		private Chunk(int capacity) {
+			keys = new long[capacity];
+			values = new Object[capacity];
+		}
+
+		private long first() {
+			return keys[0];
+		}
+
+		private long last() {
+			return keys[size - 1];
+		}
+
+		/**
+		 * Return the position of a key or, if not found, (-(insertion point) - 1).
+		 */
+		private int search(long key) {
+			return Arrays.binarySearch(keys, 0, size, key);
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > keys.length) {
+				int newCapacity = Math.min(CHUNK_SIZE, Math.max(capacity, keys.length * 2));
+				keys = Arrays.copyOf(keys, newCapacity);
+				values = Arrays.copyOf(values, newCapacity);
+			}
+		}
+
+		private void insert(int pos, long key, Object value) {
+			ensureCapacity(size + 1);
+			System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+			System.arraycopy(values, pos, values, pos + 1, size - pos);
+			keys[pos] = key;
+			values[pos] = value;
+			size++;
+		}
+
+		private void delete(int from, int to) {
+			System.arraycopy(keys, to, keys, from, size - to);
+			System.arraycopy(values, to, values, from, size - to);
+			Arrays.fill(values, size - (to - from), size, null);
+			size -= to - from;
+		}
+
+		/**
+		 * Move the upper half of this chunk into a new chunk and return it.
+		 */
+		private Chunk split() {
+			int half = size / 2;
+			Chunk upper = new Chunk(CHUNK_SIZE);
+			upper.size = size - half;
+			System.arraycopy(keys, half, upper.keys, 0, upper.size);
+			System.arraycopy(values, half, upper.values, 0, upper.size);
+			Arrays.fill(values, half, size, null);
+			size = half;
+			return upper;
+		}
+	}
+
+	private final List<Chunk> chunks;
+	private int size;
+
+	/**
+	 * Construct an empty store.
+	 */
+	public SortedChunkStore() {
+		chunks = new ArrayList<Chunk>();
+	}
+
+	/**
+	 * Construct a store with the entries of another store with keys in a
+	 * range.
+	 *
+	 * @param store a non-null store
+	 * @param first the smallest key to copy
+	 * @param last the largest key to copy
+	 */
+	public SortedChunkStore(SortedChunkStore<T> store, long first, long last) {
+		this();
+		if (first <= last) {
+			for (Chunk c : store.chunks) {
+				if (c.last() < first)
+					continue;
+				if (c.first() > last)
+					break;
+				int from = c.first() >= first ? 0 : insertionPoint(c.search(first));
+				int to = c.last() <= last ? c.size : insertionPoint(c.search(last + 1));
+				if (from < to) {
+					Chunk copy = new Chunk(Math.max(to - from, MIN_CAPACITY));
+					System.arraycopy(c.keys, from, copy.keys, 0, to - from);
+					System.arraycopy(c.values, from, copy.values, 0, to - from);
+					copy.size = to - from;
+					chunks.add(copy);
+					size += copy.size;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the smallest key or -1 if the store is empty.
+	 *
+	 * @return the smallest key or -1
+	 */
+	public long firstKey() {
+		return size == 0 ? -1 : chunks.get(0).first();
+	}
+
+	/**
+	 * Return the largest key or -1 if the store is empty.
+	 *
+	 * @return the largest key or -1
+	 */
+	public long lastKey() {
+		return size == 0 ? -1 : chunks.get(chunks.size() - 1).last();
+	}
+
+	/**
+	 * Return the value for a key or null if there is no such key.
+	 *
+	 * @param key a key
+	 * @return a value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(long key) {
+		int ci = chunkFor(key);
+		if (ci < 0)
+			return null;
+		Chunk c = chunks.get(ci);
+		int pos = c.search(key);
+		return pos < 0 ? null : (T) c.values[pos];
+	}
+
+	/**
+	 * Return the largest key smaller than or equal to the given key, or -1 if
+	 * there is no such key.
+	 *
+	 * @param key a key
+	 * @return a key or -1
+	 */
+	public long floorKey(long key) {
+		int ci = chunkFor(key);
+		if (ci < 0)
+			return -1;
+		Chunk c = chunks.get(ci);
+		int pos = c.search(key);
+		return pos >= 0 ? key : c.keys[insertionPoint(pos) - 1];
+	}
+
+	/**
+	 * Return the smallest key larger than or equal to the given key, or -1 if
+	 * there is no such key.
+	 *
+	 * @param key a key
+	 * @return a key or -1
+	 */
+	public long ceilingKey(long key) {
+		if (size == 0 || key > lastKey())
+			return -1;
+		int ci = chunkFor(key);
+		if (ci < 0)
+			return firstKey();
+		Chunk c = chunks.get(ci);
+		int pos = c.search(key);
+		if (pos >= 0)
+			return key;
+		pos = insertionPoint(pos);
+		return pos < c.size ? c.keys[pos] : chunks.get(ci + 1).first();
+	}
+
+	/**
+	 * Put a value for a key, replacing any existing value.
+	 *
+	 * @param key a non-negative key
+	 * @param value a value
+	 */
+	public void put(long key, T value) {
+		int last = chunks.size() - 1;
+		if (last < 0 || key > chunks.get(last).last()) {
+			// fast path: append
+			Chunk c = last < 0 ? null : chunks.get(last);
+			if (c == null || c.size == CHUNK_SIZE) {
+				c = new Chunk(MIN_CAPACITY);
+				chunks.add(c);
+			}
+			c.ensureCapacity(c.size + 1);
+			c.keys[c.size] = key;
+			c.values[c.size] = value;
+			c.size++;
+			size++;
+			return;
+		}
+		int ci = chunkFor(key);
+		if (ci < 0)
+			ci = 0;
+		Chunk c = chunks.get(ci);
+		int pos = c.search(key);
+		if (pos >= 0) {
+			c.values[pos] = value;
+			return;
+		}
+		pos = insertionPoint(pos);
+		if (c.size == CHUNK_SIZE) {
+			Chunk upper = c.split();
+			chunks.add(ci + 1, upper);
+			if (pos > c.size) {
+				pos -= c.size;
+				c = upper;
+			}
+		}
+		c.insert(pos, key, value);
+		size++;
+	}
+
+	/**
+	 * Remove the entry for a key if it exists.
+	 *
+	 * @param key a key
+	 */
+	public void remove(long key) {
+		int ci = chunkFor(key);
+		if (ci < 0)
+			return;
+		Chunk c = chunks.get(ci);
+		int pos = c.search(key);
+		if (pos >= 0) {
+			c.delete(pos, pos + 1);
+			size--;
+			if (c.size == 0)
+				chunks.remove(ci);
+		}
+	}
+
+	/**
+	 * Remove all entries with keys outside a range.
+	 *
+	 * @param first the smallest key to keep
+	 * @param last the largest key to keep
+	 */
+	public void retain(long first, long last) {
+		Iterator<Chunk> it = chunks.iterator();
+		while (it.hasNext()) {
+			Chunk c = it.next();
+			int before = c.size;
+			if (first > last || c.last() < first || c.first() > last)
+				c.size = 0;
+			else {
+				if (c.last() > last)
+					c.delete(insertionPoint(c.search(last + 1)), c.size);
+				if (c.first() < first)
+					c.delete(0, insertionPoint(c.search(first)));
+			}
+			size -= before - c.size;
+			if (c.size == 0)
+				it.remove();
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		chunks.clear();
+		size = 0;
+	}
+
+	/**
+	 * Return a read-only collection view of the values in key order.
+	 *
+	 * @return a collection of values
+	 */
+	public AbstractCollection<T> values() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				final EntryIterator it = new EntryIterator();
+				return new Iterator<T>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+					@Override
+					public T next() {
+						it.next();
+						return it.value();
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * EntryIterator iterates over entries in key order without allocating
+	 * objects. After {@link #next()}, the current entry is available with
+	 * {@link #key()} and {@link #value()}.
+	 */
+	class EntryIterator {
+		private int chunk;
+		private int pos;
+		private Chunk current; // null when there is no current chunk
+
+		/**
+		 * Construct an iterator over all entries.
+		 */
+		public EntryIterator() {
+			this.chunk = 0;
+			this.pos = -1;
+			this.current = chunks.isEmpty() ? null : chunks.get(0);
+		}
+
+		/**
+		 * Construct an iterator over the entries with a key larger than or
+		 * equal to the given key.
+		 *
+		 * @param first the smallest key
+		 */
+		public EntryIterator(long first) {
+			this();
+			int ci = chunkFor(first);
+			if (ci >= 0) {
+				chunk = ci;
+				current = chunks.get(ci);
+				pos = insertionPoint(current.search(first)) - 1;
+			}
+		}
+
+		/**
+		 * Return true if there is a next entry.
+		 *
+		 * @return true if there is a next entry
+		 */
+		public boolean hasNext() {
+			return current != null && (pos + 1 < current.size || chunk + 1 < chunks.size());
+		}
+
+		/**
+		 * Advance to the next entry.
+		 */
+		public void next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (++pos == current.size) {
+				current = chunks.get(++chunk);
+				pos = 0;
+			}
+		}
+
+		/**
+		 * Return the key of the current entry.
+		 *
+		 * @return a key
+		 */
+		public long key() {
+			return current.keys[pos];
+		}
+
+		/**
+		 * Return the value of the current entry.
+		 *
+		 * @return a value
+		 */
+		@SuppressWarnings("unchecked")
+		public T value() {
+			return (T) current.values[pos];
+		}
+	}
+
+	/**
+	 * Return an access to the entries by position in key order.
+	 *
+	 * @param missingValue the object representing missing values
+	 * @return an access by position
+	 */
+	public PositionalAccess<T> positionalAccess(T missingValue) {
+		int[] starts = new int[chunks.size() + 1];
+		for (int i = 0; i < chunks.size(); i++) {
+			starts[i + 1] = starts[i] + chunks.get(i).size;
+		}
+		return new ChunkAccess(starts, missingValue);
+	}
+
+	/**
+	 * ChunkAccess finds the chunk of a position by binary search on the
+	 * positions where chunks start and remembers it for the next position.
+	 */
+	private class ChunkAccess extends PositionalAccess<T> {
+		private final int[] starts;
+		private final T missingValue;
+		private Chunk current;
+		private int first; // position of the first entry of the current chunk
+		private int end; // position after the last entry of the current chunk
+
+		private ChunkAccess(int[] starts, T missingValue) {
+			super(starts[starts.length - 1], missingValue);
+			this.starts = starts;
+			this.missingValue = missingValue;
+		}
+
+		/**
+		 * Make the chunk with a position current and return the position
+		 * within the chunk.
+		 */
+		private int locate(int pos) {
+			if (current == null || pos < first || pos >= end) {
+				int lo = 0;
+				int hi = starts.length - 2;
+				while (lo < hi) {
+					int mid = (lo + hi + 1) >>> 1;
+					if (starts[mid] <= pos)
+						lo = mid;
+					else
+						hi = mid - 1;
+				}
+				current = chunks.get(lo);
+				first = starts[lo];
+				end = starts[lo + 1];
+			}
+			return pos - first;
+		}
+
+		@Override
+		protected long index(int pos) {
+			int i = locate(pos);
+			return current.keys[i];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected T value(int pos) {
+			int i = locate(pos);
+			return (T) current.values[i];
+		}
+
+		@Override
+		protected PositionalAccess<T> copy() {
+			return new ChunkAccess(starts, missingValue);
+		}
+	}
+
+	/**
+	 * Return the position of the last chunk with a first key smaller than or
+	 * equal to the given key, or -1 if there is no such chunk.
+	 */
+	private int chunkFor(long key) {
+		int lo = 0;
+		int hi = chunks.size() - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (chunks.get(mid).first() <= key)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		return hi;
+	}
+
+	private static int insertionPoint(int searchResult) {
+		return searchResult >= 0 ? searchResult : -searchResult - 1;
+	}
+
+}
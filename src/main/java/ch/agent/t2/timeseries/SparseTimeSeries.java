@@ -18,8 +18,6 @@ package ch.agent.t2.timeseries;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import ch.agent.t2.T2Exception;
 import ch.agent.t2.time.Range;
@@ -30,6 +28,10 @@ import ch.agent.t2.time.TimeDomain;
  * stored in a sparse time series, but nulls can be stored, unless they are used
  * for representing missing values.
  * <p>
+ * Values are kept in arrays sorted by time index. Adding values in
+ * chronological order is the most efficient, but values can be added in any
+ * order.
+ * <p>
  * This implementation provides no synchronization.
  * 
  * @author Jean-Paul Vetterli
@@ -43,26 +45,26 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 	 */
 	public class IrregularTimeSeriesIterator implements Iterator<Observation<T>> {
 
-		private Iterator<Long> keysIt;
+		private SortedChunkStore<T>.EntryIterator entries;
 		private TimeDomain domain;
 		
 		/**
 		 * Construct a IrregularTimeSeriesIterator.
 		 */
 		public IrregularTimeSeriesIterator() {
-			keysIt = data.keySet().iterator();
+			entries = data.new EntryIterator();
 			domain = getTimeDomain();
 		}
 
 		@Override
 		public boolean hasNext() {
-			return keysIt.hasNext();
+			return entries.hasNext();
 		}
 
 		@Override
 		public Observation<T> next() {
-			Long k = keysIt.next();
-			Observation<T> obs = new Observation<T>(domain, k, data.get(k));
+			entries.next();
+			Observation<T> obs = new Observation<T>(domain, entries.key(), entries.value());
 			return obs;
 		}
 
@@ -72,7 +74,44 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 		}
 	}
 	
-	private SortedMap<Long,T> data;
+	/**
+	 * SparseCursor is a {@link Cursor} over a range of the time series.
+	 */
+	private class SparseCursor implements Cursor<T> {
+
+		private final SortedChunkStore<T>.EntryIterator entries;
+		private final long last;
+		private boolean done;
+
+		private SparseCursor(long first, long last) {
+			this.entries = data.new EntryIterator(first);
+			this.last = last;
+			this.done = first > last;
+		}
+
+		@Override
+		public boolean next() {
+			if (!done && entries.hasNext()) {
+				entries.next();
+				if (entries.key() <= last)
+					return true;
+			}
+			done = true;
+			return false;
+		}
+
+		@Override
+		public long index() {
+			return entries.key();
+		}
+
+		@Override
+		public T value() {
+			return entries.value();
+		}
+	}
+
+	private SortedChunkStore<T> data;
 	
 	/**
 	 * Construct a sparse time series with the given type, time domain and missing
@@ -87,7 +126,7 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 	 */
 	public SparseTimeSeries(Class<T> type, TimeDomain domain, T missingValue) {
 		super(type, domain, missingValue);
-		data = new TreeMap<Long,T>();
+		data = new SortedChunkStore<T>();
 	}
 	
 	/**
@@ -114,12 +153,7 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 	 */
 	private SparseTimeSeries(SparseTimeSeries<T> ts, long first, long last) {
 		super(ts.getType(), ts.getTimeDomain(), ts.getMissingValue());
-		// reallocate to avoid submap problems when inserting out of range
-		// take care of wrap around, last = Long#MAX_VALUE is used to indicate open range
-		if (last + 1 < last)
-			this.data =  new TreeMap<Long, T>(ts.data.tailMap(first));
-		else
-			this.data =  new TreeMap<Long, T>(ts.data.subMap(first, last + 1));
+		this.data = new SortedChunkStore<T>(ts.data, first, last);
 	}
 	
 	@Override
@@ -127,6 +161,16 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 		return new IrregularTimeSeriesIterator();
 	}
 	
+	@Override
+	protected Cursor<T> internalCursor(long first, long last) {
+		return new SparseCursor(first, last);
+	}
+
+	@Override
+	PositionalAccess<T> positionalAccess() {
+		return data.positionalAccess(getMissingValue());
+	}
+
 	@Override
 	public TimeAddressable<T> makeEmptyCopy() {
 		return new SparseTimeSeries<T>(getType(), getTimeDomain(), getMissingValue());
@@ -157,37 +201,20 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 
 	@Override
 	protected Observation<T> internalGetLast(long index) throws T2Exception {
-		if (data.isEmpty() || data.firstKey() > index)
+		long last = data.floorKey(index);
+		if (last < 0)
 			return null;
-		// headMap does not include the high point in the result
-		Long upperBound = index + 1;
-		// CAUTION: if data is already a submap, the key must lie within, else exception
-		if (upperBound > data.lastKey())
-			upperBound = data.lastKey() + 1;
-		SortedMap<Long, T> subMap = data.headMap(upperBound);
-		if (subMap.size() == 0)
-			return null;
-		else {
-			Long last = subMap.lastKey();
-			return new Observation<T>(getTimeDomain(), last, subMap.get(last));
-		}
+		else
+			return new Observation<T>(getTimeDomain(), last, data.get(last));
 	}
 	
 	@Override
 	protected Observation<T> internalGetFirst(long index) throws T2Exception {
-		if (data.isEmpty() || data.lastKey() < index)
-			return null;
-		Long lowerBound = index;
-		// Caution: if data is already a submap, the key must lie within
-		if (lowerBound < data.firstKey())
-			lowerBound = data.firstKey();
-		SortedMap<Long, T> subMap = data.tailMap(lowerBound);
-		if (subMap.size() == 0)
+		long first = data.ceilingKey(index);
+		if (first < 0)
 			return null;
-		else {
-			Long last = subMap.firstKey();
-			return new Observation<T>(getTimeDomain(), last, subMap.get(last));
-		}
+		else
+			return new Observation<T>(getTimeDomain(), first, data.get(first));
 	}
 
 	@Override
@@ -221,18 +248,12 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 
 	@Override
 	protected long internalGetFirstIndex() {
-		if (data.size() == 0)
-			return -1;
-		else
-			return data.firstKey();
+		return data.firstKey();
 	}
 
 	@Override
 	protected long internalGetLastIndex() {
-		if (data.size() == 0)
-			return -1;
-		else
-			return data.lastKey();
+		return data.lastKey();
 	}
 	@Override
 	protected int internalGetSize() {
@@ -257,7 +278,6 @@ public class SparseTimeSeries<T> extends AbstractTimeSeries<T> implements TimeAd
 
 	@Override
 	protected void internalSetBounds(long first, long last) throws T2Exception {
-		// reallocate to avoid submap problems when inserting out of range
-		data = new TreeMap<Long, T>(data.subMap(first, last + 1));
+		data.retain(first, last);
 	}
 }
@@ -17,6 +17,12 @@
 package ch.agent.t2.timeseries;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import ch.agent.t2.T2Exception;
 import ch.agent.t2.time.Range;
@@ -43,7 +49,93 @@ public interface TimeAddressable<T> extends Iterable<Observation<T>> {
 	 * @return an iterator over the time series
 	 */
 	Iterator<Observation<T>> iterator();
-	
+
+	/**
+	 * Return a cursor over the values in the time series ordered by
+	 * increasing time index. Unlike some iterators, the cursor skips
+	 * missing values. Implementations are expected to avoid allocating an
+	 * object per value. The default implementation is based on the
+	 * iterator.
+	 *
+	 * @return a cursor over the time series
+	 */
+	default Cursor<T> cursor() {
+		return new IteratorCursor<T>(this, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Return a cursor over the values in the given range of the time series.
+	 * The default implementation is based on the iterator.
+	 *
+	 * @param range a non-null range
+	 * @return a cursor over the range
+	 * @throws T2Exception
+	 */
+	default Cursor<T> cursor(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return new IteratorCursor<T>(this, 0, -1);
+		else
+			return new IteratorCursor<T>(this, range.getFirstIndex(), range.getLastIndex());
+	}
+
+	/**
+	 * Return a spliterator over the {@link Observation}s in the time series.
+	 * The spliterator returns the same elements as the iterator. It is
+	 * {@link Spliterator#SIZED} and {@link Spliterator#ORDERED}. The default
+	 * implementation is based on the iterator and splits poorly; the
+	 * implementations of this package split by ranges of time indexes.
+	 * 
+	 * @return a spliterator over the time series
+	 */
+	@Override
+	default Spliterator<Observation<T>> spliterator() {
+		return Spliterators.spliterator(iterator(), getSize(), Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+
+	/**
+	 * Return a sequential stream of the {@link Observation}s in the time
+	 * series, with the same elements as the iterator.
+	 * 
+	 * @return a stream over the time series
+	 */
+	default Stream<Observation<T>> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Return a parallel stream of the {@link Observation}s in the time
+	 * series, with the same elements as the iterator.
+	 * 
+	 * @return a parallel stream over the time series
+	 */
+	default Stream<Observation<T>> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * Return a sequential stream of the numerical time indexes of the
+	 * elements returned by the iterator. Use {@link LongStream#parallel()}
+	 * for a parallel stream.
+	 * 
+	 * @return a stream of numerical time indexes
+	 */
+	default LongStream indexStream() {
+		return stream().mapToLong(o -> o.getIndex());
+	}
+
+	/**
+	 * Return a sequential stream of the values of the elements returned by
+	 * the iterator, as primitives. Missing values are represented by NaN.
+	 * The value type must be a {@link Number}. Use
+	 * {@link DoubleStream#parallel()} for a parallel stream.
+	 * 
+	 * @return a stream of values
+	 */
+	default DoubleStream doubleStream() {
+		return stream().mapToDouble(o -> isMissing(o.getValue()) || o.getValue() == null ? Double.NaN : ((Number) o.getValue()).doubleValue());
+	}
+
 	/**
 	 * Return true if the time series implements {@link TimeIndexable}.
 	 * 
@@ -116,7 +208,8 @@ public interface TimeAddressable<T> extends Iterable<Observation<T>> {
 	/**
 	 * Return a new time series corresponding to the range between two numerical time indexes.
 	 * The result is never null. When there is no data corresponding to the 
-	 * arguments, an empty time series is returned.
+	 * arguments, an empty time series is returned. Values are copied; see
+	 * {@link #view(Range)} for a view without copy.
 	 *  
 	 * @param first a numerical time index giving the lower bound of the wanted range
 	 * @param last a numerical time index giving the upper bound of the wanted range
@@ -128,7 +221,8 @@ public interface TimeAddressable<T> extends Iterable<Observation<T>> {
 	/**
 	 * Return a time series constructed from the given range of this series.
 	 * The result is never null. When there is no data corresponding to the 
-	 * arguments, an empty time series is returned.
+	 * arguments, an empty time series is returned. Values are copied; see
+	 * {@link #view(Range)} for a view without copy.
 	 *  
 	 * @param range a non-null range
 	 * @return a time series
@@ -136,6 +230,27 @@ public interface TimeAddressable<T> extends Iterable<Observation<T>> {
 	 */
 	TimeAddressable<T> get(Range range) throws T2Exception;
 	
+	/**
+	 * Return a read-only view of the given range of the time series. Unlike
+	 * {@link #get(Range)}, which copies values, the view shares the values of
+	 * the time series. It reflects later modifications of the time series:
+	 * its range is always the range of the values of the time series within
+	 * the given range. The view is indexable when the time series is.
+	 * Modifying a view throws an {@link UnsupportedOperationException}; use
+	 * {@link #copy()} on the view to get a detached time series.
+	 * <p>
+	 * The default implementation returns a view relying only on the
+	 * public methods of the time series. {@link AbstractTimeSeries}
+	 * overrides it with a view accessing the values directly.
+	 * 
+	 * @param range a non-null range
+	 * @return a view of the time series
+	 * @throws T2Exception
+	 */
+	default TimeAddressable<T> view(Range range) throws T2Exception {
+		return TimeSeriesView.of(this, range);
+	}
+	
 	/**
 	 * Put a value identified by a time index into the time series. The value
 	 * can only be null when null was defined to represent missing values.
@@ -112,6 +112,21 @@ public interface TimeIndexable<T> extends TimeAddressable<T> {
 	 */
 	int fill(Filler<T> filler) throws T2Exception;
 	
+	/**
+	 * Return a read-only view of the given range of the time series. The
+	 * default implementation returns an indexable view relying only on
+	 * the public methods of the time series.
+	 * 
+	 * @param range a non-null range
+	 * @return a view of the time series
+	 * @throws T2Exception
+	 * @see TimeAddressable#view(Range)
+	 */
+	@Override
+	default TimeIndexable<T> view(Range range) throws T2Exception {
+		return (TimeIndexable<T>) TimeSeriesView.of(this, range);
+	}
+
 	@Override
 	TimeIndexable<T> copy() throws T2Exception;
 
@@ -0,0 +1,320 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Range;
+
+/**
+ * A TimeSeriesView is a read-only view of a range of another time series,
+ * its parent. The view shares the values of the parent and copies nothing.
+ * When the parent is an {@link AbstractTimeSeries} the view accesses its
+ * values directly, else it relies only on the public methods of the parent.
+ * It reflects modifications of the parent: its range is always the range of
+ * the values of the parent within the bounds of the view, which start and
+ * end with values which are not missing. Modifying a view throws an
+ * {@link UnsupportedOperationException}.
+ * <p>
+ * The size of a view of a series which is not indexable is the number of
+ * values which are not missing.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+class TimeSeriesView<T> extends AbstractTimeSeries<T> {
+
+	/**
+	 * ViewIterator is an {@link Iterator} over the values of the view.
+	 */
+	private class ViewIterator implements Iterator<Observation<T>> {
+		private final Cursor<T> cursor;
+		private boolean ready;
+		private boolean more;
+
+		private ViewIterator() {
+			cursor = internalCursor(0, Long.MAX_VALUE);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!ready) {
+				more = cursor.next();
+				ready = true;
+			}
+			return more;
+		}
+
+		@Override
+		public Observation<T> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			ready = false;
+			return new Observation<T>(getTimeDomain(), cursor.index(), cursor.value());
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	protected final TimeAddressable<T> parent;
+	protected final long lo;
+	protected final long hi;
+	/**
+	 * The parent when it is an {@link AbstractTimeSeries}, else null.
+	 */
+	protected final AbstractTimeSeries<T> internal;
+
+	/**
+	 * Construct a view of the parent between two numerical time indexes. The
+	 * view is empty when the first bound is larger than the last.
+	 *
+	 * @param parent
+	 *            a non-null time series
+	 * @param lo
+	 *            a numerical time index giving the lower bound of the view
+	 * @param hi
+	 *            a numerical time index giving the upper bound of the view
+	 */
+	TimeSeriesView(TimeAddressable<T> parent, long lo, long hi) {
+		super(parent.getType(), parent.getTimeDomain(), parent.getMissingValue());
+		this.parent = parent;
+		this.lo = lo;
+		this.hi = hi;
+		this.internal = parent instanceof AbstractTimeSeries ? (AbstractTimeSeries<T>) parent : null;
+	}
+
+	/**
+	 * Return a view of the parent between two numerical time indexes. The
+	 * view is {@link TimeIndexable} when the parent is. The view is empty
+	 * when the first bound is larger than the last.
+	 * 
+	 * @param parent
+	 *            a non-null time series
+	 * @param lo
+	 *            a numerical time index giving the lower bound of the view
+	 * @param hi
+	 *            a numerical time index giving the upper bound of the view
+	 * @return a view
+	 */
+	static <T> TimeAddressable<T> of(TimeAddressable<T> parent, long lo, long hi) {
+		if (parent instanceof TimeIndexable)
+			return new IndexableTimeSeriesView<T>((TimeIndexable<T>) parent, lo, hi);
+		else
+			return new TimeSeriesView<T>(parent, lo, hi);
+	}
+
+	/**
+	 * Return a view of the parent over a range.
+	 * 
+	 * @param parent
+	 *            a non-null time series
+	 * @param range
+	 *            a non-null range in the time domain of the parent
+	 * @return a view
+	 * @throws T2Exception
+	 */
+	static <T> TimeAddressable<T> of(TimeAddressable<T> parent, Range range) throws T2Exception {
+		parent.getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return of(parent, 0, -1);
+		else
+			return of(parent, range.getFirstIndex(), range.getLastIndex());
+	}
+
+	@Override
+	public boolean isMissing(T value) {
+		return parent.isMissing(value);
+	}
+
+	@Override
+	TimeAddressable<T> internalView(long first, long last) {
+		first = Math.max(first, lo);
+		last = Math.min(last, hi);
+		return internal == null ? of(parent, first, last) : internal.internalView(first, last);
+	}
+
+	@Override
+	public Iterator<Observation<T>> iterator() {
+		return new ViewIterator();
+	}
+
+	@Override
+	protected Cursor<T> internalCursor(long first, long last) {
+		first = Math.max(first, lo);
+		last = Math.min(last, hi);
+		if (internal != null)
+			return internal.internalCursor(first, last);
+		try {
+			return parent.cursor(new Range(getTimeDomain(), first, last));
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug", e);
+		}
+	}
+
+	@Override
+	public TimeAddressable<T> get(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return makeEmptyCopy();
+		else
+			return get(range.getFirstIndex(), range.getLastIndex());
+	}
+
+	@Override
+	public TimeAddressable<T> get(long first, long last) throws T2Exception {
+		if (first > last) {
+			if (first == 0 && last == -1)
+				return makeEmptyCopy();
+			throw T2Msg.exception(K.T5016, getTimeDomain().time(first).toString(),
+					getTimeDomain().time(last).toString());
+		}
+		first = Math.max(first, lo);
+		last = Math.min(last, hi);
+		return first > last ? makeEmptyCopy() : parent.get(first, last);
+	}
+
+	/**
+	 * Return a time series with a copy of the values of the view. The result
+	 * is detached from the parent.
+	 *
+	 * @return a time series
+	 * @throws T2Exception
+	 */
+	@Override
+	public TimeAddressable<T> copy() throws T2Exception {
+		return get(lo, hi);
+	}
+
+	@Override
+	public TimeAddressable<T> makeEmptyCopy() {
+		return parent.makeEmptyCopy();
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return false;
+	}
+
+	@Override
+	public TimeIndexable<T> asIndexable() throws T2Exception {
+		return copy().asIndexable();
+	}
+
+	@Override
+	protected Observation<T> internalGetFirst(long index) throws T2Exception {
+		index = Math.max(index, lo);
+		if (index > hi || parent.getFirstIndex() < 0)
+			return null;
+		Observation<T> obs = internal == null ? 
+				parent.getFirst(getTimeDomain().time(index)) : internal.internalGetFirst(index);
+		return obs == null || obs.getIndex() > hi ? null : obs;
+	}
+
+	@Override
+	protected Observation<T> internalGetLast(long index) throws T2Exception {
+		index = Math.min(index, hi);
+		if (index < lo || parent.getFirstIndex() < 0)
+			return null;
+		Observation<T> obs = internal == null ? 
+				parent.getLast(getTimeDomain().time(index)) : internal.internalGetLast(index);
+		return obs == null || obs.getIndex() < lo ? null : obs;
+	}
+
+	@Override
+	protected long internalGetFirstIndex() {
+		try {
+			Observation<T> obs = internalGetFirst(lo);
+			return obs == null ? -1 : obs.getIndex();
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug", e);
+		}
+	}
+
+	@Override
+	protected long internalGetLastIndex() {
+		try {
+			Observation<T> obs = internalGetLast(hi);
+			return obs == null ? -1 : obs.getIndex();
+		} catch (T2Exception e) {
+			throw new RuntimeException("bug", e);
+		}
+	}
+
+	@Override
+	protected int internalGetSize() {
+		return getValueCount();
+	}
+
+	@Override
+	public int getValueCount() {
+		Cursor<T> cursor = internalCursor(0, Long.MAX_VALUE);
+		int count = 0;
+		while (cursor.next()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	protected T internalGet(long index) throws T2Exception {
+		if (index < lo || index > hi)
+			return getMissingValue();
+		return internal == null ? parent.get(index) : internal.internalGet(index);
+	}
+
+	@Override
+	protected Collection<T> internalGetData() {
+		List<T> values = new ArrayList<T>();
+		Cursor<T> cursor = internalCursor(0, Long.MAX_VALUE);
+		while (cursor.next()) {
+			values.add(cursor.value());
+		}
+		return values;
+	}
+
+	@Override
+	protected void internalClear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalPut(long index, T value) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalRemove(long index) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalSetBounds(long first, long last) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * ValidityBitmap keeps one bit per element of a regular time series, set
+ * when the element has a value and clear when the value is missing. Bits
+ * are packed into words of 64 bits. Counting values is a population count
+ * per word and finding the next or previous value skips gaps 64 elements at
+ * a time.
+ * <p>
+ * Like the series, the bitmap can grow and shrink at both ends. Positions
+ * are relative to the first element. Free space is kept on both sides of
+ * the bits in use, and bits outside the positions in use are always clear.
+ * <p>
+ * This implementation provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+class ValidityBitmap {
+
+	private static final long[] EMPTY = new long[0];
+	// enough words for the positions of the largest DequeList, with free space
+	private static final int MAX_WORDS = (Integer.MAX_VALUE - 8) / 64 + 4;
+
+	private long[] words;
+	private long origin; // bit number of position 0
+	private int length; // number of positions
+
+	/**
+	 * Construct an empty bitmap.
+	 */
+	public ValidityBitmap() {
+		words = EMPTY;
+	}
+
+	/**
+	 * Return the number of positions.
+	 *
+	 * @return the number of positions
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Return true if the bit at a position is set.
+	 *
+	 * @param pos a position
+	 * @return true if the element at the position has a value
+	 */
+	public boolean get(int pos) {
+		check(pos);
+		long bit = origin + pos;
+		return (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Set or clear the bit at a position.
+	 *
+	 * @param pos a position
+	 * @param valid true to set the bit, false to clear it
+	 */
+	public void set(int pos, boolean valid) {
+		check(pos);
+		long bit = origin + pos;
+		if (valid)
+			words[(int) (bit >>> 6)] |= 1L << bit;
+		else
+			words[(int) (bit >>> 6)] &= ~(1L << bit);
+	}
+
+	/**
+	 * Set or clear the bits of a range of positions.
+	 *
+	 * @param from the first position (inclusive)
+	 * @param to the last position (exclusive)
+	 * @param valid true to set the bits, false to clear them
+	 */
+	public void set(int from, int to, boolean valid) {
+		if (from < 0 || to > length || from > to)
+			throw new IndexOutOfBoundsException(from + "," + to);
+		setBits(origin + from, origin + to, valid);
+	}
+
+	/**
+	 * Add positions in front of the first one.
+	 *
+	 * @param n a non-negative number
+	 * @param valid true if the new bits are set
+	 */
+	public void addFirst(int n, boolean valid) {
+		if (n > origin)
+			reserve(n, 0);
+		origin -= n;
+		length += n;
+		if (valid)
+			setBits(origin, origin + n, true);
+	}
+
+	/**
+	 * Add positions after the last one.
+	 *
+	 * @param n a non-negative number
+	 * @param valid true if the new bits are set
+	 */
+	public void addLast(int n, boolean valid) {
+		if (origin + length + n > (long) words.length * 64)
+			reserve(0, n);
+		length += n;
+		if (valid)
+			setBits(origin + length - n, origin + length, true);
+	}
+
+	/**
+	 * Remove the first positions.
+	 *
+	 * @param n a number not larger than the length
+	 */
+	public void removeFirst(int n) {
+		if (n < 0 || n > length)
+			throw new IndexOutOfBoundsException("" + n);
+		setBits(origin, origin + n, false);
+		origin += n;
+		length -= n;
+	}
+
+	/**
+	 * Remove the last positions.
+	 *
+	 * @param n a number not larger than the length
+	 */
+	public void removeLast(int n) {
+		if (n < 0 || n > length)
+			throw new IndexOutOfBoundsException("" + n);
+		setBits(origin + length - n, origin + length, false);
+		length -= n;
+	}
+
+	/**
+	 * Remove all positions.
+	 */
+	public void clear() {
+		words = EMPTY;
+		origin = 0;
+		length = 0;
+	}
+
+	/**
+	 * Return the number of bits set.
+	 *
+	 * @return the number of elements with a value
+	 */
+	public int cardinality() {
+		if (length == 0)
+			return 0;
+		int count = 0;
+		int last = (int) ((origin + length - 1) >>> 6);
+		for (int w = (int) (origin >>> 6); w <= last; w++) {
+			count += Long.bitCount(words[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * Return the first position with a bit set at or after a position, or
+	 * -1 if there is none.
+	 *
+	 * @param from a position
+	 * @return a position or -1
+	 */
+	public int nextSetBit(int from) {
+		if (from < 0)
+			from = 0;
+		if (from >= length)
+			return -1;
+		long bit = origin + from;
+		int w = (int) (bit >>> 6);
+		int last = (int) ((origin + length - 1) >>> 6);
+		long word = words[w] & (-1L << bit);
+		while (word == 0) {
+			if (++w > last)
+				return -1;
+			word = words[w];
+		}
+		return (int) (((long) w << 6) + Long.numberOfTrailingZeros(word) - origin);
+	}
+
+	/**
+	 * Return the last position with a bit set at or before a position, or -1
+	 * if there is none.
+	 *
+	 * @param from a position
+	 * @return a position or -1
+	 */
+	public int previousSetBit(int from) {
+		if (from >= length)
+			from = length - 1;
+		if (from < 0)
+			return -1;
+		long bit = origin + from;
+		int w = (int) (bit >>> 6);
+		int first = (int) (origin >>> 6);
+		long word = words[w] & (-1L >>> (63 - (bit & 63)));
+		while (word == 0) {
+			if (--w < first)
+				return -1;
+			word = words[w];
+		}
+		return (int) (((long) w << 6) + 63 - Long.numberOfLeadingZeros(word) - origin);
+	}
+
+	/**
+	 * Return the first position with a clear bit at or after a position, or
+	 * the length if there is none.
+	 *
+	 * @param from a position
+	 * @return a position
+	 */
+	public int nextClearBit(int from) {
+		if (from < 0)
+			from = 0;
+		if (from >= length)
+			return length;
+		long bit = origin + from;
+		long end = origin + length;
+		int w = (int) (bit >>> 6);
+		long word = ~words[w] & (-1L << bit);
+		while (word == 0) {
+			if ((long) ++w << 6 >= end)
+				return length;
+			word = ~words[w];
+		}
+		return (int) (Math.min(((long) w << 6) + Long.numberOfTrailingZeros(word), end) - origin);
+	}
+
+	/**
+	 * Ensure there are at least <em>left</em> free bits in front of the
+	 * positions and <em>right</em> free bits after them. When the words must
+	 * be reallocated, free space is added on both sides. Bits move by whole
+	 * words. Bit numbers are long, so the bitmap can hold as many positions
+	 * as a {@link DequeList}.
+	 */
+	private void reserve(int left, int right) {
+		int leftWords = (left + 63) / 64;
+		long usedWords = ((origin & 63) + (long) length + 63) / 64;
+		long rightWords = (right + 63) / 64 + 1;
+		long needed = leftWords + usedWords + rightWords;
+		long capacity = Math.min(MAX_WORDS, Math.max(needed + (needed >> 1), 4));
+		if (needed > capacity)
+			throw new OutOfMemoryError("capacity exceeded: " + needed);
+		long[] newWords = new long[(int) capacity];
+		int newFirstWord = leftWords + (int) (capacity - needed) / 2;
+		if (length > 0)
+			System.arraycopy(words, (int) (origin >>> 6), newWords, newFirstWord, (int) usedWords);
+		origin = ((long) newFirstWord << 6) + (origin & 63);
+		words = newWords;
+	}
+
+	/**
+	 * Set or clear bits in a range of bit numbers.
+	 */
+	private void setBits(long from, long to, boolean valid) {
+		if (from >= to)
+			return;
+		int w1 = (int) (from >>> 6);
+		int w2 = (int) ((to - 1) >>> 6);
+		long first = -1L << from;
+		long last = -1L >>> -to;
+		if (w1 == w2) {
+			long mask = first & last;
+			if (valid)
+				words[w1] |= mask;
+			else
+				words[w1] &= ~mask;
+			return;
+		}
+		if (valid) {
+			words[w1] |= first;
+			Arrays.fill(words, w1 + 1, w2, -1L);
+			words[w2] |= last;
+		} else {
+			words[w1] &= ~first;
+			Arrays.fill(words, w1 + 1, w2, 0L);
+			words[w2] &= ~last;
+		}
+	}
+
+	private void check(int pos) {
+		if (pos < 0 || pos >= length)
+			throw new IndexOutOfBoundsException("" + pos);
+	}
+
+}
@@ -0,0 +1,270 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.DefaultTimeFormatter;
+import ch.agent.t2.time.Resolution;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeFactory;
+import ch.agent.t2.time.TimeTools;
+
+/**
+ * An IncrementalTimeFormat formats a sequence of times into a character
+ * array. The text is the same as with
+ * {@link TimeDomain#formatTo(long, char[], int)}. When a time follows the
+ * previous one, the calendar fields are advanced by one unit, with carries,
+ * and only the digits of the fields modified are rewritten. Anything else,
+ * including a change of year, is formatted completely.
+ * <p>
+ * Times are advanced incrementally only in domains without base period
+ * pattern and without sub period pattern, when the text has the layout of
+ * the {@link DefaultTimeFormatter}.
+ * <p>
+ * This class provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+class IncrementalTimeFormat {
+
+	private static final int MAX_LENGTH = 64;
+
+	private final TimeDomain domain;
+	private final Resolution unit;
+	private boolean incremental;
+	private final int fractionMax;
+	private final char[] text;
+	private int length;
+	private long last; // negative when there is no previous time
+	private int yearLength; // position of the first separator after the year
+	private long year;
+	private int month, day, hour, min, sec, fsec;
+
+	/**
+	 * Construct an incremental format for a time domain.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 */
+	public IncrementalTimeFormat(TimeDomain domain) {
+		this.domain = domain;
+		this.unit = domain.getResolution();
+		this.incremental = domain instanceof TimeFactory
+				&& domain.getPacker().getBasePeriodPattern() == null
+				&& domain.getPacker().getSubPeriodPattern() == null;
+		switch (unit) {
+		case MSEC:
+			fractionMax = 1000;
+			break;
+		case USEC:
+			fractionMax = 1000000;
+			break;
+		case NSEC:
+			fractionMax = 1000000000;
+			break;
+		default:
+			fractionMax = 0;
+		}
+		this.text = new char[MAX_LENGTH];
+		this.last = -1;
+	}
+
+	/**
+	 * Format a time. The text is available with {@link #getText()}.
+	 *
+	 * @param time
+	 *            a numerical time index
+	 * @return the length of the text
+	 * @throws T2Exception
+	 */
+	public int format(long time) throws T2Exception {
+		if (!(incremental && last >= 0 && time == last + 1 && advance()))
+			formatCompletely(time);
+		last = time;
+		return length;
+	}
+
+	/**
+	 * Return the array with the text of the last time formatted. The array
+	 * is reused.
+	 *
+	 * @return a character array
+	 */
+	public char[] getText() {
+		return text;
+	}
+
+	/**
+	 * Return the length of the text of the last time formatted.
+	 *
+	 * @return the length of the text
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	private void formatCompletely(long time) throws T2Exception {
+		length = domain.formatTo(time, text, 0);
+		if (incremental) {
+			// read back the fields
+			int pos = text[0] == '+' ? 1 : 0;
+			year = 0;
+			while (pos < length && text[pos] >= '0' && text[pos] <= '9') {
+				year = year * 10 + text[pos++] - '0';
+			}
+			yearLength = pos;
+			if (!defaultLayout()) {
+				incremental = false;
+				return;
+			}
+			month = field(1, 2);
+			day = field(4, 2);
+			hour = field(7, 2);
+			min = field(10, 2);
+			sec = field(13, 2);
+			fsec = field(16, length - yearLength - 16);
+		}
+	}
+
+	/**
+	 * Return true if the separators are where the default formatter puts
+	 * them.
+	 */
+	private boolean defaultLayout() {
+		int[] expected;
+		switch (unit) {
+		case YEAR:
+			return yearLength >= 4;
+		case MONTH:
+			expected = new int[] { 0, 3 };
+			break;
+		case DAY:
+			expected = new int[] { 0, 3, 6 };
+			break;
+		case HOUR:
+			expected = new int[] { 0, 3, 6, 9 };
+			break;
+		case MIN:
+			expected = new int[] { 0, 3, 6, 9, 12 };
+			break;
+		case SEC:
+			expected = new int[] { 0, 3, 6, 9, 12, 15 };
+			break;
+		default:
+			expected = new int[] { 0, 3, 6, 9, 12, 15, 16 + (unit == Resolution.MSEC ? 3 : unit == Resolution.USEC ? 6 : 9) };
+		}
+		if (yearLength < 4 || yearLength + expected[expected.length - 1] > length)
+			return false;
+		int last = -1;
+		for (int offset : expected) {
+			for (int i = last + 1; i < offset; i++) {
+				char c = text[yearLength + i];
+				if (c < '0' || c > '9')
+					return false;
+			}
+			if (yearLength + offset < length && text[yearLength + offset] >= '0' && text[yearLength + offset] <= '9')
+				return false;
+			last = offset;
+		}
+		return true;
+	}
+
+	private int field(int offset, int width) {
+		int pos = yearLength + offset;
+		if (pos + width > length || width <= 0)
+			return 0;
+		int value = 0;
+		for (int i = pos; i < pos + width; i++) {
+			char c = text[i];
+			if (c < '0' || c > '9')
+				break;
+			value = value * 10 + c - '0';
+		}
+		return value;
+	}
+
+	private void put(int value, int offset, int width) {
+		for (int i = yearLength + offset + width - 1; i >= yearLength + offset; i--) {
+			text[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	/**
+	 * Advance the fields by one unit and rewrite modified digits. Return
+	 * false if the year changes. Each case falls through to the next
+	 * coarser unit on overflow.
+	 */
+	@SuppressWarnings("fallthrough")
+	private boolean advance() {
+		switch (unit) {
+		case MSEC:
+		case USEC:
+		case NSEC:
+			if (++fsec < fractionMax) {
+				put(fsec, 16, unit == Resolution.MSEC ? 3 : unit == Resolution.USEC ? 6 : 9);
+				return true;
+			}
+			fsec = 0;
+			put(fsec, 16, unit == Resolution.MSEC ? 3 : unit == Resolution.USEC ? 6 : 9);
+			// fall through
+		case SEC:
+			if (++sec < 60) {
+				put(sec, 13, 2);
+				return true;
+			}
+			sec = 0;
+			put(sec, 13, 2);
+			// fall through
+		case MIN:
+			if (++min < 60) {
+				put(min, 10, 2);
+				return true;
+			}
+			min = 0;
+			put(min, 10, 2);
+			// fall through
+		case HOUR:
+			if (++hour < 24) {
+				put(hour, 7, 2);
+				return true;
+			}
+			hour = 0;
+			put(hour, 7, 2);
+			// fall through
+		case DAY:
+			if (++day <= TimeTools.daysInMonth(year, month)) {
+				put(day, 4, 2);
+				return true;
+			}
+			day = 1;
+			put(day, 4, 2);
+			// fall through
+		case MONTH:
+			if (++month <= 12) {
+				put(month, 1, 2);
+				return true;
+			}
+			return false;
+		case YEAR:
+			return false;
+		default:
+			throw new RuntimeException("bug: " + unit.name());
+		}
+	}
+
+}
@@ -0,0 +1,379 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Filler;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.TimeIndexable;
+
+/**
+ * MappedDoubleTimeSeries is a read-only {@link TimeIndexable} of doubles
+ * which is a view of a file mapped into memory. It is obtained with
+ * {@link TimeSeriesBinaryCodec#map(java.nio.file.Path)}. Values are read
+ * from the mapping when accessed, without being copied to the heap, and
+ * the pages of the file are shared by all processes mapping it. Subranges
+ * are views of the same mapping.
+ * <p>
+ * Methods which would modify the series throw an
+ * {@link UnsupportedOperationException}. The series is safe for use by
+ * multiple threads.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class MappedDoubleTimeSeries extends MappedTimeSeries implements TimeIndexable<Double> {
+
+	private static final double[] EMPTY = new double[0];
+	private static final Double[] EMPTY_BOXED = new Double[0];
+
+	/**
+	 * MappedCursor is a {@link DoubleCursor} over a range of the time series.
+	 */
+	private class MappedCursor implements DoubleCursor {
+
+		private final int end; // position after the last value
+		private int pos;
+
+		private MappedCursor(long first, long last) {
+			if (start < 0 || first > last || first - start >= size || last < start) {
+				end = 0;
+				pos = 0;
+			} else {
+				// the bounds are clipped before being cast to int
+				end = last - start < size ? (int) (last - start + 1) : size;
+				pos = (first > start ? (int) (first - start) : 0) - 1;
+			}
+		}
+
+		@Override
+		public boolean next() {
+			while (++pos < end) {
+				if (!Double.isNaN(values.get(pos)))
+					return true;
+			}
+			pos = end;
+			return false;
+		}
+
+		@Override
+		public long index() {
+			return start + pos;
+		}
+
+		@Override
+		public Double value() {
+			return values.get(pos);
+		}
+
+		@Override
+		public double doubleValue() {
+			return values.get(pos);
+		}
+	}
+
+	private final DoubleBuffer values; // value at start in position 0
+	private final long start; // -1 when empty
+	private final int size;
+
+	/**
+	 * Construct a view of a buffer. Missing values at both ends are excluded
+	 * from the range.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 * @param buffer
+	 *            a non-null buffer with the values from its position to its
+	 *            limit
+	 * @param first
+	 *            the numerical time index of the value at the position of
+	 *            the buffer
+	 */
+	MappedDoubleTimeSeries(TimeDomain domain, DoubleBuffer buffer, long first) {
+		super(domain);
+		int lo = buffer.position();
+		int hi = buffer.limit();
+		while (lo < hi && Double.isNaN(buffer.get(lo)))
+			lo++;
+		while (hi > lo && Double.isNaN(buffer.get(hi - 1)))
+			hi--;
+		DoubleBuffer b = buffer.duplicate();
+		b.limit(hi);
+		b.position(lo);
+		this.values = b.slice();
+		this.size = hi - lo;
+		this.start = size == 0 ? -1 : first + lo - buffer.position();
+	}
+
+	@Override
+	public Iterator<Observation<Double>> iterator() {
+		return new Iterator<Observation<Double>>() {
+			private int pos;
+
+			@Override
+			public boolean hasNext() {
+				return pos < size;
+			}
+
+			@Override
+			public Observation<Double> next() {
+				if (pos >= size)
+					throw new NoSuchElementException();
+				Observation<Double> obs = observation(start + pos, values.get(pos));
+				pos++;
+				return obs;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	protected DoubleCursor internalCursor(long first, long last) {
+		return new MappedCursor(first, last);
+	}
+
+	@Override
+	public TimeAddressable<Double> get(long first, long last) {
+		DoubleBuffer b = values.duplicate();
+		if (start < 0 || first > last || first - start >= size || last < start) {
+			b.limit(0);
+		} else {
+			b.limit(last - start < size ? (int) (last - start + 1) : size);
+			b.position(first > start ? (int) (first - start) : 0);
+		}
+		return new MappedDoubleTimeSeries(getTimeDomain(), b, start + b.position());
+	}
+
+	@Override
+	protected Double internalGet(long index) throws T2Exception {
+		if (start < 0 || index < start || index - start >= size)
+			return getMissingValue();
+		return box(values.get((int) (index - start)));
+	}
+
+	@Override
+	protected Observation<Double> internalGetFirst(long index) throws T2Exception {
+		if (start < 0 || index - start >= size)
+			return null;
+		for (int pos = index > start ? (int) (index - start) : 0; pos < size; pos++) {
+			double value = values.get(pos);
+			if (!Double.isNaN(value))
+				return observation(start + pos, value);
+		}
+		return null;
+	}
+
+	@Override
+	protected Observation<Double> internalGetLast(long index) throws T2Exception {
+		if (start < 0 || index < start)
+			return null;
+		for (int pos = index - start < size ? (int) (index - start) : size - 1; pos >= 0; pos--) {
+			double value = values.get(pos);
+			if (!Double.isNaN(value))
+				return observation(start + pos, value);
+		}
+		return null;
+	}
+
+	@Override
+	public int getValueCount() {
+		int count = 0;
+		for (int pos = 0; pos < size; pos++) {
+			if (!Double.isNaN(values.get(pos)))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Return all values in a primitive array. Missing values are NaN.
+	 *
+	 * @return an array with all values
+	 */
+	public double[] getDoubleArray() {
+		double[] result = new double[size];
+		values.duplicate().get(result);
+		return result;
+	}
+
+	/**
+	 * Return a subrange of values in a primitive array. Missing values are NaN.
+	 *
+	 * @param range the non-null wanted range
+	 * @return an array with a subrange of values
+	 * @throws T2Exception
+	 */
+	public double[] getDoubleArray(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (start < 0 || range.isEmpty())
+			return EMPTY;
+		long first = Math.max(range.getFirstIndex(), start);
+		long last = Math.min(range.getLastIndex(), start + size - 1);
+		if (first > last)
+			return EMPTY;
+		double[] result = new double[(int) (last - first + 1)];
+		DoubleBuffer b = values.duplicate();
+		b.position((int) (first - start));
+		b.get(result);
+		return result;
+	}
+
+	@Override
+	public Double[] getArray() {
+		return box(getDoubleArray());
+	}
+
+	@Override
+	public Double[] getArray(Range range) throws T2Exception {
+		return box(getDoubleArray(range));
+	}
+
+	private Double[] box(double[] values) {
+		if (values.length == 0)
+			return EMPTY_BOXED;
+		Double[] result = new Double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = box(values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Return the largest integer. The file can have runs of missing values of
+	 * any length.
+	 *
+	 * @return the largest integer
+	 */
+	@Override
+	public int getMaxGap() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Count missing values when the replacement is a missing value and the
+	 * tail length is zero. Otherwise throw an
+	 * {@link UnsupportedOperationException}.
+	 *
+	 * @param replacement a missing value
+	 * @param tailLength zero
+	 * @return the number of missing values
+	 * @throws T2Exception
+	 */
+	@Override
+	public int fill(Double replacement, long tailLength) throws T2Exception {
+		if (replacement == null)
+			throw T2Msg.exception(K.T5015);
+		if (!replacement.isNaN())
+			throw new UnsupportedOperationException();
+		if (tailLength > 0)
+			throw T2Msg.exception(K.T5020);
+		return size - getValueCount();
+	}
+
+	@Override
+	public int fill(long tailLength) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int fill(Filler<Double> filler) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return true;
+	}
+
+	@Override
+	public TimeIndexable<Double> asIndexable() {
+		return this;
+	}
+
+	@Override
+	public TimeIndexable<Double> view(Range range) throws T2Exception {
+		return (TimeIndexable<Double>) super.view(range);
+	}
+
+	/**
+	 * Return the time series itself, which is immutable.
+	 *
+	 * @return this time series
+	 */
+	@Override
+	public MappedDoubleTimeSeries copy() {
+		return this;
+	}
+
+	/**
+	 * Return an empty {@link DoubleRegularTimeSeries}, because a mapped time
+	 * series cannot be modified.
+	 *
+	 * @return an empty time series
+	 */
+	@Override
+	public DoubleRegularTimeSeries makeEmptyCopy() {
+		return new DoubleRegularTimeSeries(getTimeDomain());
+	}
+
+	@Override
+	protected Collection<Double> internalGetData() {
+		return new AbstractList<Double>() {
+			@Override
+			public Double get(int index) {
+				return box(values.get(index));
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	protected long internalGetFirstIndex() {
+		return start;
+	}
+
+	@Override
+	protected long internalGetLastIndex() {
+		return start < 0 ? -1 : start + size - 1;
+	}
+
+	@Override
+	protected int internalGetSize() {
+		return size;
+	}
+
+}
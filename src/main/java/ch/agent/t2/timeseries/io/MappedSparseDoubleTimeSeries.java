@@ -0,0 +1,260 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.TimeIndexable;
+
+/**
+ * MappedSparseDoubleTimeSeries is a read-only sparse time series of doubles
+ * which is a view of a file mapped into memory. It is obtained with
+ * {@link TimeSeriesBinaryCodec#map(java.nio.file.Path)}. Numerical time
+ * indexes and values are read from the mapping when accessed, and values
+ * are found with a binary search over the indexes. Subranges are views of
+ * the same mapping.
+ * <p>
+ * Methods which would modify the series throw an
+ * {@link UnsupportedOperationException}. The series is safe for use by
+ * multiple threads.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class MappedSparseDoubleTimeSeries extends MappedTimeSeries {
+
+	/**
+	 * MappedCursor is a {@link DoubleCursor} over a range of positions.
+	 */
+	private class MappedCursor implements DoubleCursor {
+
+		private final int end; // position after the last value
+		private int pos;
+
+		private MappedCursor(int from, int to) {
+			this.pos = from - 1;
+			this.end = to;
+		}
+
+		@Override
+		public boolean next() {
+			if (pos < end)
+				pos++;
+			return pos < end;
+		}
+
+		@Override
+		public long index() {
+			return indexes.get(pos);
+		}
+
+		@Override
+		public Double value() {
+			return values.get(pos);
+		}
+
+		@Override
+		public double doubleValue() {
+			return values.get(pos);
+		}
+	}
+
+	private final LongBuffer indexes;
+	private final DoubleBuffer values;
+	private final int size;
+
+	/**
+	 * Construct a view of two buffers, with indexes and values between their
+	 * positions and their limits.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 * @param indexes
+	 *            a non-null buffer of increasing numerical time indexes
+	 * @param values
+	 *            a non-null buffer of values, none of them NaN
+	 */
+	MappedSparseDoubleTimeSeries(TimeDomain domain, LongBuffer indexes, DoubleBuffer values) {
+		super(domain);
+		this.indexes = indexes.slice();
+		this.values = values.slice();
+		this.size = this.indexes.limit();
+	}
+
+	/**
+	 * Return the position of the first index larger than or equal to the
+	 * given index.
+	 */
+	private int ceiling(long index) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (indexes.get(mid) < index)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	@Override
+	public Iterator<Observation<Double>> iterator() {
+		return new Iterator<Observation<Double>>() {
+			private int pos;
+
+			@Override
+			public boolean hasNext() {
+				return pos < size;
+			}
+
+			@Override
+			public Observation<Double> next() {
+				if (pos >= size)
+					throw new NoSuchElementException();
+				Observation<Double> obs = observation(indexes.get(pos), values.get(pos));
+				pos++;
+				return obs;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	protected DoubleCursor internalCursor(long first, long last) {
+		if (first > last)
+			return new MappedCursor(0, 0);
+		return new MappedCursor(ceiling(first), last == Long.MAX_VALUE ? size : ceiling(last + 1));
+	}
+
+	@Override
+	public TimeAddressable<Double> get(long first, long last) {
+		int from = first > last ? 0 : ceiling(first);
+		int to = first > last ? 0 : last == Long.MAX_VALUE ? size : ceiling(last + 1);
+		LongBuffer i = indexes.duplicate();
+		i.limit(to);
+		i.position(from);
+		DoubleBuffer v = values.duplicate();
+		v.limit(to);
+		v.position(from);
+		return new MappedSparseDoubleTimeSeries(getTimeDomain(), i, v);
+	}
+
+	@Override
+	protected Double internalGet(long index) throws T2Exception {
+		int pos = ceiling(index);
+		return pos < size && indexes.get(pos) == index ? Double.valueOf(values.get(pos)) : getMissingValue();
+	}
+
+	@Override
+	protected Observation<Double> internalGetFirst(long index) throws T2Exception {
+		int pos = ceiling(index);
+		return pos < size ? observation(indexes.get(pos), values.get(pos)) : null;
+	}
+
+	@Override
+	protected Observation<Double> internalGetLast(long index) throws T2Exception {
+		int pos = index == Long.MAX_VALUE ? size - 1 : ceiling(index + 1) - 1;
+		return pos >= 0 ? observation(indexes.get(pos), values.get(pos)) : null;
+	}
+
+	@Override
+	public int getValueCount() {
+		return size;
+	}
+
+	@Override
+	public boolean isIndexable() {
+		return false;
+	}
+
+	@Override
+	public TimeIndexable<Double> asIndexable() throws T2Exception {
+		DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(getTimeDomain());
+		for (int pos = 0; pos < size; pos++) {
+			ts.putDouble(indexes.get(pos), values.get(pos));
+		}
+		return ts;
+	}
+
+	/**
+	 * Return the time series itself, which is immutable.
+	 *
+	 * @return this time series
+	 */
+	@Override
+	public TimeAddressable<Double> copy() {
+		return this;
+	}
+
+	/**
+	 * Return an empty {@link SparseTimeSeries}, because a mapped time series
+	 * cannot be modified.
+	 *
+	 * @return an empty time series
+	 */
+	@Override
+	public TimeAddressable<Double> makeEmptyCopy() {
+		return new SparseTimeSeries<Double>(Double.class, getTimeDomain());
+	}
+
+	@Override
+	protected Collection<Double> internalGetData() {
+		return new AbstractList<Double>() {
+			@Override
+			public Double get(int index) {
+				return values.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	protected long internalGetFirstIndex() {
+		return size == 0 ? -1 : indexes.get(0);
+	}
+
+	@Override
+	protected long internalGetLastIndex() {
+		return size == 0 ? -1 : indexes.get(size - 1);
+	}
+
+	@Override
+	protected int internalGetSize() {
+		return size;
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.AbstractTimeSeries;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * MappedTimeSeries is the base of read-only time series of doubles which
+ * are views of a buffer mapped from a file. Missing values are NaN. Methods
+ * which would modify the series throw an
+ * {@link UnsupportedOperationException}.
+ *
+ * @author Jean-Paul Vetterli
+ */
+abstract class MappedTimeSeries extends AbstractTimeSeries<Double> {
+
+	/**
+	 * MappedObservation makes observations from numerical time indexes.
+	 */
+	private static class MappedObservation extends Observation<Double> {
+		private MappedObservation(TimeDomain domain, long index, Double value) {
+			super(domain, index, value);
+		}
+	}
+
+	/**
+	 * Construct a mapped time series.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 */
+	protected MappedTimeSeries(TimeDomain domain) {
+		super(Double.class, domain, Double.NaN);
+	}
+
+	/**
+	 * Return the value as an object, or the missing value for NaN.
+	 *
+	 * @param value
+	 *            a number
+	 * @return a value
+	 */
+	protected Double box(double value) {
+		return Double.isNaN(value) ? getMissingValue() : Double.valueOf(value);
+	}
+
+	/**
+	 * Return an observation of this series.
+	 *
+	 * @param index
+	 *            a numerical time index
+	 * @param value
+	 *            a number
+	 * @return an observation
+	 */
+	protected Observation<Double> observation(long index, double value) {
+		return new MappedObservation(getTimeDomain(), index, box(value));
+	}
+
+	/**
+	 * Return true if the value is missing. All NaN values are missing values.
+	 *
+	 * @param value a value
+	 * @return true if the value is missing
+	 */
+	@Override
+	public boolean isMissing(Double value) {
+		return value != null && value.isNaN();
+	}
+
+	@Override
+	public DoubleCursor cursor() {
+		return internalCursor(0, Long.MAX_VALUE);
+	}
+
+	@Override
+	public DoubleCursor cursor(Range range) throws T2Exception {
+		return (DoubleCursor) super.cursor(range);
+	}
+
+	@Override
+	protected abstract DoubleCursor internalCursor(long first, long last);
+
+	@Override
+	public TimeAddressable<Double> get(Range range) throws T2Exception {
+		getTimeDomain().requireEquality(range.getTimeDomain());
+		if (range.isEmpty())
+			return get(0, -1);
+		else
+			return get(range.getFirstIndex(), range.getLastIndex());
+	}
+
+	@Override
+	public abstract TimeAddressable<Double> get(long first, long last);
+
+	@Override
+	protected void internalClear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalPut(long index, Double value) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalRemove(long index) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void internalSetBounds(long first, long last) throws T2Exception {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,817 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Resolution;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeDomainCatalog;
+import ch.agent.t2.time.TimeDomainDefinition;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * A TimeSeriesBinaryCodec writes a time series in a compact binary format
+ * and reads it back. The format starts with a header giving the format
+ * version, the time domain (label, resolution, origin and a description of
+ * the patterns), the value type, the missing value, and the range. The body
+ * of an indexable time series is a dense block, with a bitmap of non-missing
+ * values followed by the values. The body of other time series is a sparse
+ * block, with the numerical time indexes followed by the values. Numbers are
+ * written in big-endian order and text in UTF-8.
+ * <p>
+ * Values of type {@link Double}, {@link Float}, {@link Long},
+ * {@link Integer}, {@link Short}, {@link Byte}, {@link Boolean}, and
+ * {@link String} are supported. A dense block of doubles is read into a
+ * {@link DoubleRegularTimeSeries}, other dense blocks into a
+ * {@link RegularTimeSeries}, and sparse blocks into a
+ * {@link SparseTimeSeries}.
+ * <p>
+ * Series of doubles can also be written in a format which can be mapped
+ * into memory, with {@link #writeMapped(TimeAddressable, WritableByteChannel)}.
+ * Such a file is opened with {@link #map(Path)} as a read-only view, or
+ * read into the heap like other files.
+ * <p>
+ * Patterns cannot be reconstructed from the header. When reading, the time
+ * domain is looked up by label in the catalog, and must match the header.
+ * When it is not found, a domain without patterns is created from the
+ * header. Data go through a direct buffer and are transferred with channels
+ * in large blocks.
+ * <p>
+ * A codec can be used for several series, one after the other. This class
+ * provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class TimeSeriesBinaryCodec {
+
+	/**
+	 * The highest version of the format. Version 2 adds bodies which can be
+	 * mapped; other bodies are still written with version 1.
+	 */
+	public static final int VERSION = 2;
+
+	private static final int MAGIC = 0x54325453; // "T2TS"
+	private static final byte DENSE = 1;
+	private static final byte SPARSE = 2;
+	private static final byte MAPPED_DENSE = 3;
+	private static final byte MAPPED_SPARSE = 4;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_READ_AHEAD = Integer.MAX_VALUE - 8;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Output puts data into a buffer and writes the buffer to a channel when
+	 * it is full.
+	 */
+	private static class Output {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer;
+		private long flushed; // bytes written to the channel
+
+		private Output(WritableByteChannel channel, ByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+			buffer.clear();
+		}
+
+		/**
+		 * Return the buffer with at least the given number of bytes
+		 * remaining.
+		 */
+		private ByteBuffer ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+			return buffer;
+		}
+
+		private void putString(String s) throws IOException {
+			if (s == null) {
+				ensure(4).putInt(-1);
+				return;
+			}
+			byte[] bytes = s.getBytes(UTF8);
+			ensure(4).putInt(bytes.length);
+			int offset = 0;
+			while (offset < bytes.length) {
+				int length = Math.min(bytes.length - offset, ensure(1).remaining());
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		/**
+		 * Put zeros until the offset from the start of the series is a
+		 * multiple of 8.
+		 */
+		private void align() throws IOException {
+			int padding = (int) (-(flushed + buffer.position()) & 7);
+			for (int i = 0; i < padding; i++) {
+				ensure(1).put((byte) 0);
+			}
+		}
+
+		private void flush() throws IOException {
+			flushed += buffer.position();
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Input reads data from a channel into a buffer, or from a buffer
+	 * holding the whole series.
+	 */
+	private static class Input {
+		private final ReadableByteChannel channel; // null when reading a buffer
+		private ByteBuffer buffer; // replaced by a larger one when reading ahead
+		private long filled; // bytes put into the buffer
+
+		private Input(ReadableByteChannel channel, ByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+			buffer.clear();
+			buffer.flip();
+		}
+
+		private Input(ByteBuffer buffer) {
+			this.channel = null;
+			this.buffer = buffer;
+			this.filled = buffer.limit();
+		}
+
+		/**
+		 * Return the buffer with at least the given number of bytes
+		 * remaining. Fail if the input ends before.
+		 */
+		private ByteBuffer ensure(int bytes) throws IOException, T2Exception {
+			if (buffer.remaining() < bytes) {
+				if (channel == null)
+					throw T2Msg.exception(K.T5047);
+				buffer.compact();
+				while (buffer.position() < bytes) {
+					int n = channel.read(buffer);
+					if (n < 0)
+						throw T2Msg.exception(K.T5047);
+					filled += n;
+				}
+				buffer.flip();
+			}
+			return buffer;
+		}
+
+		/**
+		 * Check that the input has at least the given number of bytes before
+		 * allocating memory for them. Fail if the number is negative or if
+		 * the input ends before. When the size of the channel is unknown, the
+		 * bytes are read ahead into a buffer growing with the data actually
+		 * read.
+		 */
+		private void require(long bytes) throws IOException, T2Exception {
+			if (bytes < 0)
+				throw T2Msg.exception(K.T5043);
+			if (buffer.remaining() >= bytes)
+				return;
+			if (channel == null)
+				throw T2Msg.exception(K.T5047);
+			if (channel instanceof SeekableByteChannel) {
+				SeekableByteChannel c = (SeekableByteChannel) channel;
+				if (c.size() - c.position() < bytes - buffer.remaining())
+					throw T2Msg.exception(K.T5047);
+				return;
+			}
+			long target = Math.min(bytes, MAX_READ_AHEAD);
+			buffer.compact();
+			while (buffer.position() < target) {
+				if (!buffer.hasRemaining()) {
+					ByteBuffer larger = ByteBuffer.allocate((int) Math.min(target, 2L * buffer.capacity()));
+					buffer.flip();
+					larger.put(buffer);
+					buffer = larger;
+				}
+				int n = channel.read(buffer);
+				if (n < 0)
+					throw T2Msg.exception(K.T5047);
+				filled += n;
+			}
+			buffer.flip();
+		}
+
+		/**
+		 * Skip bytes until the offset from the start of the series is a
+		 * multiple of 8.
+		 */
+		private void align() throws IOException, T2Exception {
+			int padding = (int) (-(filled - buffer.remaining()) & 7);
+			ByteBuffer b = ensure(padding);
+			b.position(b.position() + padding);
+		}
+
+		private String getString() throws IOException, T2Exception {
+			int length = ensure(4).getInt();
+			if (length < 0)
+				return null;
+			require(length);
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			while (offset < length) {
+				int n = Math.min(length - offset, ensure(1).remaining());
+				buffer.get(bytes, offset, n);
+				offset += n;
+			}
+			return new String(bytes, UTF8);
+		}
+	}
+
+	/**
+	 * ValueType encodes and decodes values of a given type.
+	 */
+	private enum ValueType {
+		DOUBLE(Double.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(8).putDouble((Double) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(8).getDouble();
+			}
+		},
+		FLOAT(Float.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(4).putFloat((Float) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(4).getFloat();
+			}
+		},
+		LONG(Long.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(8).putLong((Long) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(8).getLong();
+			}
+		},
+		INTEGER(Integer.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(4).putInt((Integer) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(4).getInt();
+			}
+		},
+		SHORT(Short.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(2).putShort((Short) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(2).getShort();
+			}
+		},
+		BYTE(Byte.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(1).put((Byte) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(1).get();
+			}
+		},
+		BOOLEAN(Boolean.class) {
+			void put(Output out, Object value) throws IOException {
+				out.ensure(1).put((byte) ((Boolean) value ? 1 : 0));
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.ensure(1).get() != 0;
+			}
+		},
+		STRING(String.class) {
+			void put(Output out, Object value) throws IOException {
+				out.putString((String) value);
+			}
+			Object get(Input in) throws IOException, T2Exception {
+				return in.getString();
+			}
+		};
+
+		private final Class<?> type;
+
+		private ValueType(Class<?> type) {
+			this.type = type;
+		}
+
+		abstract void put(Output out, Object value) throws IOException;
+
+		abstract Object get(Input in) throws IOException, T2Exception;
+
+		private static ValueType of(String name) throws T2Exception {
+			for (ValueType t : values()) {
+				if (t.type.getName().equals(name))
+					return t;
+			}
+			throw T2Msg.exception(K.T5046, name);
+		}
+	}
+
+	/**
+	 * Header holds the description of a series read from its header.
+	 */
+	private static class Header {
+		private TimeDomain domain;
+		private ValueType type;
+		private Object missing;
+		private long first;
+		private byte kind;
+	}
+
+	private final TimeDomainCatalog catalog;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Construct a codec which resolves time domains with a catalog.
+	 *
+	 * @param catalog
+	 *            a time domain catalog or null
+	 */
+	public TimeSeriesBinaryCodec(TimeDomainCatalog catalog) {
+		this.catalog = catalog;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	/**
+	 * Construct a codec without catalog. Time domains with patterns cannot be
+	 * read.
+	 */
+	public TimeSeriesBinaryCodec() {
+		this(null);
+	}
+
+	/**
+	 * Write a time series to an output stream. The stream is not closed.
+	 *
+	 * @param series
+	 *            a non-null time series
+	 * @param out
+	 *            a non-null output stream
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public void write(TimeAddressable<?> series, OutputStream out) throws T2Exception, IOException {
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		write(series, Channels.newChannel(out));
+	}
+
+	/**
+	 * Write a time series to a channel. The channel is not closed.
+	 *
+	 * @param series
+	 *            a non-null time series
+	 * @param out
+	 *            a non-null writable channel
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public void write(TimeAddressable<?> series, WritableByteChannel out) throws T2Exception, IOException {
+		if (series == null)
+			throw new IllegalArgumentException("series null");
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		ValueType type = ValueType.of(series.getType().getName());
+		Output output = new Output(out, buffer);
+		writeHeader(output, 1, series.getTimeDomain(), type, series.getMissingValue(), series.getFirstIndex(), series.getLastIndex());
+		if (series.isIndexable())
+			writeDense(series, type, output, series.getFirstIndex(), series.getLastIndex());
+		else
+			writeSparse(series, type, output);
+		output.flush();
+	}
+
+	/**
+	 * Write a time series of doubles to a channel in a format which can be
+	 * mapped into memory with {@link #map(Path)}. The channel is not closed.
+	 * Values are aligned on 8 bytes from the start of the series. The body of
+	 * an indexable time series has a value for each time in the range, with
+	 * NaN for missing values. The body of other time series has the
+	 * numerical time indexes followed by the values.
+	 *
+	 * @param series
+	 *            a non-null time series
+	 * @param out
+	 *            a non-null writable channel
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public void writeMapped(TimeAddressable<Double> series, WritableByteChannel out) throws T2Exception, IOException {
+		if (series == null)
+			throw new IllegalArgumentException("series null");
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		Output output = new Output(out, buffer);
+		long first = series.getFirstIndex();
+		long last = series.getLastIndex();
+		writeHeader(output, 2, series.getTimeDomain(), ValueType.DOUBLE, Double.NaN, first, last);
+		Cursor<Double> cursor = series.cursor();
+		DoubleCursor doubles = cursor instanceof DoubleCursor ? (DoubleCursor) cursor : null;
+		if (series.isIndexable()) {
+			int size = first < 0 ? 0 : (int) (last - first + 1);
+			output.ensure(5).put(MAPPED_DENSE).putInt(size);
+			output.align();
+			long next = first;
+			while (cursor.next()) {
+				for (; next < cursor.index(); next++) {
+					output.ensure(8).putDouble(Double.NaN);
+				}
+				output.ensure(8).putDouble(doubles == null ? cursor.value() : doubles.doubleValue());
+				next++;
+			}
+		} else {
+			output.ensure(5).put(MAPPED_SPARSE).putInt(series.getValueCount());
+			output.align();
+			while (cursor.next()) {
+				output.ensure(8).putLong(cursor.index());
+			}
+			writeValues(series.cursor(), ValueType.DOUBLE, output);
+		}
+		output.flush();
+	}
+
+	private void writeHeader(Output output, int version, TimeDomain domain, ValueType type, Object missing, long first, long last) throws IOException {
+		output.ensure(6).putInt(MAGIC).putShort((short) version);
+		output.putString(domain.getLabel());
+		output.putString(domain.getResolution().name());
+		output.ensure(8).putLong(domain.getOrigin());
+		output.putString(describe(domain.getPacker().getBasePeriodPattern()));
+		output.putString(describe(domain.getPacker().getSubPeriodPattern()));
+		output.putString(type.type.getName());
+		output.ensure(1).put((byte) (missing == null ? 0 : 1));
+		if (missing != null)
+			type.put(output, missing);
+		output.ensure(16).putLong(first).putLong(last);
+	}
+
+	private void writeDense(TimeAddressable<?> series, ValueType type, Output output, long first, long last) throws IOException {
+		int size = first < 0 ? 0 : (int) (last - first + 1);
+		long[] bitmap = new long[(size + 63) >>> 6];
+		int count = 0;
+		Cursor<?> cursor = series.cursor();
+		while (cursor.next()) {
+			int pos = (int) (cursor.index() - first);
+			bitmap[pos >>> 6] |= 1L << pos;
+			count++;
+		}
+		output.ensure(9).put(DENSE).putInt(size).putInt(count);
+		for (long word : bitmap) {
+			output.ensure(8).putLong(word);
+		}
+		writeValues(series.cursor(), type, output);
+	}
+
+	private void writeSparse(TimeAddressable<?> series, ValueType type, Output output) throws IOException {
+		int count = series.getValueCount();
+		output.ensure(5).put(SPARSE).putInt(count);
+		Cursor<?> cursor = series.cursor();
+		while (cursor.next()) {
+			output.ensure(8).putLong(cursor.index());
+		}
+		writeValues(series.cursor(), type, output);
+	}
+
+	private void writeValues(Cursor<?> cursor, ValueType type, Output output) throws IOException {
+		if (cursor instanceof DoubleCursor) {
+			DoubleCursor doubles = (DoubleCursor) cursor;
+			while (doubles.next()) {
+				output.ensure(8).putDouble(doubles.doubleValue());
+			}
+		} else {
+			while (cursor.next()) {
+				type.put(output, cursor.value());
+			}
+		}
+	}
+
+	/**
+	 * Read a time series from an input stream. The stream is not closed.
+	 *
+	 * @param in
+	 *            a non-null input stream
+	 * @return a time series
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public TimeAddressable<?> read(InputStream in) throws T2Exception, IOException {
+		if (in == null)
+			throw new IllegalArgumentException("in null");
+		return read(Channels.newChannel(in));
+	}
+
+	/**
+	 * Read a time series with values of the given type from a channel. The
+	 * channel is not closed.
+	 *
+	 * @param <T>
+	 *            the value type
+	 * @param in
+	 *            a non-null readable channel
+	 * @param type
+	 *            a non-null value type
+	 * @return a time series
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> TimeAddressable<T> read(ReadableByteChannel in, Class<T> type) throws T2Exception, IOException {
+		if (type == null)
+			throw new IllegalArgumentException("type null");
+		TimeAddressable<?> series = read(in);
+		if (series.getType() != type)
+			throw T2Msg.exception(K.T5048, series.getType().getName(), type.getName());
+		return (TimeAddressable<T>) series;
+	}
+
+	/**
+	 * Read a time series from a channel. The channel is not closed. Bytes
+	 * after the end of the series may have been consumed from the channel.
+	 *
+	 * @param in
+	 *            a non-null readable channel
+	 * @return a time series
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public TimeAddressable<?> read(ReadableByteChannel in) throws T2Exception, IOException {
+		if (in == null)
+			throw new IllegalArgumentException("in null");
+		Input input = new Input(in, buffer);
+		Header h = readHeader(input);
+		switch (h.kind) {
+		case DENSE:
+			if (h.type == ValueType.DOUBLE && h.missing != null && ((Double) h.missing).isNaN())
+				return readDenseDoubles(input, h.domain, h.first);
+			else
+				return readDense(input, new RegularTimeSeries(h.type.type, h.domain, h.missing), h.type, h.first);
+		case SPARSE:
+			return readSparse(input, new SparseTimeSeries(h.type.type, h.domain, h.missing), h.type);
+		case MAPPED_DENSE: {
+			int size = input.ensure(4).getInt();
+			input.align();
+			input.require(8L * size);
+			double[] values = new double[size];
+			readDoubles(input, values, values.length);
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(h.domain);
+			if (values.length > 0)
+				ts.put(h.first, values);
+			return ts;
+		}
+		case MAPPED_SPARSE: {
+			int count = input.ensure(4).getInt();
+			input.align();
+			input.require(16L * count);
+			long[] indexes = new long[count];
+			for (int i = 0; i < count; i++) {
+				indexes[i] = input.ensure(8).getLong();
+			}
+			double[] values = new double[count];
+			readDoubles(input, values, count);
+			SparseTimeSeries<Double> ts = new SparseTimeSeries<Double>(Double.class, h.domain);
+			for (int i = 0; i < count; i++) {
+				ts.put(indexes[i], values[i]);
+			}
+			return ts;
+		}
+		default:
+			throw T2Msg.exception(K.T5043);
+		}
+	}
+
+	/**
+	 * Map a time series written with
+	 * {@link #writeMapped(TimeAddressable, WritableByteChannel)} into
+	 * memory. The series must start at the beginning of the file. The result
+	 * is a read-only view of the file, a {@link MappedDoubleTimeSeries} for
+	 * an indexable series and a {@link MappedSparseDoubleTimeSeries}
+	 * otherwise. Only the header is read; values are read from the mapping
+	 * when accessed. The mapping remains valid until the series is garbage
+	 * collected.
+	 *
+	 * @param path
+	 *            a non-null file path
+	 * @return a time series
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public TimeAddressable<Double> map(Path path) throws T2Exception, IOException {
+		if (path == null)
+			throw new IllegalArgumentException("path null");
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw T2Msg.exception(K.T5049, size, Integer.MAX_VALUE);
+			mapped = channel.map(MapMode.READ_ONLY, 0, size);
+		}
+		Input input = new Input(mapped);
+		Header h = readHeader(input);
+		if (h.type != ValueType.DOUBLE)
+			throw T2Msg.exception(K.T5048, h.type.type.getName(), Double.class.getName());
+		switch (h.kind) {
+		case MAPPED_DENSE: {
+			int size = input.ensure(4).getInt();
+			input.align();
+			input.require(8L * size);
+			return new MappedDoubleTimeSeries(h.domain, slice(input, size).asDoubleBuffer(), h.first);
+		}
+		case MAPPED_SPARSE: {
+			int count = input.ensure(4).getInt();
+			input.align();
+			input.require(16L * count);
+			LongBuffer indexes = slice(input, count).asLongBuffer();
+			DoubleBuffer values = slice(input, count).asDoubleBuffer();
+			return new MappedSparseDoubleTimeSeries(h.domain, indexes, values);
+		}
+		default:
+			throw T2Msg.exception(K.T5050);
+		}
+	}
+
+	/**
+	 * Return a buffer with the next 8-byte values of the input and skip them.
+	 */
+	private ByteBuffer slice(Input input, int count) throws IOException, T2Exception {
+		ByteBuffer b = input.ensure(8 * count).duplicate();
+		b.limit(b.position() + 8 * count);
+		input.buffer.position(b.limit());
+		return b.slice();
+	}
+
+	private Header readHeader(Input input) throws IOException, T2Exception {
+		if (input.ensure(4).getInt() != MAGIC)
+			throw T2Msg.exception(K.T5043);
+		int version = input.ensure(2).getShort();
+		if (version < 1 || version > VERSION)
+			throw T2Msg.exception(K.T5044, version, VERSION);
+		String label = input.getString();
+		Resolution unit;
+		try {
+			unit = Resolution.valueOf(input.getString());
+		} catch (Exception e) {
+			throw T2Msg.exception(e, K.T5043);
+		}
+		long origin = input.ensure(8).getLong();
+		String basePattern = input.getString();
+		String subPattern = input.getString();
+		Header h = new Header();
+		h.domain = domain(label, unit, origin, basePattern, subPattern);
+		h.type = ValueType.of(input.getString());
+		h.missing = input.ensure(1).get() == 0 ? null : h.type.get(input);
+		h.first = input.ensure(16).getLong();
+		input.buffer.getLong(); // last
+		h.kind = input.ensure(1).get();
+		return h;
+	}
+
+	/**
+	 * Read doubles into the beginning of an array.
+	 */
+	private void readDoubles(Input input, double[] values, int count) throws IOException, T2Exception {
+		int offset = 0;
+		while (offset < count) {
+			ByteBuffer b = input.ensure(8);
+			int n = Math.min(count - offset, b.remaining() >>> 3);
+			b.asDoubleBuffer().get(values, offset, n);
+			b.position(b.position() + 8 * n);
+			offset += n;
+		}
+	}
+
+	private DoubleRegularTimeSeries readDenseDoubles(Input input, TimeDomain domain, long first) throws IOException, T2Exception {
+		int size = input.ensure(8).getInt();
+		int count = input.buffer.getInt();
+		if (count < 0 || count > size)
+			throw T2Msg.exception(K.T5043);
+		long[] bitmap = readBitmap(input, size);
+		input.require(8L * count);
+		double[] values = new double[size];
+		readDoubles(input, values, count);
+		// move them to their positions, starting from the end
+		int j = count - 1;
+		for (int pos = size - 1; pos >= 0; pos--) {
+			if ((bitmap[pos >>> 6] & (1L << pos)) != 0) {
+				if (j < 0)
+					throw T2Msg.exception(K.T5043);
+				values[pos] = values[j--];
+			} else
+				values[pos] = Double.NaN;
+		}
+		if (j >= 0)
+			throw T2Msg.exception(K.T5043);
+		DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+		if (size > 0)
+			ts.put(first, values);
+		return ts;
+	}
+
+	private <T> TimeAddressable<T> readDense(Input input, RegularTimeSeries<T> ts, ValueType type, long first) throws IOException, T2Exception {
+		int size = input.ensure(8).getInt();
+		input.buffer.getInt(); // count
+		long[] bitmap = readBitmap(input, size);
+		@SuppressWarnings("unchecked")
+		T[] values = (T[]) Array.newInstance(ts.getType(), size);
+		for (int pos = 0; pos < size; pos++) {
+			values[pos] = (bitmap[pos >>> 6] & (1L << pos)) != 0 ? ts.getType().cast(type.get(input)) : ts.getMissingValue();
+		}
+		if (size > 0)
+			ts.put(first, values);
+		return ts;
+	}
+
+	private <T> TimeAddressable<T> readSparse(Input input, SparseTimeSeries<T> ts, ValueType type) throws IOException, T2Exception {
+		int count = input.ensure(4).getInt();
+		input.require(8L * count);
+		long[] indexes = new long[count];
+		for (int i = 0; i < count; i++) {
+			indexes[i] = input.ensure(8).getLong();
+		}
+		for (int i = 0; i < count; i++) {
+			ts.put(indexes[i], ts.getType().cast(type.get(input)));
+		}
+		return ts;
+	}
+
+	private long[] readBitmap(Input input, int size) throws IOException, T2Exception {
+		if (size < 0)
+			throw T2Msg.exception(K.T5043);
+		input.require(8L * ((size + 63L) >>> 6));
+		long[] bitmap = new long[(int) ((size + 63L) >>> 6)];
+		for (int i = 0; i < bitmap.length; i++) {
+			bitmap[i] = input.ensure(8).getLong();
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Return the time domain described in the header.
+	 */
+	private TimeDomain domain(String label, Resolution unit, long origin, String basePattern, String subPattern) throws T2Exception {
+		if (catalog != null) {
+			for (TimeDomain d : catalog.get()) {
+				if (equals(label, d.getLabel()) && unit == d.getResolution() && origin == d.getOrigin()
+						&& equals(basePattern, describe(d.getPacker().getBasePeriodPattern()))
+						&& equals(subPattern, describe(d.getPacker().getSubPeriodPattern())))
+					return d;
+			}
+		}
+		if (basePattern != null || subPattern != null)
+			throw T2Msg.exception(K.T5045, label, unit, origin, basePattern, subPattern);
+		return new TimeDomainDefinition(label, unit, origin).asTimeDomain();
+	}
+
+	private static String describe(Object pattern) {
+		return pattern == null ? null : pattern.toString();
+	}
+
+	private static boolean equals(String s1, String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
+	}
+
+}
@@ -0,0 +1,584 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.AsciiCharSequence;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeScanner;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeutil.DateTimeScanner;
+
+/**
+ * A TimeSeriesCsvReader loads text with one time and one or more numeric
+ * values per line into time series, one series per value column. Lines are
+ * read from a channel into a byte buffer. Times and numbers are parsed
+ * directly in the buffer, without creating strings, and values with
+ * consecutive times are put into series with the array methods, like
+ * {@link DoubleRegularTimeSeries#put(long, double[])} and
+ * {@link TimeAddressable#put(long, Object[])}.
+ * <p>
+ * Columns are numbered from 0. By default, times are in column 0, fields are
+ * separated by commas, and there is no header line. Fields can be surrounded
+ * by spaces and by double quotes. Empty lines are ignored, and empty value
+ * fields are missing values. Times are scanned by the scanner of the time
+ * domain, unless another {@link TimeScanner} or a {@link DateTimeScanner} is
+ * set. A {@link ch.agent.t2.time.SequentialTimeScanner} is a good choice for
+ * large files sorted by time. The text must be in an encoding compatible with
+ * ASCII for digits, signs, separators, and times.
+ * <p>
+ * What happens when a time or a value cannot be parsed depends on the
+ * {@link ErrorMode}. By default, an exception is thrown. In this case, the
+ * series can contain part of the values read before the error.
+ * <p>
+ * A reader can be used for several inputs, one after the other. This class
+ * provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class TimeSeriesCsvReader {
+
+	/**
+	 * ErrorMode defines what to do with times and values which cannot be
+	 * parsed.
+	 */
+	public enum ErrorMode {
+		/**
+		 * Throw an exception.
+		 */
+		FAIL,
+		/**
+		 * Ignore the line.
+		 */
+		SKIP,
+		/**
+		 * Ignore the line if the time cannot be parsed, and use a missing
+		 * value for a value which cannot be parsed.
+		 */
+		MISSING
+	}
+
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int CHUNK_SIZE = 4096;
+	private static final long MAX_EXACT = 1L << 53;
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * A Column accumulates values with consecutive times for one series.
+	 */
+	private static class Column {
+		private final int column;
+		private final TimeAddressable<Double> series;
+		private final double[] values;
+		private long first; // time of values[0], negative when empty
+		private int size;
+
+		private Column(int column, TimeAddressable<Double> series) {
+			this.column = column;
+			this.series = series;
+			this.values = new double[CHUNK_SIZE];
+			this.first = -1;
+		}
+
+		private void add(long time, double value) throws T2Exception {
+			if (size > 0 && (time != first + size || size == CHUNK_SIZE))
+				flush();
+			if (size == 0)
+				first = time;
+			values[size++] = value;
+		}
+
+		private void flush() throws T2Exception {
+			if (size == 0)
+				return;
+			if (series instanceof DoubleRegularTimeSeries)
+				((DoubleRegularTimeSeries) series).put(first, size == CHUNK_SIZE ? values : Arrays.copyOf(values, size));
+			else if (size == 1)
+				series.put(first, box(values[0]));
+			else {
+				Double[] boxed = new Double[size];
+				for (int i = 0; i < size; i++) {
+					boxed[i] = box(values[i]);
+				}
+				series.put(first, boxed);
+			}
+			size = 0;
+			first = -1;
+		}
+
+		private Double box(double value) {
+			return Double.isNaN(value) ? series.getMissingValue() : Double.valueOf(value);
+		}
+	}
+
+	private final TimeDomain domain;
+	private final List<Column> columns;
+	private char separator;
+	private int headerLines;
+	private int timeColumn;
+	private TimeScanner timeScanner;
+	private DateTimeScanner dateTimeScanner;
+	private ErrorMode errorMode;
+	private int lineCount;
+	private int errorCount;
+
+	// parsing state
+	private Column[] slots; // indexed by column number, null for ignored columns
+	private int[] fieldStart;
+	private int[] fieldEnd;
+	private final AsciiCharSequence text;
+
+	/**
+	 * Construct a reader for series in the given time domain.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 */
+	public TimeSeriesCsvReader(TimeDomain domain) {
+		if (domain == null)
+			throw new IllegalArgumentException("domain null");
+		this.domain = domain;
+		this.columns = new ArrayList<Column>();
+		this.separator = ',';
+		this.errorMode = ErrorMode.FAIL;
+		this.text = new AsciiCharSequence(new byte[0], 0, 0);
+	}
+
+	/**
+	 * Set the field separator. The default is a comma.
+	 *
+	 * @param separator
+	 *            an ASCII character other than a double quote
+	 */
+	public void setSeparator(char separator) {
+		if (separator >= 128 || separator == '"' || separator == '\n' || separator == '\r')
+			throw new IllegalArgumentException("separator");
+		this.separator = separator;
+	}
+
+	/**
+	 * Set the number of header lines to ignore. The default is 0.
+	 *
+	 * @param headerLines
+	 *            a non-negative number
+	 */
+	public void setHeaderLines(int headerLines) {
+		if (headerLines < 0)
+			throw new IllegalArgumentException("headerLines < 0");
+		this.headerLines = headerLines;
+	}
+
+	/**
+	 * Set the column with times. The default is 0.
+	 *
+	 * @param column
+	 *            a non-negative column number
+	 */
+	public void setTimeColumn(int column) {
+		if (column < 0)
+			throw new IllegalArgumentException("column < 0");
+		this.timeColumn = column;
+	}
+
+	/**
+	 * Set the scanner for times. When null, which is the default, times are
+	 * scanned by the scanner of the time domain.
+	 *
+	 * @param scanner
+	 *            a time scanner or null
+	 */
+	public void setTimeScanner(TimeScanner scanner) {
+		this.timeScanner = scanner;
+	}
+
+	/**
+	 * Set a date time scanner for times in other formats. When not null, it
+	 * takes precedence over a time scanner.
+	 *
+	 * @param scanner
+	 *            a date time scanner or null
+	 */
+	public void setDateTimeScanner(DateTimeScanner scanner) {
+		this.dateTimeScanner = scanner;
+	}
+
+	/**
+	 * Set the error mode. The default is {@link ErrorMode#FAIL}.
+	 *
+	 * @param mode
+	 *            a non-null error mode
+	 */
+	public void setErrorMode(ErrorMode mode) {
+		if (mode == null)
+			throw new IllegalArgumentException("mode null");
+		this.errorMode = mode;
+	}
+
+	/**
+	 * Add a value column. Values in the column are put into the series.
+	 *
+	 * @param column
+	 *            a non-negative column number, different from the time column
+	 *            and from other value columns
+	 * @param series
+	 *            a non-null time series in the domain of the reader
+	 */
+	public void addColumn(int column, TimeAddressable<Double> series) {
+		if (column < 0)
+			throw new IllegalArgumentException("column < 0");
+		if (series == null)
+			throw new IllegalArgumentException("series null");
+		if (!series.getTimeDomain().equals(domain))
+			throw new IllegalArgumentException("series domain differs");
+		for (Column c : columns) {
+			if (c.column == column)
+				throw new IllegalArgumentException("duplicate column " + column);
+		}
+		columns.add(new Column(column, series));
+	}
+
+	/**
+	 * Return the number of lines with data read by the last call to a
+	 * <code>read</code> method, including lines with errors.
+	 *
+	 * @return the number of lines
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Return the number of errors in the last call to a <code>read</code>
+	 * method. An error is a line skipped or a value replaced by a missing
+	 * value.
+	 *
+	 * @return the number of errors
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Read all lines from an input stream and put values into the series.
+	 * The stream is not closed.
+	 *
+	 * @param in
+	 *            a non-null input stream
+	 * @return the number of lines with data
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public int read(InputStream in) throws T2Exception, IOException {
+		if (in == null)
+			throw new IllegalArgumentException("in null");
+		return read(Channels.newChannel(in));
+	}
+
+	/**
+	 * Read all lines from a channel and put values into the series. The
+	 * channel is not closed.
+	 *
+	 * @param in
+	 *            a non-null readable channel
+	 * @return the number of lines with data
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public int read(ReadableByteChannel in) throws T2Exception, IOException {
+		if (in == null)
+			throw new IllegalArgumentException("in null");
+		prepare();
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		int lineNumber = 0;
+		while (true) {
+			int count = in.read(buffer);
+			byte[] bytes = buffer.array();
+			int pos = 0;
+			int limit = buffer.position();
+			for (int nl = indexOf(bytes, pos, limit, (byte) '\n'); nl >= 0; nl = indexOf(bytes, pos, limit, (byte) '\n')) {
+				if (++lineNumber > headerLines)
+					line(bytes, pos, nl, lineNumber);
+				pos = nl + 1;
+			}
+			if (count < 0) {
+				if (pos < limit && ++lineNumber > headerLines)
+					line(bytes, pos, limit, lineNumber);
+				break;
+			}
+			buffer.limit(limit);
+			buffer.position(pos);
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				// line longer than the buffer
+				ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+		for (Column c : columns) {
+			c.flush();
+		}
+		return lineCount;
+	}
+
+	private void prepare() {
+		if (columns.isEmpty())
+			throw new IllegalStateException("no value column");
+		int maxColumn = timeColumn;
+		for (Column c : columns) {
+			if (c.column == timeColumn)
+				throw new IllegalStateException("value column " + c.column + " is the time column");
+			maxColumn = Math.max(maxColumn, c.column);
+		}
+		slots = new Column[maxColumn + 1];
+		for (Column c : columns) {
+			slots[c.column] = c;
+		}
+		fieldStart = new int[maxColumn + 1];
+		fieldEnd = new int[maxColumn + 1];
+		lineCount = 0;
+		errorCount = 0;
+	}
+
+	/**
+	 * Process one line, without the line separator.
+	 */
+	private void line(byte[] bytes, int start, int end, int lineNumber) throws T2Exception {
+		if (end > start && bytes[end - 1] == '\r')
+			end--;
+		if (end == start)
+			return;
+		lineCount++;
+		int fields = split(bytes, start, end);
+		if (fields <= timeColumn) {
+			error(T2Msg.exception(K.T5042, lineNumber, timeColumn));
+			return;
+		}
+		long time;
+		try {
+			time = scanTime(bytes, fieldStart[timeColumn], fieldEnd[timeColumn]);
+		} catch (T2Exception e) {
+			error(T2Msg.exception(e, K.T5040, lineNumber, timeColumn,
+					string(bytes, fieldStart[timeColumn], fieldEnd[timeColumn])));
+			return;
+		} catch (NumberFormatException e) {
+			error(T2Msg.exception(e, K.T5040, lineNumber, timeColumn,
+					string(bytes, fieldStart[timeColumn], fieldEnd[timeColumn])));
+			return;
+		}
+		if (errorMode == ErrorMode.SKIP) {
+			// verify the whole line before adding anything
+			for (Column c : columns) {
+				if (c.column < fields && Double.isNaN(parseField(bytes, c.column, lineNumber, true))) {
+					errorCount++;
+					return;
+				}
+			}
+		}
+		for (Column c : columns) {
+			double value = c.column < fields ? parseField(bytes, c.column, lineNumber, false) : Double.NaN;
+			c.add(time, value);
+		}
+	}
+
+	/**
+	 * Parse the value in a field. Return NaN for an empty field. When
+	 * checking, return NaN for a field in error and NaN-free fields as 0.
+	 */
+	private double parseField(byte[] bytes, int column, int lineNumber, boolean check) throws T2Exception {
+		int start = fieldStart[column];
+		int end = fieldEnd[column];
+		if (start == end)
+			return check ? 0 : Double.NaN;
+		try {
+			double value = parseDouble(bytes, start, end);
+			return check ? 0 : value;
+		} catch (NumberFormatException e) {
+			if (check)
+				return Double.NaN;
+			error(T2Msg.exception(K.T5041, lineNumber, column, string(bytes, start, end)));
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Throw the exception in mode {@link ErrorMode#FAIL}, else count the
+	 * error.
+	 */
+	private void error(T2Exception e) throws T2Exception {
+		if (errorMode == ErrorMode.FAIL)
+			throw e;
+		errorCount++;
+	}
+
+	private long scanTime(byte[] bytes, int start, int end) throws T2Exception {
+		text.set(bytes, start, end - start);
+		if (dateTimeScanner != null)
+			return dateTimeScanner.scanIndex(domain, text, 0, end - start);
+		TimeScanner scanner = timeScanner == null ? domain.getScanner() : timeScanner;
+		return scanner.scanIndex(domain, text, 0, end - start);
+	}
+
+	/**
+	 * Split a line into fields and return the number of fields. Only the
+	 * bounds of the fields needed are recorded. Spaces around fields and
+	 * double quotes around fields are removed.
+	 */
+	private int split(byte[] bytes, int start, int end) {
+		int field = 0;
+		int pos = start;
+		while (true) {
+			while (pos < end && isBlank(bytes[pos])) {
+				pos++;
+			}
+			int from = pos;
+			int to;
+			if (pos < end && bytes[pos] == '"') {
+				from = ++pos;
+				while (pos < end && bytes[pos] != '"') {
+					pos++;
+				}
+				to = pos;
+				while (pos < end && bytes[pos] != separator) {
+					pos++;
+				}
+			} else {
+				while (pos < end && bytes[pos] != separator) {
+					pos++;
+				}
+				to = pos;
+				while (to > from && isBlank(bytes[to - 1])) {
+					to--;
+				}
+			}
+			if (field < fieldStart.length) {
+				fieldStart[field] = from;
+				fieldEnd[field] = to;
+			}
+			field++;
+			if (pos == end || field >= fieldStart.length)
+				return field;
+			pos++;
+		}
+	}
+
+	private boolean isBlank(byte b) {
+		return (b == ' ' || b == '\t') && b != separator;
+	}
+
+	private static int indexOf(byte[] bytes, int from, int to, byte b) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == b)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Parse a decimal number in ASCII. Numbers with at most 15 or 16
+	 * significant digits and small exponents are computed exactly with a
+	 * single multiplication or division. Anything else is parsed by
+	 * {@link Double#parseDouble(String)}, which is also responsible for
+	 * throwing the exception.
+	 *
+	 * @param bytes
+	 *            a byte array
+	 * @param start
+	 *            the position of the first byte
+	 * @param end
+	 *            the position after the last byte
+	 * @return a double
+	 * @throws NumberFormatException
+	 */
+	static double parseDouble(byte[] bytes, int start, int end) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+'))
+			negative = bytes[pos++] == '-';
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean fast = true;
+		while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+			if (mantissa < MAX_EXACT)
+				mantissa = mantissa * 10 + bytes[pos] - '0';
+			else
+				fast = false;
+			digits++;
+			pos++;
+		}
+		if (pos < end && bytes[pos] == '.') {
+			pos++;
+			while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+				if (mantissa < MAX_EXACT) {
+					mantissa = mantissa * 10 + bytes[pos] - '0';
+					exponent--;
+				} else
+					fast = false;
+				digits++;
+				pos++;
+			}
+		}
+		if (digits > 0 && pos < end && (bytes[pos] == 'e' || bytes[pos] == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+'))
+				negativeExponent = bytes[pos++] == '-';
+			int e = 0;
+			int exponentDigits = 0;
+			while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9' && exponentDigits < 4) {
+				e = e * 10 + bytes[pos++] - '0';
+				exponentDigits++;
+			}
+			if (exponentDigits == 0)
+				fast = false;
+			exponent += negativeExponent ? -e : e;
+		}
+		if (fast && digits > 0 && pos == end && mantissa <= MAX_EXACT && exponent >= -22 && exponent <= 22) {
+			double value = (double) mantissa;
+			if (exponent > 0)
+				value *= POW10[exponent];
+			else if (exponent < 0)
+				value /= POW10[-exponent];
+			return negative ? -value : value;
+		}
+		return Double.parseDouble(string(bytes, start, end));
+	}
+
+	private static String string(byte[] bytes, int start, int end) {
+		return new String(bytes, start, end - start, LATIN1);
+	}
+
+}
@@ -0,0 +1,311 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * A TimeSeriesCsvWriter writes one or more time series as text, with one
+ * line per time and one column per series, the first column containing the
+ * time. There is a line for each time where at least one series has a value
+ * which is not missing. Missing values are written as empty fields. Fields
+ * are separated by commas by default; use a tab for TSV. Values with a
+ * separator, a double quote, or a line break are quoted.
+ * <p>
+ * Rows are assembled in a reusable buffer and written to a channel in large
+ * blocks. Times are formatted with the domain formatter, but in domains
+ * without patterns, consecutive times are formatted incrementally, by
+ * advancing the calendar fields of the previous time. Series are walked
+ * with their {@link Cursor}, and values of a {@link DoubleCursor} are
+ * accessed without boxing. Text is encoded in UTF-8; text which cannot be
+ * encoded, like an unpaired surrogate, makes writing fail with a
+ * {@link java.nio.charset.CharacterCodingException}.
+ * <p>
+ * A writer can be used for several outputs, one after the other. This class
+ * provides no synchronization.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class TimeSeriesCsvWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * A Column follows the cursor of a series.
+	 */
+	private static class Column {
+		private final Cursor<?> cursor;
+		private final DoubleCursor doubles; // null unless values are primitive
+		private long time; // Long.MAX_VALUE when done
+
+		private Column(Cursor<?> cursor) {
+			this.cursor = cursor;
+			this.doubles = cursor instanceof DoubleCursor ? (DoubleCursor) cursor : null;
+			advance();
+		}
+
+		private void advance() {
+			time = cursor.next() ? cursor.index() : Long.MAX_VALUE;
+		}
+
+		private void append(StringBuilder sb) {
+			if (doubles != null)
+				sb.append(doubles.doubleValue());
+			else
+				sb.append(cursor.value());
+		}
+	}
+
+	private final TimeDomain domain;
+	private final List<String> names;
+	private final List<TimeAddressable<?>> columns;
+	private char separator;
+	private boolean header;
+	private String timeName;
+	private final StringBuilder row;
+	private final StringBuilder field;
+	private final CharsetEncoder encoder;
+
+	/**
+	 * Construct a writer for series in the given time domain.
+	 *
+	 * @param domain
+	 *            a non-null time domain
+	 */
+	public TimeSeriesCsvWriter(TimeDomain domain) {
+		if (domain == null)
+			throw new IllegalArgumentException("domain null");
+		this.domain = domain;
+		this.names = new ArrayList<String>();
+		this.columns = new ArrayList<TimeAddressable<?>>();
+		this.separator = ',';
+		this.header = true;
+		this.timeName = "time";
+		this.row = new StringBuilder();
+		this.field = new StringBuilder();
+		this.encoder = UTF8.newEncoder();
+	}
+
+	/**
+	 * Set the field separator. The default is a comma.
+	 *
+	 * @param separator
+	 *            a character other than a double quote or a line break
+	 */
+	public void setSeparator(char separator) {
+		if (separator == '"' || separator == '\n' || separator == '\r')
+			throw new IllegalArgumentException("separator");
+		this.separator = separator;
+	}
+
+	/**
+	 * Set whether to write a header line with column names. The default is
+	 * true.
+	 *
+	 * @param header
+	 *            true to write a header line
+	 */
+	public void setHeader(boolean header) {
+		this.header = header;
+	}
+
+	/**
+	 * Set the name of the time column. The default is "time".
+	 *
+	 * @param name
+	 *            a non-null name
+	 */
+	public void setTimeName(String name) {
+		if (name == null)
+			throw new IllegalArgumentException("name null");
+		this.timeName = name;
+	}
+
+	/**
+	 * Add a column.
+	 *
+	 * @param name
+	 *            a non-null column name
+	 * @param series
+	 *            a non-null time series in the domain of the writer
+	 */
+	public void addColumn(String name, TimeAddressable<?> series) {
+		if (name == null)
+			throw new IllegalArgumentException("name null");
+		if (series == null)
+			throw new IllegalArgumentException("series null");
+		if (!series.getTimeDomain().equals(domain))
+			throw new IllegalArgumentException("series domain differs");
+		names.add(name);
+		columns.add(series);
+	}
+
+	/**
+	 * Write all columns to an output stream. The stream is not closed.
+	 *
+	 * @param out
+	 *            a non-null output stream
+	 * @return the number of lines written, excluding the header
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public int write(OutputStream out) throws T2Exception, IOException {
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		return write(Channels.newChannel(out));
+	}
+
+	/**
+	 * Write all columns to a channel. The channel is not closed.
+	 *
+	 * @param out
+	 *            a non-null writable channel
+	 * @return the number of lines written, excluding the header
+	 * @throws T2Exception
+	 * @throws IOException
+	 */
+	public int write(WritableByteChannel out) throws T2Exception, IOException {
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		if (header) {
+			row.setLength(0);
+			appendField(timeName);
+			for (String name : names) {
+				row.append(separator);
+				appendField(name);
+			}
+			row.append('\n');
+			buffer = put(row, buffer, out);
+		}
+		Column[] cursors = new Column[columns.size()];
+		for (int i = 0; i < cursors.length; i++) {
+			cursors[i] = new Column(columns.get(i).cursor());
+		}
+		IncrementalTimeFormat format = new IncrementalTimeFormat(domain);
+		int lines = 0;
+		while (true) {
+			long time = Long.MAX_VALUE;
+			for (Column c : cursors) {
+				time = Math.min(time, c.time);
+			}
+			if (time == Long.MAX_VALUE)
+				break;
+			row.setLength(0);
+			row.append(format.getText(), 0, format.format(time));
+			for (Column c : cursors) {
+				row.append(separator);
+				if (c.time == time) {
+					field.setLength(0);
+					c.append(field);
+					appendField(field);
+					c.advance();
+				}
+			}
+			row.append('\n');
+			buffer = put(row, buffer, out);
+			lines++;
+		}
+		flush(buffer, out);
+		return lines;
+	}
+
+	/**
+	 * Append a field to the row, with quotes if necessary.
+	 */
+	private void appendField(CharSequence s) {
+		boolean quote = false;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == separator || c == '"' || c == '\n' || c == '\r') {
+				quote = true;
+				break;
+			}
+		}
+		if (!quote) {
+			row.append(s);
+			return;
+		}
+		row.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"')
+				row.append('"');
+			row.append(c);
+		}
+		row.append('"');
+	}
+
+	/**
+	 * Put a row into the buffer, writing the buffer to the channel when it is
+	 * full. Return the buffer, which is replaced by a larger one for very
+	 * long rows.
+	 */
+	private ByteBuffer put(StringBuilder s, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		int length = s.length();
+		if (buffer.remaining() < length * 3) {
+			flush(buffer, out);
+			if (buffer.capacity() < length * 3)
+				buffer = ByteBuffer.allocate(length * 3);
+		}
+		byte[] bytes = buffer.array();
+		int pos = buffer.position();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= 128) {
+				// slow path for non-ASCII text
+				buffer.position(pos);
+				encoder.reset();
+				CoderResult result = encoder.encode(CharBuffer.wrap(s, i, length), buffer, true);
+				if (!result.isError())
+					result = encoder.flush(buffer);
+				if (result.isError())
+					result.throwException();
+				return buffer;
+			}
+			bytes[pos++] = (byte) c;
+		}
+		buffer.position(pos);
+		return buffer;
+	}
+
+	private void flush(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
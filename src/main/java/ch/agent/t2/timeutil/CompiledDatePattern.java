@@ -0,0 +1,452 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeutil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CompiledDatePattern matches text like a {@link java.util.regex.Pattern}
+ * for a small subset of regular expressions, without backtracking and without
+ * creating objects. The subset consists of sequences of literal characters,
+ * the classes <code>.</code>, <code>\d</code>, <code>\D</code>,
+ * <code>\s</code>, <code>\S</code>, <code>\w</code>, <code>\W</code>, and
+ * simple bracket classes, all with optional greedy quantifiers, and of
+ * capturing groups which are neither nested nor quantified. This is enough
+ * for most date and time formats.
+ * <p>
+ * A pattern is only compiled when matching each element greedily from left
+ * to right gives the same result as the regular expression. This is the
+ * case when a character consumed by an element of variable length can never
+ * be the first character of what follows. For example
+ * <code>\S+ (\d+):(\d\d)</code> is compiled but <code>(\d+)(\d\d)</code> is
+ * not.
+ * <p>
+ * A compiled pattern is immutable and can be shared.
+ *
+ * @author Jean-Paul Vetterli
+ */
+final class CompiledDatePattern {
+
+	private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/**
+	 * A CharClass is a set of characters.
+	 */
+	private static final class CharClass {
+		private final boolean[] ascii;
+		private final StringBuilder ranges; // pairs of bounds, non-ASCII characters only
+		private boolean negated;
+
+		private CharClass() {
+			ascii = new boolean[128];
+			ranges = new StringBuilder();
+		}
+
+		private CharClass(char c) {
+			this();
+			add(c, c);
+		}
+
+		private CharClass add(char lo, char hi) {
+			for (int c = lo; c <= hi && c < 128; c++) {
+				ascii[c] = true;
+			}
+			if (hi >= 128) {
+				ranges.append((char) Math.max(lo, 128));
+				ranges.append(hi);
+			}
+			return this;
+		}
+
+		private CharClass add(CharClass other) {
+			for (int c = 0; c < 128; c++) {
+				if (other.ascii[c])
+					ascii[c] = true;
+			}
+			ranges.append(other.ranges);
+			return this;
+		}
+
+		private CharClass negate() {
+			negated = !negated;
+			return this;
+		}
+
+		private boolean matches(char c) {
+			boolean in;
+			if (c < 128)
+				in = ascii[c];
+			else {
+				in = false;
+				for (int i = 0; i < ranges.length(); i += 2) {
+					if (c >= ranges.charAt(i) && c <= ranges.charAt(i + 1)) {
+						in = true;
+						break;
+					}
+				}
+			}
+			return in != negated;
+		}
+
+		private boolean disjoint(CharClass other) {
+			for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+				if (matches((char) c) && other.matches((char) c))
+					return false;
+			}
+			return true;
+		}
+
+		private static CharClass digit() {
+			return new CharClass().add('0', '9');
+		}
+
+		private static CharClass space() {
+			return new CharClass().add(' ', ' ').add('\t', '\r');
+		}
+
+		private static CharClass word() {
+			return new CharClass().add('a', 'z').add('A', 'Z').add('0', '9').add('_', '_');
+		}
+
+		private static CharClass dot() {
+			return new CharClass().add('\n', '\n').add('\r', '\r').add('\u0085', '\u0085')
+					.add('\u2028', '\u2029').negate();
+		}
+	}
+
+	/**
+	 * An Element is a character class with a quantifier, or the start or the
+	 * end of a group.
+	 */
+	private static final class Element {
+		private final CharClass chars; // null for group bounds
+		private final int min;
+		private final int max;
+		private final int bound; // position in the bounds array for group bounds
+
+		private Element(CharClass chars, int min, int max) {
+			this.chars = chars;
+			this.min = min;
+			this.max = max;
+			this.bound = -1;
+		}
+
+		private Element(int bound) {
+			this.chars = null;
+			this.min = 0;
+			this.max = 0;
+			this.bound = bound;
+		}
+	}
+
+	private final Element[] elements;
+	private final int groupCount;
+
+	private CompiledDatePattern(Element[] elements, int groupCount) {
+		this.elements = elements;
+		this.groupCount = groupCount;
+	}
+
+	/**
+	 * Return the number of capturing groups.
+	 *
+	 * @return the number of capturing groups
+	 */
+	public int groupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * Match a part of a character sequence. On success, the start and end
+	 * positions of group <i>g</i> are put into the bounds array at positions
+	 * <i>2g-2</i> and <i>2g-1</i>.
+	 *
+	 * @param text
+	 *            a non-null character sequence
+	 * @param start
+	 *            the position of the first character
+	 * @param end
+	 *            the position after the last character
+	 * @param bounds
+	 *            an array of length at least twice the number of groups
+	 * @return true if the whole part matches the pattern
+	 */
+	public boolean match(CharSequence text, int start, int end, int[] bounds) {
+		int pos = start;
+		for (Element e : elements) {
+			if (e.chars == null) {
+				bounds[e.bound] = pos;
+				continue;
+			}
+			int limit = end - pos <= e.max ? end : pos + e.max;
+			int p = pos;
+			while (p < limit && e.chars.matches(text.charAt(p))) {
+				p++;
+			}
+			if (p - pos < e.min)
+				return false;
+			pos = p;
+		}
+		return pos == end;
+	}
+
+	/**
+	 * Compile a regular expression. The expression must be valid for
+	 * {@link java.util.regex.Pattern}. Return null if the expression is not in
+	 * the supported subset or cannot be matched without backtracking.
+	 *
+	 * @param regex
+	 *            a valid regular expression
+	 * @return a compiled pattern or null
+	 */
+	public static CompiledDatePattern compile(String regex) {
+		List<Element> elements = new ArrayList<Element>();
+		int groups = 0;
+		boolean inGroup = false;
+		int length = regex.length();
+		int pos = 0;
+		if (length > 0 && regex.charAt(0) == '^')
+			pos++;
+		if (length > pos && regex.charAt(length - 1) == '$' && !escaped(regex, length - 1))
+			length--;
+		while (pos < length) {
+			char c = regex.charAt(pos++);
+			CharClass chars;
+			switch (c) {
+			case '(':
+				if (inGroup || pos < length && regex.charAt(pos) == '?')
+					return null;
+				inGroup = true;
+				elements.add(new Element(2 * groups));
+				continue;
+			case ')':
+				if (!inGroup || pos < length && "?*+{".indexOf(regex.charAt(pos)) >= 0)
+					return null;
+				inGroup = false;
+				elements.add(new Element(2 * groups + 1));
+				groups++;
+				continue;
+			case '.':
+				chars = CharClass.dot();
+				break;
+			case '[':
+				int close = bracketEnd(regex, pos, length);
+				if (close < 0)
+					return null;
+				chars = bracket(regex, pos, close);
+				if (chars == null)
+					return null;
+				pos = close + 1;
+				break;
+			case '\\':
+				if (pos == length)
+					return null;
+				chars = escape(regex.charAt(pos++));
+				if (chars == null)
+					return null;
+				break;
+			default:
+				if ("^$|]{}*+?".indexOf(c) >= 0)
+					return null;
+				chars = new CharClass(c);
+			}
+			int min = 1;
+			int max = 1;
+			if (pos < length) {
+				switch (regex.charAt(pos)) {
+				case '?':
+					min = 0;
+					pos++;
+					break;
+				case '*':
+					min = 0;
+					max = UNBOUNDED;
+					pos++;
+					break;
+				case '+':
+					max = UNBOUNDED;
+					pos++;
+					break;
+				case '{':
+					int close = regex.indexOf('}', pos);
+					if (close < 0 || close >= length)
+						return null;
+					String[] counts = regex.substring(pos + 1, close).split(",", -1);
+					try {
+						min = Integer.parseInt(counts[0]);
+						if (counts.length == 1)
+							max = min;
+						else if (counts.length == 2)
+							max = counts[1].length() == 0 ? UNBOUNDED : Integer.parseInt(counts[1]);
+						else
+							return null;
+					} catch (NumberFormatException e) {
+						return null;
+					}
+					pos = close + 1;
+					break;
+				default:
+				}
+				// lazy and possessive quantifiers are not supported
+				if (min != 1 || max != 1) {
+					if (pos < length && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+'))
+						return null;
+				}
+			}
+			elements.add(new Element(chars, min, max));
+		}
+		if (inGroup || !deterministic(elements))
+			return null;
+		return new CompiledDatePattern(elements.toArray(new Element[elements.size()]), groups);
+	}
+
+	/**
+	 * Return true if matching elements greedily without backtracking gives
+	 * the same result as a regular expression.
+	 */
+	private static boolean deterministic(List<Element> elements) {
+		for (int i = 0; i < elements.size(); i++) {
+			Element e = elements.get(i);
+			if (e.chars == null || e.min == e.max)
+				continue;
+			for (int j = i + 1; j < elements.size(); j++) {
+				Element next = elements.get(j);
+				if (next.chars == null)
+					continue;
+				if (!e.chars.disjoint(next.chars))
+					return false;
+				if (next.min > 0)
+					break;
+			}
+		}
+		return true;
+	}
+
+	private static boolean escaped(String regex, int pos) {
+		int backslashes = 0;
+		while (pos > 0 && regex.charAt(--pos) == '\\') {
+			backslashes++;
+		}
+		return backslashes % 2 == 1;
+	}
+
+	/**
+	 * Return the class for an escaped character or null if not supported.
+	 */
+	private static CharClass escape(char c) {
+		switch (c) {
+		case 'd':
+			return CharClass.digit();
+		case 'D':
+			return CharClass.digit().negate();
+		case 's':
+			return CharClass.space();
+		case 'S':
+			return CharClass.space().negate();
+		case 'w':
+			return CharClass.word();
+		case 'W':
+			return CharClass.word().negate();
+		case 't':
+			return new CharClass('\t');
+		case 'n':
+			return new CharClass('\n');
+		case 'r':
+			return new CharClass('\r');
+		case 'f':
+			return new CharClass('\f');
+		default:
+			if (c < 128 && !Character.isLetterOrDigit(c))
+				return new CharClass(c);
+			return null;
+		}
+	}
+
+	/**
+	 * Return the position of the closing bracket of a simple bracket class or
+	 * -1.
+	 */
+	private static int bracketEnd(String regex, int pos, int length) {
+		if (pos < length && regex.charAt(pos) == '^')
+			pos++;
+		if (pos < length && regex.charAt(pos) == ']')
+			return -1;
+		while (pos < length) {
+			char c = regex.charAt(pos);
+			if (c == ']')
+				return pos;
+			if (c == '[' || c == '&')
+				return -1;
+			pos += c == '\\' ? 2 : 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the class for the content of a bracket class or null if not
+	 * supported.
+	 */
+	private static CharClass bracket(String regex, int pos, int close) {
+		CharClass chars = new CharClass();
+		boolean negated = regex.charAt(pos) == '^';
+		if (negated)
+			pos++;
+		while (pos < close) {
+			char lo = regex.charAt(pos++);
+			if (lo == '\\') {
+				CharClass escaped = escape(regex.charAt(pos++));
+				if (escaped == null || escaped.negated)
+					return null;
+				if (escaped.ranges.length() > 0 || countAscii(escaped) > 1) {
+					chars.add(escaped);
+					continue;
+				}
+				lo = firstAscii(escaped);
+			}
+			if (pos + 1 < close && regex.charAt(pos) == '-') {
+				char hi = regex.charAt(pos + 1);
+				if (hi == '\\')
+					return null;
+				if (hi < lo)
+					return null;
+				chars.add(lo, hi);
+				pos += 2;
+			} else
+				chars.add(lo, lo);
+		}
+		return negated ? chars.negate() : chars;
+	}
+
+	private static int countAscii(CharClass chars) {
+		int count = 0;
+		for (boolean b : chars.ascii) {
+			if (b)
+				count++;
+		}
+		return count;
+	}
+
+	private static char firstAscii(CharClass chars) {
+		for (char c = 0; c < 128; c++) {
+			if (chars.ascii[c])
+				return c;
+		}
+		throw new RuntimeException("bug: empty class");
+	}
+
+}
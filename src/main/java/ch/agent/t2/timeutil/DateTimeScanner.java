@@ -16,8 +16,11 @@
  */
 package ch.agent.t2.timeutil;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -26,8 +29,11 @@ import ch.agent.t2.T2Exception;
 import ch.agent.t2.T2Msg;
 import ch.agent.t2.T2Msg.K;
 import ch.agent.t2.time.Adjustment;
+import ch.agent.t2.time.AsciiCharSequence;
 import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.time.TimeParts;
+import ch.agent.t2.time.TimeScanner;
 
 /**
  * DateTimeScanner supports the interpretation of strings as {@link TimeIndex} objects.
@@ -44,15 +50,27 @@ import ch.agent.t2.time.TimeIndex;
  * TimeIndex time = scanner.scan(DateTime.DOMAIN, "Wed Nov 30 12:29:23 UTC 2010");
  * assertEquals("2010-11-30 12:29:23", time.toString());
  * </code></pre></blockquote>
+ * <p>
+ * When the pattern is simple enough, as in the example, it is compiled into
+ * a parser which does not use {@link Matcher} and does not backtrack (see
+ * {@link #isCompiled()}). Month keywords are looked up in a trie. Arrays of
+ * strings can be scanned in bulk, optionally in parallel, with
+ * {@link #scan(TimeDomain, CharSequence[], long[], BitSet, ForkJoinPool)}.
+ * <p>
+ * Scanning methods can be used concurrently, but the scanner must not be
+ * modified with the <code>set</code> methods while scanning.
  *
  * @author Jean-Paul Vetterli
  */
 public class DateTimeScanner {
 
 	private TimeDomain domain;
+	private static final int BULK_THRESHOLD = 4096;
+	
 	private Pattern pattern;
+	private CompiledDatePattern compiled;
 	private int[] patternGroups;
-	private Map<String, Integer> months;
+	private MonthTrie months;
 	private int twoDigitYearThreshold;
 	
 	/**
@@ -89,10 +107,103 @@ public class DateTimeScanner {
 				}
 			}
 			this.patternGroups = groups;
+			this.compiled = CompiledDatePattern.compile(pattern);
+			if (compiled != null && compiled.groupCount() != n)
+				throw new RuntimeException("bug: " + compiled.groupCount());
 		}
 		this.twoDigitYearThreshold = -1;
 	}
 	
+	/**
+	 * MonthTrie maps month keywords to month numbers. Keywords are looked up
+	 * directly in the scanned text, one character at a time.
+	 */
+	private static class MonthTrie {
+		private char[] keys;
+		private MonthTrie[] children;
+		private int size;
+		private int month; // 0 if no keyword ends here
+		
+		private MonthTrie() {
+			keys = new char[0];
+			children = new MonthTrie[0];
+		}
+		
+		private void put(String keyword, int month) {
+			MonthTrie node = this;
+			for (int i = 0; i < keyword.length(); i++) {
+				node = node.child(keyword.charAt(i), true);
+			}
+			node.month = month;
+		}
+		
+		/**
+		 * Return the month of the keyword in a part of a character sequence,
+		 * or 0 if it is not a keyword.
+		 */
+		private int get(CharSequence text, int start, int end) {
+			MonthTrie node = this;
+			for (int i = start; i < end && node != null; i++) {
+				node = node.child(text.charAt(i), false);
+			}
+			return node == null ? 0 : node.month;
+		}
+		
+		private MonthTrie child(char c, boolean create) {
+			for (int i = 0; i < size; i++) {
+				if (keys[i] == c)
+					return children[i];
+			}
+			if (!create)
+				return null;
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size + 4);
+				children = Arrays.copyOf(children, size + 4);
+			}
+			keys[size] = c;
+			children[size] = new MonthTrie();
+			return children[size++];
+		}
+	}
+	
+	/**
+	 * BulkScan scans a range of strings in a fork-join pool.
+	 */
+	private class BulkScan extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final TimeDomain domain;
+		private final CharSequence[] in;
+		private final long[] out;
+		private final BitSet errors;
+		private final int from;
+		private final int to;
+		
+		private BulkScan(TimeDomain domain, CharSequence[] in, long[] out, BitSet errors, int from, int to) {
+			this.domain = domain;
+			this.in = in;
+			this.out = out;
+			this.errors = errors;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= BULK_THRESHOLD) {
+				BitSet failed = scanRange(domain, in, out, from, to);
+				if (failed != null) {
+					synchronized (errors) {
+						merge(errors, failed, from);
+					}
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new BulkScan(domain, in, out, errors, from, mid), 
+						new BulkScan(domain, in, out, errors, mid, to));
+			}
+		}
+	}
+	
 	private void verifyGroups(int requiredLength, int[] groups) throws T2Exception {
 		boolean error = false;
 		if (groups.length != requiredLength)
@@ -137,7 +248,7 @@ public class DateTimeScanner {
 		if (keywords == null || keywords.length != 12)
 			throw new IllegalArgumentException("keywords.length != 12");
 		if (months == null)
-			months = new HashMap<String, Integer>(12);
+			months = new MonthTrie();
 		for (int i = 0; i < keywords.length; i++) {
 			months.put(keywords[i], i + 1);
 		}
@@ -162,6 +273,17 @@ public class DateTimeScanner {
 	public void setTwoDigitYearThreshold(int threshold) {
 		this.twoDigitYearThreshold = threshold;
 	}
+	
+	/**
+	 * Return true if the pattern was compiled into a parser which does not
+	 * use {@link Matcher}. When false, a pattern is matched by a
+	 * {@link Matcher}.
+	 * 
+	 * @return true if the pattern was compiled
+	 */
+	public boolean isCompiled() {
+		return compiled != null;
+	}
 
 	/**
 	 * Scan the date using the default domain.
@@ -188,34 +310,233 @@ public class DateTimeScanner {
 			throw new IllegalArgumentException("domain == null");
 		if (date == null)
 			throw new IllegalArgumentException("text null");
-		if (pattern == null) {
+		if (pattern == null)
 			return domain.time(date);
-		} else  {
-			Matcher matcher = pattern.matcher(date);
-			if (matcher.matches()) {
-				int[] t = new int[] { 0, 1, 1, 0, 0, 0, 0};
-				for (int i = 0; i < patternGroups.length; i++) {
-					if (months != null && i == 1) {
-						String month = matcher.group(patternGroups[i]);
-						Integer m = months.get(month);
-						if (m == null)
-							throw T2Msg.exception(K.T7019, date, month);
-						t[i] = m;
-					} else
-						t[i] = Integer.valueOf(matcher.group(patternGroups[i]));
-				}
-				if (twoDigitYearThreshold >= 0) {
-					if (t[0] < 100 && t[0] >= 0) {
-						if (t[0] < twoDigitYearThreshold)
-							t[0] += 2000;
-						else
-							t[0] += 1900;
-					}
-				}
-				return domain.time(t[0], t[1],	t[2], t[3], t[4], t[5], t[6], Adjustment.NONE);
-			} else
-				throw T2Msg.exception(K.T7018, date, matcher.pattern().toString());
-		} 
+		else
+			return domain.time(scanIndex(domain, date, 0, date.length()));
+	}
+	
+	/**
+	 * Scan a part of a character sequence into a numerical time index of the
+	 * given time domain. Without a pattern, scanning is done by
+	 * {@link TimeScanner#scanIndex(TimeDomain, CharSequence, int, int)}.
+	 * 
+	 * @param domain a non-null time domain
+	 * @param text a non-null character sequence
+	 * @param start the position of the first character
+	 * @param end the position after the last character
+	 * @return a numerical time index in the given domain
+	 * @throws T2Exception
+	 */
+	public long scanIndex(TimeDomain domain, CharSequence text, int start, int end) throws T2Exception {
+		if (domain == null)
+			throw new IllegalArgumentException("domain == null");
+		if (text == null)
+			throw new IllegalArgumentException("text null");
+		return scanIndex(domain, text, start, end, new int[2 * groupCount()]);
+	}
+	
+	/**
+	 * Scan strings in bulk into numerical time indexes of the given time
+	 * domain. The bits of the errors set corresponding to strings which
+	 * cannot be scanned are set, and the corresponding elements of the output
+	 * array are not modified. Other bits in the range of the input array are
+	 * cleared. Null strings are errors.
+	 * 
+	 * @param domain a non-null time domain
+	 * @param in a non-null array of character sequences
+	 * @param out a non-null array at least as long as the input array
+	 * @param errors a non-null bit set
+	 */
+	public void scan(TimeDomain domain, CharSequence[] in, long[] out, BitSet errors) {
+		checkBulk(domain, in, out, errors);
+		errors.clear(0, in.length);
+		BitSet failed = scanRange(domain, in, out, 0, in.length);
+		if (failed != null)
+			merge(errors, failed, 0);
+	}
+	
+	/**
+	 * Scan strings in bulk, in parallel, in a fork-join pool. The result is
+	 * the same as with
+	 * {@link #scan(TimeDomain, CharSequence[], long[], BitSet)}. The method
+	 * returns when all strings have been scanned.
+	 * 
+	 * @param domain a non-null time domain
+	 * @param in a non-null array of character sequences
+	 * @param out a non-null array at least as long as the input array
+	 * @param errors a non-null bit set
+	 * @param pool a non-null fork-join pool
+	 */
+	public void scan(TimeDomain domain, CharSequence[] in, long[] out, BitSet errors, ForkJoinPool pool) {
+		checkBulk(domain, in, out, errors);
+		if (pool == null)
+			throw new IllegalArgumentException("pool null");
+		errors.clear(0, in.length);
+		pool.invoke(new BulkScan(domain, in, out, errors, 0, in.length));
+	}
+	
+	private void checkBulk(TimeDomain domain, CharSequence[] in, long[] out, BitSet errors) {
+		if (domain == null)
+			throw new IllegalArgumentException("domain == null");
+		if (in == null)
+			throw new IllegalArgumentException("in null");
+		if (out == null)
+			throw new IllegalArgumentException("out null");
+		if (errors == null)
+			throw new IllegalArgumentException("errors null");
+		if (out.length < in.length)
+			throw new IllegalArgumentException("out too short");
+	}
+	
+	/**
+	 * Scan a range of strings. Return null if there is no error, else a bit
+	 * set with errors relative to the start of the range.
+	 */
+	private BitSet scanRange(TimeDomain domain, CharSequence[] in, long[] out, int from, int to) {
+		BitSet failed = null;
+		int[] bounds = new int[2 * groupCount()];
+		for (int i = from; i < to; i++) {
+			CharSequence text = in[i];
+			try {
+				if (text == null)
+					throw new IllegalArgumentException("text null");
+				out[i] = scanIndex(domain, text, 0, text.length(), bounds);
+				continue;
+			} catch (T2Exception e) {
+			} catch (IllegalArgumentException e) {
+				// includes NumberFormatException
+			}
+			if (failed == null)
+				failed = new BitSet();
+			failed.set(i - from);
+		}
+		return failed;
+	}
+	
+	private static void merge(BitSet errors, BitSet failed, int offset) {
+		for (int i = failed.nextSetBit(0); i >= 0; i = failed.nextSetBit(i + 1)) {
+			errors.set(offset + i);
+		}
+	}
+	
+	private int groupCount() {
+		return patternGroups == null ? 0 : patternGroups.length;
+	}
+	
+	private long scanIndex(TimeDomain domain, CharSequence text, int start, int end, int[] bounds) throws T2Exception {
+		if (pattern == null)
+			return domain.getScanner().scanIndex(domain, text, start, end);
+		if (!match(text, start, end, bounds))
+			throw T2Msg.exception(K.T7018, text.subSequence(start, end).toString(), pattern.toString());
+		int n = patternGroups.length;
+		int year = field(0, n, 0, text, start, end, bounds);
+		if (twoDigitYearThreshold >= 0) {
+			if (year < 100 && year >= 0) {
+				if (year < twoDigitYearThreshold)
+					year += 2000;
+				else
+					year += 1900;
+			}
+		}
+		TimeParts tp = new TimeParts(domain.getResolution(), year,
+				field(1, n, 1, text, start, end, bounds), field(2, n, 1, text, start, end, bounds),
+				field(3, n, 0, text, start, end, bounds), field(4, n, 0, text, start, end, bounds),
+				field(5, n, 0, text, start, end, bounds), field(6, n, 0, text, start, end, bounds));
+		return domain.getPacker().pack(tp, Adjustment.NONE);
+	}
+	
+	/**
+	 * Match the pattern and put group bounds into an array.
+	 */
+	private boolean match(CharSequence text, int start, int end, int[] bounds) {
+		if (compiled != null)
+			return compiled.match(text, start, end, bounds);
+		Matcher matcher = pattern.matcher(text);
+		matcher.region(start, end);
+		if (!matcher.matches())
+			return false;
+		for (int g = 1; g <= patternGroups.length; g++) {
+			bounds[2 * g - 2] = matcher.start(g);
+			bounds[2 * g - 1] = matcher.end(g);
+		}
+		return true;
+	}
+	
+	/**
+	 * Return the value of a date or time field, or a default value if the
+	 * pattern has no group for it.
+	 */
+	private int field(int i, int n, int defaultValue, CharSequence text, int start, int end, int[] bounds) throws T2Exception {
+		if (i >= n)
+			return defaultValue;
+		int group = patternGroups[i];
+		int from = bounds[2 * group - 2];
+		int to = bounds[2 * group - 1];
+		if (months != null && i == 1) {
+			int m = from < 0 ? 0 : months.get(text, from, to);
+			if (m == 0)
+				throw T2Msg.exception(K.T7019, text.subSequence(start, end).toString(), 
+						from < 0 ? null : text.subSequence(from, to).toString());
+			return m;
+		}
+		return parseInt(text, from, to);
+	}
+	
+	/**
+	 * Scan ASCII text in a byte array into a numerical time index of the
+	 * given time domain. Bytes are not decoded into a string.
+	 * 
+	 * @param domain a non-null time domain
+	 * @param bytes a non-null byte array
+	 * @param offset the position of the first byte
+	 * @param length the number of bytes
+	 * @return a numerical time index in the given domain
+	 * @throws T2Exception
+	 */
+	public long scanIndex(TimeDomain domain, byte[] bytes, int offset, int length) throws T2Exception {
+		return scanIndex(domain, new AsciiCharSequence(bytes, offset, length), 0, length);
+	}
+	
+	/**
+	 * Scan ASCII text in a byte buffer into a numerical time index of the
+	 * given time domain. Bytes are not decoded into a string and the position
+	 * of the buffer is not modified. The buffer can be a memory-mapped buffer.
+	 * 
+	 * @param domain a non-null time domain
+	 * @param buffer a non-null byte buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @return a numerical time index in the given domain
+	 * @throws T2Exception
+	 */
+	public long scanIndex(TimeDomain domain, ByteBuffer buffer, int index, int length) throws T2Exception {
+		return scanIndex(domain, new AsciiCharSequence(buffer, index, length), 0, length);
+	}
+	
+	/**
+	 * Parse a decimal integer in a part of a character sequence. Anything
+	 * else than an optional sign followed by at most 9 digits is parsed by
+	 * {@link Integer#valueOf(String)}, which is also responsible for throwing
+	 * the exception.
+	 */
+	private static int parseInt(CharSequence text, int start, int end) {
+		if (start < 0)
+			return Integer.valueOf((String) null);
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+'))
+			negative = text.charAt(pos++) == '-';
+		int value = 0;
+		if (pos == end || end - pos > 9)
+			return Integer.valueOf(text.subSequence(start, end).toString());
+		for (; pos < end; pos++) {
+			char c = text.charAt(pos);
+			if (c < '0' || c > '9')
+				return Integer.valueOf(text.subSequence(start, end).toString());
+			value = value * 10 + c - '0';
+		}
+		return negative ? -value : value;
 	}
 	
 }
@@ -0,0 +1,96 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.time.junit;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Adjustment;
+import ch.agent.t2.time.Resolution;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeFormatter;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.time.TimePacker;
+import ch.agent.t2.time.TimeScanner;
+
+/**
+ * A DelegatingTimeDomain implements only the abstract methods of
+ * {@link TimeDomain}, by delegating them to another time domain. It is used
+ * to test the default methods of the interface.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class DelegatingTimeDomain implements TimeDomain {
+	private final TimeDomain domain;
+
+	public DelegatingTimeDomain(TimeDomain domain) {
+		this.domain = domain;
+	}
+
+	public boolean similar(TimeDomain domain) {
+		return this.domain.similar(domain);
+	}
+	public void requireEquality(TimeDomain domain) throws T2Exception {
+		this.domain.requireEquality(domain);
+	}
+	public Resolution getResolution() {
+		return domain.getResolution();
+	}
+	public int compareResolutionTo(Resolution unit) {
+		return domain.compareResolutionTo(unit);
+	}
+	public long getOrigin() {
+		return domain.getOrigin();
+	}
+	public String getLabel() {
+		return domain.getLabel();
+	}
+	public TimeIndex time(long index) {
+		return domain.time(index);
+	}
+	public TimeIndex timeFromOffset(long offset) {
+		return domain.timeFromOffset(offset);
+	}
+	public TimeIndex minTime() {
+		return domain.minTime();
+	}
+	public TimeIndex maxTime() {
+		return domain.maxTime();
+	}
+	public TimeIndex minTime(boolean offsetCompatible) {
+		return domain.minTime(offsetCompatible);
+	}
+	public TimeIndex maxTime(boolean offsetCompatible) {
+		return domain.maxTime(offsetCompatible);
+	}
+	public TimeIndex time(String date) throws T2Exception {
+		return domain.time(date);
+	}
+	public TimeIndex time(String date, Adjustment adjust) throws T2Exception {
+		return domain.time(date, adjust);
+	}
+	public TimeIndex time(long year, int month, int day, int hour, int min, int sec, int usec, Adjustment adjust) throws T2Exception {
+		return domain.time(year, month, day, hour, min, sec, usec, adjust);
+	}
+	public TimePacker getPacker() {
+		return domain.getPacker();
+	}
+	public TimeFormatter getFormatter() {
+		return domain.getFormatter();
+	}
+	public TimeScanner getScanner() {
+		return domain.getScanner();
+	}
+}
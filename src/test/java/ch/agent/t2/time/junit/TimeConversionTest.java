@@ -1,9 +1,14 @@
 package ch.agent.t2.time.junit;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import ch.agent.core.KeyedException;
 import ch.agent.t2.T2Msg.K;
 import ch.agent.t2.applied.DateTime;
 import ch.agent.t2.applied.Month;
+import ch.agent.t2.applied.SystemTime;
 import ch.agent.t2.applied.ThirdFriday;
 import ch.agent.t2.applied.Week;
 import ch.agent.t2.applied.Workday;
@@ -11,6 +16,7 @@ import ch.agent.t2.applied.Year;
 import ch.agent.t2.time.Adjustment;
 import ch.agent.t2.time.Cycle;
 import ch.agent.t2.time.Day;
+import ch.agent.t2.time.DomainConverter;
 import ch.agent.t2.time.Resolution;
 import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeDomainDefinition;
@@ -133,6 +139,31 @@ public class TimeConversionTest extends TestCase {
 
 	
 	
+	public void testCompMixed() {
+		try {
+			List<TimeIndex> times = new ArrayList<TimeIndex>();
+			times.add(Workday.DOMAIN.time("2005-06-03"));
+			times.add(Week.DOMAIN.time("2005-06-02", Adjustment.DOWN));
+			times.add(DateTime.DOMAIN.time("2005-06-02 12:00:00"));
+			times.add(DateTime.DOMAIN.time("2005-06-01 23:59:59"));
+			times.add(ThirdFriday.DOMAIN.time("2005-06-17"));
+			times.add(Month.DOMAIN.time("2005-06"));
+			times.add(SystemTime.DOMAIN.time("2005-06-02 00:00:00.001"));
+			times.add(Year.DOMAIN.time("2005"));
+			Collections.sort(times);
+			String[] expected = {"2005", "2005-06", "2005-06-01 23:59:59", "2005-06-02", 
+					"2005-06-02 00:00:00.001", "2005-06-02 12:00:00", "2005-06-03", "2005-06-17"};
+			for (int i = 0; i < expected.length; i++)
+				assertEquals(expected[i], times.get(i).toString());
+			// a time with a lower resolution compares equal to its start
+			assertEquals(0, Week.DOMAIN.time("2005-06-02").compareTo(DateTime.DOMAIN.time("2005-06-02 00:00:00")));
+			assertEquals(0, Workday.DOMAIN.time("2005-06-02").compareTo(SystemTime.DOMAIN.time("2005-06-02 00:00:00.000")));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception unexpected");
+		}
+	}
+	
 	public void testConvert01() {
 		try {
 			TimeIndex time = new DateTime("2009-06-01 12:34:12");
@@ -242,6 +273,103 @@ public class TimeConversionTest extends TestCase {
 		}
 	}
 
-}
-
+	/**
+	 * Convert a series of times with a converter and with
+	 * {@link TimeIndex#convert(TimeDomain, Adjustment)} and verify that
+	 * results or exceptions are identical.
+	 */
+	private void compareConverter(TimeDomain source, TimeDomain target, Adjustment adjust, 
+			String start, long step, int count) throws Exception {
+		DomainConverter converter = source.converterTo(target, adjust);
+		long[] times = new long[count];
+		long t = source.time(start, Adjustment.UP).asLong();
+		for (int i = 0; i < count; i++) {
+			times[i] = t;
+			String expected = null;
+			try {
+				expected = String.valueOf(source.time(t).convert(target, adjust).asLong());
+			} catch (KeyedException e) {
+				expected = e.getMsg().getKey();
+			}
+			String actual = null;
+			try {
+				actual = String.valueOf(converter.convert(t));
+			} catch (KeyedException e) {
+				actual = e.getMsg().getKey();
+			}
+			assertEquals(source.getLabel() + "->" + target.getLabel() + " " + adjust + " " + source.time(t), expected, actual);
+			t += step;
+		}
+	}
+	
+	public void testConverter() {
+		try {
+			TimeDomain nano = new TimeDomainDefinition("time_nsec", Resolution.NSEC, 0L).asTimeDomain();
+			for (Adjustment adjust : Adjustment.values()) {
+				compareConverter(Day.DOMAIN, Workday.DOMAIN, adjust, "2004-12-20", 1, 30);
+				compareConverter(Day.DOMAIN, Week.DOMAIN, adjust, "2004-12-20", 1, 30);
+				compareConverter(DateTime.DOMAIN, Workday.DOMAIN, adjust, "2004-12-24 18:00:00", 3 * 3600 + 17, 100);
+				compareConverter(Day.DOMAIN, ThirdFriday.DOMAIN, adjust, "2004-12-01", 3, 40);
+				compareConverter(Year.DOMAIN, Workday.DOMAIN, adjust, "2000", 1, 20);
+				compareConverter(Month.DOMAIN, Workday.DOMAIN, adjust, "2000-01", 1, 30);
+				compareConverter(DateTime.DOMAIN, nano, adjust, "2004-12-24 18:00:00", 3 * 3600 + 17, 20);
+				compareConverter(nano, DateTime.DOMAIN, adjust, "2004-12-24 18:00:00", 3600000000017L, 20);
+			}
+			compareConverter(Workday.DOMAIN, Day.DOMAIN, Adjustment.NONE, "2004-12-20", 1, 30);
+			compareConverter(ThirdFriday.DOMAIN, Month.DOMAIN, Adjustment.NONE, "2004-12", 1, 30);
+			compareConverter(DateTime.DOMAIN, Day.DOMAIN, Adjustment.NONE, "2004-12-24 18:00:00", 3 * 3600 + 17, 100);
+			compareConverter(SystemTime.DOMAIN, DateTime.DOMAIN, Adjustment.NONE, "2004-12-24 18:00:00", 3600017, 100);
+			compareConverter(Day.DOMAIN, DateTime.DOMAIN, Adjustment.NONE, "2004-12-24", 1, 100);
+			compareConverter(Month.DOMAIN, Day.DOMAIN, Adjustment.NONE, "1999-01", 1, 50);
+			compareConverter(Day.DOMAIN, Month.DOMAIN, Adjustment.NONE, "1999-12-28", 1, 50);
+			compareConverter(Year.DOMAIN, Month.DOMAIN, Adjustment.NONE, "1999", 1, 5);
+			compareConverter(Month.DOMAIN, Year.DOMAIN, Adjustment.NONE, "1999-11", 1, 5);
+			compareConverter(DateTime.DOMAIN, Year.DOMAIN, Adjustment.NONE, "1999-12-31 23:59:58", 1, 5);
+			compareConverter(Day.DOMAIN, Day.DOMAIN, Adjustment.NONE, "1999-12-31", 1, 5);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception not expected");
+		}
+	}
+	
+	public void testConverterDefault() {
+		try {
+			TimeDomain source = new DelegatingTimeDomain(Day.DOMAIN);
+			DomainConverter converter = source.converterTo(Workday.DOMAIN, Adjustment.DOWN);
+			assertSame(source, converter.getSource());
+			assertSame(Workday.DOMAIN, converter.getTarget());
+			assertEquals(Adjustment.DOWN, converter.getAdjustment());
+			DomainConverter expected = Day.DOMAIN.converterTo(Workday.DOMAIN, Adjustment.DOWN);
+			long t = Day.DOMAIN.time("2005-06-06").asLong();
+			for (long i = t; i < t + 20; i++)
+				assertEquals(expected.convert(i), converter.convert(i));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception not expected");
+		}
+	}
+	
+	public void testConverterArray() {
+		try {
+			DomainConverter converter = Day.DOMAIN.converterTo(Workday.DOMAIN, Adjustment.DOWN);
+			long[] times = new long[7];
+			long t = Day.DOMAIN.time("2005-06-06").asLong();
+			for (int i = 0; i < times.length; i++)
+				times[i] = t + i;
+			converter.convert(times, times);
+			assertEquals("2005-06-10", Workday.DOMAIN.time(times[4]).toString());
+			assertEquals("2005-06-10", Workday.DOMAIN.time(times[6]).toString());
+			converter = Day.DOMAIN.converterTo(Workday.DOMAIN, Adjustment.NONE);
+			try {
+				converter.convert(new long[] {t, t + 5}, new long[2]);
+				fail("exception expected");
+			} catch (KeyedException e) {
+				assertEquals(K.T1068, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception not expected");
+		}
+	}
 
+}
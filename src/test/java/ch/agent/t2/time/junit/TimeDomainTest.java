@@ -1,6 +1,9 @@
 package ch.agent.t2.time.junit;
 
+import java.util.BitSet;
+
 import ch.agent.core.KeyedException;
+import ch.agent.t2.T2Exception;
 import ch.agent.t2.T2Msg.K;
 import ch.agent.t2.applied.DateTime;
 import ch.agent.t2.applied.DayByNameAndRank;
@@ -11,6 +14,7 @@ import ch.agent.t2.applied.SimpleSubPeriodPattern;
 import ch.agent.t2.applied.SystemTime;
 import ch.agent.t2.applied.ThirdFriday;
 import ch.agent.t2.applied.Workday;
+import ch.agent.t2.applied.Year;
 import ch.agent.t2.time.Adjustment;
 import ch.agent.t2.time.BasePeriodPattern;
 import ch.agent.t2.time.Cycle;
@@ -24,6 +28,9 @@ import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeDomainCatalog;
 import ch.agent.t2.time.TimeDomainDefinition;
 import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.time.TimePacker;
+import ch.agent.t2.time.TimeParts;
+import ch.agent.t2.time.TimeTools;
 import junit.framework.TestCase;
 
 public class TimeDomainTest extends TestCase {
@@ -453,6 +460,27 @@ public class TimeDomainTest extends TestCase {
 			fail(e.getMessage());
 		}
 	}
+	
+	public void testMaxTimeSubPeriod() {
+		try {
+			// sub periods do not go past the maximum of their resolution
+			TimeIndex time = ThirdFriday.DOMAIN.maxTime();
+			assertEquals("+25252734927766554-06-21", time.toString());
+			assertTrue(Day.DOMAIN.maxTime().compareTo(time.convert(Day.DOMAIN)) > 0);
+			try {
+				ThirdFriday.DOMAIN.time(time.asLong() + 1);
+				fail("exception expected");
+			} catch (IllegalArgumentException e) {
+				assertEquals(K.T1070, ((T2Exception) e.getCause()).getMsg().getKey());
+			}
+			TimeDomain tenth = getTimeDomain(new TimeDomainDefinition("tenth", Resolution.MONTH, 0L, null,
+					new SimpleSubPeriodPattern(Resolution.MONTH, Resolution.DAY, new int[]{10, 20})));
+			assertTrue(Day.DOMAIN.maxTime().compareTo(tenth.maxTime().convert(Day.DOMAIN)) > 0);
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
 
 	private void helperSubPeriod01(String input, Adjustment adjust, String expected) {
 		try {
@@ -780,6 +808,382 @@ public class TimeDomainTest extends TestCase {
 	public void testDaySubPeriod03a() {
 		helperDaySubPeriod03("2000-01-01", 9, Adjustment.UP, "2004-12-20", null, false);
 	}
+	
+	private void helperFieldAccessors(TimeDomain d, long from, long step, int count) {
+		TimePacker packer = d.getPacker();
+		for (int i = 0; i < count; i++) {
+			long t = from + i * step;
+			TimeParts tp = packer.unpack(t);
+			assertEquals(d.getLabel() + " " + t, tp.getYear(), packer.yearOf(t));
+			assertEquals(d.getLabel() + " " + t, tp.getMonth(), packer.monthOf(t));
+			assertEquals(d.getLabel() + " " + t, tp.getDay(), packer.dayOf(t));
+			assertEquals(d.getLabel() + " " + t, tp.getHour() * 3600 + tp.getMin() * 60 + tp.getSec(), packer.secondOfDay(t));
+		}
+	}
+	
+	public void testFieldAccessors() {
+		try {
+			helperFieldAccessors(Year.DOMAIN, 0, 1, 3000);
+			helperFieldAccessors(Month.DOMAIN, 0, 1, 30000);
+			helperFieldAccessors(Day.DOMAIN, 0, 1, 400 * 366 + 10);
+			helperFieldAccessors(Day.DOMAIN, 146097L * 1000000 - 5, 1, 10);
+			helperFieldAccessors(Workday.DOMAIN, 0, 13, 30000);
+			helperFieldAccessors(DateTime.DOMAIN, 0, 86399 * 5 + 17, 100000);
+			helperFieldAccessors(SystemTime.DOMAIN, 0, 86399999L * 11 + 17, 100000);
+			helperFieldAccessors(ThirdFriday.DOMAIN, 0, 1, 30000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("hours", Resolution.HOUR, 0L)), 0, 7, 100000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("minutes", Resolution.MIN, 0L)), 0, 1447, 100000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("usec", Resolution.USEC, 0L)), 0, 86399999999L * 11 + 17, 100000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("nsec", Resolution.NSEC, 0L)), 0, 86399999999999L + 17, 50000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("abc", Resolution.MONTH, 0L, null,
+					new SimpleSubPeriodPattern(Resolution.MONTH, Resolution.DAY, new int[]{10,20}))), 0, 3, 30000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("abcde", Resolution.DAY, 0L, 
+					new Cycle(false, false, true, true, true, true, true), 
+					new SimpleSubPeriodPattern(Resolution.DAY, Resolution.SEC, new int[]{36000, 54000, 63000}))), 0, 7, 100000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("abcdef", Resolution.YEAR, 0L, null,
+					new SimpleSubPeriodPattern(Resolution.YEAR, Resolution.MONTH, new int[]{3, 9}))), 0, 1, 5000);
+			helperFieldAccessors(getTimeDomain(new TimeDomainDefinition("yearly-fri", Resolution.YEAR, 0L, null,
+					new DayRankingSubPeriodPattern(Resolution.YEAR, 
+							new DayByNameAndRank[]{new DayByNameAndRank(DayOfWeek.Fri, 3), new DayByNameAndRank(DayOfWeek.Mon, -1)}))), 0, 1, 5000);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
+	public void testDayByRankOverflow() {
+		// the daily domain ends in July of this year
+		long year = 25252734927766554L;
+		long last = year * 12 + 6;
+		try {
+			assertEquals(19, TimeTools.getDayByRank(year, 7, DayOfWeek.Fri, 3));
+			TimeParts tp = ThirdFriday.DOMAIN.getPacker().unpack(last);
+			assertEquals(19, tp.getDay());
+			assertEquals(7, ThirdFriday.DOMAIN.getPacker().monthOf(last));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+		try {
+			TimeTools.getDayByRank(year, 8, DayOfWeek.Fri, 3);
+			fail("exception expected");
+		} catch (T2Exception e) {
+			assertEquals(K.T1079, e.getMsg().getKey());
+		}
+		try {
+			ThirdFriday.DOMAIN.getPacker().monthOf(last + 1);
+			fail("exception expected");
+		} catch (RuntimeException e) {
+			assertEquals(K.T1079, ((T2Exception) e.getCause()).getMsg().getKey());
+		}
+	}
+	
+	/**
+	 * A packer implementing only the abstract methods, by delegation.
+	 */
+	private static class MinimalPacker implements TimePacker {
+		private final TimePacker packer;
+		private MinimalPacker(TimePacker packer) {
+			this.packer = packer;
+		}
+		public BasePeriodPattern getBasePeriodPattern() {
+			return packer.getBasePeriodPattern();
+		}
+		public SubPeriodPattern getSubPeriodPattern() {
+			return packer.getSubPeriodPattern();
+		}
+		public int getBasePeriodSize() {
+			return packer.getBasePeriodSize();
+		}
+		public TimeIndex getBasePeriodStart(TimeIndex t) {
+			return packer.getBasePeriodStart(t);
+		}
+		public boolean valid(long time, boolean testOnly) throws T2Exception {
+			return packer.valid(time, testOnly);
+		}
+		public TimeParts unpack(long time) {
+			return packer.unpack(time);
+		}
+		public long pack(TimeParts timeParts, Adjustment adjust) throws T2Exception {
+			return packer.pack(timeParts, adjust);
+		}
+		public DayOfWeek getDayOfWeek(TimeIndex time) throws T2Exception {
+			return packer.getDayOfWeek(time);
+		}
+	}
 
-}
+	/**
+	 * A sub period pattern implementing only the abstract methods, by delegation.
+	 */
+	private static class MinimalSubPeriodPattern implements SubPeriodPattern {
+		private final SubPeriodPattern pattern;
+		private MinimalSubPeriodPattern(SubPeriodPattern pattern) {
+			this.pattern = pattern;
+		}
+		public int getSize() {
+			return pattern.getSize();
+		}
+		public Resolution getSubPeriod() {
+			return pattern.getSubPeriod();
+		}
+		public Resolution getBasePeriod() {
+			return pattern.getBasePeriod();
+		}
+		public long adjustForSubPeriod(long time, Adjustment adjust, TimeParts timeParts) throws T2Exception {
+			return pattern.adjustForSubPeriod(time, adjust, timeParts);
+		}
+		public TimeParts fillInSubPeriod(int subPeriod, TimeParts timeParts) {
+			return pattern.fillInSubPeriod(subPeriod, timeParts);
+		}
+	}
+
+	public void testFieldAccessorDefaults() {
+		TimeDomain[] domains = { Day.DOMAIN, Workday.DOMAIN, DateTime.DOMAIN, ThirdFriday.DOMAIN, SystemTime.DOMAIN };
+		for (TimeDomain d : domains) {
+			TimePacker packer = d.getPacker();
+			TimePacker minimal = new MinimalPacker(packer);
+			for (long t = 0; t < 1000000000L; t += 9876541) {
+				assertEquals(packer.yearOf(t), minimal.yearOf(t));
+				assertEquals(packer.monthOf(t), minimal.monthOf(t));
+				assertEquals(packer.dayOf(t), minimal.dayOf(t));
+				assertEquals(packer.secondOfDay(t), minimal.secondOfDay(t));
+			}
+		}
+		SubPeriodPattern[] patterns = {
+			new SimpleSubPeriodPattern(Resolution.YEAR, Resolution.MONTH, new int[]{3, 9}),
+			new SimpleSubPeriodPattern(Resolution.MONTH, Resolution.DAY, new int[]{10, 20}),
+			new SimpleSubPeriodPattern(Resolution.DAY, Resolution.SEC, new int[]{36000, 54000, 63000}),
+			new DayRankingSubPeriodPattern(Resolution.YEAR, 
+					new DayByNameAndRank[]{new DayByNameAndRank(DayOfWeek.Fri, 3), new DayByNameAndRank(DayOfWeek.Mon, -1)}),
+			new DayRankingSubPeriodPattern(Resolution.MONTH, 
+					new DayByNameAndRank[]{new DayByNameAndRank(DayOfWeek.Wed, 2)}),
+		};
+		for (SubPeriodPattern pattern : patterns) {
+			SubPeriodPattern minimal = new MinimalSubPeriodPattern(pattern);
+			for (long t = 0; t < 30000; t += 7) {
+				for (int i = 0; i < pattern.getSize(); i++) {
+					assertEquals(pattern.expandSubPeriod(t, i), minimal.expandSubPeriod(t, i));
+				}
+			}
+		}
+	}
+	
+	public void testExpandSubPeriodDefault() {
+		// a pattern with hours as base period, at 15 and 45 minutes
+		final int[] minutes = { 15, 45 };
+		SubPeriodPattern pattern = new SubPeriodPattern() {
+			public int getSize() {
+				return minutes.length;
+			}
+			public Resolution getSubPeriod() {
+				return Resolution.MIN;
+			}
+			public Resolution getBasePeriod() {
+				return Resolution.HOUR;
+			}
+			public long adjustForSubPeriod(long time, Adjustment adjust, TimeParts timeParts) throws T2Exception {
+				throw new UnsupportedOperationException();
+			}
+			public TimeParts fillInSubPeriod(int subPeriod, TimeParts tp) {
+				return new TimeParts(Resolution.MIN, tp.getYear(), tp.getMonth(), tp.getDay(), tp.getHour(), minutes[subPeriod], 0, 0);
+			}
+		};
+		for (long t = 0; t < 10000000; t += 997) {
+			for (int i = 0; i < minutes.length; i++) {
+				assertEquals(t * 60 + minutes[i], pattern.expandSubPeriod(t, i));
+			}
+		}
+	}
+	
+	public void testBulkDefaults() {
+		TimeDomain[] domains = { Day.DOMAIN, Workday.DOMAIN, DateTime.DOMAIN, ThirdFriday.DOMAIN, SystemTime.DOMAIN };
+		int n = 1000;
+		for (TimeDomain d : domains) {
+			TimePacker packer = d.getPacker();
+			TimePacker minimal = new MinimalPacker(packer);
+			long[] times = new long[n];
+			for (int i = 0; i < n; i++)
+				times[i] = i * 9876541L;
+			long[][] y = new long[2][n];
+			int[][][] f = new int[2][6][n];
+			packer.unpackAll(times, y[0], f[0][0], f[0][1], f[0][2], f[0][3], f[0][4], f[0][5]);
+			minimal.unpackAll(times, y[1], f[1][0], f[1][1], f[1][2], f[1][3], f[1][4], f[1][5]);
+			assertTrue(java.util.Arrays.equals(y[0], y[1]));
+			assertTrue(java.util.Arrays.deepEquals(f[0], f[1]));
+			// make some times invalid
+			for (int i = 0; i < n; i += 7)
+				f[0][1][i] = 32;
+			for (Adjustment adjust : Adjustment.values()) {
+				long[][] packed = new long[2][n];
+				BitSet[] rejected = { new BitSet(), new BitSet() };
+				assertEquals(packer.packAll(y[0], f[0][0], f[0][1], f[0][2], f[0][3], f[0][4], f[0][5], adjust, packed[0], rejected[0]), 
+						minimal.packAll(y[0], f[0][0], f[0][1], f[0][2], f[0][3], f[0][4], f[0][5], adjust, packed[1], rejected[1]));
+				assertTrue(java.util.Arrays.equals(packed[0], packed[1]));
+				assertEquals(rejected[0], rejected[1]);
+			}
+		}
+	}
+	
+	private void helperBulk(TimeDomain d, long from, long step, int count, Adjustment adjust) throws KeyedException {
+		TimePacker packer = d.getPacker();
+		long[] times = new long[count];
+		for (int i = 0; i < count; i++)
+			times[i] = from + i * step;
+		long[] y = new long[count];
+		int[] m = new int[count];
+		int[] dd = new int[count];
+		int[] h = new int[count];
+		int[] mi = new int[count];
+		int[] s = new int[count];
+		int[] f = new int[count];
+		packer.unpackAll(times, y, m, dd, h, mi, s, f);
+		for (int i = 0; i < count; i++) {
+			TimeParts tp = packer.unpack(times[i]);
+			assertEquals(d.getLabel(), tp.getYear(), y[i]);
+			assertEquals(d.getLabel(), tp.getMonth(), m[i]);
+			assertEquals(d.getLabel(), tp.getDay(), dd[i]);
+			assertEquals(d.getLabel(), tp.getHour(), h[i]);
+			assertEquals(d.getLabel(), tp.getMin(), mi[i]);
+			assertEquals(d.getLabel(), tp.getSec(), s[i]);
+			assertEquals(d.getLabel(), tp.getFsec(), f[i]);
+		}
+		// invalidate some components
+		for (int i = 0; i < count; i += 5) {
+			switch (i % 4) {
+			case 0: m[i] = 13; break;
+			case 1: dd[i] = 31; break;
+			case 2: h[i] = 25; break;
+			default: s[i] = 60; break;
+			}
+		}
+		long[] packed = new long[count];
+		BitSet rejected = new BitSet();
+		int rejectCount = packer.packAll(y, m, dd, h, mi, s, f, adjust, packed, rejected);
+		assertEquals(rejectCount, rejected.cardinality());
+		for (int i = 0; i < count; i++) {
+			Long expected;
+			try {
+				expected = packer.pack(new TimeParts(d.getResolution(), y[i], m[i], dd[i], h[i], mi[i], s[i], f[i]), adjust);
+			} catch (KeyedException e) {
+				expected = null;
+			}
+			if (expected == null) {
+				assertTrue(d.getLabel() + " " + i, rejected.get(i));
+				assertEquals(-1L, packed[i]);
+			} else {
+				assertFalse(d.getLabel() + " " + i, rejected.get(i));
+				assertEquals(d.getLabel() + " " + i, expected.longValue(), packed[i]);
+			}
+		}
+	}
+	
+	public void testBulkPackUnpack() {
+		try {
+			helperBulk(Year.DOMAIN, 0, 1, 3000, Adjustment.NONE);
+			helperBulk(Month.DOMAIN, 0, 1, 30000, Adjustment.NONE);
+			helperBulk(Day.DOMAIN, 0, 1, 400 * 366 + 10, Adjustment.NONE);
+			helperBulk(Workday.DOMAIN, 0, 13, 30000, Adjustment.NONE);
+			helperBulk(Workday.DOMAIN, 0, 13, 30000, Adjustment.UP);
+			helperBulk(DateTime.DOMAIN, 0, 86399 * 5 + 17, 100000, Adjustment.NONE);
+			helperBulk(SystemTime.DOMAIN, 0, 86399999L * 11 + 17, 100000, Adjustment.NONE);
+			helperBulk(ThirdFriday.DOMAIN, 0, 1, 30000, Adjustment.DOWN);
+			helperBulk(getTimeDomain(new TimeDomainDefinition("hours", Resolution.HOUR, 0L)), 0, 7, 100000, Adjustment.NONE);
+			helperBulk(getTimeDomain(new TimeDomainDefinition("nsec", Resolution.NSEC, 0L)), 0, 86399999999999L + 17, 50000, Adjustment.NONE);
+			helperBulk(getTimeDomain(new TimeDomainDefinition("abcde", Resolution.DAY, 0L, 
+					new Cycle(false, false, true, true, true, true, true), 
+					new SimpleSubPeriodPattern(Resolution.DAY, Resolution.SEC, new int[]{36000, 54000, 63000}))), 0, 7, 100000, Adjustment.UP);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
+	public void testBulkPackDefaults() {
+		long[] times = new long[2];
+		BitSet rejected = new BitSet();
+		rejected.set(0);
+		int count = Day.DOMAIN.getPacker().packAll(new long[] {2017, -1}, new int[] {3, 3}, null, null, null, null, null, 
+				Adjustment.NONE, times, rejected);
+		assertEquals(1, count);
+		assertFalse(rejected.get(0));
+		assertTrue(rejected.get(1));
+		assertEquals("2017-03-01", Day.DOMAIN.time(times[0]).toString());
+	}
+	
+	public void testCycleAdjust() {
+		try {
+			BasePeriodPattern c = new Cycle(false, true, false, false, true, true, false);
+			for (long t = 0; t < 50; t++) {
+				long up = t;
+				while (c.makeIndexOrAdjust(up, Adjustment.NONE) < 0)
+					up++;
+				assertEquals(c.makeIndex(up), c.makeIndexOrAdjust(t, Adjustment.UP));
+				long down = t;
+				while (down >= 0 && c.makeIndexOrAdjust(down, Adjustment.NONE) < 0)
+					down--;
+				assertEquals(down < 0 ? -1 : c.makeIndex(down), c.makeIndexOrAdjust(t, Adjustment.DOWN));
+				if (up != t)
+					assertEquals(-1, c.makeIndexOrAdjust(t, Adjustment.NONE));
+			}
+			final BasePeriodPattern cycle = c;
+			BasePeriodPattern minimal = new BasePeriodPattern() {
+				public int getSize() {
+					return cycle.getSize();
+				}
+				public long makeIndex(long time) throws T2Exception {
+					return cycle.makeIndex(time);
+				}
+				public long expandIndex(long time) {
+					return cycle.expandIndex(time);
+				}
+				public boolean effective() {
+					return cycle.effective();
+				}
+			};
+			for (long t = 0; t < 50; t++) {
+				for (Adjustment adjust : Adjustment.values())
+					assertEquals(c.makeIndexOrAdjust(t, adjust), minimal.makeIndexOrAdjust(t, adjust));
+			}
+			TimeIndex sat = Workday.DOMAIN.time("2017-12-02", Adjustment.DOWN);
+			assertEquals("2017-12-01", sat.toString());
+			TimeIndex sun = Workday.DOMAIN.time("2017-12-03", Adjustment.UP);
+			assertEquals("2017-12-04", sun.toString());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
 
+	public void testCompressKeys() {
+		TimeDomain d = new TimeDomainDefinition("compressKeys", Resolution.DAY, 0L, new Cycle(true, false), 
+				new SimpleSubPeriodPattern(Resolution.DAY, Resolution.SEC, new int[]{32400, 61200})).asTimeDomain();
+		String validDay = null;
+		String onDay = null;
+		String offDay = null;
+		try {
+			// days compressed into indexes beyond the maximum of the domain
+			long max = d.maxTime().asLong();
+			validDay = d.maxTime().convert(Day.DOMAIN).toString();
+			onDay = Day.DOMAIN.time(2 * max + 2).toString();
+			offDay = Day.DOMAIN.time(2 * max + 1).toString();
+			assertEquals(validDay + " 09", d.time(validDay + " 09:00").toString().substring(0, validDay.length() + 3));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+		// agrees with the pattern but beyond the maximum
+		assertEquals(K.T1070, compressKey(d, onDay + " 09:00"));
+		// does not agree with the pattern and beyond the maximum
+		assertEquals(K.T1071, compressKey(d, offDay + " 09:00"));
+	}
+	
+	private String compressKey(TimeDomain domain, String date) {
+		try {
+			domain.getPacker().pack(domain.getScanner().scan(domain.getResolution(), date), Adjustment.NONE);
+			return null;
+		} catch (T2Exception e) {
+			return ((KeyedException) e.getCause()).getMsg().getKey();
+		}
+	}
+	
+}
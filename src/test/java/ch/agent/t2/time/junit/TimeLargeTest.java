@@ -3,8 +3,15 @@ package ch.agent.t2.time.junit;
 import java.util.Random;
 
 import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.applied.SystemTime;
+import ch.agent.t2.time.Adjustment;
 import ch.agent.t2.time.Day;
+import ch.agent.t2.time.DefaultTimeScanner;
+import ch.agent.t2.time.SequentialTimeScanner;
+import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.time.TimeScanner;
 
 public class TimeLargeTest extends TestCase {
 
@@ -63,6 +70,97 @@ public class TimeLargeTest extends TestCase {
 		dump(String.format("random sample of size %d processed in %dms", sample, -millis));
 		assertEquals(0, errors);
 	}
+	
+	public void testScanIndex() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			int sample = 1000000;
+			String[] dates = new String[sample];
+			for (int i = 0; i < sample; i++) {
+				dates[i] = String.format("%04d-%02d-%02d %02d:%02d:%02d", nextInt(1900, 2100), nextInt(1, 13), 
+						nextInt(1, 29), nextInt(0, 24), nextInt(0, 60), nextInt(0, 60));
+			}
+			long sum1 = 0;
+			long millis = System.currentTimeMillis();
+			for (int i = 0; i < sample; i++) {
+				sum1 += domain.getPacker().pack(domain.getScanner().scan(domain.getResolution(), dates[i]), Adjustment.NONE);
+			}
+			millis -= System.currentTimeMillis();
+			dump(String.format("scan and pack: %d dates in %dms", sample, -millis));
+			long sum2 = 0;
+			millis = System.currentTimeMillis();
+			for (int i = 0; i < sample; i++) {
+				sum2 += domain.getScanner().scanIndex(domain, dates[i], 0, dates[i].length());
+			}
+			millis -= System.currentTimeMillis();
+			dump(String.format("scanIndex: %d dates in %dms", sample, -millis));
+			assertEquals(sum1, sum2);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
+	public void testFormatTo() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			int sample = 1000000;
+			long start = domain.time("1990-01-01 00:00:00").asLong();
+			long length1 = 0;
+			long millis = System.currentTimeMillis();
+			for (int i = 0; i < sample; i++) {
+				length1 += domain.getFormatter().format(domain.getPacker().unpack(start + 997L * i)).length();
+			}
+			millis -= System.currentTimeMillis();
+			dump(String.format("unpack and format: %d times in %dms", sample, -millis));
+			long length2 = 0;
+			StringBuilder sb = new StringBuilder();
+			millis = System.currentTimeMillis();
+			for (int i = 0; i < sample; i++) {
+				sb.setLength(0);
+				domain.formatTo(start + 997L * i, sb);
+				length2 += sb.length();
+			}
+			millis -= System.currentTimeMillis();
+			dump(String.format("formatTo: %d times in %dms", sample, -millis));
+			assertEquals(length1, length2);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
+	public void testSequentialScanner() {
+		try {
+			TimeDomain domain = SystemTime.DOMAIN;
+			int sample = 1000000;
+			String[] dates = new String[sample];
+			long t = domain.time("2010-01-01 00:00:00").asLong();
+			for (int i = 0; i < sample; i++) {
+				t += nextInt(1, 500);
+				dates[i] = domain.time(t).toString();
+			}
+			TimeScanner scanner = new DefaultTimeScanner();
+			long sum1 = 0;
+			long millis = System.currentTimeMillis();
+			for (int i = 0; i < sample; i++) {
+				sum1 += scanner.scanIndex(domain, dates[i], 0, dates[i].length());
+			}
+			millis -= System.currentTimeMillis();
+			dump(String.format("default scanner: %d sorted times in %dms", sample, -millis));
+			scanner = new SequentialTimeScanner();
+			long sum2 = 0;
+			millis = System.currentTimeMillis();
+			for (int i = 0; i < sample; i++) {
+				sum2 += scanner.scanIndex(domain, dates[i], 0, dates[i].length());
+			}
+			millis -= System.currentTimeMillis();
+			dump(String.format("sequential scanner: %d sorted times in %dms", sample, -millis));
+			assertEquals(sum1, sum2);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
 
 }
-
@@ -1,26 +1,40 @@
 package ch.agent.t2.time.junit;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import ch.agent.core.KeyedException;
+import ch.agent.t2.T2Exception;
 import ch.agent.t2.T2Msg.K;
 import ch.agent.t2.applied.DateTime;
 import ch.agent.t2.applied.DefaultTimeDomainCatalog;
 import ch.agent.t2.applied.Month;
 import ch.agent.t2.applied.SystemTime;
+import ch.agent.t2.applied.ThirdFriday;
 import ch.agent.t2.applied.Week;
 import ch.agent.t2.applied.Workday;
 import ch.agent.t2.applied.Year;
 import ch.agent.t2.time.Adjustment;
+import ch.agent.t2.time.CompiledTimeFormat;
 import ch.agent.t2.time.Cycle;
 import ch.agent.t2.time.Day;
 import ch.agent.t2.time.DayOfWeek;
+import ch.agent.t2.time.DefaultTimeFormatter;
+import ch.agent.t2.time.DefaultTimeScanner;
 import ch.agent.t2.time.Resolution;
+import ch.agent.t2.time.SequentialTimeScanner;
 import ch.agent.t2.time.Time2;
 import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeDomainCatalog;
 import ch.agent.t2.time.TimeDomainDefinition;
+import ch.agent.t2.time.TimeFactory;
+import ch.agent.t2.time.TimeFormatter;
 import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.time.TimePacker;
+import ch.agent.t2.time.TimeParts;
+import ch.agent.t2.time.TimeScanner;
 import ch.agent.t2.time.TimeTools;
 import junit.framework.TestCase;
 
@@ -1743,7 +1757,292 @@ public class TimeTest extends TestCase {
 			fail("exception");
 		}
 	}
+	
+	/**
+	 * Return the time index or the exception key, scanning with the
+	 * regular expression scanner.
+	 */
+	private String scanSlow(TimeDomain domain, String date, Adjustment adjust) {
+		try {
+			return String.valueOf(domain.getPacker().pack(domain.getScanner().scan(domain.getResolution(), date), adjust));
+		} catch (KeyedException e) {
+			return e.getMsg().getKey();
+		}
+	}
+	
+	/**
+	 * Return the time index or the exception key, scanning the date
+	 * embedded in a longer sequence.
+	 */
+	private String scanFast(TimeDomain domain, String date, Adjustment adjust) {
+		try {
+			String line = "x," + date + ",42";
+			return String.valueOf(domain.getScanner().scanIndex(domain, line, 2, 2 + date.length(), adjust));
+		} catch (KeyedException e) {
+			return e.getMsg().getKey();
+		}
+	}
+	
+	public void testScanIndex() {
+		TimeDomain nano = new TimeDomainDefinition("time_nsec", Resolution.NSEC, 0L).asTimeDomain();
+		TimeDomain[] domains = {Year.DOMAIN, Month.DOMAIN, Day.DOMAIN, Workday.DOMAIN, Week.DOMAIN, 
+				DateTime.DOMAIN, SystemTime.DOMAIN, nano};
+		String[] dates = {"2005", "2005-06", "2005-06-04", "2005-06-02 12", "2005-06-02T12:34", 
+				"2005-06-02 12:34:56", "2005-06-02 12:34:56.7", "2005-06-02 12:34:56,789123456", 
+				"2005-06-02T12:34:56.1234567891", "2005-06-02 12:34:56Z", "2005-06-02 24:00:00", 
+				"2005-06-02 24:00:01", "2005-06-30 23:59:60", "2005-06-31", "2005-13-01", "2005-06-02 25:00",
+				"2005-06-02T", "20050602", "20050602T123456", "+12005-06-02", "2005-06-02 12:34:56+01:00", 
+				"1999-12-31 23:59:59.999", "205-06-02", "2005-6-02", "2005-06-02 1:00", "2005-06-02x", ""};
+		for (TimeDomain domain : domains) {
+			for (String date : dates) {
+				for (Adjustment adjust : Adjustment.values()) {
+					assertEquals(domain.getLabel() + " " + date + " " + adjust, 
+							scanSlow(domain, date, adjust), scanFast(domain, date, adjust));
+				}
+			}
+		}
+	}
+	
+	public void testScanIndexDefault() {
+		// a scanner implementing only the abstract method
+		final TimeScanner full = new DefaultTimeScanner();
+		TimeScanner minimal = new TimeScanner() {
+			@Override
+			public TimeParts scan(Resolution unit, String datetime) throws T2Exception {
+				return full.scan(unit, datetime);
+			}
+		};
+		TimeDomain[] domains = {Month.DOMAIN, Day.DOMAIN, Workday.DOMAIN, DateTime.DOMAIN, SystemTime.DOMAIN};
+		String[] dates = {"2005-06", "2005-06-04", "2005-06-02 12:34:56", "2005-06-02 12:34:56.7", 
+				"2005-06-31", "2005-06-02x"};
+		for (TimeDomain domain : domains) {
+			for (String date : dates) {
+				String line = "x," + date + ",42";
+				for (Adjustment adjust : Adjustment.values()) {
+					assertEquals(domain.getLabel() + " " + date + " " + adjust, 
+							scanIndex(full, domain, line, adjust), scanIndex(minimal, domain, line, adjust));
+				}
+				assertEquals(scanIndex(full, domain, line, Adjustment.NONE), scanIndex(minimal, domain, line, null));
+			}
+		}
+	}
+	
+	/**
+	 * Return the time index or the exception key, scanning the date between
+	 * the commas of the line. A null adjustment uses the short method.
+	 */
+	private String scanIndex(TimeScanner scanner, TimeDomain domain, String line, Adjustment adjust) {
+		try {
+			int end = line.length() - 3;
+			if (adjust == null)
+				return String.valueOf(scanner.scanIndex(domain, line, 2, end));
+			else
+				return String.valueOf(scanner.scanIndex(domain, line, 2, end, adjust));
+		} catch (KeyedException e) {
+			return e.getMsg().getKey();
+		}
+	}
+	
+	public void testFormatTo() {
+		try {
+			TimeDomain[] domains = new TimeDomain[Resolution.values().length * 2 + 2];
+			int n = 0;
+			for (Resolution unit : Resolution.values()) {
+				TimeDomainDefinition def = new TimeDomainDefinition("format_" + unit, unit, 0L);
+				domains[n++] = def.asTimeDomain();
+				domains[n++] = new TimeFactory(def, new DefaultTimeFormatter(true));
+			}
+			domains[n++] = Workday.DOMAIN;
+			domains[n++] = ThirdFriday.DOMAIN;
+			char[] buffer = new char[50];
+			StringBuilder sb = new StringBuilder();
+			for (TimeDomain domain : domains) {
+				String[] dates = {"2005-06-02 12:34:56.789123456", "2200-01-01 00:00:00.000000001",
+						"9999-12-31 23:59:59.999999999", "+10000-01-01 00:00:01", "+12000-01-01 00:00:01"};
+				List<TimeIndex> times = new ArrayList<TimeIndex>();
+				times.add(domain.minTime());
+				times.add(domain.maxTime());
+				for (String date : dates) {
+					try {
+						times.add(domain.time(date, Adjustment.DOWN));
+					} catch (KeyedException e) {
+						// out of range in this domain
+						assertTrue(domain.getResolution() == Resolution.NSEC);
+					}
+				}
+				for (TimeIndex t : times) {
+					String expected = domain.getFormatter().format(domain.getPacker().unpack(t.asLong()));
+					sb.setLength(0);
+					sb.append('|');
+					domain.formatTo(t.asLong(), sb);
+					assertEquals("|" + expected, sb.toString());
+					int end = domain.formatTo(t.asLong(), buffer, 3);
+					assertEquals(expected, new String(buffer, 3, end - 3));
+					assertEquals(expected, t.toString());
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+	
+	public void testFormatToLocale() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		try {
+			Locale.setDefault(Locale.Category.FORMAT, Locale.forLanguageTag("th-TH-u-nu-thai"));
+			long time = DateTime.DOMAIN.time("2005-06-17 12:34:56").asLong();
+			String expected = DateTime.DOMAIN.getFormatter().format(DateTime.DOMAIN.getPacker().unpack(time));
+			assertFalse(expected.startsWith("2005"));
+			StringBuilder sb = new StringBuilder();
+			DateTime.DOMAIN.formatTo(time, sb);
+			assertEquals(expected, sb.toString());
+			char[] buffer = new char[50];
+			int end = DateTime.DOMAIN.formatTo(time, buffer, 3);
+			assertEquals(expected, new String(buffer, 3, end - 3));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		} finally {
+			Locale.setDefault(Locale.Category.FORMAT, locale);
+		}
+	}
+	
+	public void testFormatToDefaults() {
+		// a formatter implementing only the abstract method
+		final TimeFormatter formatter = new DefaultTimeFormatter(true);
+		TimeFormatter minimal = new TimeFormatter() {
+			@Override
+			public String format(TimeParts tp) {
+				return formatter.format(tp);
+			}
+		};
+		try {
+			TimeDomain[] domains = { Day.DOMAIN, DateTime.DOMAIN, ThirdFriday.DOMAIN, SystemTime.DOMAIN };
+			char[] buffer = new char[50];
+			StringBuilder sb = new StringBuilder();
+			for (TimeDomain domain : domains) {
+				for (TimeIndex t : new TimeIndex[] { domain.minTime(), domain.time("2005-06-17 12:34:56.789", Adjustment.DOWN), domain.maxTime() }) {
+					String expected = formatter.format(domain.getPacker().unpack(t.asLong()));
+					sb.setLength(0);
+					minimal.formatTo(domain, t.asLong(), sb);
+					assertEquals(expected, sb.toString());
+					int end = minimal.formatTo(domain, t.asLong(), buffer, 3);
+					assertEquals(expected, new String(buffer, 3, end - 3));
+					// a domain implementing only the abstract methods
+					TimeDomain delegate = new DelegatingTimeDomain(domain);
+					sb.setLength(0);
+					delegate.formatTo(t.asLong(), sb);
+					assertEquals(t.toString(), sb.toString());
+					end = delegate.formatTo(t.asLong(), buffer, 3);
+					assertEquals(t.toString(), new String(buffer, 3, end - 3));
+				}
+			}
+			minimal.formatTo(Day.DOMAIN, -1, sb);
+			fail("exception expected");
+		} catch (KeyedException e) {
+			assertEquals(K.T1070, e.getMsg().getKey());
+		}
+	}
+	
+	public void testCompiledTimeFormat() {
+		try {
+			TimeDomain nano = new TimeDomainDefinition("time_nsec", Resolution.NSEC, 0L).asTimeDomain();
+			TimeDomain[] domains = {Year.DOMAIN, Month.DOMAIN, Day.DOMAIN, Workday.DOMAIN, DateTime.DOMAIN, 
+					SystemTime.DOMAIN, nano, ThirdFriday.DOMAIN};
+			String[] patterns = {"%04d-%02d-%02d %02d:%02d:%02d", "%3$02d.%2$02d.%1$d", "%d%02d%02d", 
+					"%7$09d|%<d|%6$-4d|%5$5d", "100%% at %4$02dh%n", "%d %s", "%x", "%1$,d", "%5$3.2f", "%8$d", 
+					"%-d", "%05", "%<d", "no field", ""};
+			for (TimeDomain domain : domains) {
+				TimeIndex t = domain.time("2005-06-17 09:08:07.654321987", Adjustment.UP);
+				TimePacker packer = domain.getPacker();
+				TimeParts tp = packer.unpack(t.asLong());
+				for (String pattern : patterns) {
+					String expected;
+					try {
+						expected = String.format(pattern, tp.getYear(), tp.getMonth(), tp.getDay(), 
+								tp.getHour(), tp.getMin(), tp.getSec(), tp.getFsec());
+					} catch (Exception e) {
+						expected = e.getClass().getName();
+					}
+					String actual;
+					try {
+						actual = CompiledTimeFormat.get(pattern).format(domain, t.asLong());
+					} catch (Exception e) {
+						actual = e.getClass().getName();
+					}
+					assertEquals(domain.getLabel() + " " + pattern, expected, actual);
+				}
+			}
+			assertTrue(CompiledTimeFormat.get("%04d-%02d-%02d").isCompiled());
+			assertTrue(CompiledTimeFormat.get("%2$d/%<d %%").isCompiled());
+			assertFalse(CompiledTimeFormat.get("%d %s").isCompiled());
+			assertEquals("17.06.2005", Day.DOMAIN.time("2005-06-17").toString("%3$02d.%2$02d.%1$d"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+	
+	public void testCompiledTimeFormatCache() {
+		CompiledTimeFormat format = CompiledTimeFormat.get("%d|%d");
+		for (int i = 0; i < 1000; i++) {
+			CompiledTimeFormat.get("%d|" + i);
+			assertSame(format, CompiledTimeFormat.get("%d|%d"));
+		}
+		// recent patterns are cached even after many others
+		assertSame(CompiledTimeFormat.get("%d|late"), CompiledTimeFormat.get("%d|late"));
+	}
+	
+	public void testCompiledTimeFormatLocale() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		try {
+			Locale.setDefault(Locale.Category.FORMAT, Locale.forLanguageTag("th-TH-u-nu-thai"));
+			TimeParts tp = Day.DOMAIN.getPacker().unpack(Day.DOMAIN.time("2005-06-17").asLong());
+			String pattern = "%04d-%02d-%02d";
+			assertEquals(String.format(pattern, tp.getYear(), tp.getMonth(), tp.getDay()), 
+					CompiledTimeFormat.get(pattern).format(Day.DOMAIN, Day.DOMAIN.time("2005-06-17").asLong()));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		} finally {
+			Locale.setDefault(Locale.Category.FORMAT, locale);
+		}
+	}
+	
+	public void testSequentialTimeScanner() {
+		try {
+			TimeDomain nano = new TimeDomainDefinition("time_nsec", Resolution.NSEC, 0L).asTimeDomain();
+			TimeDomain minutes = new TimeDomainDefinition("time_min", Resolution.MIN, 0L).asTimeDomain();
+			TimeDomain[] domains = {Day.DOMAIN, Workday.DOMAIN, minutes, DateTime.DOMAIN, SystemTime.DOMAIN, nano, Month.DOMAIN};
+			String[] odd = {"2005-06-30 23:59:60", "2005-06-02 24:00:00", "2005-06-31 00:00:00", "2005-06-02 12", 
+					"2005-06-02T12:34Z", "2005-06-02 12:34:56.1234567891", "20050602T123456", "", "1999-12-31 23:59:59.5"};
+			for (TimeDomain domain : domains) {
+				SequentialTimeScanner scanner = new SequentialTimeScanner();
+				long t = DateTime.DOMAIN.time("2005-06-01 23:58:00").asLong();
+				for (int i = 0; i < 500; i++) {
+					t += 7;
+					String date = DateTime.DOMAIN.time(t).toString() + (i % 3 == 0 ? "" : "." + i);
+					if (i % 50 == 0)
+						date = date.substring(0, 10);
+					if (i % 37 == 0)
+						date = odd[(i / 37) % odd.length];
+					for (Adjustment adjust : Adjustment.values()) {
+						String expected = scanSlow(domain, date, adjust);
+						String actual;
+						try {
+							actual = String.valueOf(scanner.scanIndex(domain, date, 0, date.length(), adjust));
+						} catch (KeyedException e) {
+							actual = e.getMsg().getKey();
+						}
+						assertEquals(domain.getLabel() + " " + date + " " + adjust, expected, actual);
+					}
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
 
 }
-
-
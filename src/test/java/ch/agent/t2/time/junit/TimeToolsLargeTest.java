@@ -0,0 +1,67 @@
+package ch.agent.t2.time.junit;
+
+import junit.framework.TestCase;
+import ch.agent.t2.time.TimeParts.YMD;
+import ch.agent.t2.time.TimeTools;
+
+/**
+ * Benchmark of the conversion of day numbers to year, month, and day.
+ * Compares {@link TimeTools#computeYMD(long)} and the allocation-free
+ * accessors with the reference algorithm in {@link TimeToolsTest}.
+ */
+public class TimeToolsLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+	
+	private static final int SAMPLE = 20000000;
+	private static final long FIRST_DAY = 700000L; // around 1916
+	
+	private long reference() {
+		long checksum = 0;
+		for (int i = 0; i < SAMPLE; i++) {
+			long[] ymd = TimeToolsTest.referenceYMD(FIRST_DAY + i);
+			checksum += ymd[0] + ymd[1] + ymd[2];
+		}
+		return checksum;
+	}
+	
+	private long computeYMD() {
+		long checksum = 0;
+		for (int i = 0; i < SAMPLE; i++) {
+			YMD ymd = TimeTools.computeYMD(FIRST_DAY + i);
+			checksum += ymd.y() + ymd.m() + ymd.d();
+		}
+		return checksum;
+	}
+	
+	private long accessors() {
+		long checksum = 0;
+		for (int i = 0; i < SAMPLE; i++) {
+			long days = FIRST_DAY + i;
+			checksum += TimeTools.yearOfDay(days) + TimeTools.monthOfDay(days) + TimeTools.dayOfMonth(days);
+		}
+		return checksum;
+	}
+	
+	public void testComputeYMD() {
+		// warm up
+		long expected = reference();
+		assertEquals(expected, computeYMD());
+		assertEquals(expected, accessors());
+		
+		long millis = System.currentTimeMillis();
+		reference();
+		long referenceMillis = System.currentTimeMillis() - millis;
+		millis = System.currentTimeMillis();
+		computeYMD();
+		long computeMillis = System.currentTimeMillis() - millis;
+		millis = System.currentTimeMillis();
+		accessors();
+		long accessorsMillis = System.currentTimeMillis() - millis;
+		dump(String.format("%d days: reference %dms, computeYMD %dms, yearOfDay+monthOfDay+dayOfMonth %dms", 
+				SAMPLE, referenceMillis, computeMillis, accessorsMillis));
+	}
+
+}
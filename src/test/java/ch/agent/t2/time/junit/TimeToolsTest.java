@@ -0,0 +1,86 @@
+package ch.agent.t2.time.junit;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.time.TimeParts.YMD;
+import ch.agent.t2.time.TimeTools;
+
+public class TimeToolsTest extends TestCase {
+
+	private static final long DAYS_IN_400_YEARS = 365 * 303 + 366 * 97;
+	private static final int[] daysToMonthCommonYear = { 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+	private static final int[] daysToMonthLeapYear = { 0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335 };
+
+	/**
+	 * Reference algorithm for converting days to year, month, and day.
+	 * 
+	 * @param days a non-negative number
+	 * @return an array with year, month, and day
+	 */
+	static long[] referenceYMD(long days) {
+		long y400Intervals = days / DAYS_IN_400_YEARS;
+		int y400Remainder = (int) (days - y400Intervals * DAYS_IN_400_YEARS);
+		int remainingYears = y400Remainder / 365;
+		int dayOffset = y400Remainder - remainingYears * 365 - (int) TimeTools.leapYears(remainingYears);
+		if (dayOffset < 0) {
+			remainingYears--;
+			dayOffset += (TimeTools.isLeap(remainingYears) ? 366 : 365);
+		}
+		long y = y400Intervals * 400 + remainingYears;
+		int[] daysToMonth = TimeTools.isLeap(y) ? daysToMonthLeapYear : daysToMonthCommonYear;
+		int i = Arrays.binarySearch(daysToMonth, dayOffset);
+		if (i < 0)
+			i = -i - 2;
+		return new long[] { y, i + 1, dayOffset - daysToMonth[i] + 1 };
+	}
+
+	private void check(long days) {
+		long[] expected = referenceYMD(days);
+		YMD ymd = TimeTools.computeYMD(days);
+		assertEquals("" + days, expected[0], ymd.y());
+		assertEquals("" + days, expected[1], ymd.m());
+		assertEquals("" + days, expected[2], ymd.d());
+		assertEquals("" + days, expected[0], TimeTools.yearOfDay(days));
+		assertEquals("" + days, expected[1], TimeTools.monthOfDay(days));
+		assertEquals("" + days, expected[2], TimeTools.dayOfMonth(days));
+		assertEquals("" + days, days, TimeTools.dayNumber(ymd.y(), ymd.m(), ymd.d()));
+	}
+
+	public void testComputeYMDThreeCycles() {
+		for (long days = 0; days < 3 * DAYS_IN_400_YEARS; days++) {
+			check(days);
+		}
+	}
+
+	public void testComputeYMDLargeDays() {
+		Random random = new Random(1);
+		long max = Long.MAX_VALUE / 2;
+		for (int i = 0; i < 100000; i++) {
+			check((random.nextLong() & Long.MAX_VALUE) % max);
+		}
+		for (long days = Long.MAX_VALUE - DAYS_IN_400_YEARS; days < Long.MAX_VALUE && days > 0; days++) {
+			check(days);
+		}
+	}
+
+	public void testComputeYMDKnownDates() {
+		YMD ymd = TimeTools.computeYMD(0);
+		assertEquals(0, ymd.y());
+		assertEquals(1, ymd.m());
+		assertEquals(1, ymd.d());
+		ymd = TimeTools.computeYMD(59);
+		assertEquals(2, ymd.m());
+		assertEquals(29, ymd.d());
+		ymd = TimeTools.computeYMD(730485L); // TimeDomain.DAYS_TO_20000101
+		assertEquals(2000, ymd.y());
+		assertEquals(1, ymd.m());
+		assertEquals(1, ymd.d());
+		ymd = TimeTools.computeYMD(719528L + 17000); // TimeDomain.DAYS_TO_19700101 + 17000
+		assertEquals(2016, ymd.y());
+		assertEquals(7, ymd.m());
+		assertEquals(18, ymd.d());
+	}
+
+}
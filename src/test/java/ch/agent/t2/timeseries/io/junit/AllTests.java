@@ -0,0 +1,19 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class AllTests {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite(AllTests.class.getName());
+		//$JUnit-BEGIN$
+		suite.addTestSuite(TimeSeriesCsvReaderTest.class);
+		suite.addTestSuite(TimeSeriesCsvWriterTest.class);
+		suite.addTestSuite(TimeSeriesBinaryCodecTest.class);
+		suite.addTestSuite(MappedTimeSeriesTest.class);
+		//$JUnit-END$
+		return suite;
+	}
+
+}
@@ -0,0 +1,87 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.io.MappedDoubleTimeSeries;
+import ch.agent.t2.timeseries.io.TimeSeriesBinaryCodec;
+
+public class MappedTimeSeriesLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int SIZE = 10000000;
+	private static final int GETS = 5000000;
+
+	private double scan(String name, TimeAddressable<Double> ts) throws Exception {
+		long first = ts.getFirstIndex();
+		Random random = new Random(1);
+		long millis = -System.currentTimeMillis();
+		double sum = 0;
+		for (int i = 0; i < GETS; i++) {
+			Double value = ts.get(first + random.nextInt(SIZE));
+			if (!ts.isMissing(value))
+				sum += value;
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: %d random get(long) in %dms", name, GETS, millis));
+		millis = -System.currentTimeMillis();
+		DoubleCursor cursor = (DoubleCursor) ts.cursor();
+		while (cursor.next()) {
+			sum += cursor.doubleValue();
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: cursor over %d values in %dms", name, SIZE, millis));
+		return sum;
+	}
+
+	public void testMappedAccess() {
+		File file = null;
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			double[] values = new double[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				values[i] = i % 100 == 1 ? Double.NaN : i * 0.01;
+			}
+			ts.put(domain.time("2017-01-01").asLong(), values);
+			values = null;
+			file = File.createTempFile("time2", ".bin");
+			TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+			try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				codec.writeMapped(ts, out);
+			}
+
+			TimeAddressable<Double> mapped = null;
+			for (int r = 0; r < 2; r++) {
+				// the first time includes class loading
+				long nanos = -System.nanoTime();
+				mapped = codec.map(file.toPath());
+				nanos += System.nanoTime();
+				dump(String.format("map: %d bytes in %dus", file.length(), nanos / 1000));
+			}
+			assertTrue(mapped instanceof MappedDoubleTimeSeries);
+			assertEquals(ts.getRange(), mapped.getRange());
+
+			double expected = scan("heap", ts);
+			assertEquals(expected, scan("mapped", mapped));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		} finally {
+			if (file != null)
+				file.delete();
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.io.MappedDoubleTimeSeries;
+import ch.agent.t2.timeseries.io.MappedSparseDoubleTimeSeries;
+import ch.agent.t2.timeseries.io.TimeSeriesBinaryCodec;
+import ch.agent.t2.timeseries.junit.TimeSeriesAssert;
+
+public class MappedTimeSeriesTest extends TestCase {
+
+	private TimeDomain domain = Day.DOMAIN;
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("time2", ".bin");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private TimeAddressable<Double> writeAndMap(TimeAddressable<Double> ts) throws Exception {
+		TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+		try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			codec.writeMapped(ts, out);
+		}
+		return codec.map(file.toPath());
+	}
+
+	private TimeAddressable<Double> readBack() throws Exception {
+		try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return new TimeSeriesBinaryCodec().read(in, Double.class);
+		}
+	}
+
+	public void testDense() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			double[] values = new double[5000];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i % 10 < 3 ? Double.NaN : i * 1.5;
+			}
+			long start = domain.time("2017-01-01").asLong();
+			ts.put(start, values);
+			TimeAddressable<Double> m = writeAndMap(ts);
+			assertTrue(m instanceof MappedDoubleTimeSeries);
+			MappedDoubleTimeSeries mapped = (MappedDoubleTimeSeries) m;
+			TimeSeriesAssert.assertSameValues(ts, mapped);
+			assertEquals(ts.getSize(), mapped.getSize());
+			assertTrue(Arrays.equals(ts.getDoubleArray(), mapped.getDoubleArray()));
+			assertTrue(Arrays.equals(ts.getArray(), mapped.getArray()));
+			for (long i = start - 2; i < start + values.length + 2; i++) {
+				assertEquals(ts.get(i), mapped.get(i));
+				assertEquals(String.valueOf(ts.getFirst(domain.time(i))), String.valueOf(mapped.getFirst(domain.time(i))));
+				assertEquals(String.valueOf(ts.getLast(domain.time(i))), String.valueOf(mapped.getLast(domain.time(i))));
+			}
+			Range range = new Range(domain, start + 101, start + 1000);
+			assertTrue(Arrays.equals(ts.getDoubleArray(range), mapped.getDoubleArray(range)));
+			assertTrue(Arrays.equals(ts.getArray(range), mapped.getArray(range)));
+			TimeSeriesAssert.assertSameValues(ts.get(range), mapped.get(range));
+			TimeSeriesAssert.assertSameValues(ts.get(range), readBack().get(range));
+			assertEquals(ts.fill(Double.NaN, 0), mapped.fill(Double.NaN, 0));
+			try {
+				mapped.put(start, 1d);
+				fail("exception expected");
+			} catch (UnsupportedOperationException e) {
+			}
+			assertEquals(0, writeAndMap(new DoubleRegularTimeSeries(domain)).getSize());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testSparse() {
+		try {
+			Random random = new Random(42);
+			SparseTimeSeries<Double> ts = new SparseTimeSeries<Double>(Double.class, domain);
+			long index = 1000;
+			for (int i = 0; i < 3000; i++) {
+				index += 1 + random.nextInt(100);
+				ts.put(index, random.nextGaussian());
+			}
+			TimeAddressable<Double> m = writeAndMap(ts);
+			assertTrue(m instanceof MappedSparseDoubleTimeSeries);
+			TimeSeriesAssert.assertSameValues(ts, m);
+			for (long i = 990; i < index + 2; i++) {
+				assertEquals(ts.get(i), m.get(i));
+				assertEquals(String.valueOf(ts.getFirst(domain.time(i))), String.valueOf(m.getFirst(domain.time(i))));
+				assertEquals(String.valueOf(ts.getLast(domain.time(i))), String.valueOf(m.getLast(domain.time(i))));
+			}
+			for (int i = 0; i < 100; i++) {
+				long first = 1000 + random.nextInt((int) index - 1000);
+				Range range = new Range(domain, first, first + random.nextInt(5000));
+				TimeSeriesAssert.assertSameValues(ts.get(range), m.get(range));
+				TimeSeriesAssert.assertSameValues(ts.get(range), m.get(range).get(range));
+			}
+			TimeSeriesAssert.assertSameValues(ts, readBack());
+			TimeSeriesAssert.assertSameValues(ts, m.asIndexable());
+			assertEquals(ts.stream().mapToDouble(o -> o.getValue()).sum(), m.doubleStream().sum());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testNotMappable() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			ts.put(1000, new double[] {1, 2, 3});
+			try (FileOutputStream out = new FileOutputStream(file)) {
+				new TimeSeriesBinaryCodec().write(ts, out);
+			}
+			try {
+				new TimeSeriesBinaryCodec().map(file.toPath());
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5050, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testCorruptLengths() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			ts.put(1000, new double[] {1, 2, 3});
+			writeAndMap(ts);
+			// the size is the last int 3 before the padding and the values
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			ByteBuffer b = ByteBuffer.wrap(bytes);
+			int pos = bytes.length - 3 * 8 - 4;
+			while (b.getInt(pos) != 3)
+				pos--;
+			b.putInt(pos, Integer.MAX_VALUE);
+			Files.write(file.toPath(), bytes);
+			try {
+				new TimeSeriesBinaryCodec().map(file.toPath());
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5047, e.getMsg().getKey());
+			}
+			try {
+				readBack();
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5047, e.getMsg().getKey());
+			}
+			b.putInt(pos, -1);
+			Files.write(file.toPath(), bytes);
+			try {
+				new TimeSeriesBinaryCodec().map(file.toPath());
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5043, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
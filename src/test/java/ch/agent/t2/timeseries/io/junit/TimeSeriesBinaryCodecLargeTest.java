@@ -0,0 +1,78 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.io.TimeSeriesBinaryCodec;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvWriter;
+
+public class TimeSeriesBinaryCodecLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int SIZE = 10000000;
+	private static final int REPEAT = 3;
+
+	public void testRoundTrip() {
+		File file = null;
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			double[] values = new double[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				values[i] = i % 100 == 0 ? Double.NaN : i * 0.01;
+			}
+			ts.put(domain.time("2017-01-01").asLong(), values);
+			file = File.createTempFile("time2", ".bin");
+			TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+
+			long millis = -System.currentTimeMillis();
+			for (int r = 0; r < REPEAT; r++) {
+				try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+					codec.write(ts, out);
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("binary write: %d x %d values, %d bytes in %dms", REPEAT, SIZE, file.length(), millis));
+
+			TimeAddressable<Double> result = null;
+			millis = -System.currentTimeMillis();
+			for (int r = 0; r < REPEAT; r++) {
+				try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					result = codec.read(in, Double.class);
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("binary read: %d x %d values in %dms", REPEAT, SIZE, millis));
+			assertEquals(ts.getRange(), result.getRange());
+			assertEquals(ts.getValueCount(), result.getValueCount());
+			assertTrue(Arrays.equals(ts.getDoubleArray(), ((DoubleRegularTimeSeries) result).getDoubleArray()));
+
+			// comparison with text
+			millis = -System.currentTimeMillis();
+			TimeSeriesCsvWriter writer = new TimeSeriesCsvWriter(domain);
+			writer.addColumn("x", ts);
+			try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				writer.write(out);
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("csv write: %d values, %d bytes in %dms", SIZE, file.length(), millis));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		} finally {
+			if (file != null)
+				file.delete();
+		}
+	}
+
+}
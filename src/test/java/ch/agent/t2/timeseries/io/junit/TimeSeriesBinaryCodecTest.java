@@ -0,0 +1,219 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.applied.DefaultTimeDomainCatalog;
+import ch.agent.t2.applied.Workday;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Resolution;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeDomainDefinition;
+import ch.agent.t2.timeseries.CompressedTimeSeries;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.io.TimeSeriesBinaryCodec;
+import ch.agent.t2.timeseries.junit.TimeSeriesAssert;
+
+public class TimeSeriesBinaryCodecTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static byte[] write(TimeSeriesBinaryCodec codec, TimeAddressable<?> ts) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.write(ts, out);
+		return out.toByteArray();
+	}
+
+	private static TimeAddressable<?> roundTrip(TimeSeriesBinaryCodec codec, TimeAddressable<?> ts) throws Exception {
+		byte[] bytes = write(codec, ts);
+		dump(String.format("%s: %d values in %d bytes", ts.getClass().getSimpleName(), ts.getValueCount(), bytes.length));
+		return codec.read(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Return a copy of the bytes with the first occurrence of the ints
+	 * replaced.
+	 */
+	private static byte[] patch(byte[] bytes, int[] from, int[] to) {
+		ByteBuffer b = ByteBuffer.wrap(bytes.clone());
+		for (int pos = 0; pos + 4 * from.length <= bytes.length; pos++) {
+			boolean found = true;
+			for (int i = 0; i < from.length && found; i++)
+				found = b.getInt(pos + 4 * i) == from[i];
+			if (found) {
+				for (int i = 0; i < to.length; i++)
+					b.putInt(pos + 4 * i, to[i]);
+				return b.array();
+			}
+		}
+		throw new IllegalArgumentException("not found");
+	}
+
+	private static String readError(TimeSeriesBinaryCodec codec, byte[] bytes) throws Exception {
+		try {
+			codec.read(new ByteArrayInputStream(bytes));
+			return null;
+		} catch (T2Exception e) {
+			return e.getMsg().getKey();
+		}
+	}
+
+	public void testDoubles() {
+		try {
+			TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(Day.DOMAIN);
+			double[] values = new double[20000];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i % 13 == 5 ? Double.NaN : i / 3d;
+			}
+			ts.put(Day.DOMAIN.time("2017-01-01").asLong(), values);
+			TimeAddressable<?> result = roundTrip(codec, ts);
+			assertTrue(result instanceof DoubleRegularTimeSeries);
+			assertTrue(Arrays.equals(ts.getDoubleArray(), ((DoubleRegularTimeSeries) result).getDoubleArray()));
+			TimeSeriesAssert.assertSameValues(ts, result);
+			// the same codec for another series
+			ts = new DoubleRegularTimeSeries(Day.DOMAIN);
+			assertEquals(0, roundTrip(codec, ts).getSize());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testTypes() {
+		try {
+			TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+			TimeDomain domain = new TimeDomainDefinition("minutes", Resolution.MIN, 42L).asTimeDomain();
+			RegularTimeSeries<String> strings = new RegularTimeSeries<String>(String.class, domain);
+			strings.put(1000, new String[] { "a", null, "caf\u00e9", "", null, "z" });
+			TimeSeriesAssert.assertSameValues(strings, roundTrip(codec, strings));
+			RegularTimeSeries<Integer> ints = new RegularTimeSeries<Integer>(Integer.class, domain, -1);
+			ints.put(1000, new Integer[] { 1, -1, 3 });
+			TimeAddressable<?> result = roundTrip(codec, ints);
+			assertEquals(-1, result.getMissingValue());
+			TimeSeriesAssert.assertSameValues(ints, result);
+			SparseTimeSeries<Long> longs = new SparseTimeSeries<Long>(Long.class, domain);
+			longs.put(5, Long.MIN_VALUE);
+			longs.put(500000000L, Long.MAX_VALUE);
+			result = roundTrip(codec, longs);
+			assertTrue(result instanceof SparseTimeSeries);
+			TimeSeriesAssert.assertSameValues(longs, result);
+			SparseTimeSeries<Boolean> booleans = new SparseTimeSeries<Boolean>(Boolean.class, domain);
+			booleans.put(7, true);
+			booleans.put(9, false);
+			TimeSeriesAssert.assertSameValues(booleans, roundTrip(codec, booleans));
+			SparseTimeSeries<Double> doubles = new SparseTimeSeries<Double>(Double.class, domain);
+			doubles.put(7, -0d);
+			doubles.put(90, Double.POSITIVE_INFINITY);
+			TimeSeriesAssert.assertSameValues(doubles, roundTrip(codec, doubles));
+			TimeSeriesAssert.assertSameValues(doubles, roundTrip(codec, new CompressedTimeSeries(doubles)));
+			byte[] bytes = write(codec, longs);
+			TimeSeriesAssert.assertSameValues(longs, codec.read(Channels.newChannel(new ByteArrayInputStream(bytes)), Long.class));
+			try {
+				codec.read(Channels.newChannel(new ByteArrayInputStream(bytes)), Integer.class);
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5048, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testPatterns() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(Workday.DOMAIN);
+			ts.put(Workday.DOMAIN.time("2017-01-02").asLong(), new double[] {1, 2, 3});
+			TimeAddressable<?> result = roundTrip(new TimeSeriesBinaryCodec(new DefaultTimeDomainCatalog()), ts);
+			assertSame(Workday.DOMAIN, result.getTimeDomain());
+			TimeSeriesAssert.assertSameValues(ts, result);
+			try {
+				roundTrip(new TimeSeriesBinaryCodec(), ts);
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5045, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testErrors() {
+		try {
+			TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(Day.DOMAIN);
+			ts.put(1000, new double[] {1, 2, 3});
+			byte[] bytes = write(codec, ts);
+			try {
+				codec.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5047, e.getMsg().getKey());
+			}
+			byte[] other = bytes.clone();
+			other[5] = 99; // version
+			try {
+				codec.read(new ByteArrayInputStream(other));
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5044, e.getMsg().getKey());
+			}
+			other[0] = 0;
+			try {
+				codec.read(new ByteArrayInputStream(other));
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5043, e.getMsg().getKey());
+			}
+			try {
+				codec.write(new SparseTimeSeries<Object>(Object.class, Day.DOMAIN), new ByteArrayOutputStream());
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5046, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testCorruptLengths() {
+		try {
+			TimeSeriesBinaryCodec codec = new TimeSeriesBinaryCodec();
+			DoubleRegularTimeSeries dense = new DoubleRegularTimeSeries(Day.DOMAIN);
+			dense.put(1000, new double[] {1, 2, 3});
+			byte[] bytes = write(codec, dense);
+			// size and count of the dense block
+			assertEquals(K.T5047, readError(codec, patch(bytes, new int[] {3, 3}, new int[] {Integer.MAX_VALUE, 3})));
+			assertEquals(K.T5043, readError(codec, patch(bytes, new int[] {3, 3}, new int[] {-1, 3})));
+			assertEquals(K.T5043, readError(codec, patch(bytes, new int[] {3, 3}, new int[] {3, 4})));
+			assertEquals(K.T5043, readError(codec, patch(bytes, new int[] {3, 3}, new int[] {3, 2})));
+			SparseTimeSeries<String> sparse = new SparseTimeSeries<String>(String.class, Day.DOMAIN);
+			sparse.put(1000, "abcd");
+			sparse.put(2000, "de");
+			bytes = write(codec, sparse);
+			// count of the sparse block, followed by the first index
+			assertEquals(K.T5047, readError(codec, patch(bytes, new int[] {2, 0, 1000}, new int[] {Integer.MAX_VALUE})));
+			assertEquals(K.T5043, readError(codec, patch(bytes, new int[] {2, 0, 1000}, new int[] {-2})));
+			// length of a string, followed by its bytes
+			assertEquals(K.T5047, readError(codec, patch(bytes, new int[] {4, 0x61626364}, new int[] {Integer.MAX_VALUE})));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
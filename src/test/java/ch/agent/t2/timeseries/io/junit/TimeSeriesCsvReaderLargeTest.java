@@ -0,0 +1,98 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.SequentialTimeScanner;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvReader;
+
+public class TimeSeriesCsvReaderLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int LINES = 1000000;
+	private static final int COLUMNS = 3;
+
+	private byte[] makeInput(TimeDomain domain) throws Exception {
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder(LINES * 50);
+		text.append("time,a,b,c\n");
+		long start = domain.time("2017-01-01").asLong();
+		for (int i = 0; i < LINES; i++) {
+			text.append(domain.time(start + i).toString());
+			for (int j = 0; j < COLUMNS; j++) {
+				text.append(',').append(Math.round(random.nextDouble() * 100000) / 100d);
+			}
+			text.append('\n');
+		}
+		return text.toString().getBytes("US-ASCII");
+	}
+
+	public void testThroughput() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			byte[] input = makeInput(domain);
+			dump(String.format("input: %d lines, %d bytes", LINES, input.length));
+
+			long millis = -System.currentTimeMillis();
+			DoubleRegularTimeSeries[] naive = new DoubleRegularTimeSeries[COLUMNS];
+			for (int j = 0; j < COLUMNS; j++) {
+				naive[j] = new DoubleRegularTimeSeries(domain);
+			}
+			BufferedReader lines = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(input), "US-ASCII"));
+			lines.readLine();
+			String line;
+			while ((line = lines.readLine()) != null) {
+				String[] fields = line.split(",");
+				TimeIndex t = domain.time(fields[0]);
+				for (int j = 0; j < COLUMNS; j++) {
+					naive[j].put(t, Double.valueOf(fields[j + 1]));
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("split, time(String), put(TimeIndex, Double): %d lines in %dms", LINES, millis));
+
+			millis = -System.currentTimeMillis();
+			DoubleRegularTimeSeries[] series = new DoubleRegularTimeSeries[COLUMNS];
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(domain);
+			reader.setHeaderLines(1);
+			for (int j = 0; j < COLUMNS; j++) {
+				series[j] = new DoubleRegularTimeSeries(domain);
+				reader.addColumn(j + 1, series[j]);
+			}
+			assertEquals(LINES, reader.read(new ByteArrayInputStream(input)));
+			millis += System.currentTimeMillis();
+			dump(String.format("TimeSeriesCsvReader: %d lines in %dms", LINES, millis));
+
+			millis = -System.currentTimeMillis();
+			reader = new TimeSeriesCsvReader(domain);
+			reader.setHeaderLines(1);
+			reader.setTimeScanner(new SequentialTimeScanner());
+			for (int j = 0; j < COLUMNS; j++) {
+				series[j] = new DoubleRegularTimeSeries(domain);
+				reader.addColumn(j + 1, series[j]);
+			}
+			assertEquals(LINES, reader.read(new ByteArrayInputStream(input)));
+			millis += System.currentTimeMillis();
+			dump(String.format("TimeSeriesCsvReader with SequentialTimeScanner: %d lines in %dms", LINES, millis));
+
+			for (int j = 0; j < COLUMNS; j++) {
+				assertEquals(LINES, series[j].getSize());
+				assertTrue(java.util.Arrays.equals(naive[j].getDoubleArray(), series[j].getDoubleArray()));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
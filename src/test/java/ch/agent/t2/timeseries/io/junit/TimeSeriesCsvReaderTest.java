@@ -0,0 +1,180 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+import ch.agent.core.KeyedException;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.SequentialTimeScanner;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvReader;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvReader.ErrorMode;
+import ch.agent.t2.timeutil.DateTimeScanner;
+
+public class TimeSeriesCsvReaderTest extends TestCase {
+
+	private TimeDomain calendar = Day.DOMAIN;
+
+	private long t(String date) throws KeyedException {
+		return calendar.time(date).asLong();
+	}
+
+	private static ByteArrayInputStream input(String text) throws Exception {
+		return new ByteArrayInputStream(text.getBytes("US-ASCII"));
+	}
+
+	public void testRead() {
+		try {
+			String text = "date,a,b,c\r\n"
+					+ "2008-02-25,1,1.5,-1e3\r\n"
+					+ "2008-02-26, 2 ,\"2.5\",\r\n"
+					+ "\r\n"
+					+ "2008-02-27,3,,0.001\r\n"
+					+ "2008-03-03,4,4.5,12345678901234567890";
+			DoubleRegularTimeSeries a = new DoubleRegularTimeSeries(calendar);
+			TimeAddressable<Double> b = new RegularTimeSeries<Double>(Double.class, calendar);
+			TimeAddressable<Double> c = new SparseTimeSeries<Double>(Double.class, calendar);
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(calendar);
+			reader.setHeaderLines(1);
+			reader.addColumn(1, a);
+			reader.addColumn(2, b);
+			reader.addColumn(3, c);
+			assertEquals(4, reader.read(input(text)));
+			assertEquals(0, reader.getErrorCount());
+			assertEquals(8, a.getSize());
+			assertEquals(4, a.getValueCount());
+			assertEquals(2d, a.getDouble(t("2008-02-26")));
+			assertEquals(4d, a.getDouble(t("2008-03-03")));
+			assertEquals(2.5d, b.get(t("2008-02-26")));
+			assertTrue(b.isMissing(b.get(t("2008-02-27"))));
+			assertEquals(4.5d, b.get(t("2008-03-03")));
+			assertEquals(3, c.getValueCount());
+			assertEquals(-1000d, c.get(t("2008-02-25")));
+			assertEquals(0.001d, c.get(t("2008-02-27")));
+			assertEquals(12345678901234567890d, c.get(t("2008-03-03")));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testSeparatorAndScanner() {
+		try {
+			String text = "x;30.11.2010 12:29;1,5\n"
+					+ "x;30.11.2010 12:31;2\n";
+			DateTimeScanner scanner = new DateTimeScanner("(\\d\\d)\\.(\\d\\d)\\.(\\d\\d\\d\\d) (\\d\\d):(\\d\\d)", new int[] {3, 2, 1, 4, 5});
+			TimeAddressable<Double> ts = new SparseTimeSeries<Double>(Double.class, DateTime.DOMAIN);
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(DateTime.DOMAIN);
+			reader.setSeparator(';');
+			reader.setTimeColumn(1);
+			reader.setDateTimeScanner(scanner);
+			reader.setErrorMode(ErrorMode.MISSING);
+			reader.addColumn(2, ts);
+			assertEquals(2, reader.read(input(text)));
+			assertEquals(1, reader.getErrorCount());
+			assertEquals(1, ts.getValueCount());
+			assertEquals(2d, ts.get(DateTime.DOMAIN.time("2010-11-30 12:31:00")));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testErrorModes() {
+		String text = "2008-02-25,1,1\n"
+				+ "2008-02-26,x,2\n"
+				+ "2008-02-30,3,3\n"
+				+ "2008-02-28,4,4\n";
+		try {
+			DoubleRegularTimeSeries a = new DoubleRegularTimeSeries(calendar);
+			DoubleRegularTimeSeries b = new DoubleRegularTimeSeries(calendar);
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(calendar);
+			reader.addColumn(1, a);
+			reader.addColumn(2, b);
+			reader.setErrorMode(ErrorMode.SKIP);
+			assertEquals(4, reader.read(input(text)));
+			assertEquals(2, reader.getErrorCount());
+			assertEquals(2, a.getValueCount());
+			assertEquals(2, b.getValueCount());
+			a = new DoubleRegularTimeSeries(calendar);
+			b = new DoubleRegularTimeSeries(calendar);
+			reader = new TimeSeriesCsvReader(calendar);
+			reader.addColumn(1, a);
+			reader.addColumn(2, b);
+			reader.setTimeScanner(new SequentialTimeScanner());
+			reader.setErrorMode(ErrorMode.MISSING);
+			assertEquals(4, reader.read(input(text)));
+			assertEquals(2, reader.getErrorCount());
+			assertEquals(2, a.getValueCount());
+			assertEquals(3, b.getValueCount());
+			assertEquals(2d, b.getDouble(t("2008-02-26")));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+		try {
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(calendar);
+			reader.addColumn(1, new DoubleRegularTimeSeries(calendar));
+			reader.read(input(text));
+			fail("exception expected");
+		} catch (KeyedException e) {
+			assertEquals(K.T5041, e.getMsg().getKey());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+		try {
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(calendar);
+			reader.addColumn(2, new DoubleRegularTimeSeries(calendar));
+			reader.read(input(text));
+			fail("exception expected");
+		} catch (KeyedException e) {
+			assertEquals(K.T5040, e.getMsg().getKey());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testLongLinesAndNumbers() {
+		try {
+			StringBuilder text = new StringBuilder();
+			String[] numbers = { "0", "-0.0", "1.7976931348623157E308", "4.9e-324", "0.1", "123456789012345678",
+					".5", "5.", "-2.5E-3", "1e22", "1e23", "9007199254740993", "NaN" };
+			DoubleRegularTimeSeries[] series = new DoubleRegularTimeSeries[numbers.length];
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(calendar);
+			for (int i = 0; i < numbers.length; i++) {
+				series[i] = new DoubleRegularTimeSeries(calendar);
+				reader.addColumn(i + 1, series[i]);
+			}
+			for (int line = 0; line < 3; line++) {
+				text.append("2008-02-2").append(line + 1);
+				for (String n : numbers) {
+					text.append(',').append(n);
+				}
+				for (int i = 0; i < 30000; i++) {
+					text.append(",0");
+				}
+				text.append('\n');
+			}
+			assertEquals(3, reader.read(input(text.toString())));
+			for (int i = 0; i < numbers.length; i++) {
+				double expected = Double.parseDouble(numbers[i]);
+				if (Double.isNaN(expected))
+					assertEquals(0, series[i].getValueCount());
+				else
+					assertEquals(numbers[i], Double.doubleToLongBits(expected), Double.doubleToLongBits(series[i].getDouble(t("2008-02-22"))));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
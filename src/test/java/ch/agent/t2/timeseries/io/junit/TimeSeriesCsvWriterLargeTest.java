@@ -0,0 +1,64 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvWriter;
+
+public class TimeSeriesCsvWriterLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int ROWS = 1000000;
+
+	public void testThroughput() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			Random random = new Random(42);
+			double[] values = new double[ROWS];
+			for (int i = 0; i < ROWS; i++) {
+				values[i] = Math.round(random.nextDouble() * 100000) / 100d;
+			}
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			ts.put(domain.time("2017-01-01").asLong(), values);
+
+			long millis = -System.currentTimeMillis();
+			ByteArrayOutputStream naive = new ByteArrayOutputStream(ROWS * 32);
+			Writer w = new BufferedWriter(new OutputStreamWriter(naive, "UTF-8"));
+			w.write("time,x\n");
+			Iterator<Observation<Double>> it = ts.iterator();
+			while (it.hasNext()) {
+				Observation<Double> obs = it.next();
+				w.write(obs.getTime().toString() + "," + obs.getValue() + "\n");
+			}
+			w.close();
+			millis += System.currentTimeMillis();
+			dump(String.format("iterator, getTime().toString(): %d rows in %dms", ROWS, millis));
+
+			millis = -System.currentTimeMillis();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(ROWS * 32);
+			TimeSeriesCsvWriter writer = new TimeSeriesCsvWriter(domain);
+			writer.addColumn("x", ts);
+			assertEquals(ROWS, writer.write(out));
+			millis += System.currentTimeMillis();
+			dump(String.format("TimeSeriesCsvWriter: %d rows in %dms", ROWS, millis));
+
+			assertTrue(java.util.Arrays.equals(naive.toByteArray(), out.toByteArray()));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package ch.agent.t2.timeseries.io.junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.CharacterCodingException;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.applied.SystemTime;
+import ch.agent.t2.applied.Workday;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Resolution;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeDomainDefinition;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvReader;
+import ch.agent.t2.timeseries.io.TimeSeriesCsvWriter;
+
+public class TimeSeriesCsvWriterTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private TimeDomain calendar = Day.DOMAIN;
+
+	private long t(String date) throws Exception {
+		return calendar.time(date).asLong();
+	}
+
+	private static String write(TimeSeriesCsvWriter writer) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(out);
+		return out.toString("UTF-8");
+	}
+
+	public void testColumns() {
+		try {
+			DoubleRegularTimeSeries a = new DoubleRegularTimeSeries(calendar);
+			a.put(t("2008-02-27"), new double[] {1, Double.NaN, 3.5});
+			TimeAddressable<Double> b = new SparseTimeSeries<Double>(Double.class, calendar);
+			b.put(t("2008-02-25"), -1d);
+			b.put(t("2008-03-01"), 1e-10);
+			TimeAddressable<String> c = new RegularTimeSeries<String>(String.class, calendar);
+			c.put(t("2008-02-28"), "x,\"y\"");
+			c.put(t("2008-02-29"), "caf\u00e9");
+			TimeSeriesCsvWriter writer = new TimeSeriesCsvWriter(calendar);
+			writer.addColumn("a", a);
+			writer.addColumn("b", b);
+			writer.addColumn("c", c);
+			String text = write(writer);
+			dump(text);
+			assertEquals("time,a,b,c\n"
+					+ "2008-02-25,,-1.0,\n"
+					+ "2008-02-27,1.0,,\n"
+					+ "2008-02-28,,,\"x,\"\"y\"\"\"\n"
+					+ "2008-02-29,3.5,,caf\u00e9\n"
+					+ "2008-03-01,,1.0E-10,\n", text);
+			writer = new TimeSeriesCsvWriter(calendar);
+			writer.setSeparator('\t');
+			writer.setHeader(false);
+			writer.addColumn("b", b);
+			assertEquals("2008-02-25\t-1.0\n2008-03-01\t1.0E-10\n", write(writer));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testUnencodableText() {
+		try {
+			TimeAddressable<String> c = new RegularTimeSeries<String>(String.class, calendar);
+			c.put(t("2008-02-28"), "caf\u00e9 \ud800");
+			TimeSeriesCsvWriter writer = new TimeSeriesCsvWriter(calendar);
+			writer.addColumn("c", c);
+			write(writer);
+			fail("exception expected");
+		} catch (CharacterCodingException e) {
+			// expected
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testIncrementalTimes() {
+		try {
+			TimeDomain[] domains = {
+				new TimeDomainDefinition("year", Resolution.YEAR, 0L).asTimeDomain(),
+				new TimeDomainDefinition("month", Resolution.MONTH, 0L).asTimeDomain(),
+				Day.DOMAIN,
+				Workday.DOMAIN,
+				new TimeDomainDefinition("hour", Resolution.HOUR, 0L).asTimeDomain(),
+				new TimeDomainDefinition("min", Resolution.MIN, 0L).asTimeDomain(),
+				DateTime.DOMAIN,
+				SystemTime.DOMAIN,
+				new TimeDomainDefinition("usec", Resolution.USEC, 0L).asTimeDomain(),
+				new TimeDomainDefinition("nsec", Resolution.NSEC, 0L).asTimeDomain(),
+			};
+			String[] anchors = { "2012-01-01", "2012-02-29", "2012-03-01", "2013-03-01", "2100-03-01", "10000-01-01" };
+			for (TimeDomain domain : domains) {
+				for (String anchor : anchors) {
+					long start;
+					try {
+						start = domain.time(anchor).asLong() - 3;
+					} catch (Exception e) {
+						continue;
+					}
+					int size = domain.getResolution() == Resolution.DAY || domain.getResolution() == Resolution.HOUR ? 2000 : 10;
+					double[] values = new double[size];
+					for (int i = 0; i < size; i++) {
+						values[i] = i;
+					}
+					DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+					ts.put(start, values);
+					TimeSeriesCsvWriter writer = new TimeSeriesCsvWriter(domain);
+					writer.setHeader(false);
+					writer.addColumn("x", ts);
+					String[] lines = write(writer).split("\n");
+					assertEquals(size, lines.length);
+					for (int i = 0; i < size; i++) {
+						assertEquals(domain.time(start + i).toString() + "," + (double) i, lines[i]);
+					}
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testRoundTrip() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			long start = domain.time("2016-12-31 23:58:00").asLong();
+			DoubleRegularTimeSeries a = new DoubleRegularTimeSeries(domain);
+			DoubleRegularTimeSeries b = new DoubleRegularTimeSeries(domain);
+			for (int i = 0; i < 10000; i++) {
+				a.putDouble(start + i, i / 7d);
+				if (i % 3 == 0)
+					b.putDouble(start + 2 * i, -i);
+			}
+			TimeSeriesCsvWriter writer = new TimeSeriesCsvWriter(domain);
+			writer.addColumn("a", a);
+			writer.addColumn("b", b);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			writer.write(out);
+			DoubleRegularTimeSeries a2 = new DoubleRegularTimeSeries(domain);
+			DoubleRegularTimeSeries b2 = new DoubleRegularTimeSeries(domain);
+			TimeSeriesCsvReader reader = new TimeSeriesCsvReader(domain);
+			reader.setHeaderLines(1);
+			reader.addColumn(1, a2);
+			reader.addColumn(2, b2);
+			reader.read(new ByteArrayInputStream(out.toByteArray()));
+			assertTrue(java.util.Arrays.equals(a.getDoubleArray(), a2.getDoubleArray()));
+			assertTrue(java.util.Arrays.equals(b.getDoubleArray(), b2.getDoubleArray()));
+			assertEquals(a.getRange(), a2.getRange());
+			assertEquals(b.getRange(), b2.getRange());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
@@ -9,7 +9,11 @@ public class AllTests {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		//$JUnit-BEGIN$
 		suite.addTestSuite(AsIndexableTest.class);
+		suite.addTestSuite(CompressedTimeSeriesTest.class);
+		suite.addTestSuite(DoubleRegularTimeSeriesTest.class);
+		suite.addTestSuite(SegmentedTimeSeriesTest.class);
 		suite.addTestSuite(TimeSeriesTest.class);
+		suite.addTestSuite(ViewTest.class);
 		//$JUnit-END$
 		return suite;
 	}
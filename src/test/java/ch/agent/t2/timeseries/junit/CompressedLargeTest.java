@@ -0,0 +1,130 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.CompressedTimeSeries;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class CompressedLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int SIZE = 2000000;
+	private static final int REPEAT = 10;
+
+	private void measure(String name, TimeAddressable<Double> ts) throws Exception {
+		long millis = -System.currentTimeMillis();
+		CompressedTimeSeries c = new CompressedTimeSeries(ts);
+		millis += System.currentTimeMillis();
+		int size = c.getSize();
+		dump(String.format("%s: %d values, %.2f bytes per value, compressed in %dms", name, size, (double) c.getCompressedSize() / size, millis));
+
+		double expected = 0;
+		Cursor<Double> values = ts.cursor();
+		while (values.next()) {
+			expected += values.value();
+		}
+		double sum = 0;
+		DoubleCursor cursor;
+		millis = -System.currentTimeMillis();
+		for (int r = 0; r < REPEAT; r++) {
+			sum = 0;
+			cursor = c.cursor();
+			while (cursor.next()) {
+				sum += cursor.doubleValue();
+			}
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: decoded %d x %d values in %dms (%.0f values/ms)", name, REPEAT, size, millis, (double) REPEAT * size / Math.max(1, millis)));
+		assertEquals(expected, sum);
+
+		long first = c.getFirstIndex();
+		long span = c.getLastIndex() - first;
+		Random random = new Random(1);
+		millis = -System.currentTimeMillis();
+		int count = 0;
+		for (int r = 0; r < 10000; r++) {
+			long from = first + (long) (random.nextDouble() * span);
+			cursor = c.cursor(new Range(c.getTimeDomain(), from, from + span / 1000));
+			while (cursor.next()) {
+				count++;
+			}
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: 10000 range reads of 1/1000 of the span, %d values in %dms", name, count, millis));
+		assertTrue(count > 0);
+	}
+
+	public void testDailyPrices() {
+		try {
+			// a random walk of prices with 2 decimals, on workdays
+			TimeDomain domain = Day.DOMAIN;
+			Random random = new Random(42);
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			long start = domain.time("1900-01-01").asLong();
+			long cents = 10000;
+			double[] values = new double[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				cents = Math.max(1, cents + random.nextInt(41) - 20);
+				values[i] = i % 7 < 5 ? cents / 100d : Double.NaN;
+			}
+			ts.put(start, values);
+			measure("daily prices", ts);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testStepRates() {
+		try {
+			// a rate which changes now and then
+			TimeDomain domain = Day.DOMAIN;
+			Random random = new Random(42);
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			long start = domain.time("1900-01-01").asLong();
+			double rate = 1.5;
+			double[] values = new double[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				if (random.nextInt(50) == 0)
+					rate += (random.nextInt(5) - 2) * 0.25;
+				values[i] = rate;
+			}
+			ts.put(start, values);
+			measure("step rates", ts);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testSparseTicks() {
+		try {
+			// irregular ticks with integer values
+			TimeDomain domain = DateTime.DOMAIN;
+			Random random = new Random(42);
+			SparseTimeSeries<Double> ts = new SparseTimeSeries<Double>(Double.class, domain);
+			long index = domain.time("2017-01-01").asLong();
+			for (int i = 0; i < SIZE; i++) {
+				index += 1 + random.nextInt(30);
+				ts.put(index, (double) (1000 + random.nextInt(200)));
+			}
+			measure("sparse ticks", ts);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.CompressedTimeSeries;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class CompressedTimeSeriesTest extends TestCase {
+
+	private TimeDomain domain = Day.DOMAIN;
+
+	public void testRegular() {
+		try {
+			long start = domain.time("2017-01-02").asLong();
+			double[] values = new double[5000];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i % 11 == 3 ? Double.NaN : i % 7 == 0 ? 100 : 100 + i / 4d;
+			}
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			ts.put(start, values);
+			CompressedTimeSeries c = new CompressedTimeSeries(ts);
+			TimeSeriesAssert.assertSameValues(ts, c);
+			assertEquals(ts.getRange(), c.getRange());
+			assertEquals(ts.getValueCount(), c.getValueCount());
+			for (long i = start - 2; i < start + values.length + 2; i++) {
+				assertEquals(ts.get(i), c.get(i));
+				assertEquals(String.valueOf(ts.getFirst(domain.time(i))), String.valueOf(c.getFirst(domain.time(i))));
+				assertEquals(String.valueOf(ts.getLast(domain.time(i))), String.valueOf(c.getLast(domain.time(i))));
+			}
+			assertTrue(c.getCompressedSize() < 8L * values.length);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testSparse() {
+		try {
+			Random random = new Random(42);
+			SparseTimeSeries<Double> ts = new SparseTimeSeries<Double>(Double.class, domain);
+			long index = 1000;
+			for (int i = 0; i < 3000; i++) {
+				switch (i % 5) {
+				case 0: index += 1; break;
+				case 1: index += random.nextInt(100); break;
+				case 2: index += 1 + random.nextInt(3000); break;
+				case 3: index += 100000L + random.nextInt(1000000); break;
+				default: index += 7;
+				}
+				double value = i % 4 == 0 ? random.nextGaussian() : i % 4 == 1 ? -0d : i % 4 == 2 ? Double.MAX_VALUE : Double.MIN_VALUE;
+				ts.put(index, value);
+			}
+			CompressedTimeSeries c = new CompressedTimeSeries(ts);
+			TimeSeriesAssert.assertSameValues(ts, c);
+			for (Observation<Double> obs : ts) {
+				assertEquals(obs.getValue(), c.get(obs.getIndex()));
+				assertTrue(c.isMissing(c.get(obs.getIndex() + 1)) == ts.isMissing(ts.get(obs.getIndex() + 1)));
+			}
+			// range reads
+			for (int i = 0; i < 50; i++) {
+				long first = ts.getFirstIndex() + random.nextInt((int) (index - ts.getFirstIndex()));
+				long last = first + random.nextInt(10000000);
+				Range range = new Range(domain, first, last);
+				TimeSeriesAssert.assertSameValues(ts.get(range), c.get(range));
+				DoubleCursor cursor = c.cursor(range);
+				int count = 0;
+				while (cursor.next()) {
+					assertTrue(range.isInRange(domain.time(cursor.index())));
+					count++;
+				}
+				assertEquals(ts.get(range).getSize(), count);
+			}
+			// streams
+			assertEquals(ts.stream().mapToDouble(o -> o.getValue()).sum(), c.doubleStream().sum());
+			assertEquals(ts.indexStream().sum(), c.indexStream().parallel().sum());
+			assertEquals(ts.getSize(), c.stream().count());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testEmpty() {
+		try {
+			CompressedTimeSeries c = new CompressedTimeSeries(new SparseTimeSeries<Double>(Double.class, domain));
+			assertEquals(0, c.getSize());
+			assertTrue(c.getRange().isEmpty());
+			assertFalse(c.cursor().next());
+			assertFalse(c.iterator().hasNext());
+			assertTrue(c.isMissing(c.get(42)));
+			assertNull(c.getFirst(null));
+			assertNull(c.getLast(null));
+			assertEquals(0, c.stream().count());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testImmutable() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			ts.put(domain.time("2017-01-02").asLong(), new double[] {1, 2, 3});
+			CompressedTimeSeries c = new CompressedTimeSeries(ts);
+			try {
+				c.put(domain.time("2017-01-02"), 4d);
+				fail("exception expected");
+			} catch (UnsupportedOperationException e) {
+			}
+			try {
+				c.remove(domain.time("2017-01-02"));
+				fail("exception expected");
+			} catch (UnsupportedOperationException e) {
+			}
+			try {
+				c.setRange(null);
+				fail("exception expected");
+			} catch (UnsupportedOperationException e) {
+			}
+			assertSame(c, c.copy());
+			TimeAddressable<Double> copy = c.makeEmptyCopy();
+			copy.put(c, null);
+			TimeSeriesAssert.assertSameValues(ts, copy);
+			TimeSeriesAssert.assertSameValues(ts, c.asIndexable());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
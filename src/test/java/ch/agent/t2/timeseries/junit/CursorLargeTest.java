@@ -0,0 +1,107 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class CursorLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int SIZE = 5000000;
+	private static final int REPEAT = 5;
+
+	public void testSparseRangeScan() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			TimeAddressable<Double> ts = new SparseTimeSeries<Double>(Double.class, domain);
+			long start = domain.time("2017-01-01").asLong();
+			for (int i = 0; i < SIZE; i++) {
+				ts.put(start + 3L * i, (double) i);
+			}
+			Range range = new Range(domain, start + SIZE / 2, start + 2L * SIZE);
+
+			double expected = 0;
+			long millis = -System.currentTimeMillis();
+			for (int r = 0; r < REPEAT; r++) {
+				expected = 0;
+				Iterator<Observation<Double>> it = ts.get(range).iterator();
+				while (it.hasNext()) {
+					Observation<Double> obs = it.next();
+					expected += obs.getIndex() * obs.getValue();
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("get(Range).iterator(): %d x %d values in %dms", REPEAT, SIZE, millis));
+
+			double sum = 0;
+			millis = -System.currentTimeMillis();
+			for (int r = 0; r < REPEAT; r++) {
+				sum = 0;
+				Cursor<Double> cursor = ts.cursor(range);
+				while (cursor.next()) {
+					sum += cursor.index() * cursor.value();
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("cursor(Range): %d x %d values in %dms", REPEAT, SIZE, millis));
+			assertEquals(expected, sum);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testDoubleScan() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			long start = domain.time("2017-01-01").asLong();
+			double[] values = new double[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				values[i] = i % 10 == 0 ? Double.NaN : i;
+			}
+			ts.put(start, values);
+
+			double expected = 0;
+			long millis = -System.currentTimeMillis();
+			for (int r = 0; r < REPEAT; r++) {
+				expected = 0;
+				for (Observation<Double> obs : ts) {
+					if (!ts.isMissing(obs.getValue()))
+						expected += obs.getValue();
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("iterator(): %d x %d values in %dms", REPEAT, SIZE, millis));
+
+			double sum = 0;
+			millis = -System.currentTimeMillis();
+			for (int r = 0; r < REPEAT; r++) {
+				sum = 0;
+				DoubleCursor cursor = ts.cursor();
+				while (cursor.next()) {
+					sum += cursor.doubleValue();
+				}
+			}
+			millis += System.currentTimeMillis();
+			dump(String.format("cursor(): %d x %d values in %dms", REPEAT, SIZE, millis));
+			assertEquals(expected, sum);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.junit;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.Filler;
+import ch.agent.t2.timeseries.TimeIndexable;
+
+/**
+ * A DelegatingIndexable implements only the abstract methods of
+ * {@link TimeIndexable}, by delegating them to another time series. It is
+ * used to test the default methods of the interface.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+public class DelegatingIndexable<T> extends DelegatingTimeSeries<T> implements TimeIndexable<T> {
+	private final TimeIndexable<T> ts;
+
+	public DelegatingIndexable(TimeIndexable<T> ts) {
+		super(ts);
+		this.ts = ts;
+	}
+
+	public int getMaxGap() {
+		return ts.getMaxGap();
+	}
+	public T[] getArray() {
+		return ts.getArray();
+	}
+	public T[] getArray(Range range) throws T2Exception {
+		return ts.getArray(range);
+	}
+	public int fill(T replacement, long tailLength) throws T2Exception {
+		return ts.fill(replacement, tailLength);
+	}
+	public int fill(long tailLength) {
+		return ts.fill(tailLength);
+	}
+	public int fill(Filler<T> filler) throws T2Exception {
+		return ts.fill(filler);
+	}
+	public TimeIndexable<T> copy() throws T2Exception {
+		return ts.copy();
+	}
+	public TimeIndexable<T> makeEmptyCopy() {
+		return ts.makeEmptyCopy();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Iterator;
+
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.TimeIndexable;
+import ch.agent.t2.timeseries.UpdateReviewer;
+
+/**
+ * A DelegatingTimeSeries implements only the abstract methods of
+ * {@link TimeAddressable}, by delegating them to another time series. It
+ * is used to test the default methods of the interface.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T>
+ *            the value type
+ */
+public class DelegatingTimeSeries<T> implements TimeAddressable<T> {
+	private final TimeAddressable<T> ts;
+
+	public DelegatingTimeSeries(TimeAddressable<T> ts) {
+		this.ts = ts;
+	}
+
+	public Iterator<Observation<T>> iterator() {
+		return ts.iterator();
+	}
+	public boolean isIndexable() {
+		return ts.isIndexable();
+	}
+	public boolean isMissing(T value) {
+		return ts.isMissing(value);
+	}
+	public T getMissingValue() {
+		return ts.getMissingValue();
+	}
+	public T get(long index) throws T2Exception {
+		return ts.get(index);
+	}
+	public T get(TimeIndex time) throws T2Exception {
+		return ts.get(time);
+	}
+	public Observation<T> getLast(TimeIndex time) throws T2Exception {
+		return ts.getLast(time);
+	}
+	public Observation<T> getFirst(TimeIndex time) throws T2Exception {
+		return ts.getFirst(time);
+	}
+	public TimeAddressable<T> get(long first, long last) throws T2Exception {
+		return ts.get(first, last);
+	}
+	public TimeAddressable<T> get(Range range) throws T2Exception {
+		return ts.get(range);
+	}
+	public void put(TimeIndex time, T value) throws T2Exception {
+		ts.put(time, value);
+	}
+	public void put(TimeIndex time, T[] values) throws T2Exception {
+		ts.put(time, values);
+	}
+	public void put(long time, T value) throws T2Exception {
+		ts.put(time, value);
+	}
+	public void put(long time, T[] values) throws T2Exception {
+		ts.put(time, values);
+	}
+	public void put(TimeAddressable<T> values, UpdateReviewer<T> reviewer) throws T2Exception {
+		ts.put(values, reviewer);
+	}
+	public void remove(TimeIndex time) throws T2Exception {
+		ts.remove(time);
+	}
+	public int getSize() {
+		return ts.getSize();
+	}
+	public int getValueCount() {
+		return ts.getValueCount();
+	}
+	public Range getRange() {
+		return ts.getRange();
+	}
+	public long getFirstIndex() {
+		return ts.getFirstIndex();
+	}
+	public long getLastIndex() {
+		return ts.getLastIndex();
+	}
+	public boolean setRange(Range range) throws T2Exception {
+		return ts.setRange(range);
+	}
+	public TimeDomain getTimeDomain() {
+		return ts.getTimeDomain();
+	}
+	public Class<T> getType() {
+		return ts.getType();
+	}
+	public TimeIndexable<T> asIndexable() throws T2Exception {
+		return ts.asIndexable();
+	}
+	public TimeAddressable<T> copy() throws T2Exception {
+		return ts.copy();
+	}
+	public TimeAddressable<T> makeEmptyCopy() {
+		return ts.makeEmptyCopy();
+	}
+}
@@ -0,0 +1,349 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Iterator;
+
+import ch.agent.core.KeyedException;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.time.Adjustment;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Filler;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.TimeIndexable;
+import junit.framework.TestCase;
+
+public class DoubleRegularTimeSeriesTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private TimeDomain calendar = Day.DOMAIN;
+
+	private long t(String date) throws KeyedException {
+		return calendar.time(date).asLong();
+	}
+
+	public void testPutAndGet() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			assertEquals(0, ts.getSize());
+			assertTrue(Double.isNaN(ts.getDouble(t("2008-02-25"))));
+			ts.putDouble(t("2008-02-25"), 1);
+			ts.putDouble(t("2008-02-28"), 4);
+			ts.putDouble(t("2008-02-20"), -4);
+			dump(ts);
+			assertEquals(9, ts.getSize());
+			assertEquals(3, ts.getValueCount());
+			assertEquals("2008-02-20", ts.getRange().getFirst().toString());
+			assertEquals("2008-02-28", ts.getRange().getLast().toString());
+			assertEquals(1d, ts.getDouble(t("2008-02-25")));
+			assertEquals(4d, ts.get(t("2008-02-28")));
+			assertTrue(ts.isMissing(ts.get(t("2008-02-26"))));
+			assertTrue(ts.isMissing(ts.get(t("2008-03-26"))));
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testMissingValues() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {Double.NaN, 1, 2, 3, Double.NaN});
+			assertEquals("2008-02-26", ts.getRange().getFirst().toString());
+			assertEquals(3, ts.getSize());
+			// missing value in the middle is kept
+			ts.putDouble(t("2008-02-27"), Double.NaN);
+			assertEquals(3, ts.getSize());
+			assertEquals(2, ts.getValueCount());
+			// missing value at the boundary trims the series
+			ts.putDouble(t("2008-02-28"), Double.NaN);
+			assertEquals(1, ts.getSize());
+			assertEquals("2008-02-26", ts.getRange().getLast().toString());
+			ts.remove(calendar.time("2008-02-26"));
+			assertEquals(0, ts.getSize());
+			assertTrue(ts.getRange().isEmpty());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testBulk() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {1, 2, 3});
+			ts.put(t("2008-02-23"), new double[] {-1, 0, 11, Double.NaN, 13, 14});
+			assertEquals("2008-02-23", ts.getRange().getFirst().toString());
+			assertEquals(6, ts.getSize());
+			double[] values = ts.getDoubleArray();
+			assertEquals(-1d, values[0]);
+			assertEquals(11d, values[2]);
+			assertTrue(Double.isNaN(values[3]));
+			assertEquals(14d, values[5]);
+			double[] sub = ts.getDoubleArray(new Range(calendar, "2008-02-20", "2008-02-24", Adjustment.NONE));
+			assertEquals(2, sub.length);
+			assertEquals(0d, sub[1]);
+			Double[] boxed = ts.getArray(new Range(calendar, "2008-02-26", "2008-03-24", Adjustment.NONE));
+			assertEquals(3, boxed.length);
+			assertTrue(ts.isMissing(boxed[0]));
+			assertEquals(14d, boxed[2]);
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testGrowBothEnds() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			long base = t("2010-01-01");
+			for (int i = 0; i < 1000; i++) {
+				ts.putDouble(base + i, i);
+				ts.putDouble(base - i - 1, -i - 1);
+			}
+			assertEquals(2000, ts.getSize());
+			assertEquals(base - 1000, ts.getFirstIndex());
+			for (int i = -1000; i < 1000; i++) {
+				assertEquals((double) i, ts.getDouble(base + i));
+			}
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testMaxGap() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.putDouble(1000000, 1);
+			ts.putDouble(1000000 + ts.getMaxGap() + 2, 2);
+			fail("exception expected");
+		} catch (KeyedException e) {
+			assertEquals(K.T5019, e.getMsg().getKey());
+		}
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.putDouble(1000000, 1);
+			ts.put(1000000 - ts.getMaxGap() - 4, new double[] {1, 2});
+			fail("exception expected");
+		} catch (KeyedException e) {
+			assertEquals(K.T5018, e.getMsg().getKey());
+		}
+	}
+
+	public void testIterator() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {1, Double.NaN, 3});
+			Iterator<Observation<Double>> it = ts.iterator();
+			assertEquals(1d, it.next().getValue());
+			assertTrue(ts.isMissing(it.next().getValue()));
+			Observation<Double> obs = it.next();
+			assertEquals("2008-02-27", obs.getTime().toString());
+			assertFalse(it.hasNext());
+			assertEquals("2008-02-25", ts.getLast(calendar.time("2008-02-26")).getTime().toString());
+			assertEquals("2008-02-27", ts.getFirst(calendar.time("2008-02-26")).getTime().toString());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testSubsetAndCopy() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {1, Double.NaN, 3, 4});
+			TimeAddressable<Double> sub = ts.get(new Range(calendar, "2008-02-26", "2008-03-01", Adjustment.NONE));
+			assertEquals("2008-02-27", sub.getRange().getFirst().toString());
+			assertEquals(2, sub.getSize());
+			TimeIndexable<Double> copy = ts.copy();
+			ts.putDouble(t("2008-02-25"), 42);
+			assertEquals(1d, copy.get(t("2008-02-25")));
+			assertEquals(4, copy.getSize());
+			ts.setRange(new Range(calendar, "2008-02-26", "2008-02-27", Adjustment.NONE));
+			assertEquals(1, ts.getSize());
+			assertEquals("2008-02-27", ts.getRange().getFirst().toString());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testFill() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {1, Double.NaN, Double.NaN, 4});
+			assertEquals(4, ts.fill(0d, 2));
+			assertEquals(6, ts.getSize());
+			assertEquals(0d, ts.getDouble(t("2008-02-26")));
+			assertEquals(0d, ts.getDouble(t("2008-03-01")));
+
+			ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {1, Double.NaN, Double.NaN, 4});
+			assertEquals(3, ts.fill(1));
+			assertEquals(1d, ts.getDouble(t("2008-02-27")));
+			assertEquals(4d, ts.getDouble(t("2008-02-29")));
+
+			ts = new DoubleRegularTimeSeries(calendar);
+			ts.put(t("2008-02-25"), new double[] {1, Double.NaN, Double.NaN, 4});
+			assertEquals(2, ts.fill(new Filler<Double>() {
+				@Override
+				public void fillHole(Double[] values, int tail, int head) throws Exception {
+					double step = (values[head] - values[tail]) / (head - tail);
+					for (int i = tail + 1; i < head; i++)
+						values[i] = values[i - 1] + step;
+				}
+			}));
+			assertEquals(2d, ts.getDouble(t("2008-02-26")));
+			assertEquals(3d, ts.getDouble(t("2008-02-27")));
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testPutSeries() {
+		try {
+			DoubleRegularTimeSeries ts1 = new DoubleRegularTimeSeries(calendar);
+			ts1.put(t("2008-02-25"), new double[] {1, 2, 3});
+			DoubleRegularTimeSeries ts2 = new DoubleRegularTimeSeries(calendar);
+			ts2.put(t("2008-02-27"), new double[] {13, 14});
+			ts1.put(ts2, null);
+			assertEquals(4, ts1.getSize());
+			assertEquals(13d, ts1.getDouble(t("2008-02-27")));
+
+			RegularTimeSeries<Double> rts = new RegularTimeSeries<Double>(Double.class, calendar);
+			rts.put(t("2008-02-20"), new Double[] {7d, 8d});
+			ts1.put(rts, null);
+			assertEquals(9, ts1.getSize());
+			assertEquals(8d, ts1.getDouble(t("2008-02-21")));
+
+			RegularTimeSeries<Double> copy = new RegularTimeSeries<Double>(Double.class, calendar, ts1.getMissingValue());
+			copy.put(ts1, null);
+			assertEquals(ts1.getSize(), copy.getSize());
+			assertEquals(ts1.getValueCount(), copy.getValueCount());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testCursor() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			assertFalse(ts.cursor().next());
+			// grow to the left to have free space before the values
+			ts.put(t("2008-02-25"), new double[] {1, Double.NaN, 3, 4, Double.NaN, 6});
+			ts.putDouble(t("2008-02-18"), -1);
+			DoubleCursor cursor = ts.cursor();
+			StringBuilder s = new StringBuilder();
+			while (cursor.next()) {
+				assertEquals(cursor.value().doubleValue(), cursor.doubleValue());
+				assertEquals(ts.getDouble(cursor.index()), cursor.doubleValue());
+				s.append(calendar.time(cursor.index()).toString()).append('=').append(cursor.doubleValue()).append(' ');
+			}
+			assertFalse(cursor.next());
+			dump(s);
+			assertEquals("2008-02-18=-1.0 2008-02-25=1.0 2008-02-27=3.0 2008-02-28=4.0 2008-03-01=6.0 ", s.toString());
+			cursor = ts.cursor(new Range(calendar, t("2008-02-26"), t("2008-02-27")));
+			assertTrue(cursor.next());
+			assertEquals(t("2008-02-27"), cursor.index());
+			assertEquals(3d, cursor.doubleValue());
+			assertFalse(cursor.next());
+			assertFalse(ts.cursor(new Range(calendar, t("2008-02-19"), t("2008-02-22"))).next());
+			assertFalse(ts.cursor(new Range(calendar, t("2008-03-04"), t("2008-03-05"))).next());
+			assertFalse(ts.cursor(new Range(calendar)).next());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testStream() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			assertEquals(0, ts.doubleStream().count());
+			double[] values = new double[10000];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i % 7 == 0 ? Double.NaN : i;
+			}
+			ts.put(t("2008-02-25"), values);
+			// grow to the left to have free space before the values
+			ts.putDouble(t("2008-02-20"), -1);
+			double sum = -1;
+			for (double value : values) {
+				if (!Double.isNaN(value))
+					sum += value;
+			}
+			assertEquals(ts.getSize(), ts.doubleStream().parallel().count());
+			assertEquals(sum, ts.doubleStream().parallel().filter(v -> !Double.isNaN(v)).sum());
+			assertEquals(sum, ts.parallelStream().filter(o -> !ts.isMissing(o.getValue())).mapToDouble(o -> o.getValue()).sum());
+			assertEquals(t("2008-02-20"), ts.indexStream().parallel().min().getAsLong());
+			assertEquals(ts.getLastIndex(), ts.indexStream().parallel().max().getAsLong());
+			assertEquals(ts.getSize(), ts.indexStream().parallel().distinct().count());
+			assertEquals(ts.getDouble(t("2008-02-26")), ts.stream().filter(o -> o.getIndex() == ts.getFirstIndex() + 6).findFirst().get().getValue());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+	public void testValidity() {
+		try {
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(calendar);
+			java.util.TreeMap<Long, Double> expected = new java.util.TreeMap<Long, Double>();
+			java.util.Random random = new java.util.Random(42);
+			long base = 100000;
+			// grow at both ends with gaps, like weekends and holidays
+			for (int i = 0; i < 3000; i++) {
+				long index = random.nextBoolean() ? base + i : base - i;
+				if (random.nextInt(7) < 5) {
+					ts.putDouble(index, i);
+					expected.put(index, (double) i);
+				}
+			}
+			// remove values anywhere
+			for (int i = 0; i < 1000; i++) {
+				long index = base - 3000 + random.nextInt(6000);
+				ts.putDouble(index, Double.NaN);
+				expected.remove(index);
+			}
+			double[] values = new double[500];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i % 3 == 0 ? Double.NaN : -i;
+				if (i % 3 == 0)
+					expected.remove(base + 2900 + i);
+				else
+					expected.put(base + 2900 + i, (double) -i);
+			}
+			ts.put(base + 2900, values);
+			assertEquals(expected.size(), ts.getValueCount());
+			assertEquals(expected.firstKey().longValue(), ts.getFirstIndex());
+			assertEquals(expected.lastKey().longValue(), ts.getLastIndex());
+			for (long index = ts.getFirstIndex() - 70; index <= ts.getLastIndex() + 70; index += 7) {
+				Long floor = expected.floorKey(index);
+				Observation<Double> last = ts.getLast(calendar.time(index));
+				assertEquals(floor, last == null ? null : last.getIndex());
+				Long ceiling = expected.ceilingKey(index);
+				Observation<Double> first = ts.getFirst(calendar.time(index));
+				assertEquals(ceiling, first == null ? null : first.getIndex());
+			}
+			DoubleCursor cursor = ts.cursor();
+			for (long index : expected.keySet()) {
+				assertTrue(cursor.next());
+				assertEquals(index, cursor.index());
+			}
+			assertFalse(cursor.next());
+			DoubleRegularTimeSeries sub = (DoubleRegularTimeSeries) ts.get(base - 1234, base + 1234);
+			assertEquals(expected.subMap(base - 1234, true, base + 1234, true).size(), sub.getValueCount());
+			ts.setRange(new Range(calendar, base - 1000, base + 1000));
+			assertEquals(expected.subMap(base - 1000, true, base + 1000, true).size(), ts.getValueCount());
+			int count = ts.getValueCount();
+			int size = ts.getSize();
+			assertEquals(size - count, ts.fill(0));
+			assertEquals(size, ts.getValueCount());
+			assertEquals(5, ts.fill(5));
+			assertEquals(size + 5, ts.getValueCount());
+		} catch (KeyedException e) {
+			assertEquals(null, e);
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.SegmentedTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class SegmentedLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int DAYS = 60;
+	private static final int SESSION = 8 * 3600;
+	private static final int LOOKUPS = 5000000;
+
+	private long used() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	private void measure(String name, TimeAddressable<Double> ts, long open) throws Exception {
+		long memory = -used();
+		long millis = -System.currentTimeMillis();
+		for (int d = 0; d < DAYS; d++) {
+			long start = open + d * 86400L;
+			for (int s = 0; s < SESSION; s++) {
+				ts.put(start + s, (double) s);
+			}
+		}
+		millis += System.currentTimeMillis();
+		memory += used();
+		dump(String.format("%s: %d values put in %dms, %.1f bytes per value", name, ts.getValueCount(), millis, (double) memory / ts.getValueCount()));
+		Random random = new Random(1);
+		long first = ts.getFirstIndex();
+		long span = ts.getLastIndex() - first + 1;
+		double sum = 0;
+		millis = -System.currentTimeMillis();
+		for (int i = 0; i < LOOKUPS; i++) {
+			Double value = ts.get(first + (long) (random.nextDouble() * span));
+			if (!ts.isMissing(value))
+				sum += value;
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: %d random lookups in %dms (sum %.0f)", name, LOOKUPS, millis, sum));
+	}
+
+	public void testIntraday() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			long open = domain.time("2017-01-02 09:00:00").asLong();
+			measure("sparse", new SparseTimeSeries<Double>(Double.class, domain), open);
+			measure("segmented", new SegmentedTimeSeries<Double>(Double.class, domain), open);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.T2Msg.K;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.Filler;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SegmentedTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.TimeIndexable;
+
+public class SegmentedTimeSeriesTest extends TestCase {
+
+	public void testOvernightGaps() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			Random random = new Random(42);
+			SparseTimeSeries<Double> expected = new SparseTimeSeries<Double>(Double.class, domain);
+			SegmentedTimeSeries<Double> ts = new SegmentedTimeSeries<Double>(Double.class, domain);
+			long day = domain.time("2017-01-02").asLong();
+			for (int d = 0; d < 20; d++) {
+				long open = day + d * 86400L + 9 * 3600L;
+				for (int s = 0; s < 8 * 3600; s += 1 + random.nextInt(20)) {
+					double value = random.nextGaussian();
+					expected.put(open + s, value);
+					ts.put(open + s, value);
+				}
+			}
+			TimeSeriesAssert.assertSameValues(expected, ts);
+			assertEquals(expected.getRange(), ts.getRange());
+			assertTrue(ts.getSize() > 19 * 86400);
+			assertEquals(Integer.MAX_VALUE, ts.getMaxGap());
+			Random r = new Random(1);
+			for (int i = 0; i < 10000; i++) {
+				long index = ts.getFirstIndex() - 10 + (long) (r.nextDouble() * (ts.getSize() + 20));
+				assertEquals(expected.get(index), ts.get(index));
+				assertEquals(String.valueOf(expected.getFirst(domain.time(index))), String.valueOf(ts.getFirst(domain.time(index))));
+				assertEquals(String.valueOf(expected.getLast(domain.time(index))), String.valueOf(ts.getLast(domain.time(index))));
+			}
+			Range range = new Range(domain, day + 3 * 86400L, day + 5 * 86400L + 40000);
+			TimeSeriesAssert.assertSameValues(expected.get(range), ts.get(range));
+			TimeSeriesAssert.assertSameValues(expected.get(range), ts.copy().get(range));
+			Double[] array = ts.getArray(range);
+			assertEquals(range.getSize(), array.length);
+			for (int i = 0; i < array.length; i++) {
+				assertEquals(expected.get(range.getFirstIndex() + i), array[i]);
+			}
+			int count = 0;
+			for (Observation<Double> obs : ts) {
+				if (!ts.isMissing(obs.getValue()))
+					count++;
+			}
+			assertEquals(ts.getValueCount(), count);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testRemove() {
+		try {
+			TimeDomain domain = Day.DOMAIN;
+			long start = domain.time("2017-01-02").asLong();
+			SegmentedTimeSeries<String> ts = new SegmentedTimeSeries<String>(String.class, domain);
+			ts.put(start, "a");
+			ts.put(start + 5000, "b");
+			ts.put(start + 10000, "c");
+			assertEquals(10001, ts.getSize());
+			assertEquals(3, ts.getValueCount());
+			ts.put(start, (String) null);
+			assertEquals(start + 5000, ts.getFirstIndex());
+			ts.remove(domain.time(start + 10000));
+			assertEquals(start + 5000, ts.getLastIndex());
+			assertEquals(1, ts.getSize());
+			ts.put(start + 3000, "d");
+			ts.put(start + 4000, "e");
+			ts.put(start + 4000, (String) null);
+			assertNull(ts.get(start + 4000));
+			assertEquals(2, ts.getValueCount());
+			assertEquals(2001, ts.getSize());
+			ts.setRange(new Range(domain, start + 4000, start + 6000));
+			assertEquals(start + 5000, ts.getFirstIndex());
+			assertEquals(1, ts.getSize());
+			ts.put(start + 5000, (String) null);
+			assertEquals(0, ts.getSize());
+			assertEquals(-1, ts.getFirstIndex());
+			assertTrue(ts.getRange().isEmpty());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testFill() {
+		try {
+			TimeDomain domain = Day.DOMAIN;
+			long start = domain.time("2017-01-02").asLong();
+			RegularTimeSeries<Double> expected = new RegularTimeSeries<Double>(Double.class, domain);
+			SegmentedTimeSeries<Double> ts = new SegmentedTimeSeries<Double>(Double.class, domain);
+			for (TimeIndexable<Double> s : Arrays.<TimeIndexable<Double>>asList(expected, ts)) {
+				s.put(start, 1d);
+				s.put(start + 3, 4d);
+				s.put(start + 10, 11d);
+			}
+			TimeIndexable<Double> e = expected.copy();
+			TimeIndexable<Double> a = ts.copy();
+			Filler<Double> filler = new Filler<Double>() {
+				@Override
+				public void fillHole(Double[] val, int first, int last) {
+					double step = (val[last] - val[first]) / (last - first);
+					for (int i = first + 1; i < last; i++)
+						val[i] = val[i - 1] + step;
+				}
+			};
+			assertEquals(e.fill(filler), a.fill(filler));
+			TimeSeriesAssert.assertSameValues(e, a);
+			assertEquals(10, ts.copy().fill(0d, 2));
+			TimeIndexable<Double> b = ts.copy();
+			b.fill(-1d, 2);
+			assertEquals(-1d, b.get(start + 1));
+			assertEquals(-1d, b.get(start + 12));
+			e = expected.copy();
+			a = ts.copy();
+			assertEquals(e.fill(3), a.fill(3));
+			TimeSeriesAssert.assertSameValues(e, a);
+			assertEquals(8, ts.fill(Double.NaN, 0));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testOutOfRange() {
+		try {
+			TimeDomain domain = Day.DOMAIN;
+			long start = domain.time("2017-01-02").asLong();
+			SegmentedTimeSeries<Double> ts = new SegmentedTimeSeries<Double>(Double.class, domain);
+			ts.put(start, 1d);
+			ts.put(start + 2000, 2d);
+			Range after = new Range(domain, start + 2001, start + 3000);
+			assertFalse(ts.cursor(after).next());
+			assertEquals(0, ts.get(after).getSize());
+			assertEquals(0, ts.get(start + 5000, start + 6000).getSize());
+			Range before = new Range(domain, start - 1000, start - 1);
+			assertFalse(ts.cursor(before).next());
+			assertEquals(0, ts.get(before).getSize());
+			Cursor<Double> cursor = ts.cursor(new Range(domain, start + 1, start + 5000));
+			assertTrue(cursor.next());
+			assertEquals(start + 2000, cursor.index());
+			assertFalse(cursor.next());
+			assertEquals(1, ts.get(start - 1000, start + 1).getSize());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testTooLarge() {
+		try {
+			TimeDomain domain = DateTime.DOMAIN;
+			SegmentedTimeSeries<Double> ts = new SegmentedTimeSeries<Double>(Double.class, domain);
+			ts.put(1000L, 1d);
+			ts.put(1000L + Integer.MAX_VALUE - 1, 2d);
+			assertEquals(Integer.MAX_VALUE, ts.getSize());
+			assertEquals(2, ts.getValueCount());
+			try {
+				ts.put(999L, 3d);
+				fail("exception expected");
+			} catch (T2Exception e) {
+				assertEquals(K.T5008, e.getMsg().getKey());
+			}
+			assertEquals(1000L, ts.getFirstIndex());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
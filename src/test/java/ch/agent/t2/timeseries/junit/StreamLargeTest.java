@@ -0,0 +1,76 @@
+package ch.agent.t2.timeseries.junit;
+
+import junit.framework.TestCase;
+import ch.agent.t2.applied.DateTime;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class StreamLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int SIZE = 5000000;
+	private static final int REPEAT = 5;
+
+	private static double work(double value) {
+		return Math.sqrt(Math.abs(Math.sin(value)));
+	}
+
+	private void compare(TimeAddressable<Double> ts) {
+		double expected = 0;
+		long millis = -System.currentTimeMillis();
+		for (int r = 0; r < REPEAT; r++) {
+			expected = 0;
+			for (Observation<Double> obs : ts) {
+				expected += work(obs.getValue());
+			}
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s iterator: %d x %d values in %dms", ts.getClass().getSimpleName(), REPEAT, SIZE, millis));
+
+		double sum = 0;
+		millis = -System.currentTimeMillis();
+		for (int r = 0; r < REPEAT; r++) {
+			sum = ts.parallelStream().mapToDouble(o -> work(o.getValue())).sum();
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s parallelStream(): %d x %d values in %dms", ts.getClass().getSimpleName(), REPEAT, SIZE, millis));
+		assertEquals(expected, sum, 1e-6 * SIZE);
+
+		millis = -System.currentTimeMillis();
+		for (int r = 0; r < REPEAT; r++) {
+			sum = ts.doubleStream().parallel().map(StreamLargeTest::work).sum();
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s doubleStream().parallel(): %d x %d values in %dms", ts.getClass().getSimpleName(), REPEAT, SIZE, millis));
+		assertEquals(expected, sum, 1e-6 * SIZE);
+	}
+
+	public void testParallelSum() {
+		try {
+			dump(String.format("%d processors", Runtime.getRuntime().availableProcessors()));
+			TimeDomain domain = DateTime.DOMAIN;
+			long start = domain.time("2017-01-01").asLong();
+			TimeAddressable<Double> sparse = new SparseTimeSeries<Double>(Double.class, domain);
+			double[] values = new double[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				sparse.put(start + 3L * i, (double) i);
+				values[i] = i;
+			}
+			compare(sparse);
+			sparse = null;
+			DoubleRegularTimeSeries regular = new DoubleRegularTimeSeries(domain);
+			regular.put(start, values);
+			compare(regular);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
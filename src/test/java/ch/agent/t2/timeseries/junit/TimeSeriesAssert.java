@@ -0,0 +1,71 @@
+/*
+ *   Copyright 2011-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.t2.timeseries.junit;
+
+import junit.framework.TestCase;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * TimeSeriesAssert provides assertions comparing time series.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class TimeSeriesAssert {
+
+	private TimeSeriesAssert() {
+	}
+
+	/**
+	 * Assert that two time series have the same domain, type, range and
+	 * non-missing values. Doubles must have the same bits. The size is
+	 * compared when both series are indexable, and must be the number of
+	 * values when the actual series is not indexable.
+	 *
+	 * @param expected
+	 *            a non-null time series
+	 * @param actual
+	 *            a non-null time series
+	 */
+	public static void assertSameValues(TimeAddressable<?> expected, TimeAddressable<?> actual) {
+		TestCase.assertEquals(expected.getTimeDomain(), actual.getTimeDomain());
+		TestCase.assertEquals(expected.getType(), actual.getType());
+		assertSameValue(expected.getMissingValue(), actual.getMissingValue());
+		TestCase.assertEquals(expected.getRange(), actual.getRange());
+		TestCase.assertEquals(expected.getValueCount(), actual.getValueCount());
+		if (!actual.isIndexable())
+			TestCase.assertEquals(actual.getValueCount(), actual.getSize());
+		else if (expected.isIndexable())
+			TestCase.assertEquals(expected.getSize(), actual.getSize());
+		Cursor<?> e = expected.cursor();
+		Cursor<?> a = actual.cursor();
+		while (e.next()) {
+			TestCase.assertTrue(a.next());
+			TestCase.assertEquals(e.index(), a.index());
+			assertSameValue(e.value(), a.value());
+		}
+		TestCase.assertFalse(a.next());
+	}
+
+	private static void assertSameValue(Object expected, Object actual) {
+		if (expected instanceof Double && actual instanceof Double)
+			TestCase.assertEquals(Double.doubleToRawLongBits((Double) expected), Double.doubleToRawLongBits((Double) actual));
+		else
+			TestCase.assertEquals(expected, actual);
+	}
+
+}
@@ -1,6 +1,12 @@
 package ch.agent.t2.timeseries.junit;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import ch.agent.core.KeyedException;
 import ch.agent.t2.T2Msg.K;
@@ -11,6 +17,7 @@ import ch.agent.t2.time.Range;
 import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeIndex;
 import ch.agent.t2.timeseries.AbstractTimeSeries;
+import ch.agent.t2.timeseries.Cursor;
 import ch.agent.t2.timeseries.Filler;
 import ch.agent.t2.timeseries.Observation;
 import ch.agent.t2.timeseries.RegularTimeSeries;
@@ -1039,5 +1046,290 @@ public class TimeSeriesTest extends TestCase {
 			fail("unexpected exception");
 		}
 	}
+	
+	public void testBackfillNewestFirst() {
+		try {
+			TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			long last = Day.DOMAIN.time("2010-12-31").asLong();
+			// every third day is missing
+			for (int i = 0; i < 10000; i++) {
+				if (i % 3 != 2)
+					ts.put(last - i, (double) i);
+			}
+			assertEquals(10000, ts.getSize());
+			assertEquals(last - 9999, ts.getFirstIndex());
+			assertEquals(3.0, ts.get(last - 3));
+			assertTrue(ts.isMissing(ts.get(last - 2)));
+			// remove values at both ends
+			ts.remove(Day.DOMAIN.time(last - 9999));
+			ts.remove(Day.DOMAIN.time(last));
+			assertEquals(last - 9997, ts.getFirstIndex());
+			assertEquals(last - 1, ts.getLastIndex());
+			ts.setRange(new Range(Day.DOMAIN, last - 100, last - 50));
+			assertEquals(last - 100, ts.getFirstIndex());
+			assertEquals(last - 51, ts.getLastIndex());
+			assertEquals(100.0, ts.get(last - 100));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("unexpected exception");
+		}
+	}
+	
+	public void testSparseOutOfOrder() {
+		try {
+			TimeAddressable<Double> ts = new SparseTimeSeries<Double>(Double.class, Day.DOMAIN);
+			TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+			Random random = new Random(42);
+			// enough values to require many chunks, inserted and removed in random order
+			for (int i = 0; i < 50000; i++) {
+				long index = random.nextInt(30000);
+				if (random.nextInt(5) == 0) {
+					ts.remove(Day.DOMAIN.time(index));
+					expected.remove(index);
+				} else {
+					ts.put(index, (double) i);
+					expected.put(index, (double) i);
+				}
+			}
+			assertEquals(expected.size(), ts.getSize());
+			assertEquals(expected.firstKey().longValue(), ts.getFirstIndex());
+			assertEquals(expected.lastKey().longValue(), ts.getLastIndex());
+			Iterator<Long> keys = expected.keySet().iterator();
+			for (Observation<Double> obs : ts) {
+				long key = keys.next();
+				assertEquals(key, obs.getIndex());
+				assertEquals(expected.get(key), obs.getValue());
+			}
+			assertFalse(keys.hasNext());
+			for (long index = 0; index < 30000; index += 7) {
+				Long floor = expected.floorKey(index);
+				Observation<Double> last = ts.getLast(Day.DOMAIN.time(index));
+				assertEquals(floor, last == null ? null : last.getIndex());
+				Long ceiling = expected.ceilingKey(index);
+				Observation<Double> first = ts.getFirst(Day.DOMAIN.time(index));
+				assertEquals(ceiling, first == null ? null : first.getIndex());
+			}
+			TimeAddressable<Double> sub = ts.get(10000, 19999);
+			assertEquals(expected.subMap(10000L, 20000L).size(), sub.getSize());
+			ts.setRange(new Range(Day.DOMAIN, 5000, 5999));
+			assertEquals(expected.subMap(5000L, 6000L).size(), ts.getSize());
+			assertEquals(expected.ceilingKey(5000L).longValue(), ts.getFirstIndex());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("unexpected exception");
+		}
+	}
+
+	private void checkCursor(TimeAddressable<Double> ts, TreeMap<Long, Double> expected, Range range) throws Exception {
+		Cursor<Double> cursor = range == null ? ts.cursor() : ts.cursor(range);
+		java.util.Map<Long, Double> wanted = range == null ? expected 
+				: range.isEmpty() ? new TreeMap<Long, Double>() 
+				: expected.subMap(range.getFirstIndex(), true, range.getLastIndex(), true);
+		Iterator<Long> keys = wanted.keySet().iterator();
+		while (cursor.next()) {
+			long key = keys.next();
+			assertEquals(key, cursor.index());
+			assertEquals(expected.get(key), cursor.value());
+		}
+		assertFalse(keys.hasNext());
+		assertFalse(cursor.next());
+	}
+	
+	public void testCursor() {
+		try {
+			TimeAddressable<Double> regular = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			TimeAddressable<Double> sparse = new SparseTimeSeries<Double>(Double.class, Day.DOMAIN);
+			TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+			checkCursor(regular, expected, null);
+			checkCursor(sparse, expected, new Range(Day.DOMAIN, 10, 20));
+			Random random = new Random(42);
+			// values with holes, spread over several chunks of the sparse series
+			for (long index = 1000; index < 21000; index++) {
+				if (random.nextInt(3) > 0) {
+					regular.put(index, (double) index);
+					sparse.put(index, (double) index);
+					expected.put(index, (double) index);
+				}
+			}
+			checkCursor(regular, expected, null);
+			checkCursor(sparse, expected, null);
+			Range[] ranges = {
+				new Range(Day.DOMAIN),
+				new Range(Day.DOMAIN, 0, 999),
+				new Range(Day.DOMAIN, 0, 1000),
+				new Range(Day.DOMAIN, 20999, 30000),
+				new Range(Day.DOMAIN, 21000, 30000),
+				new Range(Day.DOMAIN, 5000, 5000),
+				new Range(Day.DOMAIN, 4095, 8193),
+				new Range(Day.DOMAIN, 0, 10000000),
+			};
+			for (Range range : ranges) {
+				checkCursor(regular, expected, range);
+				checkCursor(sparse, expected, range);
+			}
+			for (int i = 0; i < 100; i++) {
+				long first = 500 + random.nextInt(21000);
+				Range range = new Range(Day.DOMAIN, first, first + random.nextInt(5000));
+				checkCursor(regular, expected, range);
+				checkCursor(sparse, expected, range);
+			}
+			// the default cursor, based on the iterator, skips missing values
+			TimeAddressable<Double> delegate = new DelegatingTimeSeries<Double>(regular);
+			checkCursor(delegate, expected, null);
+			for (Range range : ranges)
+				checkCursor(delegate, expected, range);
+			try {
+				delegate.cursor(new Range(Workday.DOMAIN, 10, 20));
+				fail("exception expected");
+			} catch (KeyedException e) {
+				assertEquals(K.T1074, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("unexpected exception");
+		}
+	}
+	
+	public void testCursorDomain() {
+		try {
+			ti.cursor(new Range(Day.DOMAIN, 10, 20));
+			fail("exception expected");
+		} catch (KeyedException e) {
+			assertEquals(K.T1074, e.getMsg().getKey());
+		}
+	}
+
+	private void checkStream(TimeAddressable<Double> ts) throws Exception {
+		Spliterator<Observation<Double>> split = ts.spliterator();
+		assertTrue(split.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+		assertEquals(ts.getSize(), split.getExactSizeIfKnown());
+		Spliterator<Observation<Double>> prefix = split.trySplit();
+		assertNotNull(prefix);
+		assertEquals(ts.getSize(), prefix.getExactSizeIfKnown() + split.getExactSizeIfKnown());
+		long[] last = { -1 };
+		prefix.forEachRemaining(o -> last[0] = o.getIndex());
+		assertTrue(split.tryAdvance(o -> assertTrue(o.getIndex() > last[0])));
+
+		List<Long> indexes = new ArrayList<Long>();
+		double sum = 0;
+		for (Observation<Double> obs : ts) {
+			indexes.add(obs.getIndex());
+			if (!ts.isMissing(obs.getValue()))
+				sum += obs.getValue();
+		}
+		assertEquals(indexes, ts.stream().map(o -> o.getIndex()).collect(Collectors.toList()));
+		assertEquals(indexes, ts.parallelStream().map(o -> o.getIndex()).collect(Collectors.toList()));
+		assertEquals(indexes, ts.indexStream().parallel().boxed().collect(Collectors.toList()));
+		assertEquals(sum, ts.parallelStream().filter(o -> !ts.isMissing(o.getValue())).mapToDouble(o -> o.getValue()).sum(), EPSILON);
+		assertEquals(sum, ts.doubleStream().parallel().filter(v -> !Double.isNaN(v)).sum(), EPSILON);
+		assertEquals(indexes.size(), ts.doubleStream().parallel().count());
+	}
+	
+	public void testStream() {
+		try {
+			TimeAddressable<Double> regular = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			TimeAddressable<Double> sparse = new SparseTimeSeries<Double>(Double.class, Day.DOMAIN);
+			assertEquals(0, regular.stream().count());
+			assertEquals(0, sparse.parallelStream().count());
+			assertEquals(0, sparse.indexStream().count());
+			Random random = new Random(42);
+			// values with holes, spread over several chunks of the sparse series
+			for (long index = 1000; index < 31000; index++) {
+				if (random.nextInt(3) > 0) {
+					regular.put(index, (double) index);
+					sparse.put(index, (double) index);
+				}
+			}
+			checkStream(regular);
+			checkStream(sparse);
+			checkStream(regular.get(5000, 9000));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("unexpected exception");
+		}
+	}
+
+	private void checkValidity(TimeAddressable<Double> ts, TreeMap<Long, Double> expected) throws Exception {
+		assertEquals(expected.size(), ts.getValueCount());
+		if (expected.isEmpty()) {
+			assertEquals(0, ts.getSize());
+			return;
+		}
+		assertEquals(expected.firstKey().longValue(), ts.getFirstIndex());
+		assertEquals(expected.lastKey().longValue(), ts.getLastIndex());
+		for (long index = ts.getFirstIndex() - 70; index <= ts.getLastIndex() + 70; index += 13) {
+			if (index < 0)
+				continue;
+			Long floor = expected.floorKey(index);
+			Observation<Double> last = ts.getLast(Day.DOMAIN.time(index));
+			assertEquals(floor, last == null ? null : last.getIndex());
+			Long ceiling = expected.ceilingKey(index);
+			Observation<Double> first = ts.getFirst(Day.DOMAIN.time(index));
+			assertEquals(ceiling, first == null ? null : first.getIndex());
+			if (first != null)
+				assertEquals(expected.get(ceiling), first.getValue());
+		}
+	}
+	
+	public void testValidity() {
+		try {
+			TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+			Random random = new Random(42);
+			long base = 100000;
+			// grow at both ends with gaps, like weekends and holidays
+			for (int i = 0; i < 3000; i++) {
+				long index = random.nextBoolean() ? base + i : base - i;
+				if (random.nextInt(7) < 5) {
+					ts.put(index, (double) i);
+					expected.put(index, (double) i);
+				}
+			}
+			checkValidity(ts, expected);
+			// remove values at both ends
+			for (int i = 0; i < 200; i++) {
+				long index = random.nextBoolean() ? expected.firstKey() : expected.lastKey();
+				ts.remove(Day.DOMAIN.time(index));
+				expected.remove(index);
+			}
+			checkValidity(ts, expected);
+			ts.setRange(new Range(Day.DOMAIN, base - 1000, base + 777));
+			expected = new TreeMap<Long, Double>(expected.subMap(base - 1000, true, base + 777, true));
+			checkValidity(ts, expected);
+			TimeAddressable<Double> sub = ts.get(base - 333, base + 333);
+			checkValidity(sub, new TreeMap<Long, Double>(expected.subMap(base - 333, true, base + 333, true)));
+			((TimeIndexable<Double>) ts).fill(10);
+			long filled = expected.lastKey() + 10;
+			for (long index = expected.firstKey(); index <= filled; index++) {
+				Double value = expected.get(index);
+				if (value == null)
+					expected.put(index, expected.get(index - 1));
+			}
+			checkValidity(ts, expected);
+			ts.setRange(new Range(Day.DOMAIN, 0, 10));
+			checkValidity(ts, new TreeMap<Long, Double>());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("unexpected exception");
+		}
+	}
+
+	public void testGetBeforeStart() {
+		try {
+			TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			long start = 100000;
+			for (int i = 0; i <= 10; i++) {
+				ts.put(start + i, (double) i);
+			}
+			assertEquals(new Range(Day.DOMAIN, start, start + 3), ts.get(start - 100, start + 3).getRange());
+			assertEquals(new Range(Day.DOMAIN, start, start + 10), ts.get(start - 100, start + 10).getRange());
+			assertEquals(new Range(Day.DOMAIN, start, start + 10), ts.get(start - 100, start + 200).getRange());
+			assertTrue(ts.get(start - 100, start - 1).getRange().isEmpty());
+			assertEquals(3d, ts.get(start - 100, start + 3).get(start + 3));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("unexpected exception");
+		}
+	}
 
 }
@@ -0,0 +1,69 @@
+package ch.agent.t2.timeseries.junit;
+
+import junit.framework.TestCase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class ValidityLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int SIZE = 2000000;
+	private static final int REPEAT = 20;
+
+	private void measure(TimeAddressable<Double> ts, int expected) throws Exception {
+		TimeDomain domain = ts.getTimeDomain();
+		long millis = -System.currentTimeMillis();
+		int count = 0;
+		for (int r = 0; r < REPEAT; r++) {
+			count = ts.getValueCount();
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s getValueCount(): %d x %d elements in %dms", ts.getClass().getSimpleName(), REPEAT, ts.getSize(), millis));
+		assertEquals(expected, count);
+
+		millis = -System.currentTimeMillis();
+		long first = ts.getFirstIndex();
+		long sum = 0;
+		for (int i = 0; i < SIZE; i += 7) {
+			// a Saturday, missing
+			Observation<Double> obs = ts.getLast(domain.time(first + i + 5));
+			sum += obs.getIndex();
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s getLast(TimeIndex): %d calls in %dms", ts.getClass().getSimpleName(), SIZE / 7, millis));
+		assertTrue(sum > 0);
+	}
+
+	public void testWorkdays() {
+		try {
+			TimeDomain domain = Day.DOMAIN;
+			long start = domain.time("2017-01-02").asLong(); // a Monday
+			double[] values = new double[SIZE];
+			int count = 0;
+			for (int i = 0; i < SIZE; i++) {
+				if (i % 7 < 5) {
+					values[i] = i;
+					count++;
+				} else
+					values[i] = Double.NaN;
+			}
+			DoubleRegularTimeSeries doubles = new DoubleRegularTimeSeries(domain);
+			doubles.put(start, values);
+			measure(doubles, count);
+			RegularTimeSeries<Double> regular = new RegularTimeSeries<Double>(Double.class, domain);
+			regular.put(start, doubles.getArray());
+			measure(regular, count);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
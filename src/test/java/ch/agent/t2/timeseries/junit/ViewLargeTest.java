@@ -0,0 +1,72 @@
+package ch.agent.t2.timeseries.junit;
+
+import junit.framework.TestCase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.Cursor;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class ViewLargeTest extends TestCase {
+
+	private static void dump(Object expr) {
+		// System.out.println(expr);
+	}
+
+	private static final int YEARS = 50;
+	private static final int WINDOW = 10 * 365;
+	private static final int STEP = 5;
+
+	private static double sum(TimeAddressable<Double> ts) {
+		double sum = 0;
+		Cursor<Double> cursor = ts.cursor();
+		while (cursor.next()) {
+			sum += cursor.value();
+		}
+		return sum;
+	}
+
+	private void measure(String name, TimeAddressable<Double> ts) throws Exception {
+		TimeDomain domain = ts.getTimeDomain();
+		long first = ts.getFirstIndex();
+		long last = ts.getLastIndex();
+		double expected = 0;
+		long millis = -System.currentTimeMillis();
+		int windows = 0;
+		for (long i = first; i + WINDOW - 1 <= last; i += STEP) {
+			expected += sum(ts.get(new Range(domain, i, i + WINDOW - 1)));
+			windows++;
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: %d windows with get in %dms", name, windows, millis));
+		double actual = 0;
+		millis = -System.currentTimeMillis();
+		for (long i = first; i + WINDOW - 1 <= last; i += STEP) {
+			actual += sum(ts.view(new Range(domain, i, i + WINDOW - 1)));
+		}
+		millis += System.currentTimeMillis();
+		dump(String.format("%s: %d windows with view in %dms", name, windows, millis));
+		assertEquals(expected, actual);
+	}
+
+	public void testRollingWindows() {
+		try {
+			TimeDomain domain = Day.DOMAIN;
+			long start = domain.time("1967-01-01").asLong();
+			RegularTimeSeries<Double> regular = new RegularTimeSeries<Double>(Double.class, domain);
+			SparseTimeSeries<Double> sparse = new SparseTimeSeries<Double>(Double.class, domain);
+			for (int i = 0; i < YEARS * 365; i++) {
+				regular.put(start + i, (double) i);
+				sparse.put(start + i, (double) i);
+			}
+			measure("regular", regular);
+			measure("sparse", sparse);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
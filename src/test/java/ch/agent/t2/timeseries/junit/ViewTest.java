@@ -0,0 +1,220 @@
+package ch.agent.t2.timeseries.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.timeseries.CompressedTimeSeries;
+import ch.agent.t2.timeseries.DoubleCursor;
+import ch.agent.t2.timeseries.DoubleRegularTimeSeries;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SegmentedTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.TimeIndexable;
+
+public class ViewTest extends TestCase {
+
+	private TimeDomain domain = Day.DOMAIN;
+
+	/**
+	 * Compare the values, then the iterators, streams and strings, which
+	 * views implement separately.
+	 */
+	private static void assertSameView(TimeAddressable<Double> expected, TimeAddressable<Double> actual) throws Exception {
+		TimeSeriesAssert.assertSameValues(expected, actual);
+		assertEquals(expected.getSize(), actual.getSize());
+		StringBuilder se = new StringBuilder();
+		for (Observation<Double> obs : expected) {
+			se.append(obs.toString());
+		}
+		StringBuilder sa = new StringBuilder();
+		for (Observation<Double> obs : actual) {
+			sa.append(obs.toString());
+		}
+		assertEquals(se.toString(), sa.toString());
+		assertEquals(expected.stream().count(), actual.stream().count());
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	private List<TimeAddressable<Double>> series(long start) throws Exception {
+		List<TimeAddressable<Double>> series = new ArrayList<TimeAddressable<Double>>();
+		series.add(new RegularTimeSeries<Double>(Double.class, domain));
+		series.add(new DoubleRegularTimeSeries(domain));
+		series.add(new SegmentedTimeSeries<Double>(Double.class, domain));
+		series.add(new SparseTimeSeries<Double>(Double.class, domain));
+		for (TimeAddressable<Double> ts : series) {
+			for (int i = 0; i < 3000; i++) {
+				if (i % 7 != 3)
+					ts.put(start + i, i / 4d);
+			}
+		}
+		return series;
+	}
+
+	public void testViewAndGet() {
+		try {
+			long start = domain.time("2017-01-02").asLong();
+			Range[] ranges = {
+				new Range(domain, start - 100, start + 10),
+				new Range(domain, start + 3, start + 1003),
+				new Range(domain, start + 2900, start + 5000),
+				new Range(domain, start + 10, start + 10),
+				new Range(domain, start + 3, start + 3),
+				new Range(domain, start + 5000, start + 6000),
+				new Range(domain),
+			};
+			for (TimeAddressable<Double> ts : series(start)) {
+				for (Range range : ranges) {
+					TimeAddressable<Double> view = ts.view(range);
+					assertEquals(ts.isIndexable(), view.isIndexable());
+					assertSameView(ts.get(range), view);
+					assertSameView(ts.get(range), view.copy());
+					for (long i = start - 2; i < start + 3002; i += 13) {
+						assertEquals(range.isInRange(i) ? ts.get(i) : Double.NaN, view.get(i));
+						assertEquals(String.valueOf(ts.get(range).getFirst(domain.time(i))), String.valueOf(view.getFirst(domain.time(i))));
+						assertEquals(String.valueOf(ts.get(range).getLast(domain.time(i))), String.valueOf(view.getLast(domain.time(i))));
+					}
+					Range inner = new Range(domain, start + 500, start + 700);
+					assertSameView(ts.get(range).get(inner), view.view(inner));
+					assertSameView(ts.get(range).get(inner), view.get(inner));
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testIndexable() {
+		try {
+			long start = domain.time("2017-01-02").asLong();
+			DoubleRegularTimeSeries ts = new DoubleRegularTimeSeries(domain);
+			ts.put(start, new double[] { 1, 2, Double.NaN, 4, 5, 6, Double.NaN, 8 });
+			TimeIndexable<Double> view = ts.view(new Range(domain, start + 1, start + 6));
+			assertEquals(new Range(domain, start + 1, start + 5), view.getRange());
+			assertTrue(Arrays.equals(new Double[] { 2d, Double.NaN, 4d, 5d, 6d }, view.getArray()));
+			assertTrue(Arrays.equals(new Double[] { 4d, 5d }, view.getArray(new Range(domain, start + 3, start + 4))));
+			assertEquals(ts.getMaxGap(), view.getMaxGap());
+			assertTrue(view.cursor() instanceof DoubleCursor);
+			assertEquals(2 + 4 + 5 + 6, view.doubleStream().filter(d -> !Double.isNaN(d)).sum(), 0d);
+			assertEquals(5, view.indexStream().count());
+			assertEquals(5, view.parallelStream().count());
+			assertEquals(start + 1, view.indexStream().min().getAsLong());
+			TimeIndexable<Double> copy = view.copy();
+			// a view reflects modifications of its parent, a copy does not
+			ts.put(start + 6, Double.NaN);
+			ts.put(start + 2, 3d);
+			assertEquals(3d, view.get(start + 2));
+			assertEquals(Double.NaN, copy.get(start + 2));
+			assertEquals(new Range(domain, start + 1, start + 5), view.getRange());
+			ts.put(start + 5, Double.NaN);
+			assertEquals(new Range(domain, start + 1, start + 4), view.getRange());
+			copy.put(start + 1, 0d);
+			assertEquals(2d, ts.get(start + 1));
+			RegularTimeSeries<Double> regular = new RegularTimeSeries<Double>(Double.class, domain);
+			regular.put(start, new Double[] { 1d, 2d });
+			assertEquals(0, regular.view(new Range(domain, start + 100, start + 200)).getArray().length);
+			assertEquals(0, regular.view(new Range(domain, start, start + 1)).getArray(new Range(domain, start + 100, start + 200)).length);
+			ts.setRange(null);
+			assertEquals(0, view.getSize());
+			assertTrue(view.getRange().isEmpty());
+			assertEquals(0, view.getArray().length);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testReadOnly() {
+		try {
+			long start = domain.time("2017-01-02").asLong();
+			SparseTimeSeries<Double> sparse = new SparseTimeSeries<Double>(Double.class, domain);
+			sparse.put(start, 1d);
+			RegularTimeSeries<Double> regular = new RegularTimeSeries<Double>(Double.class, domain);
+			regular.put(start, 1d);
+			CompressedTimeSeries compressed = new CompressedTimeSeries(sparse);
+			assertEquals(1d, compressed.view(new Range(domain, start, start)).get(start));
+			Range range = new Range(domain, start, start + 10);
+			for (TimeAddressable<Double> view : Arrays.<TimeAddressable<Double>>asList(sparse.view(range), regular.view(range))) {
+				try {
+					view.put(start + 1, 2d);
+					fail("exception expected");
+				} catch (UnsupportedOperationException e) {
+				}
+				try {
+					view.setRange(null);
+					fail("exception expected");
+				} catch (UnsupportedOperationException e) {
+				}
+				TimeAddressable<Double> copy = view.copy();
+				copy.put(start + 1, 2d);
+				assertEquals(2, copy.getValueCount());
+				assertEquals(1, view.getValueCount());
+			}
+			try {
+				regular.view(range).fill(0d, 0);
+				fail("exception expected");
+			} catch (UnsupportedOperationException e) {
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testDefaultView() {
+		try {
+			long start = domain.time("2017-01-02").asLong();
+			Range[] ranges = {
+				new Range(domain, start - 100, start + 10),
+				new Range(domain, start + 3, start + 1003),
+				new Range(domain, start + 2900, start + 5000),
+				new Range(domain, start + 5000, start + 6000),
+				new Range(domain),
+			};
+			for (TimeAddressable<Double> ts : series(start)) {
+				TimeAddressable<Double> delegate = ts.isIndexable() ? 
+						new DelegatingIndexable<Double>(ts.asIndexable()) : new DelegatingTimeSeries<Double>(ts);
+				for (Range range : ranges) {
+					TimeAddressable<Double> view = delegate.view(range);
+					// the default view is the view of the library series
+					assertEquals(ts.view(range).getClass(), view.getClass());
+					assertEquals(ts.isIndexable(), view.isIndexable());
+					assertSameView(ts.view(range), view);
+					assertSameView(ts.get(range), view.copy());
+					for (long i = start - 2; i < start + 3002; i += 13) {
+						assertEquals(ts.view(range).get(i), view.get(i));
+						assertEquals(String.valueOf(ts.view(range).getFirst(domain.time(i))), String.valueOf(view.getFirst(domain.time(i))));
+						assertEquals(String.valueOf(ts.view(range).getLast(domain.time(i))), String.valueOf(view.getLast(domain.time(i))));
+					}
+					Range inner = new Range(domain, start + 500, start + 700);
+					assertSameView(ts.view(range).view(inner), view.view(inner));
+					assertSameView(ts.view(range).get(inner), view.get(inner));
+					if (view.isIndexable())
+						assertTrue(Arrays.equals(ts.view(range).asIndexable().getArray(), view.asIndexable().getArray()));
+					try {
+						view.put(start + 1, 2d);
+						fail("exception expected");
+					} catch (UnsupportedOperationException e) {
+					}
+				}
+			}
+			// a view reflects modifications of its parent
+			SparseTimeSeries<Double> sparse = new SparseTimeSeries<Double>(Double.class, domain);
+			TimeAddressable<Double> view = new DelegatingTimeSeries<Double>(sparse).view(new Range(domain, start, start + 10));
+			assertEquals(0, view.getSize());
+			sparse.put(start + 5, 1d);
+			assertEquals(new Range(domain, start + 5, start + 5), view.getRange());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+}
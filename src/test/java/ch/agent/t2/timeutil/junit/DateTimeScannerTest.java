@@ -1,5 +1,9 @@
 package ch.agent.t2.timeutil.junit;
 
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.TestCase;
 import ch.agent.core.KeyedException;
 import ch.agent.t2.T2Msg.K;
@@ -102,4 +106,131 @@ public class DateTimeScannerTest extends TestCase {
 		}
 	}
 
+	public void testBytes() {
+		try {
+			byte[] line = "42,2010-11-30 14:11:23,Wed Nov 30 12:29:23 CET 2010\n".getBytes("US-ASCII");
+			DateTimeScanner iso = new DateTimeScanner(null, null);
+			assertEquals("2010-11-30 14:11:23", DateTime.DOMAIN.time(iso.scanIndex(DateTime.DOMAIN, line, 3, 19)).toString());
+			int[] groups = {6,1,2,3,4,5};
+			String pattern = "\\S+ (\\S+) (\\d+) (\\d\\d):(\\d\\d):(\\d\\d) \\S+ (\\d\\d\\d\\d)";
+			String[] months = 
+				      {"Jan", "Feb", "Mar", "Apr", "May", "Jun", 
+				       "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+			DateTimeScanner scanner = new DateTimeScanner(pattern, groups);
+			scanner.setMonths(months);
+			long expected = DateTime.DOMAIN.time("2010-11-30 12:29:23").asLong();
+			assertEquals(expected, scanner.scanIndex(DateTime.DOMAIN, line, 23, 28));
+			ByteBuffer heap = ByteBuffer.wrap(line);
+			assertEquals(expected, scanner.scanIndex(DateTime.DOMAIN, heap, 23, 28));
+			ByteBuffer direct = ByteBuffer.allocateDirect(line.length);
+			direct.put(line);
+			assertEquals(expected, scanner.scanIndex(DateTime.DOMAIN, direct, 23, 28));
+			assertEquals(line.length, direct.position());
+			assertEquals(DateTime.DOMAIN.time("2010-11-30 14:11:23").asLong(), iso.scanIndex(DateTime.DOMAIN, direct, 3, 19));
+			try {
+				scanner.scanIndex(DateTime.DOMAIN, line, 3, 19);
+				fail("exception expected");
+			} catch (KeyedException e) {
+				assertEquals(K.T7018, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
+	public void testCompiled() {
+		try {
+			String[][] patterns = {
+				{ "\\S+ (\\S+) (\\d+) (\\d\\d):(\\d\\d):(\\d\\d) \\S+ (\\d\\d\\d\\d)", "true" },
+				{ "^(\\d{4})[-/](\\d{1,2})[-/](\\d{1,2})[T ]?$", "true" },
+				{ "^(\\d{4})[-/](\\d{1,2})[-/](\\d{1,2})[T ]?(\\d*)$", "false" },
+				{ "(\\d+)\\.(\\d+)\\.(\\d+)\\s*", "true" },
+				{ "(\\d+)(\\d\\d)(\\d\\d)", "false" },
+				{ "(\\d+)(?:-|/)(\\d+)-(\\d+)", "false" },
+				{ "(\\d+)-(\\d+)-(\\d+).*", "false" },
+			};
+			String[] inputs = { "2010-11-30", "2010/1/3", "2010-11-30T12", "2010-11-3012", "2010/11-30 ",
+					"30.11.2010", "30.11.2010  ", "20101130", "201011300", "2010-11-30X", "", "Wed Nov 30 12:29:23 CET 2010" };
+			for (String[] p : patterns) {
+				DateTimeScanner scanner = new DateTimeScanner(p[0], null);
+				assertEquals(p[0], Boolean.valueOf(p[1]).booleanValue(), scanner.isCompiled());
+				for (String input : inputs) {
+					boolean expected = java.util.regex.Pattern.compile(p[0]).matcher(input).matches();
+					boolean actual;
+					try {
+						scanner.scanIndex(DateTime.DOMAIN, input, 0, input.length());
+						actual = true;
+					} catch (KeyedException e) {
+						actual = !e.getMsg().getKey().equals(K.T7018);
+					} catch (NumberFormatException e) {
+						actual = true;
+					}
+					assertEquals(p[0] + " " + input, expected, actual);
+				}
+			}
+			DateTimeScanner scanner = new DateTimeScanner("(\\d+)(\\d\\d)(\\d\\d)", null);
+			assertEquals("2010-11-30 00:00:00", DateTime.DOMAIN.time(scanner.scanIndex(DateTime.DOMAIN, "20101130", 0, 8)).toString());
+			scanner = new DateTimeScanner("(\\d\\d) ([a-zA-Z\u00e4]+)\\.? (\\d\\d\\d\\d)", new int[] {3, 2, 1});
+			assertTrue(scanner.isCompiled());
+			scanner.setMonths(new String[] {"Jan", "Feb", "M\u00e4r", "Apr", "Mai", "Jun", "Jul", "Aug", "Sep", "Okt", "Nov", "Dez"});
+			scanner.setMonths(new String[] {"Januar", "Februar", "M\u00e4rz", "April", "Mai", "Juni", "Juli", "August", "September", "Oktober", "November", "Dezember"});
+			assertEquals("2010-03-30 00:00:00", DateTime.DOMAIN.time(scanner.scanIndex(DateTime.DOMAIN, "30 M\u00e4r. 2010", 0, 12)).toString());
+			assertEquals("2010-03-30 00:00:00", DateTime.DOMAIN.time(scanner.scanIndex(DateTime.DOMAIN, "30 M\u00e4rz 2010", 0, 12)).toString());
+			assertEquals("2010-06-30 00:00:00", DateTime.DOMAIN.time(scanner.scanIndex(DateTime.DOMAIN, "30 Juni 2010", 0, 12)).toString());
+			assertEquals("2010-06-30 00:00:00", DateTime.DOMAIN.time(scanner.scanIndex(DateTime.DOMAIN, "30 Jun 2010", 0, 11)).toString());
+			try {
+				scanner.scanIndex(DateTime.DOMAIN, "30 Ju 2010", 0, 10);
+				fail("exception expected");
+			} catch (KeyedException e) {
+				assertEquals(K.T7019, e.getMsg().getKey());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+	
+	public void testBulk() {
+		try {
+			DateTimeScanner scanner = new DateTimeScanner("(\\d\\d)\\.(\\d\\d)\\.(\\d\\d\\d\\d) (\\d\\d):(\\d\\d)", new int[] {3, 2, 1, 4, 5});
+			int size = 20000;
+			CharSequence[] in = new CharSequence[size];
+			long[] expected = new long[size];
+			BitSet expectedErrors = new BitSet();
+			long start = DateTime.DOMAIN.time("2010-01-01").asLong();
+			for (int i = 0; i < size; i++) {
+				TimeIndex t = DateTime.DOMAIN.time(start + i * 61L);
+				in[i] = t.toString("%3$02d.%2$02d.%1$04d %4$02d:%5$02d");
+				expected[i] = t.asLong() - t.asLong() % 60;
+				if (i % 997 == 0) {
+					in[i] = i % 2 == 0 ? null : "31.02.2010 00:00";
+					expected[i] = -1;
+					expectedErrors.set(i);
+				}
+			}
+			long[] out = new long[size];
+			BitSet errors = new BitSet();
+			errors.set(size + 5);
+			errors.set(1);
+			scanner.scan(DateTime.DOMAIN, in, out, errors);
+			for (int i = 0; i < size; i++) {
+				if (!expectedErrors.get(i))
+					assertEquals(expected[i], out[i]);
+			}
+			expectedErrors.set(size + 5);
+			assertEquals(expectedErrors, errors);
+			long[] parallel = new long[size];
+			errors.clear(1);
+			ForkJoinPool pool = new ForkJoinPool(4);
+			scanner.scan(DateTime.DOMAIN, in, parallel, errors, pool);
+			pool.shutdown();
+			assertEquals(expectedErrors, errors);
+			assertTrue(java.util.Arrays.equals(out, parallel));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("exception");
+		}
+	}
+
 }